@@ -10,44 +10,22 @@ package org.cosmicide
 import android.app.Activity
 import android.app.Application
 import android.app.UiModeManager
+import android.content.ComponentCallbacks2
 import android.content.res.Configuration
 import android.os.Build
 import android.os.Bundle
-import android.util.Log
 import androidx.activity.ComponentActivity
 import androidx.activity.enableEdgeToEdge
 import androidx.appcompat.app.AppCompatDelegate
-import androidx.recyclerview.widget.LinearLayoutManager
-import androidx.recyclerview.widget.RecyclerView
 import com.google.android.material.color.DynamicColors
 import com.itsaky.androidide.config.JavacConfigProvider
-import de.robv.android.xposed.XC_MethodHook
-import io.github.rosemoe.sora.langs.textmate.registry.FileProviderRegistry
-import io.github.rosemoe.sora.langs.textmate.registry.GrammarRegistry
 import io.github.rosemoe.sora.langs.textmate.registry.ThemeRegistry
-import io.github.rosemoe.sora.langs.textmate.registry.provider.AssetsFileResolver
-import org.cosmicide.common.Analytics
+import org.cosmicide.build.kotlin.KotlinCompilerSession
 import org.cosmicide.common.Prefs
-import org.cosmicide.fragment.PluginsFragment
-import org.cosmicide.rewrite.plugin.api.Hook
-import org.cosmicide.rewrite.plugin.api.HookManager
-import org.cosmicide.rewrite.plugin.api.PluginLoader
 import org.cosmicide.rewrite.util.FileUtil
-import org.cosmicide.util.CommonUtils
 import org.lsposed.hiddenapibypass.HiddenApiBypass
 import rikka.sui.Sui
-import java.io.File
-import java.io.FileInputStream
-import java.io.FileNotFoundException
-import java.io.InputStream
 import java.lang.ref.WeakReference
-import java.math.BigInteger
-import java.net.URL
-import java.security.MessageDigest
-import java.time.ZonedDateTime
-import java.util.Locale
-import java.util.TimeZone
-import java.util.logging.Logger
 
 class App : Application() {
 
@@ -65,34 +43,8 @@ class App : Application() {
 
         if (FileUtil.isInitialized.not()) return
 
-        Analytics.init(this@App)
-        Log.d("Analytics", "Sending event")
-
-        Analytics.logEvent(
-            "user_metrics",
-            "name" to Prefs.clientName,
-            "ip" to getPublicIp(),
-            "theme" to Prefs.appTheme,
-            "language" to Locale.getDefault().language,
-            "timezone" to TimeZone.getDefault().id,
-            "sdk" to Build.VERSION.SDK_INT.toString() + " (" + Build.SUPPORTED_ABIS.joinToString(", ") + ")",
-            "device" to Build.DEVICE + " " + Build.DEVICE + " " + Build.PRODUCT,
-            "fingerprint" to Build.FINGERPRINT,
-            "hardware" to Build.HARDWARE,
-            "version" to BuildConfig.VERSION_NAME + if (BuildConfig.GIT_COMMIT.isNotEmpty()) " (${BuildConfig.GIT_COMMIT})" else "",
-        )
-        Analytics.logEvent(
-            "app_start",
-            "time" to ZonedDateTime.now().toString(),
-        )
-
         Sui.init(packageName)
         instance = WeakReference(this)
-        HookManager.context = WeakReference(this)
-
-        setupHooks()
-
-        loadPlugins()
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
             HiddenApiBypass.addHiddenApiExemptions("L")
@@ -100,11 +52,8 @@ class App : Application() {
 
         DynamicColors.applyToActivitiesIfAvailable(this)
 
-        extractFiles()
         disableModules()
 
-        loadTextmateTheme()
-
         val theme = getTheme(Prefs.appTheme)
         val uiModeManager = getSystemService(UiModeManager::class.java)
         if (uiModeManager.nightMode == theme) return
@@ -133,8 +82,14 @@ class App : Application() {
 
             override fun onActivityDestroyed(p0: Activity) {}
         })
+    }
 
-        Analytics.setAnalyticsCollectionEnabled(Prefs.analyticsEnabled)
+    override fun onTrimMemory(level: Int) {
+        super.onTrimMemory(level)
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            // The Kotlin compiler is set up again by the next build.
+            KotlinCompilerSession.release()
+        }
     }
 
     fun getTheme(theme: String): Int {
@@ -145,148 +100,10 @@ class App : Application() {
         }
     }
 
-    /**
-     * Extracts kotlin stdlib and stdlib-common from assets.
-     */
-    fun extractFiles() {
-        extractAsset(
-            "kotlin-stdlib-1.9.0.jar",
-            FileUtil.classpathDir.resolve("kotlin-stdlib-1.9.0.jar")
-        )
-        extractAsset(
-            "kotlin-stdlib-common-1.9.0.jar",
-            FileUtil.classpathDir.resolve("kotlin-stdlib-common-1.9.0.jar")
-        )
-
-        extractAsset(
-            "android.jar",
-            FileUtil.classpathDir.resolve("android.jar")
-        )
-
-        extractAsset(
-            "core-lambda-stubs.jar",
-            FileUtil.classpathDir.resolve("core-lambda-stubs.jar")
-        )
-    }
-
-    fun extractAsset(assetName: String, targetFile: File) {
-        if (targetFile.exists() && assetNeedsUpdate(assetName, targetFile)) {
-            targetFile.delete()
-        }
-
-        try {
-            assets.open(assetName).use { inputStream ->
-                targetFile.outputStream().use { outputStream ->
-                    inputStream.copyTo(outputStream)
-                }
-            }
-        } catch (e: FileNotFoundException) {
-            Log.e("App", "Failed to extract asset: $assetName", e)
-        }
-    }
-
-    fun assetNeedsUpdate(assetName: String, targetFile: File): Boolean {
-        val assetInputStream = assets.open(assetName)
-        FileInputStream(targetFile).use { targetFileInputStream ->
-            val assetChecksum = calculateChecksum(assetInputStream)
-            val targetFileChecksum = calculateChecksum(targetFileInputStream)
-            return assetChecksum != targetFileChecksum
-        }
-    }
-
-    fun calculateChecksum(inputStream: InputStream): String {
-        val md = MessageDigest.getInstance("SHA-256")
-        val buffer = ByteArray(8192)
-        var bytesRead: Int
-        while (inputStream.read(buffer).also { bytesRead = it } != -1) {
-            md.update(buffer, 0, bytesRead)
-        }
-        val digest = md.digest()
-        return BigInteger(1, digest).toString(16)
-    }
-
     fun disableModules() {
         JavacConfigProvider.disableModules()
     }
 
-    fun loadTextmateTheme() {
-        val fileProvider = AssetsFileResolver(assets)
-        FileProviderRegistry.getInstance().addFileProvider(fileProvider)
-
-        GrammarRegistry.getInstance().loadGrammars("textmate/languages.json")
-    }
-
-    private fun setupHooks() {
-        // Some libraries may call System.exit() to exit the app, which crashes the app.
-        // Currently, only JGit does this.
-        try {
-            HookManager.registerHook(object : Hook(
-                method = "exit",
-                argTypes = arrayOf(Int::class.java),
-                type = System::class.java
-            ) {
-                override fun before(param: XC_MethodHook.MethodHookParam) {
-                    System.err.println("System.exit() called!")
-                    // Setting result to null bypasses the original method call.
-                    param.result = null
-                }
-            })
-
-            // Fix crash in ViewPager2
-            HookManager.registerHook(object : Hook(
-                method = "onLayoutChildren",
-                argTypes = arrayOf(
-                    RecyclerView.Recycler::class.java,
-                    RecyclerView.State::class.java
-                ),
-                type = LinearLayoutManager::class.java
-            ) {
-                override fun before(param: XC_MethodHook.MethodHookParam) {
-                    try {
-                        // Call the original method.
-                        HookManager.invokeOriginal(
-                            param.method,
-                            param.thisObject,
-                            param.args[0],
-                            param.args[1]
-                        )
-                    } catch (e: Exception) {
-                        e.printStackTrace()
-                    }
-                    // Bypass method call as we have already called the original method.
-                    param.result = null
-                }
-            })
-
-            injectPrint("fine")
-            injectPrint("info")
-        } catch (e: UnsatisfiedLinkError) {
-            Log.e("App", "Failed to setup hooks", e)
-        }
-    }
-
-    private fun injectPrint(method: String) {
-        HookManager.registerHook(object : Hook(
-            method = method,
-            argTypes = arrayOf(String::class.java),
-            type = Logger::class.java
-        ) {
-            override fun before(param: XC_MethodHook.MethodHookParam) {
-                println(param.args[0])
-            }
-        })
-    }
-
-
-    private fun getPublicIp(): String {
-        return try {
-            val ip = URL("https://api.ipify.org").readText()
-            ip
-        } catch (e: Exception) {
-            ""
-        }
-    }
-
     override fun onConfigurationChanged(newConfig: Configuration) {
         super.onConfigurationChanged(newConfig)
 
@@ -309,19 +126,4 @@ class App : Application() {
             }
         ThemeRegistry.getInstance().setTheme(themeName)
     }
-
-    fun loadPlugins() {
-        PluginsFragment.getPlugins().forEach { plugin ->
-            val dir = FileUtil.pluginDir.resolve(plugin.name)
-
-            if (plugin.isEnabled) {
-                Log.i("App", "Loading plugin: ${plugin.name}")
-            } else {
-                Log.i("App", "Plugin ${plugin.name} is disabled")
-                return@forEach
-            }
-
-            PluginLoader.loadPlugin(dir, plugin)
-        }
-    }
 }
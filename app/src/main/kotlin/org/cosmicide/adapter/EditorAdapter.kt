@@ -31,6 +31,7 @@ import org.cosmicide.editor.language.KotlinLanguage
 import org.cosmicide.editor.language.TsLanguageJava
 import org.cosmicide.extension.setFont
 import org.cosmicide.model.FileViewModel
+import org.cosmicide.startup.TextMateInitializer
 import org.cosmicide.util.ProjectHandler
 import java.io.File
 import kotlin.properties.Delegates
@@ -117,6 +118,7 @@ class EditorAdapter(val fragment: Fragment, val fileViewModel: FileViewModel) :
     class CodeEditorFragment : Fragment() {
 
         private lateinit var eventReceiver: SubscriptionReceipt<ContentChangeEvent>
+        private var diagnosticsMarker: EditorDiagnosticsMarker? = null
         private lateinit var binding: EditorFragmentBinding
         lateinit var editor: IdeEditor
         val file by lazy { requireArguments().getSerializable("file") as File }
@@ -205,12 +207,14 @@ class EditorAdapter(val fragment: Fragment, val fileViewModel: FileViewModel) :
                             file
                         )
                     )
-                    eventReceiver =
-                        editor.subscribeEvent(EditorDiagnosticsMarker(editor, file, project))
+                    val marker = EditorDiagnosticsMarker(editor, file, project)
+                    diagnosticsMarker = marker
+                    eventReceiver = editor.subscribeEvent(marker)
                 }
 
                 "kt" -> {
                     if (editor.editorLanguage is KotlinLanguage) return
+                    TextMateInitializer.awaitGrammars()
                     editor.setEditorLanguage(
                         KotlinLanguage(
                             editor,
@@ -270,6 +274,7 @@ class EditorAdapter(val fragment: Fragment, val fileViewModel: FileViewModel) :
         fun release() {
             hideWindows()
             if (::eventReceiver.isInitialized) eventReceiver.unsubscribe()
+            diagnosticsMarker?.release()
             if (::editor.isInitialized) editor.release()
         }
 
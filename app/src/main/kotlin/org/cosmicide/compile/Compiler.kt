@@ -9,9 +9,11 @@ package org.cosmicide.compile
 
 import org.cosmicide.App
 import org.cosmicide.R
+import org.cosmicide.build.BuildGraph
 import org.cosmicide.build.BuildReporter
 import org.cosmicide.build.Task
 import org.cosmicide.build.dex.D8Task
+import org.cosmicide.build.dex.LibraryDexTask
 import org.cosmicide.build.java.JarTask
 import org.cosmicide.build.java.JavaCompileTask
 import org.cosmicide.build.kotlin.KotlinCompiler
@@ -28,6 +30,7 @@ class Compiler(
     private val reporter: BuildReporter
 ) {
     companion object {
+        private const val BUILD_STATE_FILE_NAME = "build-graph.properties"
 
         /**
          * A listener to be called when a compiler starts or finishes compiling.
@@ -43,6 +46,7 @@ class Compiler(
             CompilerCache.saveCache(JavaCompileTask(project))
             CompilerCache.saveCache(KotlinCompiler(project))
             CompilerCache.saveCache(D8Task(project))
+            CompilerCache.saveCache(LibraryDexTask(project))
             CompilerCache.saveCache(JarTask(project))
         }
     }
@@ -56,67 +60,56 @@ class Compiler(
 
     /**
      * Compiles Kotlin and Java code and converts class files to dex format.
-     */
-    fun compile(release: Boolean = false) {
-        compileKotlinCode()
-        compileJavaCode()
-        convertClassFilesToDexFormat()
-        if (release) {
-            compileJar()
-        }
-        reporter.reportSuccess()
-    }
-
-    /**
-     * Compiles a task.
      *
-     * @param T The type of the task to be compiled.
-     * @param message The message to be reported when the task starts compiling.
+     * The tasks run as a [BuildGraph]: the libraries are converted to dex format while the sources
+     * are compiled, and tasks whose inputs have not changed are skipped. The build profile is
+     * reported at the end.
      */
-    private inline fun <reified T : Task> compileTask(message: String) {
-        val task = CompilerCache.getCache<T>()
-
-        with(reporter) {
-            if (failure) return
-            reportInfo(message)
-            compileListener(T::class.java, BuildStatus.STARTED)
-            task.execute(this)
-            compileListener(T::class.java, BuildStatus.FINISHED)
-
-            if (failure) {
-                reportOutput(context.getString(R.string.failed_to_compile, T::class.simpleName))
+    fun compile(release: Boolean = false) {
+        val kotlinCompiler = CompilerCache.getCache<KotlinCompiler>()
+        val javaCompileTask = CompilerCache.getCache<JavaCompileTask>()
+        val d8Task = CompilerCache.getCache<D8Task>()
+        val graph = BuildGraph(
+            project.cacheDir.resolve(BUILD_STATE_FILE_NAME),
+            onStarted = { task, taskReporter ->
+                taskReporter.reportInfo(getStartMessage(task))
+                compileListener(task.javaClass, BuildStatus.STARTED)
+            },
+            onFinished = { task, taskReporter ->
+                compileListener(task.javaClass, BuildStatus.FINISHED)
+                if (taskReporter.failure) {
+                    taskReporter.reportOutput(
+                        context.getString(R.string.failed_to_compile, task.javaClass.simpleName)
+                    )
+                } else {
+                    taskReporter.reportInfo(
+                        context.getString(R.string.successfully_run, task.javaClass.simpleName)
+                    )
+                }
+            }
+        ).apply {
+            add(CompilerCache.getCache<LibraryDexTask>())
+            add(kotlinCompiler)
+            add(javaCompileTask, kotlinCompiler)
+            add(d8Task, kotlinCompiler, javaCompileTask)
+            if (release) {
+                add(CompilerCache.getCache<JarTask>(), kotlinCompiler, javaCompileTask)
             }
-
-            reportInfo(context.getString(R.string.successfully_run, T::class.simpleName))
         }
-    }
 
-    /**
-     * Compiles Java code.
-     */
-    private fun compileJavaCode() {
-        compileTask<JavaCompileTask>(context.getString(R.string.compiling_java))
-    }
-
-    /**
-     * Compiles the classes directory to `classes.jar`.
-     */
-    private fun compileJar() {
-        compileTask<JarTask>(context.getString(R.string.assembling_jar))
-    }
-
-    /**
-     * Compiles Kotlin code.
-     */
-    private fun compileKotlinCode() {
-        compileTask<KotlinCompiler>(context.getString(R.string.compiling_kotlin))
+        graph.execute(reporter)
+        reporter.reportSuccess()
     }
 
-    /**
-     * Converts class files to dex format.
-     */
-    private fun convertClassFilesToDexFormat() {
-        compileTask<D8Task>(context.getString(R.string.compiling_class_files_to_dex))
+    private fun getStartMessage(task: Task): String {
+        return when (task) {
+            is KotlinCompiler -> context.getString(R.string.compiling_kotlin)
+            is JavaCompileTask -> context.getString(R.string.compiling_java)
+            is D8Task -> context.getString(R.string.compiling_class_files_to_dex)
+            is LibraryDexTask -> context.getString(R.string.compiling_libraries_to_dex)
+            is JarTask -> context.getString(R.string.assembling_jar)
+            else -> task.javaClass.simpleName
+        }
     }
 
     sealed class BuildStatus {
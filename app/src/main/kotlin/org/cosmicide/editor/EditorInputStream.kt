@@ -8,46 +8,200 @@
 package org.cosmicide.editor
 
 import android.util.Log
+import io.github.rosemoe.sora.event.ContentChangeEvent
+import io.github.rosemoe.sora.event.SubscriptionReceipt
 import io.github.rosemoe.sora.widget.CodeEditor
 import java.io.InputStream
+import java.io.InterruptedIOException
+import java.util.concurrent.ArrayBlockingQueue
 
+/**
+ * An input stream of the lines the user enters in an editor, i.e. the text typed after the
+ * output of the program up to a line break.
+ *
+ * The entered lines are queued as they are submitted and reads block until a line is available, so
+ * a program waiting for input doesn't use the CPU. Closing the stream ends the input.
+ *
+ * @param editor The editor the lines are entered in. Must be created on the main thread.
+ * @param output The stream the output of the program is written to the editor with, if any. The
+ * output is inserted before the line the user is entering, so the text typed so far is kept.
+ */
+class EditorInputStream(
+    private val editor: CodeEditor,
+    private val output: EditorOutputStream? = null
+) : InputStream() {
+    private val lines = ArrayBlockingQueue<ByteArray>(MAX_PENDING_LINES)
+    private var line = EMPTY
+    private var position = 0
+
+    @Volatile
+    private var closed = false
+
+    /**
+     * The line where the input of the user starts. Only used on the main thread.
+     */
+    internal var inputLine = 0
+        private set
+
+    /**
+     * The column where the input of the user starts. Only used on the main thread.
+     */
+    internal var inputColumn = 0
+        private set
+
+    private val receipt: SubscriptionReceipt<ContentChangeEvent> =
+        editor.subscribeEvent(ContentChangeEvent::class.java) { event, _ -> onContentChange(event) }
 
-class EditorInputStream(private val editor: CodeEditor) : InputStream() {
-    private val lineBuffer = StringBuilder()
+    init {
+        moveInputToEnd()
+        output?.input = this
+    }
 
     override fun read(): Int {
-        if (lineBuffer.isEmpty()) {
-            Log.d("EditorInputStream", "lineBuffer is empty")
-            readLineToBuffer()
-        }
-        if (lineBuffer.isEmpty()) {
+        if (!awaitLine()) {
             return -1
         }
-        if (lineBuffer.isBlank()) {
+        return line[position++].toInt() and 0xff
+    }
+
+    override fun read(b: ByteArray, off: Int, len: Int): Int {
+        if (len == 0) {
+            return 0
+        }
+        if (!awaitLine()) {
             return -1
         }
-        Log.d("lineBuffer", "${lineBuffer.length}")
-        val code = lineBuffer[0].code
-        lineBuffer.deleteCharAt(0)
-        return code
+        // Read the lines that are already entered, but don't wait for more.
+        var count = 0
+        while (count < len) {
+            if (position == line.size) {
+                val next = lines.peek()
+                if (next == null || next === EMPTY) {
+                    break
+                }
+                line = lines.poll() ?: break
+                position = 0
+            }
+            val length = minOf(len - count, line.size - position)
+            System.arraycopy(line, position, b, off + count, length)
+            position += length
+            count += length
+        }
+        return count
+    }
+
+    override fun available() = line.size - position
+
+    override fun close() {
+        if (closed) {
+            return
+        }
+        closed = true
+        editor.post {
+            receipt.unsubscribe()
+            if (output?.input === this) {
+                output.input = null
+            }
+        }
+        // Wakes up the blocked readers.
+        lines.clear()
+        lines.offer(EMPTY)
     }
 
-    private fun readLineToBuffer() {
-        while (true) {
-            val lines = editor.text.lines()
-            if (lines.isEmpty()) {
-                continue
+    /**
+     * Waits until there are bytes to read in [line]. Returns false at the end of the input.
+     */
+    private fun awaitLine(): Boolean {
+        while (position == line.size) {
+            if (closed && lines.isEmpty()) {
+                return false
             }
-            if (lines.size == 1) {
-                continue
+            val next = try {
+                lines.take()
+            } catch (e: InterruptedException) {
+                throw InterruptedIOException()
             }
-            val line = lines[lines.size - 1]
-            Log.d("EditorInputStream", line)
-            if (line.isBlank()) {
-                lineBuffer.append(lines[lines.size - 2]).append('\n')
-                Log.d("buffer", lineBuffer.toString())
-                break
+            if (next === EMPTY) {
+                // Keep the end of the input for the other readers.
+                lines.offer(EMPTY)
+                return false
             }
+            line = next
+            position = 0
         }
+        return true
+    }
+
+    private fun onContentChange(event: ContentChangeEvent) {
+        if (event.action == ContentChangeEvent.ACTION_SET_NEW_TEXT) {
+            moveInputToEnd()
+            return
+        }
+        // The output is inserted at the start of the input, and moves it.
+        val isOutput = output?.isAppending == true
+        val start = event.changeStart
+        val end = event.changeEnd
+        if (event.action == ContentChangeEvent.ACTION_DELETE) {
+            when {
+                isBeforeInput(end.line, end.column) -> {
+                    if (end.line == inputLine) {
+                        inputColumn = start.column + inputColumn - end.column
+                    }
+                    inputLine -= end.line - start.line
+                }
+
+                isBeforeInput(start.line, start.column) -> {
+                    inputLine = start.line
+                    inputColumn = start.column
+                }
+            }
+            return
+        }
+
+        if (isBeforeInput(start.line, start.column) &&
+            (isOutput || start.line != inputLine || start.column != inputColumn)
+        ) {
+            // Text inserted into the output moves the input.
+            if (start.line == inputLine) {
+                inputColumn = end.column + inputColumn - start.column
+            }
+            inputLine += end.line - start.line
+            return
+        }
+        if (end.line == start.line) {
+            return
+        }
+        // Submit the lines completed by the inserted line breaks.
+        val content = editor.text
+        val text = content.subContent(inputLine, inputColumn, end.line, 0).toString()
+        text.lineSequence().toList().dropLast(1).forEach { submit(it) }
+        inputLine = end.line
+        inputColumn = 0
+    }
+
+    private fun submit(text: String) {
+        if (closed) {
+            return
+        }
+        if (!lines.offer((text + "\n").toByteArray())) {
+            Log.w("EditorInputStream", "Too many lines entered, dropping line")
+        }
+    }
+
+    private fun isBeforeInput(line: Int, column: Int): Boolean {
+        return line < inputLine || line == inputLine && column <= inputColumn
+    }
+
+    private fun moveInputToEnd() {
+        val content = editor.text
+        inputLine = content.lineCount - 1
+        inputColumn = content.getColumnCount(inputLine)
+    }
+
+    companion object {
+        private const val MAX_PENDING_LINES = 1024
+
+        // Marks the end of the input.
+        private val EMPTY = ByteArray(0)
     }
 }
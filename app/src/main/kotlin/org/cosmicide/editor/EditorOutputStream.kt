@@ -0,0 +1,184 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.editor
+
+import io.github.rosemoe.sora.widget.CodeEditor
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.CharBuffer
+import java.nio.charset.CodingErrorAction
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * An output stream that appends the UTF-8 text written to it to the end of an editor, or before the
+ * input the user is entering if it has an [input].
+ *
+ * The bytes are collected in a ring buffer and appended in batches once per frame, so the editor is
+ * updated at most once per frame however the text is written. Writers block while the buffer is
+ * full until the editor catches up. Only the last [maxLines] lines are kept in the editor.
+ *
+ * The stream must be closed when the editor is no longer shown, so that blocked writers are
+ * released. Bytes written after the stream is closed are discarded.
+ *
+ * @param editor The editor to append the text to.
+ * @param maxLines The maximum number of lines kept in the editor.
+ * @param capacity The size of the buffer in bytes.
+ */
+class EditorOutputStream(
+    private val editor: CodeEditor,
+    private val maxLines: Int = DEFAULT_MAX_LINES,
+    capacity: Int = DEFAULT_CAPACITY
+) : OutputStream() {
+    private val lock = ReentrantLock()
+    private val notFull = lock.newCondition()
+
+    private val buffer = ByteArray(capacity)
+    private var start = 0
+    private var size = 0
+    private var closed = false
+    private var drainPosted = false
+
+    // Only used on the main thread. The bytes of a character split between two batches are kept
+    // until the next batch.
+    private val decoder = Charsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE)
+    private val bytes = ByteBuffer.allocate(MAX_BATCH_SIZE)
+    private val chars = CharBuffer.allocate(MAX_BATCH_SIZE)
+
+    private val drain = Runnable { drain() }
+
+    /**
+     * Whether the text written to this stream is being appended to the editor. Only set on the
+     * main thread.
+     */
+    var isAppending = false
+        private set
+
+    /**
+     * The input stream of the lines entered after the output, if any. Only used on the main
+     * thread.
+     */
+    internal var input: EditorInputStream? = null
+
+    override fun write(b: Int) {
+        lock.withLock {
+            if (!awaitSpace()) {
+                return
+            }
+            buffer[(start + size) % buffer.size] = b.toByte()
+            size++
+            postDrain()
+        }
+    }
+
+    override fun write(b: ByteArray, off: Int, len: Int) {
+        var offset = off
+        var remaining = len
+        while (remaining > 0) {
+            lock.withLock {
+                if (!awaitSpace()) {
+                    return
+                }
+                val end = (start + size) % buffer.size
+                val count = minOf(remaining, buffer.size - size, buffer.size - end)
+                System.arraycopy(b, offset, buffer, end, count)
+                size += count
+                offset += count
+                remaining -= count
+                postDrain()
+            }
+        }
+    }
+
+    override fun close() {
+        lock.withLock {
+            closed = true
+            notFull.signalAll()
+        }
+    }
+
+    /**
+     * Waits until the buffer has space.
+     *
+     * @return false if the stream is closed, and the bytes are to be discarded.
+     */
+    private fun awaitSpace(): Boolean {
+        while (size == buffer.size && !closed) {
+            notFull.await()
+        }
+        return !closed
+    }
+
+    private fun postDrain() {
+        if (!drainPosted) {
+            drainPosted = true
+            editor.postOnAnimation(drain)
+        }
+    }
+
+    /**
+     * Appends a batch of the buffered text to the editor.
+     */
+    private fun drain() {
+        lock.withLock {
+            drainPosted = false
+            var count = minOf(size, bytes.remaining())
+            while (count > 0) {
+                val length = minOf(count, buffer.size - start)
+                bytes.put(buffer, start, length)
+                start = (start + length) % buffer.size
+                size -= length
+                count -= length
+            }
+            notFull.signalAll()
+            if (size > 0) {
+                postDrain()
+            }
+        }
+
+        bytes.flip()
+        decoder.decode(bytes, chars, false)
+        bytes.compact()
+        chars.flip()
+        if (chars.hasRemaining()) {
+            append(chars.toString())
+        }
+        chars.clear()
+    }
+
+    private fun append(text: String) {
+        val content = editor.text
+        // The output can't be undone, and keeping it for undo would defeat the line limit.
+        content.isUndoEnabled = false
+        isAppending = true
+        try {
+            val input = input
+            if (input != null) {
+                content.insert(input.inputLine, input.inputColumn, text)
+            } else {
+                val line = content.lineCount - 1
+                content.insert(line, content.getColumnCount(line), text)
+            }
+            if (content.lineCount > maxLines) {
+                content.delete(0, 0, content.lineCount - maxLines, 0)
+            }
+        } finally {
+            isAppending = false
+        }
+    }
+
+    companion object {
+        const val DEFAULT_MAX_LINES = 10_000
+        const val DEFAULT_CAPACITY = 512 * 1024
+
+        // The maximum number of bytes appended per frame.
+        private const val MAX_BATCH_SIZE = 128 * 1024
+    }
+}
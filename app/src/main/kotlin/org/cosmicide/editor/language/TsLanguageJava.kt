@@ -60,7 +60,8 @@ class TsLanguageJava(
                     "${project.binDir.absolutePath}/autocomplete.log",
                     Level.ALL,
                     emptyList(),
-                    emptyList()
+                    emptyList(),
+                    project.cacheDir.resolve("completion").absolutePath
                 )
                 completions.initialize(URI("file://" + project.root.absolutePath), options)
                 completions.openFile(path, editor.text.toString())
@@ -75,7 +76,8 @@ class TsLanguageJava(
                     "${project.binDir.absolutePath}/autocomplete.log",
                     Level.ALL,
                     emptyList(),
-                    emptyList()
+                    emptyList(),
+                    project.cacheDir.resolve("completion").absolutePath
                 )
             )
             completions.openFile(path, editor.text.toString())
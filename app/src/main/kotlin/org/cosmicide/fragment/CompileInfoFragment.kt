@@ -21,6 +21,7 @@ import org.cosmicide.common.BaseBindingFragment
 import org.cosmicide.compile.Compiler
 import org.cosmicide.databinding.FragmentCompileInfoBinding
 import org.cosmicide.project.Project
+import org.cosmicide.startup.TextMateInitializer
 import org.cosmicide.util.ProjectHandler
 
 /**
@@ -50,6 +51,7 @@ class CompileInfoFragment : BaseBindingFragment<FragmentCompileInfoBinding>() {
     override fun onViewCreated(view: View, savedInstanceState: Bundle?) {
         super.onViewCreated(view, savedInstanceState)
 
+        TextMateInitializer.awaitGrammars()
         binding.infoEditor.apply {
             setEditorLanguage(TextMateLanguage.create("source.build", false))
             editable = false
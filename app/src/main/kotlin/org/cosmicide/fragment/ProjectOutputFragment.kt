@@ -21,18 +21,19 @@ import org.cosmicide.R
 import org.cosmicide.common.BaseBindingFragment
 import org.cosmicide.databinding.FragmentCompileInfoBinding
 import org.cosmicide.editor.EditorInputStream
+import org.cosmicide.editor.EditorOutputStream
 import org.cosmicide.project.Project
-import org.cosmicide.rewrite.util.MultipleDexClassLoader
+import org.cosmicide.runner.ProgramRunner
+import org.cosmicide.startup.TextMateInitializer
 import org.cosmicide.util.ProjectHandler
-import org.cosmicide.util.makeDexReadOnlyIfNeeded
-import java.io.OutputStream
 import java.io.PrintStream
-import java.lang.reflect.Modifier
 
 class ProjectOutputFragment : BaseBindingFragment<FragmentCompileInfoBinding>() {
     val project: Project = ProjectHandler.getProject()
         ?: throw IllegalStateException("No project set")
     var isRunning: Boolean = false
+    private var output: EditorOutputStream? = null
+    private var input: EditorInputStream? = null
 
     override fun getViewBinding() = FragmentCompileInfoBinding.inflate(layoutInflater)
 
@@ -64,6 +65,7 @@ class ProjectOutputFragment : BaseBindingFragment<FragmentCompileInfoBinding>()
             }
         }
 
+        TextMateInitializer.awaitGrammars()
         binding.infoEditor.apply {
             setEditorLanguage(TextMateLanguage.create("source.build", false))
         }
@@ -78,6 +80,13 @@ class ProjectOutputFragment : BaseBindingFragment<FragmentCompileInfoBinding>()
         binding.infoEditor.postDelayed(::checkClasses, 250)
     }
 
+    override fun onDestroyView() {
+        // Releases the program if it's blocked on writing its output or reading its input.
+        output?.close()
+        input?.close()
+        super.onDestroyView()
+    }
+
     fun checkClasses() {
         val dex = project.binDir.resolve("classes.dex")
         if (!dex.exists()) {
@@ -113,64 +122,24 @@ class ProjectOutputFragment : BaseBindingFragment<FragmentCompileInfoBinding>()
         runClass(index)
     }
 
-    fun runClass(className: String) = lifecycleScope.launch(Dispatchers.IO) {
-        val systemOut = PrintStream(object : OutputStream() {
-            override fun write(p0: Int) {
-                val text = binding.infoEditor.text
-                lifecycleScope.launch {
-                    text.insert(
-                        text.lineCount - 1,
-                        text.getColumnCount(text.lineCount - 1),
-                        p0.toChar().toString()
-                    )
-                }
-            }
-        })
-        System.setOut(systemOut)
-        System.setErr(systemOut)
-        System.setIn(EditorInputStream(binding.infoEditor))
-
-        val loader = MultipleDexClassLoader(classLoader = javaClass.classLoader!!)
-
-        loader.loadDex(makeDexReadOnlyIfNeeded(project.binDir.resolve("classes.dex")))
-
-        project.buildDir.resolve("libs").listFiles()?.filter { it.extension == "dex" }?.forEach {
-            loader.loadDex(makeDexReadOnlyIfNeeded(it))
-        }
-
-        runCatching {
-            loader.loader.loadClass(className)
-        }.onSuccess { clazz ->
+    fun runClass(className: String) {
+        val editorOutput = EditorOutputStream(binding.infoEditor)
+        val editorInput = EditorInputStream(binding.infoEditor, editorOutput)
+        output = editorOutput
+        input = editorInput
+        val context = requireContext().applicationContext
+        lifecycleScope.launch(Dispatchers.IO) {
+            val systemOut = PrintStream(editorOutput, true)
             isRunning = true
-            System.setProperty("project.dir", project.root.absolutePath)
-            if (clazz.declaredMethods.any {
-                    it.name == "main" && it.parameterCount == 1 && it.parameterTypes[0] == Array<String>::class.java
-                }) {
-                val method = clazz.getDeclaredMethod("main", Array<String>::class.java)
-                try {
-                    if (Modifier.isStatic(method.modifiers)) {
-                        method.invoke(null, project.args.toTypedArray())
-                    } else if (Modifier.isPublic(method.modifiers)) {
-                        method.invoke(
-                            clazz.getDeclaredConstructor().newInstance(),
-                            project.args.toTypedArray()
-                        )
-                    } else {
-                        System.err.println("Main method is not public or static")
-                    }
-                } catch (e: Throwable) {
-                    e.printStackTrace()
-                }
-            } else {
-                System.err.println("No main method found")
-            }
-        }.onFailure { e ->
-            System.err.println("Error loading class: ${e.message}")
-        }.also {
-            systemOut.close()
-            System.`in`.close()
+            val result = ProgramRunner.run(context, project, className, systemOut, editorInput)
             isRunning = false
+            systemOut.println()
+            systemOut.println(
+                "--- Exited with status ${result.exitStatus} in ${result.timeMillis}ms, " +
+                        "${result.allocatedBytes / 1024}KB allocated ---"
+            )
+            systemOut.close()
+            editorInput.close()
         }
     }
 }
-
@@ -67,6 +67,14 @@ class EditorSettings(private val activity: FragmentActivity) : SettingsProvider
                 }
             }
 
+            seekBar(PreferenceKeys.EDITOR_DIAGNOSTICS_DELAY) {
+                title = "Diagnostics delay"
+                summary = "Time in milliseconds to wait after typing before checking Java files for errors"
+                max = 2000
+                min = 0
+                default = 500
+            }
+
             editText(PreferenceKeys.EDITOR_FONT) {
                 title = "Editor font"
                 summary = "Enter the font path for editor"
@@ -0,0 +1,205 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.runner
+
+import android.content.Context
+import android.os.Debug
+import org.cosmicide.project.Project
+import org.cosmicide.rewrite.util.MultipleDexClassLoader
+import org.cosmicide.util.makeDexReadOnlyIfNeeded
+import java.io.File
+import java.io.InputStream
+import java.io.PrintStream
+import java.lang.reflect.InvocationTargetException
+import java.lang.reflect.Modifier
+
+/**
+ * Runs the main method of a class of a project on a thread of its own.
+ *
+ * The libraries of the project are loaded by a class loader that is kept and reused as long as the
+ * libraries don't change, so only the classes of the project are loaded again for each run. The
+ * Dex files of the libraries are copied once per version, read-only, as Android 14+ requires.
+ */
+object ProgramRunner {
+    // The stack size of the thread the program runs on, so deeply recursive programs don't overflow.
+    private const val STACK_SIZE = 8L * 1024 * 1024
+
+    // Matches the extra Dex files of a library, like `name.classes2.dex`.
+    private val LIBRARY_DEX_REGEX = Regex("(.*)\\.classes\\d+\\.dex")
+
+    /**
+     * The exit status of a program that returned normally.
+     */
+    const val EXIT_SUCCESS = 0
+
+    /**
+     * The exit status of a program that threw an exception, or couldn't be run.
+     */
+    const val EXIT_FAILURE = 1
+
+    /**
+     * How a run ended.
+     *
+     * @property exitStatus [EXIT_SUCCESS] or [EXIT_FAILURE].
+     * @property timeMillis How long the main method ran.
+     * @property allocatedBytes How many bytes were allocated while the main method ran. This is
+     * measured for the whole app, so it includes what the app allocated meanwhile.
+     */
+    data class Result(val exitStatus: Int, val timeMillis: Long, val allocatedBytes: Long)
+
+    // The Dex files of the libraries the cached class loader was created for.
+    private var libraryKey: List<String>? = null
+    private var libraryLoader: ClassLoader? = null
+
+    /**
+     * Runs the main method of [className] and waits for it to return.
+     *
+     * @param context The context used to find the directories the Dex files are copied to.
+     * @param project The project the class belongs to. It must be built.
+     * @param className The name of the class with the main method.
+     * @param out The stream the output and errors of the program are written to.
+     * @param input The stream the program reads its input from.
+     * @return How the run ended.
+     */
+    fun run(
+        context: Context,
+        project: Project,
+        className: String,
+        out: PrintStream,
+        input: InputStream
+    ): Result {
+        ProgramStreams.install()
+        var result = Result(EXIT_FAILURE, 0, 0)
+        val thread = Thread(null, {
+            ProgramStreams.attach(out, out, input)
+            try {
+                result = runMain(context, project, className, out)
+            } finally {
+                ProgramStreams.detach()
+            }
+        }, "Program", STACK_SIZE)
+        thread.start()
+        thread.join()
+        return result
+    }
+
+    private fun runMain(context: Context, project: Project, className: String, out: PrintStream): Result {
+        val clazz = try {
+            val loader = MultipleDexClassLoader(classLoader = getLibraryClassLoader(context, project))
+            loader.loadDex(context.makeDexReadOnlyIfNeeded(project.binDir.resolve("classes.dex")))
+            loader.loader.loadClass(className)
+        } catch (e: Throwable) {
+            out.println("Error loading class: ${e.message}")
+            return Result(EXIT_FAILURE, 0, 0)
+        }
+
+        val method = clazz.declaredMethods.firstOrNull {
+            it.name == "main" && it.parameterCount == 1 && it.parameterTypes[0] == Array<String>::class.java
+        }
+        if (method == null) {
+            out.println("No main method found")
+            return Result(EXIT_FAILURE, 0, 0)
+        }
+        if (!Modifier.isStatic(method.modifiers) && !Modifier.isPublic(method.modifiers)) {
+            out.println("Main method is not public or static")
+            return Result(EXIT_FAILURE, 0, 0)
+        }
+
+        System.setProperty("project.dir", project.root.absolutePath)
+        Thread.currentThread().contextClassLoader = clazz.classLoader
+        val args = project.args.toTypedArray()
+        val startAllocated = getAllocatedBytes()
+        val startTime = System.currentTimeMillis()
+        val exitStatus = try {
+            method.isAccessible = true
+            if (Modifier.isStatic(method.modifiers)) {
+                method.invoke(null, args)
+            } else {
+                method.invoke(clazz.getDeclaredConstructor().newInstance(), args)
+            }
+            EXIT_SUCCESS
+        } catch (e: InvocationTargetException) {
+            e.targetException.printStackTrace(out)
+            EXIT_FAILURE
+        } catch (e: Throwable) {
+            e.printStackTrace(out)
+            EXIT_FAILURE
+        }
+        return Result(
+            exitStatus,
+            System.currentTimeMillis() - startTime,
+            getAllocatedBytes() - startAllocated
+        )
+    }
+
+    /**
+     * Gets the class loader of the libraries of [project], creating it if the libraries changed
+     * since it was last created.
+     */
+    @Synchronized
+    private fun getLibraryClassLoader(context: Context, project: Project): ClassLoader {
+        val libraries = getLibraryDexFiles(project)
+        val key = libraries.map { (hash, file) -> "$hash/${file.name}" }
+        if (key == libraryKey) {
+            return libraryLoader!!
+        }
+
+        val parent = ProgramRunner::class.java.classLoader!!
+        val libsDir = context.codeCacheDir.resolve("run/libs")
+        val loader = if (libraries.isEmpty()) {
+            parent
+        } else {
+            MultipleDexClassLoader(classLoader = parent).apply {
+                libraries.forEach { (hash, file) ->
+                    loadDex(copyReadOnly(file, libsDir.resolve(hash).resolve(file.name)))
+                }
+            }.loader
+        }
+        // The copies of the libraries that are no longer used. The programs still running with
+        // them keep the files they opened.
+        val hashes = libraries.map { it.first }.toSet()
+        libsDir.listFiles()?.filter { it.name !in hashes }?.forEach { it.deleteRecursively() }
+
+        libraryKey = key
+        libraryLoader = loader
+        return loader
+    }
+
+    /**
+     * Gets the Dex files in `build/libs` of [project] sorted by name, with the hashes of the
+     * libraries they were compiled from.
+     */
+    private fun getLibraryDexFiles(project: Project): List<Pair<String, File>> {
+        val libDexDir = project.buildDir.resolve("libs")
+        val dexFiles = libDexDir.listFiles { file -> file.extension == "dex" }.orEmpty().sortedBy { it.name }
+        return dexFiles.map { file ->
+            val name = LIBRARY_DEX_REGEX.matchEntire(file.name)?.groupValues?.get(1) ?: file.nameWithoutExtension
+            val stampFile = libDexDir.resolve("$name.stamp")
+            val hash = stampFile.takeIf { it.exists() }?.readLines()?.getOrNull(1)
+                ?: "${file.length()}-${file.lastModified()}"
+            hash to file
+        }
+    }
+
+    /**
+     * Copies [file] to [target] and makes the copy read-only, unless it's already copied.
+     */
+    private fun copyReadOnly(file: File, target: File): File {
+        if (!target.exists()) {
+            val temp = File(target.path + ".tmp")
+            file.copyTo(temp, overwrite = true)
+            temp.setReadOnly()
+            temp.renameTo(target)
+        }
+        return target
+    }
+
+    private fun getAllocatedBytes(): Long {
+        return Debug.getRuntimeStat("art.gc.bytes-allocated")?.toLongOrNull() ?: 0
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.runner
+
+import java.io.InputStream
+import java.io.OutputStream
+import java.io.PrintStream
+
+/**
+ * The standard streams of the programs being run.
+ *
+ * [install] replaces the standard streams once with streams that forward to the streams of the
+ * program the current thread belongs to, so several programs can run at the same time and the rest
+ * of the app keeps the original streams. The threads started by a program belong to it too.
+ */
+internal object ProgramStreams {
+    private class Streams(val out: PrintStream, val err: PrintStream, val input: InputStream)
+
+    private val current = InheritableThreadLocal<Streams?>()
+
+    private var installed = false
+
+    @Synchronized
+    fun install() {
+        if (installed) {
+            return
+        }
+        installed = true
+        val out = System.out
+        val err = System.err
+        val input = System.`in`
+        System.setOut(PrintStream(ForwardingOutputStream { current.get()?.out ?: out }, true))
+        System.setErr(PrintStream(ForwardingOutputStream { current.get()?.err ?: err }, true))
+        System.setIn(ForwardingInputStream { current.get()?.input ?: input })
+    }
+
+    /**
+     * Makes the current thread and the threads it starts use the given streams.
+     */
+    fun attach(out: PrintStream, err: PrintStream, input: InputStream) {
+        current.set(Streams(out, err, input))
+    }
+
+    /**
+     * Makes the current thread use the original streams again.
+     */
+    fun detach() {
+        current.remove()
+    }
+
+    private class ForwardingOutputStream(private val target: () -> OutputStream) : OutputStream() {
+        override fun write(b: Int) = target().write(b)
+
+        override fun write(b: ByteArray, off: Int, len: Int) = target().write(b, off, len)
+
+        override fun flush() = target().flush()
+    }
+
+    private class ForwardingInputStream(private val target: () -> InputStream) : InputStream() {
+        override fun read() = target().read()
+
+        override fun read(b: ByteArray, off: Int, len: Int) = target().read(b, off, len)
+
+        override fun available() = target().available()
+    }
+}
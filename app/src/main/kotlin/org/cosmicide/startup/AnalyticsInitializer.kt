@@ -0,0 +1,61 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.startup
+
+import android.content.Context
+import android.os.Build
+import androidx.startup.Initializer
+import org.cosmicide.BuildConfig
+import org.cosmicide.common.Analytics
+import org.cosmicide.common.Prefs
+import java.net.URL
+import java.time.ZonedDateTime
+import java.util.Locale
+import java.util.TimeZone
+
+class AnalyticsInitializer : StartupInitializer() {
+
+    override fun initialize(context: Context) {
+        Analytics.init(context)
+        Analytics.setAnalyticsCollectionEnabled(Prefs.analyticsEnabled)
+
+        // Looking up the public IP address blocks on the network.
+        StartupPipeline.afterFirstFrame("Send analytics") {
+            Analytics.logEvent(
+                "user_metrics",
+                "name" to Prefs.clientName,
+                "ip" to getPublicIp(),
+                "theme" to Prefs.appTheme,
+                "language" to Locale.getDefault().language,
+                "timezone" to TimeZone.getDefault().id,
+                "sdk" to Build.VERSION.SDK_INT.toString() + " (" + Build.SUPPORTED_ABIS.joinToString(", ") + ")",
+                "device" to Build.DEVICE + " " + Build.DEVICE + " " + Build.PRODUCT,
+                "fingerprint" to Build.FINGERPRINT,
+                "hardware" to Build.HARDWARE,
+                "version" to BuildConfig.VERSION_NAME + if (BuildConfig.GIT_COMMIT.isNotEmpty()) " (${BuildConfig.GIT_COMMIT})" else "",
+            )
+            Analytics.logEvent(
+                "app_start",
+                "time" to ZonedDateTime.now().toString(),
+            )
+        }
+    }
+
+    override fun dependencies(): List<Class<out Initializer<*>>> = listOf(
+        PreferencesInitializer::class.java
+    )
+
+    private fun getPublicIp(): String {
+        return try {
+            val ip = URL("https://api.ipify.org").readText()
+            ip
+        } catch (e: Exception) {
+            ""
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.startup
+
+import android.content.Context
+import org.cosmicide.BuildConfig
+import org.cosmicide.rewrite.util.FileUtil
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.CompletableFuture
+
+/**
+ * Extracts the jars of the system classpath from the assets to [FileUtil.classpathDir].
+ *
+ * The jars only change when the app does, so a jar is extracted again only when the app was
+ * installed or updated since it was last extracted, or when it is missing or has another size
+ * than when it was extracted.
+ */
+object ClasspathExtractor {
+    private const val STAMP_FILE_NAME = ".stamp"
+
+    private val ASSETS = listOf(
+        "kotlin-stdlib-1.9.0.jar",
+        "kotlin-stdlib-common-1.9.0.jar",
+        "android.jar",
+        "core-lambda-stubs.jar"
+    )
+
+    /**
+     * Starts extracting the jars in the background if needed, and makes
+     * [FileUtil.classpathReady] wait for it. [FileUtil.classpathReady] completes exceptionally if
+     * a jar couldn't be extracted.
+     */
+    fun start(context: Context): CompletableFuture<Unit> {
+        val ready = CompletableFuture<Unit>()
+        FileUtil.classpathReady = ready
+        return StartupPipeline.background("Extract classpath") {
+            try {
+                extractIfNeeded(context)
+                ready.complete(Unit)
+            } catch (e: Throwable) {
+                ready.completeExceptionally(e)
+                throw e
+            }
+        }
+    }
+
+    /**
+     * Extracts the jars that aren't up to date.
+     *
+     * The stamp file has the stamp of the app, followed by the name and size of each extracted
+     * jar. The jars that were extracted are recorded even if others fail, so that only the
+     * failed ones are extracted again next time.
+     *
+     * @throws IOException If a jar couldn't be extracted.
+     */
+    private fun extractIfNeeded(context: Context) {
+        val dir = FileUtil.classpathDir
+        val stampFile = dir.resolve(STAMP_FILE_NAME)
+        val stamp = getStamp(context)
+        val previousLines = if (stampFile.exists()) stampFile.readLines() else emptyList()
+        val extracted = if (previousLines.firstOrNull() == stamp) previousLines.drop(1).toSet() else emptySet()
+
+        dir.mkdirs()
+        val lines = mutableListOf(stamp)
+        var failure: IOException? = null
+        for (asset in ASSETS) {
+            val target = dir.resolve(asset)
+            if (target.exists() && "$asset:${target.length()}" in extracted) {
+                lines += "$asset:${target.length()}"
+                continue
+            }
+            try {
+                extract(context, asset, target)
+                lines += "$asset:${target.length()}"
+            } catch (e: IOException) {
+                failure = failure?.apply { addSuppressed(e) } ?: IOException("Failed to extract asset: $asset", e)
+            }
+        }
+        if (lines != previousLines) {
+            stampFile.writeText(lines.joinToString("\n"))
+        }
+        failure?.let { throw it }
+    }
+
+    private fun extract(context: Context, asset: String, target: File) {
+        val temp = target.resolveSibling("$asset.tmp")
+        try {
+            context.assets.open(asset).use { input ->
+                temp.outputStream().use { output -> input.copyTo(output) }
+            }
+            if (!temp.renameTo(target)) {
+                temp.copyTo(target, overwrite = true)
+            }
+        } finally {
+            temp.delete()
+        }
+    }
+
+    /**
+     * Gets a stamp that changes whenever the app is installed or updated.
+     */
+    private fun getStamp(context: Context): String {
+        val packageInfo = context.packageManager.getPackageInfo(context.packageName, 0)
+        return "${BuildConfig.VERSION_CODE}:${BuildConfig.GIT_COMMIT}:${packageInfo.lastUpdateTime}"
+    }
+}
@@ -15,9 +15,9 @@ import androidx.startup.Initializer
 import org.cosmicide.BuildConfig
 import java.util.concurrent.Executors
 
-class DebugInitializer : Initializer<Unit> {
+class DebugInitializer : StartupInitializer() {
 
-    override fun create(context: Context) {
+    override fun initialize(context: Context) {
         if (BuildConfig.DEBUG) {
             enableStrictMode()
         }
@@ -0,0 +1,90 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.startup
+
+import android.content.Context
+import android.util.Log
+import androidx.recyclerview.widget.LinearLayoutManager
+import androidx.recyclerview.widget.RecyclerView
+import androidx.startup.Initializer
+import de.robv.android.xposed.XC_MethodHook
+import org.cosmicide.rewrite.plugin.api.Hook
+import org.cosmicide.rewrite.plugin.api.HookManager
+import java.lang.ref.WeakReference
+import java.util.logging.Logger
+
+class HooksInitializer : StartupInitializer() {
+
+    override fun initialize(context: Context) {
+        HookManager.context = WeakReference(context.applicationContext)
+        setupHooks()
+    }
+
+    override fun dependencies(): List<Class<out Initializer<*>>> = emptyList()
+
+    private fun setupHooks() {
+        // Some libraries may call System.exit() to exit the app, which crashes the app.
+        // Currently, only JGit does this.
+        try {
+            HookManager.registerHook(object : Hook(
+                method = "exit",
+                argTypes = arrayOf(Int::class.java),
+                type = System::class.java
+            ) {
+                override fun before(param: XC_MethodHook.MethodHookParam) {
+                    System.err.println("System.exit() called!")
+                    // Setting result to null bypasses the original method call.
+                    param.result = null
+                }
+            })
+
+            // Fix crash in ViewPager2
+            HookManager.registerHook(object : Hook(
+                method = "onLayoutChildren",
+                argTypes = arrayOf(
+                    RecyclerView.Recycler::class.java,
+                    RecyclerView.State::class.java
+                ),
+                type = LinearLayoutManager::class.java
+            ) {
+                override fun before(param: XC_MethodHook.MethodHookParam) {
+                    try {
+                        // Call the original method.
+                        HookManager.invokeOriginal(
+                            param.method,
+                            param.thisObject,
+                            param.args[0],
+                            param.args[1]
+                        )
+                    } catch (e: Exception) {
+                        e.printStackTrace()
+                    }
+                    // Bypass method call as we have already called the original method.
+                    param.result = null
+                }
+            })
+
+            injectPrint("fine")
+            injectPrint("info")
+        } catch (e: UnsatisfiedLinkError) {
+            Log.e("HooksInitializer", "Failed to setup hooks", e)
+        }
+    }
+
+    private fun injectPrint(method: String) {
+        HookManager.registerHook(object : Hook(
+            method = method,
+            argTypes = arrayOf(String::class.java),
+            type = Logger::class.java
+        ) {
+            override fun before(param: XC_MethodHook.MethodHookParam) {
+                println(param.args[0])
+            }
+        })
+    }
+}
@@ -7,18 +7,29 @@
 
 package org.cosmicide.startup
 
+import android.app.Application
 import android.content.Context
 import androidx.startup.Initializer
 
-class MainInitializer : Initializer<Unit> {
+/**
+ * Runs the initializers of the app in the order of their dependencies. The time each of them took
+ * and the time to the first frame are recorded by the [StartupPipeline].
+ */
+class MainInitializer : StartupInitializer() {
 
-    override fun create(context: Context) {
+    override fun initialize(context: Context) {
+        StartupPipeline.trackFirstFrame(context.applicationContext as Application)
     }
 
     override fun dependencies(): List<Class<out Initializer<*>>> {
         return listOf(
             DebugInitializer::class.java,
-            PreferencesInitializer::class.java
+            PreferencesInitializer::class.java,
+            ClasspathInitializer::class.java,
+            TextMateInitializer::class.java,
+            HooksInitializer::class.java,
+            AnalyticsInitializer::class.java,
+            PluginsInitializer::class.java
         )
     }
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.startup
+
+import android.content.Context
+import android.util.Log
+import androidx.startup.Initializer
+import org.cosmicide.fragment.PluginsFragment
+import org.cosmicide.rewrite.plugin.api.PluginLoader
+import org.cosmicide.rewrite.util.FileUtil
+
+class PluginsInitializer : StartupInitializer() {
+
+    override fun initialize(context: Context) {
+        StartupPipeline.afterFirstFrame("Load plugins") { loadPlugins() }
+    }
+
+    override fun dependencies(): List<Class<out Initializer<*>>> = listOf(
+        PreferencesInitializer::class.java,
+        HooksInitializer::class.java
+    )
+
+    private fun loadPlugins() {
+        PluginsFragment.getPlugins().forEach { plugin ->
+            val dir = FileUtil.pluginDir.resolve(plugin.name)
+
+            if (plugin.isEnabled) {
+                Log.i("App", "Loading plugin: ${plugin.name}")
+            } else {
+                Log.i("App", "Plugin ${plugin.name} is disabled")
+                return@forEach
+            }
+
+            PluginLoader.loadPlugin(dir, plugin)
+        }
+    }
+}
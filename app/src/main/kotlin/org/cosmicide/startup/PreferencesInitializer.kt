@@ -12,9 +12,9 @@ import androidx.startup.Initializer
 import org.cosmicide.common.Prefs
 import org.cosmicide.rewrite.util.FileUtil
 
-class PreferencesInitializer : Initializer<Unit> {
+class PreferencesInitializer : StartupInitializer() {
 
-    override fun create(context: Context) {
+    override fun initialize(context: Context) {
         FileUtil.init(context.getExternalFilesDir(null)!!)
         Prefs.init(context.applicationContext)
     }
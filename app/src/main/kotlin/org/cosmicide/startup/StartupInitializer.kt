@@ -0,0 +1,27 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.startup
+
+import android.content.Context
+import androidx.startup.Initializer
+
+/**
+ * An initializer whose duration is recorded by the [StartupPipeline] under its class name.
+ */
+abstract class StartupInitializer : Initializer<Unit> {
+
+    final override fun create(context: Context) {
+        StartupPipeline.step(javaClass.simpleName) { initialize(context) }
+    }
+
+    /**
+     * Initializes a part of the app on the main thread. Work that isn't needed before the first
+     * frame should be deferred with [StartupPipeline.afterFirstFrame].
+     */
+    abstract fun initialize(context: Context)
+}
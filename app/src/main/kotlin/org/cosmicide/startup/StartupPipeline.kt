@@ -0,0 +1,178 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.startup
+
+import android.app.Activity
+import android.app.Application
+import android.os.Bundle
+import android.os.Handler
+import android.os.Looper
+import android.os.Process
+import android.os.SystemClock
+import android.util.Log
+import android.view.ViewTreeObserver
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import org.cosmicide.common.Analytics
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executors
+
+/**
+ * Runs the work done when the app starts, in the background where possible, and records how long
+ * each step and the first frame took.
+ */
+object StartupPipeline {
+    private const val TAG = "StartupPipeline"
+
+    // How long the deferred steps wait for the first frame, in case no activity is shown.
+    private const val FIRST_FRAME_TIMEOUT_MILLIS = 5000L
+
+    /**
+     * How long a step took.
+     *
+     * @property name The name of the step.
+     * @property timeMillis How long the step took.
+     * @property thread The name of the thread the step ran on.
+     */
+    data class Timing(val name: String, val timeMillis: Long, val thread: String)
+
+    private val executor = Executors.newCachedThreadPool { Thread(it, "Startup") }
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    private val timings = mutableListOf<Timing>()
+
+    // The steps to run after the first frame, or null once they were started.
+    private var deferred: MutableList<Pair<String, () -> Unit>>? = mutableListOf()
+
+    /**
+     * How long it took from the start of the process to draw the first frame, or -1 until then.
+     */
+    @Volatile
+    var timeToFirstFrameMillis = -1L
+        private set
+
+    /**
+     * Runs a step on the current thread and records how long it took.
+     */
+    fun <T> step(name: String, block: () -> T): T {
+        val startTime = SystemClock.uptimeMillis()
+        try {
+            return block()
+        } finally {
+            val timing = Timing(name, SystemClock.uptimeMillis() - startTime, Thread.currentThread().name)
+            synchronized(timings) { timings += timing }
+            Log.d(TAG, "$name: ${timing.timeMillis}ms on ${timing.thread}")
+        }
+    }
+
+    /**
+     * Runs a step in the background right away.
+     *
+     * @return A future completed when the step ran, even if it failed.
+     */
+    fun background(name: String, block: () -> Unit): CompletableFuture<Unit> {
+        return CompletableFuture.supplyAsync({
+            try {
+                step(name, block)
+            } catch (e: Exception) {
+                Log.e(TAG, "Startup step $name failed", e)
+            }
+        }, executor)
+    }
+
+    /**
+     * Runs a step that isn't needed to show the first frame in the background once it's drawn.
+     * Failures are logged.
+     */
+    fun afterFirstFrame(name: String, block: () -> Unit) {
+        synchronized(this) {
+            deferred?.let {
+                it += name to block
+                return
+            }
+        }
+        launch(name, block)
+    }
+
+    private fun launch(name: String, block: () -> Unit) {
+        scope.launch {
+            try {
+                step(name, block)
+            } catch (e: Exception) {
+                Log.e(TAG, "Startup step $name failed", e)
+            }
+        }
+    }
+
+    private fun runDeferred() {
+        val steps = synchronized(this) {
+            deferred.also { deferred = null }
+        }
+        steps?.forEach { (name, block) -> launch(name, block) }
+    }
+
+    /**
+     * Records the time to the first frame drawn by the first activity, and runs the steps deferred
+     * with [afterFirstFrame] then.
+     */
+    fun trackFirstFrame(application: Application) {
+        Handler(Looper.getMainLooper()).postDelayed(::runDeferred, FIRST_FRAME_TIMEOUT_MILLIS)
+        application.registerActivityLifecycleCallbacks(object : Application.ActivityLifecycleCallbacks {
+            override fun onActivityCreated(activity: Activity, savedInstanceState: Bundle?) {
+                application.unregisterActivityLifecycleCallbacks(this)
+                val decorView = activity.window.decorView
+                decorView.viewTreeObserver.addOnDrawListener(object : ViewTreeObserver.OnDrawListener {
+                    override fun onDraw() {
+                        if (timeToFirstFrameMillis >= 0) {
+                            return
+                        }
+                        timeToFirstFrameMillis = SystemClock.uptimeMillis() - Process.getStartUptimeMillis()
+                        Log.i(TAG, "First frame drawn ${timeToFirstFrameMillis}ms after the process started")
+                        Log.i(TAG, getReport())
+                        runDeferred()
+                        Analytics.logEvent("startup", "first_frame" to "${timeToFirstFrameMillis}ms")
+                        // Listeners can't be removed while they are called.
+                        decorView.post { decorView.viewTreeObserver.removeOnDrawListener(this) }
+                    }
+                })
+            }
+
+            override fun onActivityStarted(activity: Activity) {}
+
+            override fun onActivityResumed(activity: Activity) {}
+
+            override fun onActivityPaused(activity: Activity) {}
+
+            override fun onActivityStopped(activity: Activity) {}
+
+            override fun onActivitySaveInstanceState(activity: Activity, outState: Bundle) {}
+
+            override fun onActivityDestroyed(activity: Activity) {}
+        })
+    }
+
+    /**
+     * Gets the timings of the steps run so far, in the order they completed.
+     */
+    fun getTimings(): List<Timing> = synchronized(timings) { timings.toList() }
+
+    /**
+     * Gets a readable report of the timings of the steps run so far.
+     */
+    fun getReport() = buildString {
+        appendLine("Startup profile:")
+        getTimings().forEach {
+            appendLine("  ${it.name}: ${it.timeMillis}ms on ${it.thread}")
+        }
+        append("  First frame: ")
+        append(if (timeToFirstFrameMillis >= 0) "${timeToFirstFrameMillis}ms" else "not drawn yet")
+    }
+}
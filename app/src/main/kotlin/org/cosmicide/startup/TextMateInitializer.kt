@@ -0,0 +1,42 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.startup
+
+import android.content.Context
+import androidx.startup.Initializer
+import io.github.rosemoe.sora.langs.textmate.registry.FileProviderRegistry
+import io.github.rosemoe.sora.langs.textmate.registry.GrammarRegistry
+import io.github.rosemoe.sora.langs.textmate.registry.provider.AssetsFileResolver
+import java.util.concurrent.CompletableFuture
+
+class TextMateInitializer : StartupInitializer() {
+
+    companion object {
+        @Volatile
+        private var grammarsLoaded: CompletableFuture<Unit> = CompletableFuture.completedFuture(Unit)
+
+        /**
+         * Waits until the TextMate grammars are loaded. Must be called before a grammar is looked
+         * up.
+         */
+        @JvmStatic
+        fun awaitGrammars() {
+            grammarsLoaded.join()
+        }
+    }
+
+    override fun initialize(context: Context) {
+        FileProviderRegistry.getInstance().addFileProvider(AssetsFileResolver(context.assets))
+        // The grammars are needed as soon as an editor is opened, so they are loaded right away.
+        grammarsLoaded = StartupPipeline.background("Load TextMate grammars") {
+            GrammarRegistry.getInstance().loadGrammars("textmate/languages.json")
+        }
+    }
+
+    override fun dependencies(): List<Class<out Initializer<*>>> = emptyList()
+}
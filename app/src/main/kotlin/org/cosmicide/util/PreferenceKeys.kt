@@ -33,6 +33,7 @@ object PreferenceKeys {
     const val EDITOR_DOUBLE_CLICK_CLOSE = "double_click_close"
     const val EDITOR_EXP_JAVA_COMPLETION = "experimental_java_completion"
     const val KOTLIN_REALTIME_ERRORS = "kotlin_realtime_errors"
+    const val EDITOR_DIAGNOSTICS_DELAY = "diagnostics_delay"
     const val EDITOR_FONT = "editor_font"
     const val BRACKET_PAIR_AUTOCOMPLETE = "bracket_pair_autocomplete"
     const val QUICK_DELETE = "quick_delete"
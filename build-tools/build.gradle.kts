@@ -57,4 +57,6 @@ dependencies {
     implementation("io.github.itsaky:nb-javac-android:17.0.0.3")
     implementation("com.google.guava:guava:33.1.0-android")
     implementation("com.android.tools:r8:8.5.35")
+
+    testImplementation("junit:junit:4.13.2")
 }
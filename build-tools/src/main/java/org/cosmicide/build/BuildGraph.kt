@@ -0,0 +1,226 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.build
+
+import com.google.common.hash.Hashing
+import java.io.File
+import java.util.Properties
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorCompletionService
+import java.util.concurrent.Executors
+
+/**
+ * Runs tasks after the tasks they depend on, running independent tasks at the same time.
+ *
+ * A task is skipped when it declares [Task.inputs], its inputs and [Task.configuration] have not
+ * changed since it last succeeded, its [Task.outputs] exist and none of the tasks it depends on ran.
+ * No more tasks are started once a task fails.
+ *
+ * @property stateFile The file the fingerprints of the inputs of the succeeded tasks are saved to.
+ * @property onStarted Called with a task and its reporter before the task runs.
+ * @property onFinished Called with a task and its reporter after the task runs.
+ */
+class BuildGraph(
+    private val stateFile: File,
+    private val onStarted: (Task, BuildReporter) -> Unit = { _, _ -> },
+    private val onFinished: (Task, BuildReporter) -> Unit = { _, _ -> }
+) {
+    private class Node(val task: Task, val name: String, val dependencies: List<Node>)
+
+    private val nodes = mutableListOf<Node>()
+
+    /**
+     * Adds a task that runs after [dependencies], which must be added before.
+     */
+    fun add(task: Task, vararg dependencies: Task) {
+        val dependencyNodes = dependencies.map { dependency ->
+            nodes.first { it.task === dependency }
+        }
+        nodes += Node(task, task::class.java.simpleName, dependencyNodes)
+    }
+
+    /**
+     * Runs the tasks.
+     *
+     * @param reporter The reporter the tasks report to. Reports of tasks running at the same time
+     * are not interleaved within a message. The profile of the run is reported to it at the end, even
+     * if a task threw.
+     * @return The profile of the run.
+     * @throws Exception The first exception thrown by a task, after the running tasks complete.
+     */
+    fun execute(reporter: BuildReporter): BuildProfile {
+        val startTime = System.currentTimeMillis()
+        val state = readState()
+        val entries = nodes.associateWith { BuildProfile.Entry(it.name, BuildProfile.Status.NOT_RUN, 0) }
+            .toMutableMap()
+        val pending = nodes.toMutableList()
+        val executor = Executors.newFixedThreadPool(nodes.size.coerceIn(1, MAX_THREADS))
+        val completionService = ExecutorCompletionService<Pair<Node, BuildProfile.Entry>>(executor)
+        var running = 0
+        var error: Throwable? = null
+        val profile: BuildProfile
+
+        try {
+            while (true) {
+                if (!reporter.failure && error == null) {
+                    val ready = pending.filter { node ->
+                        node.dependencies.all { entries.getValue(it).status.isDone }
+                    }
+                    pending -= ready.toSet()
+                    ready.forEach { node ->
+                        val dependencyRan = node.dependencies.any {
+                            entries.getValue(it).status == BuildProfile.Status.SUCCEEDED
+                        }
+                        completionService.submit { node to run(node, state, dependencyRan, reporter) }
+                        running++
+                    }
+                }
+                if (running == 0) {
+                    break
+                }
+                try {
+                    val (node, entry) = completionService.take().get()
+                    entries[node] = entry
+                } catch (e: ExecutionException) {
+                    error = error ?: e.cause
+                }
+                running--
+            }
+        } finally {
+            executor.shutdown()
+            writeState(state, reporter)
+            profile = BuildProfile(
+                nodes.map { entries.getValue(it) },
+                System.currentTimeMillis() - startTime
+            )
+            reporter.reportInfo(profile.toString())
+        }
+
+        error?.let { throw it }
+        return profile
+    }
+
+    private fun run(
+        node: Node,
+        state: Properties,
+        dependencyRan: Boolean,
+        reporter: BuildReporter
+    ): BuildProfile.Entry {
+        val task = node.task
+        val taskReporter = createTaskReporter(reporter)
+        val fingerprint = if (task.inputs.isEmpty()) null else getFingerprint(task)
+        val upToDate = fingerprint != null && !dependencyRan &&
+                synchronized(state) { state.getProperty(node.name) } == fingerprint &&
+                task.outputs.all { it.exists() }
+        if (upToDate) {
+            taskReporter.reportInfo("${node.name} is up to date.")
+            return BuildProfile.Entry(node.name, BuildProfile.Status.SKIPPED, 0)
+        }
+
+        val startTime = System.currentTimeMillis()
+        synchronized(state) { state.remove(node.name) }
+        onStarted(task, taskReporter)
+        task.execute(taskReporter)
+        onFinished(task, taskReporter)
+        val time = System.currentTimeMillis() - startTime
+
+        if (taskReporter.failure) {
+            return BuildProfile.Entry(node.name, BuildProfile.Status.FAILED, time)
+        }
+        if (fingerprint != null) {
+            synchronized(state) { state.setProperty(node.name, fingerprint) }
+        }
+        return BuildProfile.Entry(node.name, BuildProfile.Status.SUCCEEDED, time)
+    }
+
+    /**
+     * Creates a reporter for a task that forwards its reports to [reporter] one at a time.
+     */
+    private fun createTaskReporter(reporter: BuildReporter) = BuildReporter { report ->
+        synchronized(reporter) {
+            when (report.kind) {
+                BuildReportKind.INFO -> reporter.reportInfo(report.message)
+                BuildReportKind.WARNING -> reporter.reportWarning(report.message)
+                BuildReportKind.ERROR -> reporter.reportError(report.message)
+                BuildReportKind.LOGGING -> reporter.reportLogging(report.message)
+                BuildReportKind.OUTPUT -> reporter.reportOutput(report.message)
+            }
+        }
+    }
+
+    private fun getFingerprint(task: Task): String {
+        val hasher = Hashing.sha256().newHasher()
+        hasher.putUnencodedChars(task.configuration).putChar('\n')
+        task.inputs.forEach { input ->
+            input.walk().filter { it.isFile }.sortedBy { it.path }.forEach {
+                hasher.putUnencodedChars("${it.path}:${it.length()}:${it.lastModified()}\n")
+            }
+        }
+        return hasher.hash().toString()
+    }
+
+    private fun readState(): Properties {
+        val state = Properties()
+        if (stateFile.exists()) {
+            try {
+                stateFile.inputStream().buffered().use { state.load(it) }
+            } catch (e: Exception) {
+                state.clear()
+            }
+        }
+        return state
+    }
+
+    /**
+     * Saves the fingerprints of the succeeded tasks. Failing to save them doesn't fail the build,
+     * the tasks just aren't skipped next time, so it's reported as a warning.
+     */
+    private fun writeState(state: Properties, reporter: BuildReporter) {
+        try {
+            stateFile.parentFile?.mkdirs()
+            stateFile.outputStream().buffered().use { state.store(it, null) }
+        } catch (e: Exception) {
+            reporter.reportWarning("Failed to save build state to ${stateFile.path}: ${e.message}")
+        }
+    }
+
+    companion object {
+        private const val MAX_THREADS = 4
+    }
+}
+
+/**
+ * The tasks run by a [BuildGraph] and how long they took.
+ *
+ * @property entries The tasks in the order they were added to the graph.
+ * @property totalTimeMillis How long the whole run took.
+ */
+data class BuildProfile(val entries: List<Entry>, val totalTimeMillis: Long) {
+
+    enum class Status(val isDone: Boolean) {
+        SUCCEEDED(true),
+        SKIPPED(true),
+        FAILED(false),
+        NOT_RUN(false)
+    }
+
+    /**
+     * @property name The name of the task.
+     * @property status How the task ended.
+     * @property timeMillis How long the task took.
+     */
+    data class Entry(val name: String, val status: Status, val timeMillis: Long)
+
+    override fun toString() = buildString {
+        appendLine("Build profile:")
+        entries.forEach {
+            appendLine("  ${it.name}: ${it.status.name.lowercase()}, ${it.timeMillis}ms")
+        }
+        append("  Total: ${totalTimeMillis}ms")
+    }
+}
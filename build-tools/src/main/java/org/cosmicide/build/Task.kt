@@ -7,6 +7,8 @@
 
 package org.cosmicide.build
 
+import java.io.File
+
 /**
  * A Task represents a unit of work that can be executed.
  */
@@ -18,4 +20,23 @@ interface Task {
      * @param reporter the reporter to which progress or errors should be reported
      */
     fun execute(reporter: BuildReporter)
+
+    /**
+     * The files and directories the task reads, other than the outputs of the tasks it depends on.
+     * A [BuildGraph] skips a task with inputs when they have not changed since it last succeeded.
+     */
+    val inputs: List<File>
+        get() = emptyList()
+
+    /**
+     * The files and directories the task writes. A task is not skipped when any of them is missing.
+     */
+    val outputs: List<File>
+        get() = emptyList()
+
+    /**
+     * The settings the outputs of the task depend on, such as compiler options.
+     */
+    val configuration: String
+        get() = ""
 }
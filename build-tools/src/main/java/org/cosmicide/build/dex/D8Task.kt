@@ -12,6 +12,8 @@ import com.android.tools.r8.CompilationMode
 import com.android.tools.r8.D8
 import com.android.tools.r8.D8Command
 import com.android.tools.r8.OutputMode
+import com.android.tools.r8.Version
+import com.google.common.hash.Hashing
 import org.cosmicide.build.BuildReporter
 import org.cosmicide.build.Task
 import org.cosmicide.build.util.getSystemClasspath
@@ -19,7 +21,6 @@ import org.cosmicide.project.Project
 import java.io.File
 import java.nio.file.Files
 import java.nio.file.Path
-import java.util.zip.ZipFile
 import kotlin.io.path.nameWithoutExtension
 
 /**
@@ -29,6 +30,12 @@ import kotlin.io.path.nameWithoutExtension
  */
 class D8Task(val project: Project) : Task {
 
+    override val inputs: List<File>
+        get() = listOf(project.binDir.resolve("classes"))
+
+    override val outputs: List<File>
+        get() = listOf(project.binDir.resolve("classes.dex"))
+
     companion object {
         const val MIN_API_LEVEL = Build.VERSION_CODES.O
 
@@ -42,13 +49,8 @@ class D8Task(val project: Project) : Task {
          * @param reporter The BuildReporter instance to report any errors to.
          */
         fun compileJar(jarFile: Path, outputDir: Path, reporter: BuildReporter? = null) {
-            val zipFile = ZipFile(jarFile.toFile())
-
             // If the jar has no files with the .class extension, skip it
-            if (zipFile.use { zip ->
-                    zip.entries().asSequence()
-                        .none { it.name.startsWith("META-INF").not() && it.name.endsWith(".class") }
-                }) {
+            if (!LibraryDexCache.hasClasses(jarFile.toFile())) {
                 return
             }
 
@@ -75,35 +77,141 @@ class D8Task(val project: Project) : Task {
     /**
      * Compiles the project classes to a Dex file.
      *
+     * The class files are compiled in units of a top-level class and all its nested classes, as D8
+     * adds accessors to the nest host for the private members the nest members access. Each unit is
+     * compiled to intermediate Dex files, which are cached by the hash of the class files of the
+     * unit. Only the units that are not in the cache are compiled, and then all the intermediate Dex
+     * files are merged into one.
+     *
      * @param reporter The BuildReporter instance to report any errors to.
      */
     override fun execute(reporter: BuildReporter) {
-        val classes = getClassFiles(project.binDir.resolve("classes"))
+        val classesDir = project.binDir.resolve("classes")
+        val root = classesDir.toPath()
+        val classes = getClassFiles(classesDir)
         if (classes.isEmpty()) {
             reporter.reportError("No classes found to compile.")
             return
         }
+
+        val units = classes.sorted().groupBy { getTopLevelClass(root, it) }
+        val dexCacheDir = project.cacheDir.resolve("dex").apply { mkdirs() }
+        val intermediates = units.mapValues { (_, unit) -> dexCacheDir.resolve(getHash(root, unit)) }
+        val changed = units.filterKeys { !intermediates.getValue(it).exists() }
+        if (changed.isNotEmpty()) {
+            val size = changed.values.sumOf { it.size }
+            reporter.reportInfo("Dexing $size class ${if (size == 1) "file" else "files"}...")
+            dexClasses(root, changed.values, dexCacheDir, intermediates)
+        }
+
+        // Merging without an intermediate would silently leave its classes out of the Dex file.
+        val missing = units.filterKeys { !intermediates.getValue(it).exists() }.values.flatten()
+        if (missing.isNotEmpty()) {
+            missing.forEach {
+                reporter.reportError("Failed to dex class ${root.relativize(it)}")
+            }
+            return
+        }
+
         D8.run(
             D8Command.builder()
                 .setMinApiLevel(MIN_API_LEVEL)
                 .setMode(COMPILATION_MODE)
-                .addClasspathFiles(getSystemClasspath().map { it.toPath() })
-                .addProgramFiles(classes)
+                .addProgramFiles(intermediates.values.flatMap { getDexFiles(it) })
                 .setOutput(project.binDir.toPath(), OutputMode.DexIndexed)
                 .build()
         )
 
-        // Compile libraries
-        val libDir = project.libDir
-        if (libDir.exists() && libDir.isDirectory) {
-            val libDexDir = project.buildDir.resolve("libs").apply { mkdirs() }
-            libDir.listFiles { file -> file.extension == "jar" }?.filter { lib ->
-                libDexDir.resolve(lib.nameWithoutExtension + ".dex").exists().not()
-            }?.forEach { jarFile ->
-                reporter.reportInfo("Compiling library ${jarFile.name}")
-                compileJar(jarFile.toPath(), libDexDir.toPath(), reporter)
+        // Delete the intermediates of the units that are changed or deleted.
+        val used = intermediates.values.toSet()
+        dexCacheDir.listFiles()?.filter { it !in used }?.forEach { it.deleteRecursively() }
+    }
+
+    /**
+     * Compiles the class files of each unit to a directory of intermediate Dex files in
+     * [dexCacheDir]. The intermediates of the units that D8 did not produce all Dex files for are
+     * left missing.
+     *
+     * @param root The directory containing the class files.
+     * @param units The class files of the units to compile.
+     * @param dexCacheDir The directory to output the Dex files to.
+     * @param intermediates The intermediate directory of each unit, by its top-level class.
+     */
+    private fun dexClasses(
+        root: Path,
+        units: Collection<List<Path>>,
+        dexCacheDir: File,
+        intermediates: Map<String, File>
+    ) {
+        val outputDir = dexCacheDir.resolve("output")
+        outputDir.deleteRecursively()
+        outputDir.mkdirs()
+        D8.run(
+            D8Command.builder()
+                .setMinApiLevel(MIN_API_LEVEL)
+                .setMode(COMPILATION_MODE)
+                .setIntermediate(true)
+                // The unchanged classes are on the classpath, so the changed ones can be compiled
+                // against them.
+                .addClasspathFiles(getSystemClasspath().map { it.toPath() } + root)
+                .addProgramFiles(units.flatten())
+                .setOutput(outputDir.toPath(), OutputMode.DexFilePerClassFile)
+                .build()
+        )
+        // The Dex file of a class file is named after the class.
+        units.forEach { unit ->
+            val dexFiles = unit.map {
+                val relativePath = root.relativize(it).toString()
+                outputDir.resolve(relativePath.removeSuffix(".class") + ".dex")
+            }
+            if (dexFiles.any { !it.exists() }) {
+                return@forEach
+            }
+            val intermediate = intermediates.getValue(getTopLevelClass(root, unit.first()))
+            // The Dex files are moved in place together, so a unit is never cached partially.
+            val tempDir = dexCacheDir.resolve(intermediate.name + ".tmp")
+            tempDir.deleteRecursively()
+            tempDir.mkdirs()
+            dexFiles.forEach { it.copyTo(tempDir.resolve(it.name)) }
+            intermediate.deleteRecursively()
+            if (!tempDir.renameTo(intermediate)) {
+                tempDir.copyRecursively(intermediate, overwrite = true)
+                tempDir.deleteRecursively()
             }
         }
+        outputDir.deleteRecursively()
+    }
+
+    /**
+     * Gets the hash of the class files of a unit. It also covers the D8 version and options, so
+     * that the intermediate Dex files are compiled again when they change.
+     */
+    private fun getHash(root: Path, unit: List<Path>): String {
+        val hasher = Hashing.sha256().newHasher()
+            .putUnencodedChars("${Version.getVersionString()}:$MIN_API_LEVEL:$COMPILATION_MODE:")
+        unit.forEach { classFile ->
+            val bytes = Files.readAllBytes(classFile)
+            hasher.putUnencodedChars(root.relativize(classFile).toString())
+                .putInt(bytes.size)
+                .putBytes(bytes)
+        }
+        return hasher.hash().toString()
+    }
+
+    /**
+     * Gets the binary name of the top-level class of a class file, which is the part of its name
+     * before the first '$'. Nested classes are named after their enclosing classes.
+     */
+    private fun getTopLevelClass(root: Path, classFile: Path): String {
+        val name = root.relativize(classFile).toString().removeSuffix(".class")
+        val simpleNameStart = name.length - classFile.fileName.toString().removeSuffix(".class").length
+        val nestedStart = name.indexOf('$', simpleNameStart + 1)
+        return if (nestedStart == -1) name else name.substring(0, nestedStart)
+    }
+
+    private fun getDexFiles(intermediate: File): List<Path> {
+        return intermediate.listFiles { file -> file.extension == "dex" }.orEmpty()
+            .sorted().map { it.toPath() }
     }
 
     /**
@@ -0,0 +1,146 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.build.dex
+
+import com.android.tools.r8.D8
+import com.android.tools.r8.D8Command
+import com.android.tools.r8.OutputMode
+import com.android.tools.r8.Version
+import com.google.common.hash.Hashing
+import org.cosmicide.build.util.getSystemClasspath
+import org.cosmicide.rewrite.util.FileUtil
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.zip.ZipFile
+
+/**
+ * The Dex files of libraries, shared by all projects.
+ *
+ * The Dex files of a library are stored in a directory of [FileUtil.dexCacheDir] named after the
+ * hash of the library, so a library is only compiled once however many projects use it, and a
+ * library that is replaced by another version is compiled again.
+ *
+ * The modification time of a directory is updated whenever its Dex files are used, and [prune]
+ * deletes the least recently used directories once the cache grows over [MAX_CACHE_SIZE].
+ */
+object LibraryDexCache {
+
+    /**
+     * The size the cache is pruned to, in bytes.
+     */
+    const val MAX_CACHE_SIZE = 512L * 1024 * 1024
+
+    /**
+     * Gets the D8 version and options and the platform classpath, which the Dex files of a library
+     * depend on besides the library itself.
+     */
+    fun getConfiguration(): String {
+        return buildString {
+            append(Version.getVersionString())
+            append(":${D8Task.MIN_API_LEVEL}:${D8Task.COMPILATION_MODE}:")
+            getSystemClasspath().sortedBy { it.name }.forEach {
+                append("${it.name}:${it.length()}:")
+            }
+        }
+    }
+
+    /**
+     * Gets the hash the Dex files of [jarFile] are cached by. It also covers
+     * [getConfiguration], as the Dex files depend on it.
+     */
+    fun getHash(jarFile: File): String {
+        val hasher = Hashing.sha256().newHasher()
+        hasher.putUnencodedChars(getConfiguration())
+        jarFile.inputStream().buffered().use { input ->
+            val buffer = ByteArray(DEFAULT_BUFFER_SIZE)
+            while (true) {
+                val read = input.read(buffer)
+                if (read < 0) break
+                hasher.putBytes(buffer, 0, read)
+            }
+        }
+        return hasher.hash().toString()
+    }
+
+    /**
+     * Gets the Dex files of the library with the given hash, compiling [jarFile] if they are not
+     * cached. Libraries without classes have no Dex files.
+     *
+     * @param jarFile The library.
+     * @param hash The hash of the library returned by [getHash].
+     * @return The Dex files, with `classes.dex` first.
+     * @throws Exception if the library can't be compiled.
+     */
+    fun getDexFiles(jarFile: File, hash: String): List<File> {
+        val dir = FileUtil.dexCacheDir.resolve(hash)
+        if (!dir.exists()) {
+            // Compile to a temporary directory first, so that a failed or concurrent compilation
+            // never leaves an incomplete entry.
+            val tempDir = Files.createTempDirectory(
+                FileUtil.dexCacheDir.apply { mkdirs() }.toPath(),
+                "$hash-"
+            ).toFile()
+            try {
+                if (hasClasses(jarFile)) {
+                    D8.run(
+                        D8Command.builder()
+                            .setMinApiLevel(D8Task.MIN_API_LEVEL)
+                            .setMode(D8Task.COMPILATION_MODE)
+                            .addClasspathFiles(getSystemClasspath().map { it.toPath() })
+                            .addProgramFiles(jarFile.toPath())
+                            .setOutput(tempDir.toPath(), OutputMode.DexIndexed)
+                            .build()
+                    )
+                }
+                Files.move(tempDir.toPath(), dir.toPath(), StandardCopyOption.ATOMIC_MOVE)
+            } catch (e: Exception) {
+                if (!dir.exists()) {
+                    throw e
+                }
+            } finally {
+                tempDir.deleteRecursively()
+            }
+        }
+        dir.setLastModified(System.currentTimeMillis())
+        return dir.listFiles { file -> file.extension == "dex" }.orEmpty()
+            .sortedBy { it.nameWithoutExtension.removePrefix("classes").toIntOrNull() ?: 1 }
+    }
+
+    /**
+     * Deletes the least recently used Dex files until the cache is at most [maxSize] bytes. The
+     * Dex files of the libraries with the hashes in [keep] are never deleted.
+     */
+    fun prune(keep: Set<String>, maxSize: Long = MAX_CACHE_SIZE) {
+        // Temporary directories of compilations in progress are named "<hash>-<suffix>".
+        val entries = FileUtil.dexCacheDir.listFiles { file -> file.isDirectory && '-' !in file.name }
+            .orEmpty()
+            .sortedWith(compareBy({ it.name !in keep }, { -it.lastModified() }))
+        var size = 0L
+        entries.forEach { entry ->
+            val entrySize = entry.walk().filter { it.isFile }.sumOf { it.length() }
+            if (entry.name in keep || size + entrySize <= maxSize) {
+                size += entrySize
+            } else {
+                // The older entries are deleted as well, even if they would fit.
+                size = maxSize
+                entry.deleteRecursively()
+            }
+        }
+    }
+
+    /**
+     * Checks if [jarFile] has any class files outside of META-INF.
+     */
+    fun hasClasses(jarFile: File): Boolean {
+        return ZipFile(jarFile).use { zip ->
+            zip.entries().asSequence()
+                .any { it.name.startsWith("META-INF").not() && it.name.endsWith(".class") }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.build.dex
+
+import com.google.common.hash.Hashing
+import org.cosmicide.build.BuildReporter
+import org.cosmicide.build.Task
+import org.cosmicide.project.Project
+import org.cosmicide.rewrite.util.FileUtil
+import java.io.File
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorCompletionService
+import java.util.concurrent.Executors
+
+/**
+ * Task to copy the Dex files of the libraries of a project to `build/libs`, compiling the
+ * libraries that are not in the [LibraryDexCache]. The libraries are compiled in parallel.
+ *
+ * The Dex files of a library are named after it. A stamp file next to them records the
+ * modification time and size of the library they were copied for, the D8 version and options and
+ * the platform classpath they were compiled with, and the hash of the library, so that unchanged
+ * libraries are not hashed again. The [LibraryDexCache] is pruned after the libraries are updated.
+ *
+ * @property project The project to compile.
+ */
+class LibraryDexTask(val project: Project) : Task {
+
+    companion object {
+        // D8 uses several threads for each library, so only a few libraries are compiled at once.
+        private val MAX_LIBRARY_THREADS = minOf(Runtime.getRuntime().availableProcessors(), 4)
+    }
+
+    private val libDexDir = project.buildDir.resolve("libs")
+
+    override val inputs: List<File>
+        get() = listOf(project.libDir)
+
+    override val outputs: List<File>
+        get() = listOf(libDexDir)
+
+    override val configuration: String
+        get() = LibraryDexCache.getConfiguration()
+
+    override fun execute(reporter: BuildReporter) {
+        libDexDir.mkdirs()
+        val jars = project.libDir.listFiles { file -> file.extension == "jar" }.orEmpty().toList()
+
+        // Delete the Dex files of the libraries that are removed.
+        libDexDir.listFiles()?.filter { file ->
+            jars.none { isLibraryFile(file, it.nameWithoutExtension) }
+        }?.forEach { it.delete() }
+
+        val configurationHash = Hashing.sha256()
+            .hashUnencodedChars(LibraryDexCache.getConfiguration())
+            .toString()
+        val outdated = jars.filter { jar ->
+            val stampFile = libDexDir.resolve(jar.nameWithoutExtension + ".stamp")
+            !stampFile.exists() ||
+                    stampFile.readLines().firstOrNull() != getStamp(jar, configurationHash)
+        }
+        if (outdated.isEmpty()) {
+            return
+        }
+
+        val threads = minOf(outdated.size, MAX_LIBRARY_THREADS)
+        val executor = Executors.newFixedThreadPool(threads)
+        try {
+            val completionService = ExecutorCompletionService<String>(executor)
+            outdated.forEach { jar ->
+                completionService.submit {
+                    val startTime = System.currentTimeMillis()
+                    val compiled = updateLibrary(jar, libDexDir, configurationHash)
+                    val time = System.currentTimeMillis() - startTime
+                    if (compiled) {
+                        "Compiled library ${jar.name} in ${time}ms"
+                    } else {
+                        "Copied library ${jar.name} from the cache in ${time}ms"
+                    }
+                }
+            }
+            repeat(outdated.size) {
+                try {
+                    reporter.reportInfo(completionService.take().get())
+                } catch (e: ExecutionException) {
+                    reporter.reportError(e.cause!!.stackTraceToString())
+                }
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+
+        val used = jars.mapNotNullTo(mutableSetOf()) { jar ->
+            val stampFile = libDexDir.resolve(jar.nameWithoutExtension + ".stamp")
+            if (stampFile.exists()) stampFile.readLines().getOrNull(1) else null
+        }
+        LibraryDexCache.prune(used)
+    }
+
+    /**
+     * Copies the Dex files of [jar] to [libDexDir], compiling it if it's not in the cache.
+     *
+     * @return Whether the library was compiled.
+     */
+    private fun updateLibrary(jar: File, libDexDir: File, configurationHash: String): Boolean {
+        val name = jar.nameWithoutExtension
+        val stamp = getStamp(jar, configurationHash)
+        val stampFile = libDexDir.resolve("$name.stamp")
+        val hash = LibraryDexCache.getHash(jar)
+        if (stampFile.exists() && stampFile.readLines().getOrNull(1) == hash) {
+            // Only the modification time of the library changed.
+            stampFile.writeText("$stamp\n$hash")
+            return false
+        }
+
+        val compiled = !FileUtil.dexCacheDir.resolve(hash).exists()
+        val dexFiles = LibraryDexCache.getDexFiles(jar, hash)
+        stampFile.delete()
+        libDexDir.listFiles()?.filter { isLibraryFile(it, name) }?.forEach { it.delete() }
+        dexFiles.forEachIndexed { index, dexFile ->
+            val target = if (index == 0) "$name.dex" else "$name.${dexFile.name}"
+            dexFile.copyTo(libDexDir.resolve(target), overwrite = true)
+        }
+        stampFile.writeText("$stamp\n$hash")
+        return compiled
+    }
+
+    /**
+     * Checks if [file] in `build/libs` belongs to the library named [name].
+     */
+    private fun isLibraryFile(file: File, name: String): Boolean {
+        return file.name == "$name.dex" || file.name == "$name.stamp" ||
+                (file.name.startsWith("$name.classes") && file.extension == "dex")
+    }
+
+    private fun getStamp(file: File, configurationHash: String) =
+        "${file.length()}:${file.lastModified()}:$configurationHash"
+}
@@ -11,36 +11,168 @@ import org.cosmicide.build.BuildReporter
 import org.cosmicide.build.Task
 import org.cosmicide.project.Project
 import java.io.File
-import java.util.jar.JarOutputStream
-import java.util.zip.ZipEntry
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
 
 /**
- * A task that creates a JAR file containing all the class files in a directory.
+ * A task that creates a JAR file containing all the files in the classes directory.
+ *
+ * The files are compressed in parallel, and the entries of the files that didn't change since the
+ * JAR was last created are copied from it without being compressed again. The entries are sorted
+ * and have a fixed timestamp, so the JAR only changes when the files do.
  */
 class JarTask(val project: Project) : Task {
 
+    companion object {
+        private val THREADS = Runtime.getRuntime().availableProcessors()
+
+        // The maximum number of files compressed ahead of the entry being written.
+        private val MAX_PENDING = THREADS * 8
+    }
+
+    private val jarFile = File(project.binDir, "classes.jar")
+
+    // The entries of the JAR and the files they were created from.
+    private val stateFile = project.cacheDir.resolve("classes.jar.state")
+
+    override val inputs: List<File>
+        get() = listOf(project.binDir.resolve("classes"))
+
+    override val outputs: List<File>
+        get() = listOf(jarFile)
+
     override fun execute(reporter: BuildReporter) {
+        val startTime = System.currentTimeMillis()
         val directory = project.binDir.resolve("classes")
-        reporter.reportInfo("Creating JAR file from directory: ${directory.absolutePath}")
+        val files = directory.walkTopDown().filter { it.isFile }
+            .associateBy { it.relativeTo(directory).path.replace("\\", "/") }
+            .toSortedMap()
 
-        val jarFile = File(project.binDir, "classes.jar")
-        if (jarFile.exists()) {
-            jarFile.delete()
+        val previous = readState()
+        val result = try {
+            writeJar(files, previous)
+        } catch (e: IOException) {
+            if (previous.isEmpty()) {
+                throw e
+            }
+            // The previous JAR can't be read, create it from scratch.
+            writeJar(files, emptyMap())
         }
 
-        JarOutputStream(jarFile.outputStream()).use { jar ->
-            directory.walkTopDown().filter { it.isFile && it.extension == "class" }
-                .forEach { classFile ->
-                    val entryName = classFile.relativeTo(directory).path.replace("\\", "/")
-                    jar.putNextEntry(ZipEntry(entryName))
-                    classFile.inputStream().buffered().use { input ->
-                        input.copyTo(jar)
+        val time = System.currentTimeMillis() - startTime
+        reporter.reportInfo(
+            "Created ${jarFile.name} with ${files.size} entries (${result.reused} unchanged), " +
+                    "${jarFile.length() / 1024}KB in ${time}ms"
+        )
+    }
+
+    private class Result(val reused: Int)
+
+    /**
+     * Writes the JAR, copying the entries in [previous] whose files didn't change from the
+     * current JAR.
+     */
+    private fun writeJar(files: Map<String, File>, previous: Map<String, Pair<String, JarWriter.Entry>>): Result {
+        val tempFile = File(jarFile.path + ".tmp")
+        val stamps = files.mapValues { (_, file) -> getStamp(file) }
+        val executor = Executors.newFixedThreadPool(THREADS)
+        var reused = 0
+        try {
+            stateFile.delete()
+            val entries = (if (previous.isEmpty()) null else RandomAccessFile(jarFile, "r")).use { oldJar ->
+                JarWriter(tempFile).use { writer ->
+                    // The entries to write in order, with the data of the files being compressed,
+                    // or null for the entries copied from the current JAR.
+                    val pending = ArrayDeque<Pair<String, Future<JarWriter.Data>?>>()
+                    fun writePending() {
+                        val (name, data) = pending.removeFirst()
+                        if (data == null) {
+                            writer.copy(previous.getValue(name).second, oldJar!!)
+                            return
+                        }
+                        try {
+                            writer.write(name, data.get())
+                        } catch (e: ExecutionException) {
+                            throw e.cause ?: e
+                        }
                     }
-                    jar.closeEntry()
-                    reporter.reportInfo("Added $entryName to JAR")
+
+                    files.forEach { (name, file) ->
+                        val old = previous[name]
+                        if (oldJar != null && old != null && old.first == stamps[name]) {
+                            pending.addLast(name to null)
+                            reused++
+                        } else {
+                            pending.addLast(name to executor.submit<JarWriter.Data> { JarWriter.compress(file) })
+                        }
+                        if (pending.size > MAX_PENDING) {
+                            writePending()
+                        }
+                    }
+                    while (pending.isNotEmpty()) {
+                        writePending()
+                    }
+                    writer.close()
+                    writer.getEntries()
                 }
+            }
+            Files.move(tempFile.toPath(), jarFile.toPath(), StandardCopyOption.REPLACE_EXISTING)
+            writeState(entries, stamps)
+        } finally {
+            executor.shutdownNow()
+            tempFile.delete()
+        }
+        return Result(reused)
+    }
+
+    /**
+     * Reads the entries of the current JAR, if the JAR is the one they were written to.
+     *
+     * @return The stamps of the files of the entries and the entries, by name.
+     */
+    private fun readState(): Map<String, Pair<String, JarWriter.Entry>> {
+        if (!stateFile.exists() || !jarFile.exists()) {
+            return emptyMap()
+        }
+        return try {
+            val lines = stateFile.readLines()
+            if (lines.firstOrNull() != getStamp(jarFile)) {
+                return emptyMap()
+            }
+            lines.drop(1).associate { line ->
+                val parts = line.split('\t')
+                val entry = JarWriter.Entry(
+                    parts[0],
+                    parts[2].toInt(),
+                    parts[3].toLong(),
+                    parts[4].toLong(),
+                    parts[5].toLong(),
+                    parts[6].toLong()
+                )
+                entry.name to (parts[1] to entry)
+            }
+        } catch (e: Exception) {
+            emptyMap()
         }
+    }
 
-        reporter.reportInfo("JAR file created: ${jarFile.absolutePath}")
+    private fun writeState(entries: List<JarWriter.Entry>, stamps: Map<String, String>) {
+        stateFile.parentFile?.mkdirs()
+        stateFile.bufferedWriter().use { writer ->
+            writer.appendLine(getStamp(jarFile))
+            entries.forEach {
+                writer.appendLine(
+                    "${it.name}\t${stamps[it.name]}\t${it.method}\t${it.crc}\t${it.size}\t" +
+                            "${it.compressedSize}\t${it.dataOffset}"
+                )
+            }
+        }
     }
+
+    private fun getStamp(file: File) = "${file.length()}:${file.lastModified()}"
 }
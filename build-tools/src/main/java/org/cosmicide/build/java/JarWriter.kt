@@ -0,0 +1,233 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.build.java
+
+import java.io.ByteArrayOutputStream
+import java.io.Closeable
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+import java.util.zip.ZipEntry
+
+/**
+ * Writes a JAR file from entries whose data is already compressed, so the entries can be
+ * compressed in parallel or copied from another JAR written by this class without being
+ * compressed again.
+ *
+ * All entries have the same timestamp, so the same entries always make the same file.
+ */
+internal class JarWriter(file: File) : Closeable {
+
+    /**
+     * An entry of the JAR.
+     *
+     * @property name The path of the entry.
+     * @property method [ZipEntry.STORED] or [ZipEntry.DEFLATED].
+     * @property crc The CRC-32 of the uncompressed data.
+     * @property size The size of the uncompressed data.
+     * @property compressedSize The size of the data in the JAR.
+     * @property dataOffset Where the data starts in the JAR.
+     */
+    data class Entry(
+        val name: String,
+        val method: Int,
+        val crc: Long,
+        val size: Long,
+        val compressedSize: Long,
+        val dataOffset: Long
+    )
+
+    /**
+     * The compressed data of an entry.
+     */
+    class Data(val method: Int, val crc: Long, val size: Long, val bytes: ByteArray)
+
+    private val output = file.outputStream().buffered(BUFFER_SIZE)
+    private var position = 0L
+    private val entries = mutableListOf<Entry>()
+    private var closed = false
+
+    /**
+     * Writes an entry with the given compressed data.
+     */
+    fun write(name: String, data: Data): Entry {
+        return writeEntry(name, data.method, data.crc, data.size, data.bytes.size.toLong()) {
+            output.write(data.bytes)
+        }
+    }
+
+    /**
+     * Writes an entry with the data of [entry] in [jar], which was written by a [JarWriter].
+     */
+    fun copy(entry: Entry, jar: RandomAccessFile): Entry {
+        return writeEntry(entry.name, entry.method, entry.crc, entry.size, entry.compressedSize) {
+            val buffer = ByteArray(BUFFER_SIZE)
+            jar.seek(entry.dataOffset)
+            var remaining = entry.compressedSize
+            while (remaining > 0) {
+                val read = jar.read(buffer, 0, minOf(remaining, buffer.size.toLong()).toInt())
+                if (read < 0) {
+                    throw IOException("Unexpected end of JAR")
+                }
+                output.write(buffer, 0, read)
+                remaining -= read
+            }
+        }
+    }
+
+    /**
+     * The entries written so far.
+     */
+    fun getEntries(): List<Entry> = entries
+
+    private inline fun writeEntry(
+        name: String,
+        method: Int,
+        crc: Long,
+        size: Long,
+        compressedSize: Long,
+        writeData: () -> Unit
+    ): Entry {
+        if (compressedSize >= MAX_SIZE || size >= MAX_SIZE || position >= MAX_SIZE) {
+            throw IOException("Entry $name is too large for a JAR without ZIP64 extensions")
+        }
+        val nameBytes = name.toByteArray()
+        writeInt(LOCAL_HEADER_SIGNATURE)
+        writeShort(VERSION)
+        writeShort(FLAG_UTF8)
+        writeShort(method)
+        writeShort(DOS_TIME)
+        writeShort(DOS_DATE)
+        writeInt(crc)
+        writeInt(compressedSize)
+        writeInt(size)
+        writeShort(nameBytes.size)
+        writeShort(0)
+        writeBytes(nameBytes)
+
+        val entry = Entry(name, method, crc, size, compressedSize, position)
+        writeData()
+        position += compressedSize
+        entries += entry
+        return entry
+    }
+
+    /**
+     * Writes the central directory and closes the file.
+     */
+    override fun close() {
+        if (closed) {
+            return
+        }
+        closed = true
+        output.use {
+            if (entries.size > MAX_ENTRIES) {
+                throw IOException("Too many entries for a JAR without ZIP64 extensions")
+            }
+            val directoryOffset = position
+            entries.forEach { entry ->
+                val nameBytes = entry.name.toByteArray()
+                writeInt(CENTRAL_HEADER_SIGNATURE)
+                writeShort(VERSION)
+                writeShort(VERSION)
+                writeShort(FLAG_UTF8)
+                writeShort(entry.method)
+                writeShort(DOS_TIME)
+                writeShort(DOS_DATE)
+                writeInt(entry.crc)
+                writeInt(entry.compressedSize)
+                writeInt(entry.size)
+                writeShort(nameBytes.size)
+                writeShort(0)
+                writeShort(0)
+                writeShort(0)
+                writeShort(0)
+                writeInt(0)
+                writeInt(entry.dataOffset - LOCAL_HEADER_SIZE - nameBytes.size)
+                writeBytes(nameBytes)
+            }
+            val directorySize = position - directoryOffset
+            writeInt(END_SIGNATURE)
+            writeShort(0)
+            writeShort(0)
+            writeShort(entries.size)
+            writeShort(entries.size)
+            writeInt(directorySize)
+            writeInt(directoryOffset)
+            writeShort(0)
+        }
+    }
+
+    private fun writeShort(value: Int) {
+        output.write(value and 0xff)
+        output.write((value ushr 8) and 0xff)
+        position += 2
+    }
+
+    private fun writeInt(value: Long) {
+        writeShort((value and 0xffff).toInt())
+        writeShort(((value ushr 16) and 0xffff).toInt())
+    }
+
+    private fun writeBytes(bytes: ByteArray) {
+        output.write(bytes)
+        position += bytes.size
+    }
+
+    companion object {
+        private const val LOCAL_HEADER_SIGNATURE = 0x04034b50L
+        private const val CENTRAL_HEADER_SIGNATURE = 0x02014b50L
+        private const val END_SIGNATURE = 0x06054b50L
+        private const val LOCAL_HEADER_SIZE = 30
+        private const val VERSION = 20
+        private const val FLAG_UTF8 = 0x800
+        private const val MAX_SIZE = 0xffffffffL
+        private const val MAX_ENTRIES = 0xffff
+        private const val BUFFER_SIZE = 64 * 1024
+
+        // 1980-02-01 00:00, the same timestamp Gradle uses for reproducible archives.
+        private const val DOS_DATE = (0 shl 9) or (2 shl 5) or 1
+        private const val DOS_TIME = 0
+
+        // Files that are compressed already, and are stored as they are.
+        private val COMPRESSED_EXTENSIONS = setOf(
+            "jar", "zip", "gz", "xz", "bz2", "7z", "png", "jpg", "jpeg", "gif", "webp", "mp3", "ogg", "mp4"
+        )
+
+        /**
+         * Compresses [file] for an entry. Files that are compressed already or that don't get
+         * smaller are stored.
+         */
+        fun compress(file: File): Data {
+            val bytes = file.readBytes()
+            val crc = CRC32().apply { update(bytes) }.value
+            if (file.extension.lowercase() in COMPRESSED_EXTENSIONS) {
+                return Data(ZipEntry.STORED, crc, bytes.size.toLong(), bytes)
+            }
+            val deflater = Deflater(Deflater.DEFAULT_COMPRESSION, true)
+            try {
+                deflater.setInput(bytes)
+                deflater.finish()
+                val compressed = ByteArrayOutputStream(bytes.size / 2 + 64)
+                val buffer = ByteArray(BUFFER_SIZE)
+                while (!deflater.finished()) {
+                    val count = deflater.deflate(buffer)
+                    compressed.write(buffer, 0, count)
+                }
+                if (compressed.size() >= bytes.size) {
+                    return Data(ZipEntry.STORED, crc, bytes.size.toLong(), bytes)
+                }
+                return Data(ZipEntry.DEFLATED, crc, bytes.size.toLong(), compressed.toByteArray())
+            } finally {
+                deflater.end()
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.build.java
+
+import com.google.common.hash.Hashing
+import java.io.File
+import java.io.ObjectInputStream
+import java.io.ObjectOutputStream
+import java.io.Serializable
+
+/**
+ * The state of the last Java compilation of a project. It's used to find the sources that need
+ * to be compiled again.
+ *
+ * @property options The compiler options and classpath the sources were compiled with.
+ * @property sources The compiled sources by their absolute paths.
+ * @property classes The classes compiled from the sources by their binary names.
+ * @property externalClasses The stamps of the class files in the output directory that the sources
+ * depend on but are not compiled from them, e.g. Kotlin classes, by their binary names.
+ */
+data class JavaBuildState(
+    val options: List<String>,
+    val sources: Map<String, SourceState>,
+    val classes: Map<String, ClassState>,
+    val externalClasses: Map<String, String>
+) : Serializable {
+
+    /**
+     * @property lastModified The modification time of the source when it was compiled.
+     * @property length The length of the source when it was compiled.
+     * @property hash The hash of the content of the source, or an empty string if the source must
+     * be compiled again.
+     * @property classes The binary names of the classes compiled from the source.
+     * @property dependencies The binary names of the classes the source uses.
+     */
+    data class SourceState(
+        val lastModified: Long,
+        val length: Long,
+        val hash: String,
+        val classes: List<String>,
+        val dependencies: Set<String>
+    ) : Serializable
+
+    /**
+     * @property abiHash The hash of the non-private API declared by the class.
+     * @property supertypes The binary names of the direct supertypes of the class.
+     */
+    data class ClassState(
+        val abiHash: String,
+        val supertypes: List<String>
+    ) : Serializable
+
+    /**
+     * Gets the hash of the API of [className] including the API it inherits from the classes in
+     * this state, or an empty string if the class is not in this state.
+     */
+    fun getEffectiveAbiHash(className: String): String {
+        return getEffectiveAbiHash(className, mutableMapOf())
+    }
+
+    private fun getEffectiveAbiHash(className: String, hashes: MutableMap<String, String>): String {
+        hashes[className]?.let { return it }
+        val state = classes[className] ?: return ""
+        // Guards against cyclic inheritance of classes with errors.
+        hashes[className] = state.abiHash
+        val hash = if (state.supertypes.none { it in classes }) {
+            state.abiHash
+        } else {
+            val abi = state.supertypes.joinToString(
+                separator = "\n",
+                prefix = state.abiHash + "\n"
+            ) { getEffectiveAbiHash(it, hashes) }
+            Hashing.sha256().hashUnencodedChars(abi).toString()
+        }
+        hashes[className] = hash
+        return hash
+    }
+
+    /**
+     * Writes this state to [file].
+     */
+    fun write(file: File) {
+        file.parentFile?.mkdirs()
+        ObjectOutputStream(file.outputStream().buffered()).use { it.writeObject(this) }
+    }
+
+    companion object {
+        private const val serialVersionUID = 1L
+
+        /**
+         * Reads the state written to [file], or returns null if it can't be read.
+         */
+        fun read(file: File): JavaBuildState? {
+            if (!file.exists()) {
+                return null
+            }
+            return try {
+                ObjectInputStream(file.inputStream().buffered()).use {
+                    it.readObject() as JavaBuildState
+                }
+            } catch (e: Exception) {
+                null
+            }
+        }
+
+        /**
+         * Gets the stamp of [file] used to detect modifications of it.
+         */
+        fun getStamp(file: File): String {
+            return if (file.exists()) "${file.length()}:${file.lastModified()}" else ""
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.build.java
+
+import com.google.common.hash.Hashing
+import com.sun.source.util.TaskEvent
+import com.sun.source.util.TaskListener
+import com.sun.tools.javac.code.Flags
+import com.sun.tools.javac.code.Kinds
+import com.sun.tools.javac.code.Symbol
+import com.sun.tools.javac.code.Symbol.ClassSymbol
+import com.sun.tools.javac.code.Symbol.MethodSymbol
+import com.sun.tools.javac.code.Symbol.VarSymbol
+import com.sun.tools.javac.code.TypeTag
+import com.sun.tools.javac.tree.JCTree
+import com.sun.tools.javac.tree.TreeScanner
+import java.io.File
+
+/**
+ * Collects the classes compiled from each source file, the classes each source file uses and the
+ * API of the compiled classes.
+ */
+class JavaClassCollector : TaskListener {
+
+    // Source path -> binary names of the classes compiled from it.
+    val sourceClasses = mutableMapOf<String, MutableList<String>>()
+
+    // Source path -> binary names of the classes it uses.
+    val sourceDependencies = mutableMapOf<String, MutableSet<String>>()
+
+    // Binary name -> API of the class.
+    val classes = mutableMapOf<String, JavaBuildState.ClassState>()
+
+    override fun finished(e: TaskEvent) {
+        val sourceFile = e.sourceFile ?: return
+        val path = File(sourceFile.toUri()).absolutePath
+        when (e.kind) {
+            TaskEvent.Kind.ANALYZE -> {
+                val dependencies = sourceDependencies.getOrPut(path) { mutableSetOf() }
+                DependencyScanner(dependencies).scan(e.compilationUnit as JCTree)
+            }
+
+            TaskEvent.Kind.GENERATE -> {
+                val classSymbol = e.typeElement as? ClassSymbol ?: return
+                val className = classSymbol.flatname.toString()
+                sourceClasses.getOrPut(path) { mutableListOf() }.add(className)
+                classes[className] = JavaBuildState.ClassState(
+                    getAbiHash(classSymbol),
+                    getSupertypes(classSymbol)
+                )
+            }
+
+            else -> {}
+        }
+    }
+
+    private fun getSupertypes(classSymbol: ClassSymbol): List<String> {
+        val supertypes = mutableListOf<String>()
+        classSymbol.superclass?.tsym?.let { supertypes.add((it as ClassSymbol).flatname.toString()) }
+        classSymbol.interfaces?.forEach { supertypes.add((it.tsym as ClassSymbol).flatname.toString()) }
+        return supertypes
+    }
+
+    private fun getAbiHash(classSymbol: ClassSymbol): String {
+        val members = classSymbol.members().symbols
+            .filter { it.flags() and (Flags.PRIVATE.toLong() or Flags.SYNTHETIC.toLong()) == 0L }
+            .map { getAbi(it) }
+            .sorted()
+        val abi = buildString {
+            append(classSymbol.flags() and ABI_FLAGS).append(' ')
+            append(classSymbol.type).append(' ')
+            append(classSymbol.superclass).append(' ')
+            append(classSymbol.interfaces).append(' ')
+            append(classSymbol.annotationMirrors).append('\n')
+            members.forEach { append(it).append('\n') }
+        }
+        return Hashing.sha256().hashUnencodedChars(abi).toString()
+    }
+
+    private fun getAbi(symbol: Symbol): String = buildString {
+        append(symbol.kind).append(' ')
+        append(symbol.flags() and ABI_FLAGS).append(' ')
+        append(symbol.name).append(' ')
+        append(symbol.type).append(' ')
+        append(symbol.annotationMirrors)
+        when (symbol) {
+            is MethodSymbol -> {
+                append(" throws ").append(symbol.type.thrownTypes)
+                symbol.defaultValue?.let { append(" default ").append(it) }
+            }
+            // Constants are inlined into the classes using them.
+            is VarSymbol -> symbol.constValue?.let { append(" = ").append(it) }
+        }
+    }
+
+    /**
+     * Adds the classes declaring the symbols used in a compilation unit to [dependencies].
+     */
+    private class DependencyScanner(val dependencies: MutableSet<String>) : TreeScanner() {
+
+        private fun addSymbol(symbol: Symbol?) {
+            val classSymbol = symbol?.enclClass() ?: return
+            if (classSymbol.kind == Kinds.Kind.TYP && classSymbol.type.hasTag(TypeTag.CLASS)) {
+                dependencies.add(classSymbol.flatname.toString())
+            }
+        }
+
+        override fun visitIdent(tree: JCTree.JCIdent) {
+            addSymbol(tree.sym)
+            super.visitIdent(tree)
+        }
+
+        override fun visitSelect(tree: JCTree.JCFieldAccess) {
+            addSymbol(tree.sym)
+            // Members may be inherited from the type of the qualifier.
+            addSymbol(tree.selected.type?.tsym)
+            super.visitSelect(tree)
+        }
+
+        override fun visitNewClass(tree: JCTree.JCNewClass) {
+            addSymbol(tree.constructor)
+            super.visitNewClass(tree)
+        }
+
+        override fun visitReference(tree: JCTree.JCMemberReference) {
+            addSymbol(tree.sym)
+            super.visitReference(tree)
+        }
+
+        override fun visitVarDef(tree: JCTree.JCVariableDecl) {
+            // The type of local variables declared with var is not in the tree.
+            addSymbol(tree.sym?.type?.tsym)
+            super.visitVarDef(tree)
+        }
+    }
+
+    companion object {
+        // The access and modifier flags that are part of the API.
+        private const val ABI_FLAGS = 0x7fffL
+    }
+}
@@ -7,7 +7,7 @@
 
 package org.cosmicide.build.java
 
-import com.sun.tools.javac.api.JavacTool
+import com.google.common.hash.Hashing
 import org.cosmicide.build.BuildReporter
 import org.cosmicide.build.Task
 import org.cosmicide.build.util.getSourceFiles
@@ -22,16 +22,40 @@ import javax.tools.Diagnostic
 import javax.tools.DiagnosticCollector
 import javax.tools.JavaFileObject
 import javax.tools.SimpleJavaFileObject
-import javax.tools.StandardLocation
 
-class JavaCompileTask(val project: Project) : Task {
-    val diagnostics = DiagnosticCollector<JavaFileObject>()
-    val tool = JavacTool.create()
-    val fileManager = tool.getStandardFileManager(diagnostics, null, null)
+/**
+ * Compiles the Java sources of a project incrementally.
+ *
+ * The classes compiled from each source, the classes each source uses and the API of the compiled
+ * classes are saved in the cache directory of the project. Only the sources that are changed since
+ * the last compilation are compiled, together with the sources using the classes whose API has
+ * changed as a result. The class files of changed and deleted sources are deleted.
+ *
+ * All sources are compiled when the compiler options or the libraries change.
+ *
+ * @property project The project to compile.
+ * @property javaVersion Gets the Java version to compile the sources for.
+ * @property javacFlags Gets the additional compiler flags, separated by spaces.
+ */
+class JavaCompileTask(
+    val project: Project,
+    private val javaVersion: () -> Int = { Prefs.compilerJavaVersion },
+    private val javacFlags: () -> String = { Prefs.javacFlags }
+) : Task {
+
+    override val inputs: List<File>
+        get() = listOf(project.srcDir, project.libDir)
+
+    override val outputs: List<File>
+        get() = listOf(project.binDir.resolve("classes"))
+
+    override val configuration: String
+        get() = "${javaVersion()} ${javacFlags()}"
 
     override fun execute(reporter: BuildReporter) {
         val output = project.binDir.resolve("classes")
-        val version = Prefs.compilerJavaVersion.toString()
+        val version = javaVersion().toString()
+        val stateFile = project.cacheDir.resolve(STATE_FILE_NAME)
 
         try {
             Files.createDirectories(output.toPath())
@@ -40,17 +64,193 @@ class JavaCompileTask(val project: Project) : Task {
         }
 
         val javaFiles = project.srcDir.getSourceFiles("java")
+        val previousState = JavaBuildState.read(stateFile)
 
         if (javaFiles.isEmpty()) {
+            previousState?.let { deleteClasses(output, it.classes.keys) }
+            stateFile.delete()
             reporter.reportInfo("No java files found. Skipping compilation.")
             return
         }
 
-        reporter.reportInfo("Compilingg")
+        val flags = javacFlags()
+        val options = listOf(
+            "-XDstringConcat=inline",
+            "-proc:none",
+            "-source",
+            version,
+            "-target",
+            version
+        ) + if (flags.isNotEmpty()) flags.split(" ").toList() else listOf()
+        val classpath = getClasspath(project)
+        val systemClasspath = getSystemClasspath()
+        val stateOptions = options +
+                classpath.filter { it.isFile }
+                    .map { "${it.absolutePath}:${JavaBuildState.getStamp(it)}" } +
+                systemClasspath.map { it.absolutePath }
 
-        val size = javaFiles.size
-        reporter.reportInfo("Compiling $size java ${if (size == 1) "file" else "files"}...")
+        val oldState = previousState?.takeIf { it.options == stateOptions }
+        if (previousState != null && oldState == null) {
+            reporter.reportInfo("Compiler options or libraries changed. Compiling all java files.")
+            deleteClasses(output, previousState.classes.keys)
+        }
+
+        val sources = mutableMapOf<String, JavaBuildState.SourceState>()
+        val classes = oldState?.classes?.toMutableMap() ?: mutableMapOf()
+        var toCompile = getChangedSources(javaFiles, oldState, output, sources)
+        if (oldState != null) {
+            val removedSources = oldState.sources.keys - javaFiles.map { it.absolutePath }.toSet()
+            val removedClasses = removedSources.flatMap { oldState.sources[it]!!.classes }.toSet()
+            deleteClasses(output, removedClasses)
+            classes.keys.removeAll(removedClasses)
+            val changedExternalClasses = oldState.externalClasses.filter { (name, stamp) ->
+                JavaBuildState.getStamp(getClassFile(output, name)) != stamp
+            }.keys
+            toCompile = toCompile + getDependents(sources, removedClasses + changedExternalClasses)
+        }
 
+        if (toCompile.isEmpty()) {
+            reporter.reportInfo("Java classes are up to date.")
+            return
+        }
+
+        val compiled = mutableSetOf<String>()
+        while (toCompile.isNotEmpty()) {
+            val files = toCompile.map { File(it) }
+            val oldClasses = files.flatMap { oldState?.sources?.get(it.absolutePath)?.classes.orEmpty() }
+            deleteClasses(output, oldClasses)
+
+            val size = files.size
+            reporter.reportInfo("Compiling $size java ${if (size == 1) "file" else "files"}...")
+            val collector = JavaClassCollector()
+            val success = compile(output, classpath, files, options, collector, reporter)
+            compiled += toCompile
+
+            files.forEach { file ->
+                val path = file.absolutePath
+                val oldSource = oldState?.sources?.get(path)
+                sources[path] = if (success) {
+                    JavaBuildState.SourceState(
+                        file.lastModified(),
+                        file.length(),
+                        getHash(file),
+                        collector.sourceClasses[path].orEmpty(),
+                        collector.sourceDependencies[path].orEmpty()
+                    )
+                } else {
+                    // Keep the previous classes so that the source is compared with them
+                    // when it's compiled successfully.
+                    JavaBuildState.SourceState(
+                        file.lastModified(),
+                        file.length(),
+                        "",
+                        oldSource?.classes.orEmpty(),
+                        oldSource?.dependencies.orEmpty() +
+                                collector.sourceDependencies[path].orEmpty()
+                    )
+                }
+            }
+            if (!success) {
+                break
+            }
+            classes.keys.removeAll(oldClasses.toSet())
+            classes.putAll(collector.classes)
+
+            if (oldState == null) {
+                break
+            }
+            val newState = JavaBuildState(stateOptions, sources, classes, mapOf())
+            val changedClasses = (oldClasses + collector.classes.keys).filter {
+                oldState.getEffectiveAbiHash(it) != newState.getEffectiveAbiHash(it)
+            }.toSet()
+            toCompile = getDependents(sources, changedClasses) - compiled
+        }
+
+        val externalClasses = sources.values.flatMap { it.dependencies }
+            .filter { it !in classes }
+            .associateWith { JavaBuildState.getStamp(getClassFile(output, it)) }
+            .filterValues { it.isNotEmpty() }
+        // Only keep the dependencies on the classes that can change.
+        val state = JavaBuildState(
+            stateOptions,
+            sources.mapValues { (_, source) ->
+                source.copy(dependencies = source.dependencies.filter {
+                    it in classes || it in externalClasses
+                }.toSet())
+            },
+            classes,
+            externalClasses
+        )
+        try {
+            state.write(stateFile)
+        } catch (e: Exception) {
+            reporter.reportWarning("Failed to save the java compilation state: ${e.message}")
+        }
+    }
+
+    /**
+     * Gets the sources that are new or changed since they were compiled, or whose class files are
+     * missing from [output]. The states of the unchanged sources are added to [sources].
+     */
+    private fun getChangedSources(
+        javaFiles: List<File>,
+        oldState: JavaBuildState?,
+        output: File,
+        sources: MutableMap<String, JavaBuildState.SourceState>
+    ): Set<String> {
+        val changed = mutableSetOf<String>()
+        javaFiles.forEach { file ->
+            val path = file.absolutePath
+            val oldSource = oldState?.sources?.get(path)
+            if (oldSource == null || oldSource.hash.isEmpty()) {
+                changed += path
+            } else if (oldSource.classes.any { !getClassFile(output, it).exists() }) {
+                // The output directory is cleaned when Kotlin sources are compiled from scratch.
+                changed += path
+            } else if (oldSource.lastModified == file.lastModified() && oldSource.length == file.length()) {
+                sources[path] = oldSource
+            } else if (oldSource.hash == getHash(file)) {
+                sources[path] = oldSource.copy(
+                    lastModified = file.lastModified(),
+                    length = file.length()
+                )
+            } else {
+                changed += path
+            }
+        }
+        return changed
+    }
+
+    private fun getDependents(
+        sources: Map<String, JavaBuildState.SourceState>,
+        classNames: Set<String>
+    ): Set<String> {
+        if (classNames.isEmpty()) {
+            return setOf()
+        }
+        return sources.filterValues { source -> source.dependencies.any { it in classNames } }.keys
+    }
+
+    private fun getHash(file: File): String {
+        return Hashing.sha256().hashBytes(file.readBytes()).toString()
+    }
+
+    private fun getClassFile(output: File, className: String): File {
+        return output.resolve(className.replace('.', '/') + ".class")
+    }
+
+    private fun deleteClasses(output: File, classNames: Collection<String>) {
+        classNames.forEach { getClassFile(output, it).delete() }
+    }
+
+    private fun compile(
+        output: File,
+        classpath: List<File>,
+        javaFiles: List<File>,
+        options: List<String>,
+        collector: JavaClassCollector,
+        reporter: BuildReporter
+    ): Boolean {
         val javaFileObjects = javaFiles.map { file ->
             object : SimpleJavaFileObject(file.toURI(), JavaFileObject.Kind.SOURCE) {
                 override fun getCharContent(ignoreEncodingErrors: Boolean): CharSequence {
@@ -58,64 +258,50 @@ class JavaCompileTask(val project: Project) : Task {
                 }
             }
         }
+        val diagnostics = DiagnosticCollector<JavaFileObject>()
 
-        fileManager.use { fm ->
-            fm.setLocation(StandardLocation.CLASS_OUTPUT, listOf(output))
-            fm.setLocation(StandardLocation.PLATFORM_CLASS_PATH, getSystemClasspath())
-            fm.setLocation(StandardLocation.CLASS_PATH, getClasspath(project))
-            fm.setLocation(StandardLocation.SOURCE_PATH, javaFiles)
-            
-            val flags = Prefs.javacFlags
-
-            val options = listOf(
-                "-XDstringConcat=inline",
-                "-proc:none",
-                "-source",
-                version,
-                "-target",
-                version
-            ) + if (flags.isNotEmpty()) flags.split(" ").toList() else listOf()
-
-            val task = tool.getTask(
-                object : Writer() {
-                    private val sb = StringBuilder()
-                    override fun close() = flush()
-                    override fun flush() {
-                        reporter.reportInfo(sb.toString())
-                        sb.clear()
-                    }
-
-                    override fun write(cbuf: CharArray?, off: Int, len: Int) {
-                        sb.appendRange(cbuf!!, off, off + len)
-                        reporter.reportInfo(sb.toString())
-                    }
-                },
-                fm,
-                diagnostics,
-                options,
-                null,
-                javaFileObjects
-            )
+        val out = object : Writer() {
+            private val sb = StringBuilder()
+            override fun close() = flush()
+            override fun flush() {
+                reporter.reportInfo(sb.toString())
+                sb.clear()
+            }
 
+            override fun write(cbuf: CharArray?, off: Int, len: Int) {
+                sb.appendRange(cbuf!!, off, off + len)
+                reporter.reportInfo(sb.toString())
+            }
+        }
+        val success = JavacService.withTask(
+            output,
+            classpath,
+            options,
+            javaFileObjects,
+            diagnostics,
+            out
+        ) { task ->
+            task.addTaskListener(collector)
             task.call()
+        }
 
-            for (diagnostic in diagnostics.diagnostics) {
-                val message = StringBuilder()
-                diagnostic.source?.apply {
-                    message.append("$name:${diagnostic.lineNumber}: ")
-                }
-                message.append(diagnostic.getMessage(Locale.getDefault()))
+        for (diagnostic in diagnostics.diagnostics) {
+            val message = StringBuilder()
+            diagnostic.source?.apply {
+                message.append("$name:${diagnostic.lineNumber}: ")
+            }
+            message.append(diagnostic.getMessage(Locale.getDefault()))
 
-                when (diagnostic.kind) {
-                    Diagnostic.Kind.ERROR, Diagnostic.Kind.OTHER -> reporter.reportError(message.toString())
-                    Diagnostic.Kind.NOTE, Diagnostic.Kind.WARNING, Diagnostic.Kind.MANDATORY_WARNING -> reporter.reportWarning(
-                        message.toString()
-                    )
+            when (diagnostic.kind) {
+                Diagnostic.Kind.ERROR, Diagnostic.Kind.OTHER -> reporter.reportError(message.toString())
+                Diagnostic.Kind.NOTE, Diagnostic.Kind.WARNING, Diagnostic.Kind.MANDATORY_WARNING -> reporter.reportWarning(
+                    message.toString()
+                )
 
-                    else -> reporter.reportInfo(message.toString())
-                }
+                else -> reporter.reportInfo(message.toString())
             }
         }
+        return success
     }
 
     fun getClasspath(project: Project): List<File> {
@@ -126,4 +312,8 @@ class JavaCompileTask(val project: Project) : Task {
         }
         return classpath
     }
+
+    companion object {
+        private const val STATE_FILE_NAME = "java-build-state.bin"
+    }
 }
@@ -0,0 +1,181 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.build.java
+
+import com.sun.source.util.JavacTask
+import com.sun.tools.javac.api.JavacTaskImpl
+import com.sun.tools.javac.api.JavacTaskPool
+import com.sun.tools.javac.api.JavacTool
+import com.sun.tools.javac.code.ClassFinder
+import com.sun.tools.javac.code.Symbol.ClassSymbol
+import com.sun.tools.javac.code.Symbol.Completer
+import com.sun.tools.javac.code.Symbol.ModuleSymbol
+import com.sun.tools.javac.code.Symbol.PackageSymbol
+import com.sun.tools.javac.code.Symtab
+import com.sun.tools.javac.file.JavacFileManager
+import com.sun.tools.javac.util.Context
+import kotlinx.coroutines.CancellationException
+import org.cosmicide.build.util.getSystemClasspath
+import java.io.File
+import java.io.Writer
+import java.util.Collections
+import java.util.WeakHashMap
+import javax.tools.DiagnosticListener
+import javax.tools.JavaFileObject
+import javax.tools.StandardLocation
+
+/**
+ * Runs the javac tasks of the builds and the editor analyses with a compiler that stays warm
+ * between them.
+ *
+ * The file manager is kept open, so the jars on the classpath are only opened once, and the
+ * compiler contexts are reused through a [JavacTaskPool], so the classes of the platform classpath
+ * are only read and completed once. The classes that are not read from the platform classpath,
+ * i.e. the classes of the project and its libraries, are removed from the symbol table after each
+ * task, so that the next task reads them again.
+ *
+ * The file manager and the contexts are discarded when a jar on the classpath changes. Tasks are
+ * run one at a time.
+ */
+object JavacService {
+    // One context for the builds and one for the analyses, as they use different options.
+    private const val MAX_POOL_SIZE = 2
+
+    private val tool = JavacTool.create()
+    private val lock = Any()
+
+    private var fileManager: JavacFileManager? = null
+    private var pool = JavacTaskPool(MAX_POOL_SIZE)
+    private var platformClasspath = listOf<File>()
+
+    // Jar path -> stamp of the jar when it was opened by the file manager.
+    private val jarStamps = mutableMapOf<String, String>()
+
+    // The classes of the pooled contexts known to be read from the platform classpath.
+    private var platformClasses: MutableSet<ClassSymbol> =
+        Collections.newSetFromMap(WeakHashMap())
+
+    /**
+     * Creates a javac task and runs [block] with it. The task is only valid while [block] runs.
+     *
+     * @param output The directory the classes are written to.
+     * @param classpath The classpath of the project. The platform classpath is always used.
+     * @param options The compiler options.
+     * @param sources The sources to compile.
+     * @param diagnostics The listener for the diagnostics of the task.
+     * @param out The writer for the other output of the compiler, or null for [System.err].
+     */
+    fun <T> withTask(
+        output: File,
+        classpath: List<File>,
+        options: List<String>,
+        sources: List<JavaFileObject>,
+        diagnostics: DiagnosticListener<in JavaFileObject>,
+        out: Writer? = null,
+        block: (JavacTask) -> T
+    ): T = synchronized(lock) {
+        val fm = getFileManager(classpath)
+        fm.setLocation(StandardLocation.CLASS_OUTPUT, listOf(output))
+        fm.setLocation(StandardLocation.CLASS_PATH, classpath)
+        // Classes that are not compiled are read from the classpath. Analyses compile all the
+        // sources, so no class is read from a source that the task doesn't know about.
+        fm.setLocation(StandardLocation.SOURCE_PATH, listOf())
+
+        try {
+            pool.getTask(out, fm, diagnostics, options, null, sources) { task ->
+                // The context of the task is cleared when the task completes.
+                val context = (task as JavacTaskImpl).context
+                val result = try {
+                    Result.success(block(task))
+                } catch (e: Exception) {
+                    // The context can be reused if the task is cancelled. Otherwise, it's
+                    // discarded as it may be broken.
+                    if (e !is CancellationException && e.cause !is CancellationException) {
+                        throw e
+                    }
+                    Result.failure(e)
+                }
+                removeProjectClasses(context, fm)
+                result
+            }.getOrThrow()
+        } finally {
+            fm.flush()
+        }
+    }
+
+    private fun getFileManager(classpath: List<File>): JavacFileManager {
+        val systemClasspath = getSystemClasspath()
+        val jars = (systemClasspath + classpath).filter { it.isFile && it.extension == "jar" }
+        val changedJars = jars.filter { jar ->
+            val stamp = JavaBuildState.getStamp(jar)
+            jarStamps.put(jar.absolutePath, stamp).let { it != null && it != stamp }
+        }
+        val changed = systemClasspath != platformClasspath || changedJars.isNotEmpty()
+        fileManager?.let { if (!changed) return it }
+
+        fileManager?.close()
+        pool = JavacTaskPool(MAX_POOL_SIZE)
+        platformClasses = Collections.newSetFromMap(WeakHashMap())
+        platformClasspath = systemClasspath
+        return tool.getStandardFileManager(null, null, null).also {
+            it.autoClose = false
+            it.setLocation(StandardLocation.PLATFORM_CLASS_PATH, systemClasspath)
+            fileManager = it
+        }
+    }
+
+    /**
+     * Removes the classes that are not read from the platform classpath from the symbol table of
+     * [context], and resets the packages that contained them or that were found empty, so that
+     * their members are listed again.
+     */
+    private fun removeProjectClasses(context: Context, fm: JavacFileManager) {
+        val syms = Symtab.instance(context)
+        val projectClasses = syms.allClasses.filter { !isPlatformClass(it, fm) }
+        projectClasses.forEach { syms.removeClass(it.packge().modle, it.flatname) }
+
+        val projectPackages = projectClasses.mapTo(mutableSetOf()) { it.packge() }
+        val completer = ClassFinder.instance(context).completer
+        val modules = mutableSetOf<ModuleSymbol>(syms.noModule, syms.unnamedModule)
+        modules += syms.allModules
+        val packages = modules.flatMapTo(mutableSetOf()) { module ->
+            // The unnamed package is not in the packages of all modules.
+            module.enclosedPackages.map { it as PackageSymbol } + listOfNotNull(module.unnamedPackage)
+        }
+        packages.forEach { packageSymbol ->
+            // Packages that are not completed yet list their members when they are used.
+            val isCompleted = packageSymbol.completer == Completer.NULL_COMPLETER
+            val isEmpty = packageSymbol.members_field?.isEmpty != false
+            if (packageSymbol != syms.rootPackage && isCompleted &&
+                (packageSymbol in projectPackages || isEmpty)
+            ) {
+                packageSymbol.members_field = null
+                packageSymbol.completer = completer
+            }
+        }
+    }
+
+    private fun isPlatformClass(classSymbol: ClassSymbol, fm: JavacFileManager): Boolean {
+        if (classSymbol in platformClasses) {
+            return true
+        }
+        val classFile = classSymbol.classfile ?: return false
+        if (classFile.kind != JavaFileObject.Kind.CLASS) {
+            return false
+        }
+        val isPlatform = try {
+            fm.contains(StandardLocation.PLATFORM_CLASS_PATH, classFile)
+        } catch (e: Exception) {
+            false
+        }
+        if (isPlatform) {
+            platformClasses += classSymbol
+        }
+        return isPlatform
+    }
+}
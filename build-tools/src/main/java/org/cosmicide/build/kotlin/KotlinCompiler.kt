@@ -34,6 +34,15 @@ class KotlinCompiler(val project: Project) : Task {
         }
     }
 
+    override val inputs: List<File>
+        get() = listOf(project.srcDir, project.libDir, File(project.root, "kt_plugins"))
+
+    override val outputs: List<File>
+        get() = listOf(project.binDir.resolve("classes"))
+
+    override val configuration: String
+        get() = "${Prefs.kotlinVersion} ${Prefs.compilerJavaVersion} ${Prefs.useFastJarFs}"
+
     override fun execute(reporter: BuildReporter) {
         val sourceFiles = project.srcDir.getSourceFiles("kt")
         if (sourceFiles.isEmpty()) {
@@ -41,15 +50,16 @@ class KotlinCompiler(val project: Project) : Task {
             return
         }
 
-        val kotlinHomeDir = project.binDir.resolve("kotlin").apply { mkdirs() }
+        val plugins = getKotlinCompilerPlugins()
+        val kotlinHomeDir = project.binDir.resolve("kotlin")
+        validateCaches(kotlinHomeDir, plugins)
         val classOutput = project.binDir.resolve("classes").apply { mkdirs() }
-        val classpathFiles = collectClasspathFiles()
+        val classpathFiles = getSystemClasspath() + collectClasspathFiles()
 
-        val enabledPlugins = getKotlinCompilerPlugins().map(File::getAbsolutePath).toTypedArray()
+        val enabledPlugins = plugins.map(File::getAbsolutePath).toTypedArray()
 
         args.apply {
-            classpath =
-                (getSystemClasspath() + classpathFiles).joinToString(separator = File.pathSeparator) { it.absolutePath }
+            classpath = classpathFiles.joinToString(separator = File.pathSeparator) { it.absolutePath }
             kotlinHome = kotlinHomeDir.absolutePath
             destination = classOutput.absolutePath
             javaSourceRoots =
@@ -65,7 +75,29 @@ class KotlinCompiler(val project: Project) : Task {
 
         val collector = createMessageCollector(reporter)
 
-        makeJvmIncrementally(kotlinHomeDir, listOf(project.srcDir), args, collector)
+        KotlinCompilerSession.compile(classpathFiles + plugins) {
+            makeJvmIncrementally(kotlinHomeDir, listOf(project.srcDir), args, collector)
+        }
+    }
+
+    /**
+     * Clears the incremental compilation caches in [cachesDir] if they were written by a
+     * compilation with a different configuration, as the caches don't track the language version,
+     * the JVM target or the compiler plugins.
+     */
+    private fun validateCaches(cachesDir: File, plugins: List<File>) {
+        val configurationFile = cachesDir.resolve(CONFIGURATION_FILE_NAME)
+        val stamp = buildString {
+            appendLine(configuration)
+            plugins.sortedBy { it.path }.forEach {
+                appendLine("${it.path}:${it.length()}:${it.lastModified()}")
+            }
+        }
+        if (configurationFile.exists() && configurationFile.readText() != stamp) {
+            cachesDir.deleteRecursively()
+        }
+        cachesDir.mkdirs()
+        configurationFile.writeText(stamp)
     }
 
     fun collectClasspathFiles(): List<File> {
@@ -110,6 +142,10 @@ class KotlinCompiler(val project: Project) : Task {
             }
         }
 
+    companion object {
+        private const val CONFIGURATION_FILE_NAME = "configuration.txt"
+    }
+
     data class CompilationDiagnostic(
         val message: String,
         val location: CompilerMessageSourceLocation?
@@ -0,0 +1,128 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.build.kotlin
+
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.util.Disposer
+import com.intellij.openapi.vfs.impl.ZipHandler
+import com.intellij.openapi.vfs.impl.jar.CoreJarFileSystem
+import org.jetbrains.kotlin.cli.common.environment.setIdeaIoUseFallback
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.cli.jvm.compiler.setupIdeaStandaloneExecution
+import org.jetbrains.kotlin.config.CompilerConfiguration
+import java.io.File
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * Keeps the Kotlin compiler warm between builds, like the Kotlin daemon does.
+ *
+ * The application environment of the compiler, which holds its services, extensions and the jars
+ * it opened, is disposed or cleaned up when the last compilation or analysis using it completes.
+ * The session holds on to it instead, so the next build reuses it. The opened jars are dropped when
+ * a jar on the classpath changes, and the session lets go of the environment when the heap used
+ * after a compilation exceeds [MAX_HEAP_USAGE] of the maximum heap, or when [release] is called,
+ * e.g. when the app is moved to the background.
+ */
+object KotlinCompilerSession {
+    private const val MAX_HEAP_USAGE = 0.75
+
+    private val lock = ReentrantLock()
+
+    // Keeps the application environment alive until it's disposed.
+    private var disposable: Disposable? = null
+
+    // Jar path -> stamp of the jar when it was last compiled against.
+    private val jarStamps = mutableMapOf<String, String>()
+
+    @Volatile
+    private var releaseRequested = false
+
+    /**
+     * Runs a compilation against [classpath] in the warm environment. Compilations are run one at a
+     * time.
+     */
+    fun <T> compile(classpath: List<File>, block: () -> T): T = lock.withLock {
+        if (disposable == null) {
+            setIdeaIoUseFallback()
+            setupIdeaStandaloneExecution()
+            disposable = Disposer.newDisposable("KotlinCompilerSession").also {
+                KotlinCoreEnvironment.getOrCreateApplicationEnvironmentForProduction(
+                    it,
+                    CompilerConfiguration()
+                )
+            }
+        }
+        if (updateJarStamps(classpath)) {
+            clearJarCaches()
+        }
+        try {
+            block()
+        } finally {
+            if (releaseRequested || isOverMemoryCap()) {
+                releaseEnvironment()
+            }
+        }
+    }
+
+    /**
+     * Lets go of the environment, or requests it to be let go after the running compilation
+     * without waiting for it.
+     */
+    fun release() {
+        if (lock.tryLock()) {
+            try {
+                releaseEnvironment()
+            } finally {
+                lock.unlock()
+            }
+        } else {
+            releaseRequested = true
+        }
+    }
+
+    /**
+     * Records the stamps of the jars in [classpath], and returns true if any of them changed.
+     */
+    private fun updateJarStamps(classpath: List<File>): Boolean {
+        var changed = false
+        classpath.filter { it.isFile && it.extension == "jar" }.forEach { jar ->
+            val stamp = "${jar.length()}:${jar.lastModified()}"
+            val previous = jarStamps.put(jar.absolutePath, stamp)
+            if (previous != null && previous != stamp) {
+                changed = true
+            }
+        }
+        return changed
+    }
+
+    private fun clearJarCaches() {
+        KotlinCoreEnvironment.applicationEnvironment?.let { environment ->
+            (environment.jarFileSystem as? CoreJarFileSystem)?.clearHandlersCache()
+            environment.fastJarFileSystem?.clearHandlersCache()
+        }
+        ZipHandler.clearFileAccessorCache()
+    }
+
+    private fun isOverMemoryCap(): Boolean {
+        val runtime = Runtime.getRuntime()
+        val used = runtime.totalMemory() - runtime.freeMemory()
+        return used > runtime.maxMemory() * MAX_HEAP_USAGE
+    }
+
+    /**
+     * Disposes the environment if no analysis is using it, and drops the jars it opened otherwise.
+     */
+    private fun releaseEnvironment() {
+        releaseRequested = false
+        jarStamps.clear()
+        disposable?.let { Disposer.dispose(it) }
+        disposable = null
+        clearJarCaches()
+    }
+}
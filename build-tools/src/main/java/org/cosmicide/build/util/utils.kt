@@ -24,10 +24,11 @@ fun File.getSourceFiles(extension: String): List<File> {
 }
 
 /**
- * Returns a list of files in the system classpath.
+ * Returns a list of files in the system classpath, waiting until they are extracted.
  *
  * @return A list of files in the system classpath.
  */
 fun getSystemClasspath(): List<File> {
-    return FileUtil.classpathDir.listFiles()?.toList() ?: emptyList()
+    FileUtil.awaitClasspath()
+    return FileUtil.classpathDir.listFiles { file -> file.extension == "jar" }?.toList() ?: emptyList()
 }
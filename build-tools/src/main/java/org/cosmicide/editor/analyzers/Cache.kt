@@ -8,32 +8,21 @@
 package org.cosmicide.editor.analyzers
 
 import java.io.File
-import javax.tools.JavaFileObject
-import javax.tools.SimpleJavaFileObject
+import java.util.concurrent.ConcurrentHashMap
 
+/**
+ * The sources of the last analyses by their paths, so that sources that didn't change on the disk
+ * aren't read again.
+ */
 object Cache {
 
-    val cacheMap = mutableMapOf<String, JavaFileObject>()
-    fun saveCache(file: File): JavaFileObject {
-        val obj = object : SimpleJavaFileObject(file.toURI(), JavaFileObject.Kind.SOURCE) {
-            private val lastModified = file.lastModified()
-            override fun getCharContent(ignoreEncodingErrors: Boolean): CharSequence {
-                return file.readText()
-            }
-
-            override fun getLastModified(): Long {
-                return lastModified
-            }
-        }
-        cacheMap[file.absolutePath] = obj
-        return obj
-    }
+    private val sourceMap = ConcurrentHashMap<String, SourceFileObject>()
 
-    fun saveCache(obj: JavaFileObject) {
-        cacheMap[obj.name] = obj
+    fun saveSource(source: SourceFileObject) {
+        sourceMap[source.file.absolutePath] = source
     }
 
-    fun getCache(key: File): JavaFileObject? {
-        return cacheMap[key.absolutePath]
+    fun getSource(file: File): SourceFileObject? {
+        return sourceMap[file.absolutePath]
     }
 }
@@ -0,0 +1,106 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.editor.analyzers
+
+import android.util.Log
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Schedules the analyses of an editor.
+ *
+ * Requests made within the quiet period of each other are coalesced into one analysis. A new
+ * request cancels the analysis scheduled or running for the previous one. Analyses run under a
+ * lock, so a new analysis only starts after the cancelled ones have stopped, and at most one
+ * analysis runs at a time.
+ *
+ * @property quietPeriodMillis Provides the time to wait for more requests before analyzing.
+ * @property analysis The analysis to run. It should check for cancellation regularly.
+ */
+class DiagnosticsScheduler(
+    private val quietPeriodMillis: () -> Long,
+    private val analysis: suspend () -> Unit
+) {
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val pendingRequests = AtomicInteger()
+    private val analysisLock = Mutex()
+    private var job: Job? = null
+
+    /**
+     * The number of requests that are not covered by a completed analysis yet.
+     */
+    val queueDepth: Int
+        get() = pendingRequests.get()
+
+    /**
+     * The time when the last analysis completed, or 0 if no analysis has completed.
+     */
+    @Volatile
+    var lastAnalysisTimeMillis = 0L
+        private set
+
+    /**
+     * How long the last completed analysis took.
+     */
+    @Volatile
+    var lastAnalysisDurationMillis = 0L
+        private set
+
+    /**
+     * Requests an analysis.
+     * @param delayMillis The time to wait for more requests before analyzing.
+     */
+    @Synchronized
+    fun schedule(delayMillis: Long = quietPeriodMillis()) {
+        pendingRequests.incrementAndGet()
+        job?.cancel()
+        job = scope.launch {
+            delay(delayMillis)
+            // A cancelled analysis may not have stopped yet, so this waits until it has.
+            analysisLock.withLock {
+                // Requests made after this point cancel this analysis, so they are not covered by
+                // it.
+                val coveredRequests = pendingRequests.get()
+                val startTime = System.currentTimeMillis()
+                try {
+                    analysis()
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    Log.e(TAG, "Analysis failed", e)
+                }
+                lastAnalysisTimeMillis = System.currentTimeMillis()
+                lastAnalysisDurationMillis = lastAnalysisTimeMillis - startTime
+                pendingRequests.addAndGet(-coveredRequests)
+            }
+        }
+    }
+
+    /**
+     * Cancels the scheduled analysis. No more analyses can be scheduled.
+     */
+    @Synchronized
+    fun release() {
+        scope.cancel()
+        job = null
+        pendingRequests.set(0)
+    }
+
+    companion object {
+        private const val TAG = "DiagnosticsScheduler"
+    }
+}
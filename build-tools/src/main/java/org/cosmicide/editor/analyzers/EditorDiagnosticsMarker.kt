@@ -11,15 +11,19 @@ import io.github.rosemoe.sora.event.ContentChangeEvent
 import io.github.rosemoe.sora.event.EventReceiver
 import io.github.rosemoe.sora.event.Unsubscribe
 import io.github.rosemoe.sora.lang.diagnostic.DiagnosticsContainer
-import io.github.rosemoe.sora.text.Content
 import io.github.rosemoe.sora.widget.CodeEditor
-import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.launch
+import kotlinx.coroutines.currentCoroutineContext
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.withContext
 import org.cosmicide.common.Prefs
 import org.cosmicide.project.Project
 import java.io.File
 
+/**
+ * Marks the diagnostics of a Java file in the editor. The file is analyzed again after it's edited
+ * and no more edits are made within [Prefs.diagnosticsDelay].
+ */
 class EditorDiagnosticsMarker(
     val editor: CodeEditor,
     val file: File,
@@ -32,23 +36,36 @@ class EditorDiagnosticsMarker(
         project,
         if (Prefs.javacFlags.isNotEmpty()) Prefs.javacFlags.split(" ").toList() else listOf()
     )
+    val scheduler = DiagnosticsScheduler({ Prefs.diagnosticsDelay }, ::analyze)
 
     init {
-        analyze(editor.text)
+        scheduler.schedule(delayMillis = 0)
     }
 
     override fun onReceive(event: ContentChangeEvent, unsubscribe: Unsubscribe) {
-        analyze(event.editor.text)
+        scheduler.schedule()
     }
 
-    private fun analyze(content: Content) = CoroutineScope(Dispatchers.IO).launch {
-        file.writeText(content.toString())
-        analyzer.reset()
+    /**
+     * Stops analyzing the file.
+     */
+    fun release() {
+        scheduler.release()
+    }
 
-        analyzer.analyze()
-        diagnostics.reset()
-        diagnostics.addDiagnostics(analyzer.getDiagnostics())
+    private suspend fun analyze() {
+        // The editor is only safe to use on the main thread.
+        val content = withContext(Dispatchers.Main) { editor.text.toString() }
+        analyzer.reset()
 
-        editor.diagnostics = diagnostics
+        analyzer.analyze(mapOf(file to content))
+        // Don't replace the diagnostics with outdated ones.
+        currentCoroutineContext().ensureActive()
+        val regions = analyzer.getDiagnostics()
+        withContext(Dispatchers.Main) {
+            diagnostics.reset()
+            diagnostics.addDiagnostics(regions)
+            editor.diagnostics = diagnostics
+        }
     }
 }
@@ -7,23 +7,25 @@
 
 package org.cosmicide.editor.analyzers
 
-import com.sun.tools.javac.api.JavacTool
-import com.sun.tools.javac.file.JavacFileManager
+import com.sun.source.util.TaskEvent
+import com.sun.source.util.TaskListener
 import io.github.rosemoe.sora.lang.diagnostic.DiagnosticDetail
 import io.github.rosemoe.sora.lang.diagnostic.DiagnosticRegion
 import io.github.rosemoe.sora.lang.diagnostic.Quickfix
 import io.github.rosemoe.sora.widget.CodeEditor
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.currentCoroutineContext
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.job
+import org.cosmicide.build.java.JavacService
 import org.cosmicide.common.Prefs
 import org.cosmicide.completion.java.parser.CompletionProvider
 import org.cosmicide.project.Project
-import org.cosmicide.rewrite.util.FileUtil
 import java.io.File
-import java.nio.charset.Charset
 import java.util.Locale
 import javax.tools.Diagnostic
 import javax.tools.DiagnosticCollector
 import javax.tools.JavaFileObject
-import javax.tools.StandardLocation
 
 class JavaAnalyzer(
     val editor: CodeEditor,
@@ -54,31 +56,27 @@ class JavaAnalyzer(
         )
     }
     private var diagnostics = DiagnosticCollector<JavaFileObject>()
-    private val tool: JavacTool by lazy { JavacTool.create() }
-    private val standardFileManager: JavacFileManager by lazy {
-        tool.getStandardFileManager(
-            diagnostics, Locale.getDefault(), Charset.defaultCharset()
-        )
-    }
+
+    // The files whose diagnostics are reported.
+    private var analyzedFiles = setOf<File>()
 
     init {
-        standardFileManager.setLocation(
-            StandardLocation.PLATFORM_CLASS_PATH, FileUtil.classpathDir.walk().toList()
-        )
         if (!project.binDir.exists()) {
             project.binDir.mkdirs()
         }
-        standardFileManager.setLocation(StandardLocation.CLASS_OUTPUT, listOf(project.binDir))
     }
 
-    fun analyze() {
+    /**
+     * Compiles the source files of the project and collects the diagnostics of the open files. The
+     * compilation stops at the next compilation event once the calling coroutine is cancelled.
+     * @param openFiles The content of the files open in the editor. They are compiled from this
+     * content instead of the disk.
+     */
+    suspend fun analyze(openFiles: Map<File, String> = emptyMap()) {
+        val job = currentCoroutineContext().job
         val version = Prefs.compilerJavaVersion
-        val toCompile = getSourceFiles()
-
-        with(standardFileManager) {
-            setLocation(StandardLocation.CLASS_PATH, getClasspath())
-            autoClose = false
-        }
+        val toCompile = getSourceFiles(openFiles)
+        analyzedFiles = openFiles.keys
 
         val copy = args.toMutableList()
         copy.apply {
@@ -89,18 +87,34 @@ class JavaAnalyzer(
             addAll(compilerOptions)
         }
 
-        tool.getTask(System.out.writer(), standardFileManager, diagnostics, copy, null, toCompile)
-            .apply {
-                parse()
-                analyze()
-                if (diagnostics.diagnostics.isEmpty()) {
-                    try {
-                        generate().forEach(Cache::saveCache)
-                    } catch (e: Exception) {
-                        e.printStackTrace()
+        try {
+            JavacService.withTask(
+                project.binDir,
+                getClasspath(),
+                copy,
+                toCompile,
+                diagnostics,
+                System.out.writer()
+            ) { task ->
+                task.addTaskListener(object : TaskListener {
+                    override fun started(e: TaskEvent) {
+                        job.ensureActive()
                     }
+                })
+                task.apply {
+                    parse()
+                    analyze()
                 }
             }
+            toCompile.forEach(Cache::saveSource)
+        } catch (e: RuntimeException) {
+            // javac wraps the exceptions thrown by task listeners.
+            val cause = e.cause
+            if (cause is CancellationException) {
+                throw cause
+            }
+            throw e
+        }
     }
 
 
@@ -113,14 +127,16 @@ class JavaAnalyzer(
         val problems = mutableListOf<DiagnosticRegion>()
         try {
             for (it in diagnostic) {
-                if (it.source == null) continue
+                // The other sources are only compiled for the symbols they declare.
+                val source = it.source as? SourceFileObject ?: continue
+                if (source.file !in analyzedFiles) continue
                 val severity =
                     if (it.kind == Diagnostic.Kind.ERROR) DiagnosticRegion.SEVERITY_ERROR else DiagnosticRegion.SEVERITY_WARNING
 
                 val message = it.getMessage(Locale.getDefault())
                 val quickFixes = mutableListOf<Quickfix>()
                 if (it.code == "compiler.err.cant.resolve.location") {
-                    val symbol = it.source.getCharContent(true)
+                    val symbol = source.getCharContent(true)
                         .substring(it.startPosition.toInt(), it.endPosition.toInt())
                     CompletionProvider.symbolCacher.filterClassNames(symbol).forEach { name ->
                         quickFixes.add(Quickfix("Import ${name.value}", 0L) {
@@ -161,25 +177,28 @@ class JavaAnalyzer(
                 classpath.add(it)
             }
         }
-
-
-        project.binDir.resolve("classes").walk().filter { it.extension == "class" }.forEach {
-            if (Cache.getCache(it) != null && Cache.getCache(it)!!.lastModified == it.lastModified()) {
-                classpath.add(it)
-            }
-        }
-
         return classpath
     }
 
-    private fun getSourceFiles(): List<JavaFileObject> {
-        val sourceFiles = mutableListOf<JavaFileObject>()
+    /**
+     * Gets all the source files of the project, so that the symbols they declare are found even if
+     * their classes are not compiled yet or are outdated. Only the files that are changed on the
+     * disk since they were cached are read again.
+     */
+    private fun getSourceFiles(openFiles: Map<File, String>): List<SourceFileObject> {
+        val sourceFiles = mutableListOf<SourceFileObject>()
+        val now = System.currentTimeMillis()
+        openFiles.forEach { (file, content) ->
+            sourceFiles.add(SourceFileObject(file, content, now))
+        }
 
         project.srcDir.walk().forEach {
-            if (it.extension == "java") {
-                val cache = Cache.getCache(it)
-                if (cache == null || cache.lastModified < it.lastModified()) {
-                    sourceFiles.add(Cache.saveCache(it))
+            if (it.extension == "java" && it !in openFiles) {
+                val cache = Cache.getSource(it)
+                if (cache != null && cache.lastModified == it.lastModified()) {
+                    sourceFiles.add(cache)
+                } else {
+                    sourceFiles.add(SourceFileObject.read(it))
                 }
             }
         }
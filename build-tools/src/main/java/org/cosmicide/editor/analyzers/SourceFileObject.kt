@@ -0,0 +1,42 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.editor.analyzers
+
+import java.io.File
+import javax.tools.JavaFileObject
+import javax.tools.SimpleJavaFileObject
+
+/**
+ * A Java source file with its content held in memory.
+ * @property file The file the content belongs to. Diagnostics are reported against it.
+ * @property content The content of the file.
+ */
+class SourceFileObject(
+    val file: File,
+    val content: String,
+    private val lastModified: Long
+) : SimpleJavaFileObject(file.toURI(), JavaFileObject.Kind.SOURCE) {
+
+    override fun getCharContent(ignoreEncodingErrors: Boolean): CharSequence {
+        return content
+    }
+
+    override fun getLastModified(): Long {
+        return lastModified
+    }
+
+    companion object {
+        /**
+         * Reads the content of [file] from the disk.
+         */
+        fun read(file: File): SourceFileObject {
+            val lastModified = file.lastModified()
+            return SourceFileObject(file, file.readText(), lastModified)
+        }
+    }
+}
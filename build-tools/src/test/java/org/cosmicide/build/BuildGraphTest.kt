@@ -0,0 +1,218 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.build
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertThrows
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class BuildGraphTest {
+
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private val runs: MutableList<String> = Collections.synchronizedList(mutableListOf())
+    private val reports: MutableList<BuildReport> = Collections.synchronizedList(mutableListOf())
+
+    private lateinit var stateFile: File
+    private lateinit var sources: File
+    private lateinit var libraries: File
+    private lateinit var libraryTask: LibraryTask
+    private lateinit var compileTask: CompileTask
+    private lateinit var packageTask: PackageTask
+
+    @Before
+    fun setUp() {
+        stateFile = File(temporaryFolder.root, "state/build.properties")
+        sources = temporaryFolder.newFolder("src").apply { resolve("A.java").writeText("class A {}") }
+        libraries = temporaryFolder.newFolder("libs").apply { resolve("a.jar").writeText("jar") }
+        libraryTask = LibraryTask(libraries)
+        compileTask = CompileTask(sources)
+        packageTask = PackageTask(temporaryFolder.root.resolve("app.apk"))
+    }
+
+    @Test
+    fun `runs tasks after their dependencies`() {
+        val profile = execute()
+
+        assertEquals(setOf("LibraryTask", "CompileTask", "PackageTask"), runs.toSet())
+        assertTrue(runs.indexOf("CompileTask") < runs.indexOf("PackageTask"))
+        assertTrue(runs.indexOf("LibraryTask") < runs.indexOf("PackageTask"))
+        assertEquals(
+            listOf(BuildProfile.Status.SUCCEEDED, BuildProfile.Status.SUCCEEDED, BuildProfile.Status.SUCCEEDED),
+            profile.entries.map { it.status }
+        )
+    }
+
+    @Test
+    fun `runs independent tasks at the same time`() {
+        // Each task waits for the other one to start.
+        val started = CountDownLatch(2)
+        val waitForOther: () -> Unit = {
+            started.countDown()
+            check(started.await(10, TimeUnit.SECONDS)) { "The other task did not start" }
+        }
+        libraryTask.action = waitForOther
+        compileTask.action = waitForOther
+
+        val reporter = BuildReporter { reports += it }
+        execute(reporter)
+
+        assertFalse(reporter.failure)
+        assertEquals(3, runs.size)
+    }
+
+    @Test
+    fun `skips tasks whose inputs have not changed`() {
+        execute()
+        runs.clear()
+
+        val profile = execute()
+
+        assertEquals(listOf("PackageTask"), runs)
+        assertEquals(
+            listOf(BuildProfile.Status.SKIPPED, BuildProfile.Status.SKIPPED, BuildProfile.Status.SUCCEEDED),
+            profile.entries.map { it.status }
+        )
+    }
+
+    @Test
+    fun `runs changed tasks and the tasks depending on them`() {
+        execute()
+        runs.clear()
+
+        sources.resolve("B.java").writeText("class B {}")
+        execute()
+
+        assertEquals(listOf("CompileTask", "PackageTask"), runs)
+    }
+
+    @Test
+    fun `runs tasks whose configuration changed`() {
+        execute()
+        runs.clear()
+
+        libraryTask.configuration = "minSdk=26"
+        execute()
+
+        assertEquals(setOf("LibraryTask", "PackageTask"), runs.toSet())
+    }
+
+    @Test
+    fun `runs tasks whose outputs are missing`() {
+        execute()
+        runs.clear()
+
+        compileTask.output.delete()
+        execute()
+
+        assertEquals(listOf("CompileTask", "PackageTask"), runs)
+    }
+
+    @Test
+    fun `stops after a task fails and runs it again next time`() {
+        compileTask.fails = true
+
+        val reporter = BuildReporter { reports += it }
+        val profile = execute(reporter)
+
+        assertTrue(reporter.failure)
+        assertEquals(BuildProfile.Status.FAILED, profile.entries[1].status)
+        assertEquals(BuildProfile.Status.NOT_RUN, profile.entries[2].status)
+        assertFalse("PackageTask" in runs)
+
+        compileTask.fails = false
+        runs.clear()
+        execute()
+
+        assertEquals(listOf("CompileTask", "PackageTask"), runs)
+    }
+
+    @Test
+    fun `reports the profile and saves the state when a task throws`() {
+        compileTask.action = { throw IllegalStateException("compiler crashed") }
+
+        val reporter = BuildReporter { reports += it }
+        val exception = assertThrows(IllegalStateException::class.java) { execute(reporter) }
+
+        assertEquals("compiler crashed", exception.message)
+        assertTrue(reports.any { it.kind == BuildReportKind.INFO && it.message.startsWith("Build profile:") })
+        assertFalse("PackageTask" in runs)
+
+        compileTask.action = {}
+        runs.clear()
+        execute()
+
+        // The library task succeeded before the compile task threw, so it's up to date.
+        assertEquals(listOf("CompileTask", "PackageTask"), runs)
+    }
+
+    @Test
+    fun `reports a warning when the state cannot be saved`() {
+        stateFile.parentFile!!.writeText("not a directory")
+
+        val reporter = BuildReporter { reports += it }
+        execute(reporter)
+
+        assertFalse(reporter.failure)
+        assertTrue(reports.any { it.kind == BuildReportKind.WARNING && stateFile.path in it.message })
+        assertTrue(reports.last().message.startsWith("Build profile:"))
+    }
+
+    private fun execute(reporter: BuildReporter = BuildReporter { reports += it }): BuildProfile {
+        val graph = BuildGraph(stateFile)
+        graph.add(libraryTask)
+        graph.add(compileTask)
+        graph.add(packageTask, libraryTask, compileTask)
+        return graph.execute(reporter)
+    }
+
+    /**
+     * A task writing its output, named after its class like the tasks of a build.
+     */
+    abstract inner class RecordingTask(private val input: File?, val output: File) : Task {
+        var action: () -> Unit = {}
+        var fails = false
+
+        override val inputs
+            get() = listOfNotNull(input)
+
+        override val outputs
+            get() = listOf(output)
+
+        override var configuration = ""
+
+        override fun execute(reporter: BuildReporter) {
+            runs += javaClass.simpleName
+            if (fails) {
+                reporter.reportError("${javaClass.simpleName} failed")
+                return
+            }
+            action()
+            output.writeText(javaClass.simpleName)
+        }
+    }
+
+    inner class LibraryTask(input: File) :
+        RecordingTask(input, temporaryFolder.root.resolve("libs.dex"))
+
+    inner class CompileTask(input: File) :
+        RecordingTask(input, temporaryFolder.root.resolve("classes"))
+
+    // Packaging has no inputs of its own, so it runs on every build.
+    inner class PackageTask(output: File) : RecordingTask(null, output)
+}
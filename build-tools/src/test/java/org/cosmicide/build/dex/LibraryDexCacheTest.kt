@@ -0,0 +1,69 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.build.dex
+
+import org.cosmicide.rewrite.util.FileUtil
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class LibraryDexCacheTest {
+
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private var lastModified = System.currentTimeMillis() - 100_000
+
+    @Before
+    fun setUp() {
+        FileUtil.init(temporaryFolder.newFolder("data"))
+    }
+
+    @Test
+    fun `prune deletes the least recently used entries over the size`() {
+        writeEntry("old", 400)
+        writeEntry("kept", 400)
+        writeEntry("middle", 400)
+        writeEntry("new", 400)
+
+        LibraryDexCache.prune(setOf("kept"), maxSize = 1000)
+
+        assertEquals(listOf("kept", "new"), entries())
+    }
+
+    @Test
+    fun `prune keeps everything under the size`() {
+        writeEntry("a", 400)
+        writeEntry("b", 400)
+
+        LibraryDexCache.prune(emptySet(), maxSize = 1000)
+
+        assertEquals(listOf("a", "b"), entries())
+    }
+
+    @Test
+    fun `prune ignores compilations in progress`() {
+        writeEntry("a", 400)
+        writeEntry("b-123", 400)
+
+        LibraryDexCache.prune(emptySet(), maxSize = 0)
+
+        assertEquals(listOf("b-123"), entries())
+    }
+
+    private fun writeEntry(hash: String, size: Int) {
+        val dir = FileUtil.dexCacheDir.resolve(hash).apply { mkdirs() }
+        dir.resolve("classes.dex").writeBytes(ByteArray(size))
+        lastModified += 2000
+        dir.setLastModified(lastModified)
+    }
+
+    private fun entries() = FileUtil.dexCacheDir.list().orEmpty().sorted()
+}
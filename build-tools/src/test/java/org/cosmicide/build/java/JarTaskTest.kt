@@ -0,0 +1,127 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.build.java
+
+import org.cosmicide.build.BuildReporter
+import org.cosmicide.project.Language
+import org.cosmicide.project.Project
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.jar.JarFile
+import java.util.zip.CRC32
+
+class JarTaskTest {
+
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private lateinit var project: Project
+    private lateinit var classes: File
+    private lateinit var jar: File
+
+    // Files are changed faster than the resolution of modification times.
+    private var lastModified = System.currentTimeMillis()
+
+    @Before
+    fun setUp() {
+        project = Project(temporaryFolder.newFolder("project"), Language.Java)
+        classes = project.binDir.resolve("classes")
+        jar = project.binDir.resolve("classes.jar")
+        for (i in 0 until 50) {
+            writeClass("a/b/Class$i.class", "class Class$i { int field$i; }\n".repeat(i + 1))
+        }
+        writeClass("image.png", "stored as it is")
+    }
+
+    @Test
+    fun `creates a JAR with all the classes`() {
+        assertTrue("(0 unchanged)" in execute())
+
+        assertJarContents()
+    }
+
+    @Test
+    fun `copies the entries of unchanged classes`() {
+        execute()
+
+        writeClass("a/b/Class3.class", "class Class3 { long changed; }")
+        writeClass("a/Added.class", "class Added {}")
+        classes.resolve("a/b/Class7.class").delete()
+
+        assertTrue("(49 unchanged)" in execute())
+        assertJarContents()
+
+        // The copied entries are the same as the ones compressed again.
+        val copied = jar.readBytes()
+        project.cacheDir.resolve("classes.jar.state").delete()
+        assertTrue("(0 unchanged)" in execute())
+        assertArrayEquals(jar.readBytes(), copied)
+    }
+
+    @Test
+    fun `creates the JAR again when it was changed by something else`() {
+        execute()
+
+        jar.writeText("not a jar")
+        writeClass("a/b/Class3.class", "class Class3 { long changed; }")
+
+        assertTrue("(0 unchanged)" in execute())
+        assertJarContents()
+    }
+
+    @Test
+    fun `does not leave a temporary file`() {
+        execute()
+        execute()
+
+        assertFalse(File(jar.path + ".tmp").exists())
+    }
+
+    private fun execute(): String {
+        val messages = mutableListOf<String>()
+        val reporter = BuildReporter { messages += it.message }
+        JarTask(project).execute(reporter)
+        assertFalse(reporter.failure)
+        return messages.joinToString("\n")
+    }
+
+    private fun writeClass(name: String, content: String) {
+        val file = classes.resolve(name)
+        file.parentFile.mkdirs()
+        file.writeText(content)
+        lastModified += 2000
+        file.setLastModified(lastModified)
+    }
+
+    /**
+     * Checks that the JAR has an entry with the right CRC and contents for each class file, in
+     * order.
+     */
+    private fun assertJarContents() {
+        val files = classes.walkTopDown().filter { it.isFile }
+            .associateBy { it.relativeTo(classes).path.replace("\\", "/") }
+            .toSortedMap()
+        JarFile(jar).use { jarFile ->
+            val entries = jarFile.entries().toList()
+            assertEquals(files.keys.toList(), entries.map { it.name })
+            entries.forEach { entry ->
+                val expected = files.getValue(entry.name).readBytes()
+                val actual = jarFile.getInputStream(entry).use { it.readBytes() }
+                assertArrayEquals(expected, actual)
+                assertEquals(CRC32().apply { update(expected) }.value, entry.crc)
+            }
+        }
+    }
+}
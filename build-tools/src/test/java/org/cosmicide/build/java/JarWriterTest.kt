@@ -0,0 +1,136 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.build.java
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.RandomAccessFile
+import java.util.jar.JarFile
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+import java.util.zip.ZipInputStream
+import kotlin.random.Random
+
+class JarWriterTest {
+
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    @Test
+    fun `writes entries that JarFile reads`() {
+        val files = writeFiles()
+        val jar = temporaryFolder.root.resolve("out.jar")
+
+        JarWriter(jar).use { writer ->
+            files.forEach { (name, file) -> writer.write(name, JarWriter.compress(file)) }
+        }
+
+        assertJarContents(jar, files)
+        JarFile(jar).use {
+            assertEquals(ZipEntry.DEFLATED, it.getEntry("a/Text.class").method)
+            assertEquals(ZipEntry.STORED, it.getEntry("image.png").method)
+            assertEquals(ZipEntry.STORED, it.getEntry("random.bin").method)
+        }
+    }
+
+    @Test
+    fun `copies entries from another JAR without changing them`() {
+        val files = writeFiles()
+        val first = temporaryFolder.root.resolve("first.jar")
+        val second = temporaryFolder.root.resolve("second.jar")
+        val added = temporaryFolder.root.resolve("Added.class").apply { writeText("added ".repeat(100)) }
+        val firstEntries = JarWriter(first).use { writer ->
+            files.forEach { (name, file) -> writer.write(name, JarWriter.compress(file)) }
+            writer.getEntries()
+        }
+
+        val secondEntries = RandomAccessFile(first, "r").use { input ->
+            JarWriter(second).use { writer ->
+                writer.write("Added.class", JarWriter.compress(added))
+                firstEntries.forEach { writer.copy(it, input) }
+                writer.getEntries()
+            }
+        }
+
+        assertJarContents(second, mapOf("Added.class" to added) + files)
+        // The entries are at other offsets, but are otherwise the same.
+        assertEquals(firstEntries.map { it.copy(dataOffset = 0) }, secondEntries.drop(1).map { it.copy(dataOffset = 0) })
+    }
+
+    @Test
+    fun `writes the same file for the same entries`() {
+        val files = writeFiles()
+        val first = temporaryFolder.root.resolve("first.jar")
+        val second = temporaryFolder.root.resolve("second.jar")
+
+        listOf(first, second).forEach { jar ->
+            JarWriter(jar).use { writer ->
+                files.forEach { (name, file) -> writer.write(name, JarWriter.compress(file)) }
+            }
+            // Later files have later modification times.
+            files.values.forEach { it.setLastModified(it.lastModified() + 10_000) }
+        }
+
+        assertArrayEquals(first.readBytes(), second.readBytes())
+    }
+
+    private fun writeFiles(): Map<String, File> {
+        val directory = temporaryFolder.newFolder("files")
+        fun write(name: String, bytes: ByteArray): Pair<String, File> {
+            val file = directory.resolve(name)
+            file.parentFile.mkdirs()
+            file.writeBytes(bytes)
+            return name to file
+        }
+        return linkedMapOf(
+            write("a/Text.class", "class Text { int value; }\n".repeat(200).toByteArray()),
+            write("a/Empty.class", ByteArray(0)),
+            write("image.png", "not really a png ".repeat(50).toByteArray()),
+            write("random.bin", Random(0).nextBytes(10_000)),
+            write("data/ünïcode.txt", "ünïcode".toByteArray())
+        )
+    }
+
+    /**
+     * Checks that [jar] has the entries for [files] in order, with the right sizes, CRCs and
+     * contents, reading it both through its central directory and through its local headers.
+     */
+    private fun assertJarContents(jar: File, files: Map<String, File>) {
+        JarFile(jar).use { jarFile ->
+            val entries = jarFile.entries().toList()
+            assertEquals(files.keys.toList(), entries.map { it.name })
+            entries.forEach { entry ->
+                val expected = files.getValue(entry.name).readBytes()
+                val actual = jarFile.getInputStream(entry).use { it.readBytes() }
+                assertArrayEquals(expected, actual)
+                assertEquals(expected.size.toLong(), entry.size)
+                assertEquals(crc(expected), entry.crc)
+                if (entry.method == ZipEntry.STORED) {
+                    assertEquals(entry.size, entry.compressedSize)
+                }
+            }
+        }
+
+        ZipInputStream(jar.inputStream().buffered()).use { input ->
+            files.forEach { (name, file) ->
+                val entry = input.nextEntry!!
+                assertEquals(name, entry.name)
+                // Reading the whole entry checks its CRC.
+                assertArrayEquals(file.readBytes(), input.readBytes())
+            }
+            assertNull(input.nextEntry)
+        }
+    }
+
+    private fun crc(bytes: ByteArray) = CRC32().apply { update(bytes) }.value
+}
@@ -0,0 +1,203 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.build.java
+
+import org.cosmicide.build.BuildReportKind
+import org.cosmicide.build.BuildReporter
+import org.cosmicide.project.Language
+import org.cosmicide.project.Project
+import org.cosmicide.rewrite.util.FileUtil
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.net.URI
+import java.net.URLClassLoader
+import java.nio.file.FileSystems
+import java.nio.file.Files
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+import kotlin.io.path.isRegularFile
+import kotlin.io.path.readBytes
+
+class JavaCompileTaskTest {
+
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private lateinit var project: Project
+    private lateinit var task: JavaCompileTask
+    private var javaVersion = 8
+
+    // Sources are edited faster than the resolution of modification times.
+    private var lastModified = System.currentTimeMillis()
+
+    @Before
+    fun setUp() {
+        FileUtil.init(temporaryFolder.newFolder("data"))
+        writePlatformClasspath(FileUtil.classpathDir.resolve("platform.jar"))
+        project = Project(temporaryFolder.newFolder("project"), Language.Java)
+        task = JavaCompileTask(project, { javaVersion }, { "" })
+
+        writeSource("A", "public class A { public static int f() { return 1; } public static final int K = 5; }")
+        writeSource("B", "public class B { public static Object run() { return A.f(); } }")
+        writeSource("C", "public class C { public static Object run() { return A.K; } }")
+        writeSource("D", "public class D { public static Object run() { return 0; } class Inner {} }")
+    }
+
+    @Test
+    fun `compiles all sources and then nothing until they change`() {
+        assertEquals(listOf("Compiling 4 java files..."), execute())
+        assertEquals(1, run("B"))
+
+        assertEquals(listOf("Java classes are up to date."), execute())
+    }
+
+    @Test
+    fun `compiles only the changed source when its API is the same`() {
+        execute()
+
+        writeSource("A", "public class A { public static int f() { return 2; } public static final int K = 5; }")
+
+        assertEquals(listOf("Compiling 1 java file..."), execute())
+        assertEquals(2, run("B"))
+    }
+
+    @Test
+    fun `compiles the sources using a changed constant`() {
+        execute()
+
+        writeSource("A", "public class A { public static int f() { return 1; } public static final int K = 6; }")
+
+        assertEquals(listOf("Compiling 1 java file...", "Compiling 2 java files..."), execute())
+        assertEquals(6, run("C"))
+    }
+
+    @Test
+    fun `deletes the classes of deleted sources`() {
+        execute()
+        assertTrue(classFile("D\$Inner").exists())
+
+        project.srcDir.resolve("D.java").delete()
+
+        assertEquals(listOf("Java classes are up to date."), execute())
+        assertFalse(classFile("D").exists())
+        assertFalse(classFile("D\$Inner").exists())
+    }
+
+    @Test
+    fun `deletes the classes a changed source no longer declares`() {
+        execute()
+
+        writeSource("D", "public class D { public static Object run() { return 0; } }")
+        execute()
+
+        assertTrue(classFile("D").exists())
+        assertFalse(classFile("D\$Inner").exists())
+    }
+
+    @Test
+    fun `keeps compiling broken dependents until they are fixed`() {
+        execute()
+
+        writeSource("A", "public class A { public static int g() { return 3; } public static final int K = 5; }")
+        val reporter = BuildReporter()
+        task.execute(reporter)
+        assertTrue(reporter.failure)
+
+        val retry = BuildReporter()
+        task.execute(retry)
+        assertTrue(retry.failure)
+
+        // The other dependent of the changed class was not compiled either.
+        writeSource("B", "public class B { public static Object run() { return A.g(); } }")
+        assertEquals(listOf("Compiling 2 java files..."), execute())
+        assertEquals(3, run("B"))
+        assertEquals(5, run("C"))
+    }
+
+    @Test
+    fun `compiles the sources whose classes are missing`() {
+        execute()
+
+        classFile("C").delete()
+
+        assertEquals(listOf("Compiling 1 java file..."), execute())
+        assertEquals(5, run("C"))
+    }
+
+    @Test
+    fun `compiles all sources when the options change`() {
+        execute()
+
+        javaVersion = 11
+
+        assertEquals(
+            listOf(
+                "Compiler options or libraries changed. Compiling all java files.",
+                "Compiling 4 java files..."
+            ),
+            execute()
+        )
+    }
+
+    /**
+     * Compiles the project and returns the info messages about compiling.
+     */
+    private fun execute(): List<String> {
+        val messages = mutableListOf<String>()
+        val reporter = BuildReporter { report ->
+            if (report.kind == BuildReportKind.INFO && report.message.isNotBlank()) {
+                messages += report.message
+            }
+        }
+        task.execute(reporter)
+        assertFalse(reporter.failure)
+        return messages
+    }
+
+    private fun writeSource(name: String, content: String) {
+        val file = project.srcDir.resolve("$name.java")
+        file.parentFile.mkdirs()
+        file.writeText(content)
+        lastModified += 2000
+        file.setLastModified(lastModified)
+    }
+
+    private fun classFile(name: String): File = project.binDir.resolve("classes/$name.class")
+
+    private fun run(className: String): Any? {
+        val classes = project.binDir.resolve("classes").toURI().toURL()
+        return URLClassLoader(arrayOf(classes), null).use { loader ->
+            loader.loadClass(className).getMethod("run").invoke(null)
+        }
+    }
+
+    /**
+     * Writes the java.lang and java.io classes of the running JDK to [jar], as the platform
+     * classpath of the compiler.
+     */
+    private fun writePlatformClasspath(jar: File) {
+        val modules = FileSystems.getFileSystem(URI.create("jrt:/")).getPath("modules", "java.base")
+        JarOutputStream(jar.outputStream().buffered()).use { out ->
+            listOf("java/lang", "java/io").forEach { packageName ->
+                Files.walk(modules.resolve(packageName)).use { paths ->
+                    paths.filter { it.isRegularFile() }.forEach { path ->
+                        out.putNextEntry(JarEntry(modules.relativize(path).toString()))
+                        out.write(path.readBytes())
+                        out.closeEntry()
+                    }
+                }
+            }
+        }
+    }
+}
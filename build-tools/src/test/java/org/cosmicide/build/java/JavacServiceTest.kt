@@ -0,0 +1,140 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cosmicide.build.java
+
+import com.sun.tools.javac.api.JavacTaskImpl
+import com.sun.tools.javac.util.Context
+import org.cosmicide.rewrite.util.FileUtil
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.net.URI
+import java.nio.file.FileSystems
+import java.nio.file.Files
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+import javax.tools.Diagnostic
+import javax.tools.DiagnosticCollector
+import javax.tools.JavaFileObject
+import javax.tools.SimpleJavaFileObject
+import javax.tools.ToolProvider
+import kotlin.io.path.isRegularFile
+import kotlin.io.path.readBytes
+
+class JavacServiceTest {
+
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private lateinit var classes: File
+    private val contexts = mutableListOf<Context>()
+
+    @Before
+    fun setUp() {
+        FileUtil.init(temporaryFolder.newFolder("data"))
+        writePlatformClasspath(FileUtil.classpathDir.resolve("platform.jar"))
+        classes = temporaryFolder.newFolder("classes")
+    }
+
+    @Test
+    fun `sees the new signature of a class changed between tasks`() {
+        assertEquals(listOf<String>(), compile("lib/Lib", "package lib; public class Lib { public static int f() { return 1; } }"))
+        assertEquals(listOf<String>(), compile("Use", "class Use { int x = lib.Lib.f(); }"))
+
+        assertEquals(listOf<String>(), compile("lib/Lib", "package lib; public class Lib { public static int g() { return 2; } }"))
+
+        assertEquals(listOf<String>(), compile("Use", "class Use { int x = lib.Lib.g(); }"))
+        assertEquals(
+            listOf("compiler.err.cant.resolve.location.args"),
+            compile("Use", "class Use { int x = lib.Lib.f(); }")
+        )
+        assertContextReused()
+    }
+
+    @Test
+    fun `sees a class added to a package that was empty`() {
+        assertEquals(listOf("compiler.err.doesnt.exist"), compile("Use", "class Use { empty.Thing thing; }"))
+
+        // The pooled context never sees the class before it is read from the classes directory.
+        compileWithoutService("empty/Thing", "package empty; public class Thing {}")
+
+        assertEquals(listOf<String>(), compile("Use", "class Use { empty.Thing thing; }"))
+        assertContextReused()
+    }
+
+    @Test
+    fun `sees a class added to the unnamed package`() {
+        assertEquals(listOf("compiler.err.cant.resolve.location"), compile("Use", "class Use { Other other; }"))
+
+        assertEquals(listOf<String>(), compile("Other", "class Other {}"))
+
+        assertEquals(listOf<String>(), compile("Use", "class Use { Other other; }"))
+        assertContextReused()
+    }
+
+    /**
+     * Compiles a source to the classes directory, with the classes directory on the classpath, and
+     * returns the codes of the errors.
+     */
+    private fun compile(path: String, content: String): List<String> {
+        val source = object : SimpleJavaFileObject(URI.create("string:///$path.java"), JavaFileObject.Kind.SOURCE) {
+            override fun getCharContent(ignoreEncodingErrors: Boolean): CharSequence = content
+        }
+        val diagnostics = DiagnosticCollector<JavaFileObject>()
+        JavacService.withTask(
+            classes,
+            listOf(classes),
+            listOf("-proc:none", "-source", "8", "-target", "8", "-nowarn"),
+            listOf(source),
+            diagnostics
+        ) { task ->
+            contexts += (task as JavacTaskImpl).context
+            task.call()
+        }
+        return diagnostics.diagnostics.filter { it.kind == Diagnostic.Kind.ERROR }.map { it.code }
+    }
+
+    /**
+     * Compiles a source to the classes directory with a compiler of its own.
+     */
+    private fun compileWithoutService(path: String, content: String) {
+        val file = temporaryFolder.root.resolve("sources/$path.java")
+        file.parentFile.mkdirs()
+        file.writeText(content)
+        val compiler = ToolProvider.getSystemJavaCompiler()
+        assertEquals(0, compiler.run(null, null, null, "-proc:none", "-d", classes.path, file.path))
+    }
+
+    /**
+     * Checks that all tasks ran on the same pooled context, so the tests cover its reuse.
+     */
+    private fun assertContextReused() {
+        contexts.forEach { assertSame(contexts.first(), it) }
+    }
+
+    /**
+     * Writes the java.lang classes of the running JDK to [jar], as the platform classpath of the
+     * compiler.
+     */
+    private fun writePlatformClasspath(jar: File) {
+        val modules = FileSystems.getFileSystem(URI.create("jrt:/")).getPath("modules", "java.base")
+        JarOutputStream(jar.outputStream().buffered()).use { out ->
+            Files.walk(modules.resolve("java/lang")).use { paths ->
+                paths.filter { it.isRegularFile() }.forEach { path ->
+                    out.putNextEntry(JarEntry(modules.relativize(path).toString()))
+                    out.write(path.readBytes())
+                    out.closeEntry()
+                }
+            }
+        }
+    }
+}
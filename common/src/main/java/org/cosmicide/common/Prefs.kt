@@ -110,6 +110,9 @@ object Prefs {
     val kotlinRealtimeErrors: Boolean
         get() = prefs.getBoolean("kotlin_realtime_errors", false)
 
+    val diagnosticsDelay: Long
+        get() = prefs.getInt("diagnostics_delay", 500).toLong()
+
     val experimentsEnabled: Boolean
         get() = prefs.getBoolean("experiments_enabled", false)
 
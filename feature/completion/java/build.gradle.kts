@@ -39,4 +39,6 @@ dependencies {
     api("com.google.guava:guava:33.1.0-android")
 
     implementation(projects.util)
+
+    testImplementation("junit:junit:4.13.2")
 }
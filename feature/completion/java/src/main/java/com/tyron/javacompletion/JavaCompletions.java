@@ -37,6 +37,7 @@ import com.tyron.javacompletion.project.Project;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -69,8 +70,10 @@ public class JavaCompletions {
                           logPath: %s
                           logLevel: %s
                           ignorePaths: %s
-                          typeIndexFiles: %s""",
-                options.getLogPath(), options.getLogLevel(), options.getIgnorePaths(), options.getTypeIndexFiles());
+                          typeIndexFiles: %s
+                          cacheDir: %s""",
+                options.getLogPath(), options.getLogLevel(), options.getIgnorePaths(), options.getTypeIndexFiles(),
+                options.getCacheDir());
         if (options.getLogPath() != null) {
             JLogger.setLogFile(options.getLogPath());
         }
@@ -80,7 +83,10 @@ public class JavaCompletions {
             ignorePaths = List.of();
         }
         mFileManager = new FileManagerImpl(projectRootUri, ignorePaths, mExecutor);
-        mProject = new Project(mFileManager, projectRootUri, IndexOptions.FULL_INDEX_BUILDER.build());
+        Path cacheDir = options.getCacheDir() == null ? null : Paths.get(options.getCacheDir());
+        mProject =
+                new Project(
+                        mFileManager, projectRootUri, IndexOptions.FULL_INDEX_BUILDER.build(), cacheDir);
         mExecutor.submit(() -> {
             synchronized (JavaCompletions.this) {
                 mProject.initialize();
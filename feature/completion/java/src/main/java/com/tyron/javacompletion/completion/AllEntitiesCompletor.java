@@ -25,13 +25,14 @@ package com.tyron.javacompletion.completion;
 
 import com.google.common.collect.ImmutableList;
 import com.tyron.javacompletion.model.ClassEntity;
-import com.tyron.javacompletion.model.Entity;
-import com.tyron.javacompletion.model.FileScope;
 import com.tyron.javacompletion.model.Module;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Completor for all entities accessible from a module
@@ -39,9 +40,10 @@ import java.util.LinkedList;
 class AllEntitiesCompletor {
     ImmutableList<ClassEntity> getAllClasses(Module module, String prefix) {
         ImmutableList.Builder<ClassEntity> builder = new ImmutableList.Builder<>();
-        HashSet<FileScope> visitedFiles = new HashSet<>();
+        // The same file may be in more than one module, so classes are deduplicated.
+        Set<ClassEntity> visitedClasses = Collections.newSetFromMap(new IdentityHashMap<>());
         HashSet<Module> visitedModules = new HashSet<>();
-        addClassesInModule(builder, module, prefix, visitedModules, visitedFiles);
+        addClassesInModule(builder, module, prefix, visitedModules, visitedClasses);
         return builder.build();
     }
 
@@ -50,39 +52,23 @@ class AllEntitiesCompletor {
             Module module,
             String prefix,
             HashSet<Module> visitedModules,
-            HashSet<FileScope> visitedFiles) {
+            Set<ClassEntity> visitedClasses) {
         visitedModules.add(module);
 
-        for (FileScope fileScope : module.getAllFiles()) {
-            if (visitedFiles.contains(fileScope)) {
-                continue;
-            }
-            visitedFiles.add(fileScope);
-
-            for (Entity entity : fileScope.getMemberEntities().values()) {
-                if (entity instanceof ClassEntity)
-                    addAllClasses(builder, (ClassEntity) entity, prefix);
+        List<ClassEntity> classes = new ArrayList<>();
+        module
+                .getClassNameIndex()
+                .findClasses(prefix, name -> CompletionPrefixMatcher.matches(name, prefix), classes);
+        for (ClassEntity classEntity : classes) {
+            if (visitedClasses.add(classEntity)) {
+                builder.add(classEntity);
             }
         }
 
         for (Module depModule : module.getDependingModules()) {
             if (!visitedModules.contains(depModule)) {
-                addClassesInModule(builder, depModule, prefix, visitedModules, visitedFiles);
-            }
-        }
-    }
-
-    private void addAllClasses(
-            ImmutableList.Builder<ClassEntity> builder, ClassEntity parentClass, String prefix) {
-        LinkedList<ClassEntity> queue = new LinkedList<>();
-        queue.addLast(parentClass);
-        while (!queue.isEmpty()) {
-            ClassEntity classEntity = queue.removeFirst();
-            if (CompletionPrefixMatcher.matches(classEntity.getSimpleName(), prefix)) {
-                builder.add(classEntity);
+                addClassesInModule(builder, depModule, prefix, visitedModules, visitedClasses);
             }
-            Collection<ClassEntity> innerClasses = classEntity.getInnerClasses().values();
-            queue.addAll(innerClasses);
         }
     }
 }
@@ -83,7 +83,7 @@ class ClassMemberCompletor {
             }
             directMembers = false;
         }
-        return builder.build();
+        return builder.buildUnsorted();
     }
 
     @AutoValue
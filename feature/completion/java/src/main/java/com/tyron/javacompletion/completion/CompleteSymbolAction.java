@@ -117,7 +117,7 @@ class CompleteSymbolAction implements CompletionAction {
                 completionPrefix,
                 positionContext.getFileScope().getFilename());
 
-        return builder.build();
+        return builder.buildUnsorted();
     }
 
     private Multimap<String, Entity> getPackageMembers(FileScope fileScope, Module module) {
@@ -30,6 +30,10 @@ import com.tyron.javacompletion.project.PositionContext;
  * Action to perform the requested completion.
  */
 interface CompletionAction {
+    /**
+     * Gets the candidates matching {@code prefix} in no particular order. {@link Completor} sorts
+     * the best of them.
+     */
     ImmutableList<CompletionCandidate> getCompletionCandidates(
             PositionContext positionContext, String prefix);
 }
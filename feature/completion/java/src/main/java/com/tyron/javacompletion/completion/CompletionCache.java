@@ -0,0 +1,128 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ *  This file is part of CodeAssist.
+ *
+ *  CodeAssist is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  CodeAssist is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with CodeAssist.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tyron.javacompletion.completion;
+
+import com.google.auto.value.AutoValue;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A small LRU cache of completion results.
+ *
+ * <p>A result can be reused for any prefix that starts with the prefix it was computed for, so it
+ * is narrowed down when the prefix grows, and widened again when the prefix shrinks back, without
+ * being computed again.
+ */
+class CompletionCache {
+    private final Map<Key, CompletionResult> results;
+    private long hitCount;
+    private long missCount;
+
+    CompletionCache(int maxEntries) {
+        this.results =
+                new LinkedHashMap<Key, CompletionResult>(maxEntries + 1, 0.75f, true /* accessOrder */) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Key, CompletionResult> eldest) {
+                        return size() > maxEntries;
+                    }
+                };
+    }
+
+    /**
+     * Gets the result cached for {@code key} if it was computed for a prefix of {@code prefix}.
+     */
+    synchronized Optional<CompletionResult> get(Key key, String prefix) {
+        CompletionResult result = results.get(key);
+        if (result != null && prefix.startsWith(result.getPrefix())) {
+            hitCount++;
+            return Optional.of(result);
+        }
+        missCount++;
+        return Optional.empty();
+    }
+
+    /**
+     * Caches {@code result}, replacing any result cached for {@code key}.
+     */
+    synchronized void put(Key key, CompletionResult result) {
+        results.put(key, result);
+    }
+
+    synchronized void clear() {
+        results.clear();
+    }
+
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Where a completion is requested. Requests with the same key complete the same expression in
+     * the same context, and only differ in their prefixes.
+     */
+    @AutoValue
+    abstract static class Key {
+        /**
+         * @param filePath            the file being completed
+         * @param line                0-based line of the completion point
+         * @param prefixStartColumn   0-based column where the completion prefix starts
+         * @param lineWithoutPrefix   the text of the line without the completion prefix, which
+         *                            determines the kind of completion and its receiver
+         * @param contentHash         the hash of the file without the completion prefix, which
+         *                            changes when the file is edited elsewhere
+         * @param moduleGeneration    the generation of the module of the file, not counting the
+         *                            changes of the file itself, which changes when other files or
+         *                            the modules it depends on are edited
+         */
+        static Key create(
+                Path filePath,
+                int line,
+                int prefixStartColumn,
+                String lineWithoutPrefix,
+                long contentHash,
+                long moduleGeneration) {
+            return new AutoValue_CompletionCache_Key(
+                    filePath, line, prefixStartColumn, lineWithoutPrefix, contentHash, moduleGeneration);
+        }
+
+        abstract Path getFilePath();
+
+        abstract int getLine();
+
+        abstract int getPrefixStartColumn();
+
+        abstract String getLineWithoutPrefix();
+
+        abstract long getContentHash();
+
+        abstract long getModuleGeneration();
+    }
+}
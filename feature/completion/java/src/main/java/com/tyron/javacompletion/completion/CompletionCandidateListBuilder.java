@@ -30,11 +30,14 @@ import com.google.common.collect.Multimap;
 import com.tyron.javacompletion.model.Entity;
 import com.tyron.javacompletion.typesolver.EntityShadowingListBuilder;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -100,6 +103,51 @@ public class CompletionCandidateListBuilder {
                 .collect(Collectors.collectingAndThen(Collectors.toList(), ImmutableList::copyOf));
     }
 
+    /**
+     * Builds a list of all candidates in no particular order, which is cheaper than sorting them
+     * when the candidates are only narrowed down later.
+     */
+    public ImmutableList<CompletionCandidate> buildUnsorted() {
+        ImmutableList.Builder<CompletionCandidate> builder = new ImmutableList.Builder<>();
+        for (EntityShadowingListBuilder<CompletionCandidateWithMatchLevel> candidates :
+                candidateMap.values()) {
+            for (CompletionCandidateWithMatchLevel candidate : candidates.build()) {
+                builder.add(candidate.getCompletionCandidate());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds a sorted list of the best {@code maxCandidates} candidates. Only the candidates in the
+     * list are sorted.
+     */
+    public ImmutableList<CompletionCandidate> build(int maxCandidates) {
+        // The worst of the best candidates found so far is at the head.
+        PriorityQueue<CompletionCandidateWithMatchLevel> bestCandidates =
+                new PriorityQueue<>(maxCandidates + 1, Comparator.reverseOrder());
+        for (EntityShadowingListBuilder<CompletionCandidateWithMatchLevel> candidates :
+                candidateMap.values()) {
+            for (CompletionCandidateWithMatchLevel candidate : candidates.build()) {
+                if (bestCandidates.size() < maxCandidates) {
+                    bestCandidates.add(candidate);
+                } else if (maxCandidates > 0 && candidate.compareTo(bestCandidates.peek()) < 0) {
+                    bestCandidates.poll();
+                    bestCandidates.add(candidate);
+                }
+            }
+        }
+
+        CompletionCandidateWithMatchLevel[] sortedCandidates =
+                bestCandidates.toArray(new CompletionCandidateWithMatchLevel[0]);
+        Arrays.sort(sortedCandidates);
+        ImmutableList.Builder<CompletionCandidate> builder = new ImmutableList.Builder<>();
+        for (CompletionCandidateWithMatchLevel candidate : sortedCandidates) {
+            builder.add(candidate.getCompletionCandidate());
+        }
+        return builder.build();
+    }
+
     private static class GetElementFunction
             implements Function<CompletionCandidateWithMatchLevel, Entity> {
         @Override
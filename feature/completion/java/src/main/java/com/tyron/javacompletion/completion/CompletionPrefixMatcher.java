@@ -23,29 +23,48 @@
  */
 package com.tyron.javacompletion.completion;
 
-import java.util.Locale;
-
 /**
  * Logic of matching a completion name with a given completion prefix.
+ *
+ * <p>Names are compared character by character, so matching doesn't allocate.
  */
 public class CompletionPrefixMatcher {
+    // The longest prefix matched against camel humps, which is the number of bits of the states
+    // followed while matching minus one.
+    private static final int MAX_CAMEL_HUMP_PREFIX_LENGTH = Long.SIZE - 1;
 
     /**
      * Returns how well does {@code candidateName} match {@code completionPrefix}.
      */
     public static MatchLevel computeMatchLevel(String candidateName, String completionPrefix) {
+        int prefixLength = completionPrefix.length();
         if (candidateName.startsWith(completionPrefix)) {
-            return candidateName.length() == completionPrefix.length()
+            return candidateName.length() == prefixLength
                     ? MatchLevel.CASE_SENSITIVE_EQUAL
                     : MatchLevel.CASE_SENSITIVE_PREFIX;
         }
 
-        if (candidateName.toLowerCase(Locale.ROOT).startsWith(completionPrefix.toLowerCase(Locale.ROOT))) {
-            return candidateName.length() == completionPrefix.length()
+        if (candidateName.regionMatches(true /* ignoreCase */, 0, completionPrefix, 0, prefixLength)) {
+            return candidateName.length() == prefixLength
                     ? MatchLevel.CASE_INSENSITIVE_EQUAL
                     : MatchLevel.CASE_INSENSITIVE_PREFIX;
         }
 
+        // The first character must match for fuzzy matches, or almost every name would match.
+        if (candidateName.isEmpty()
+                || prefixLength < 2
+                || !equalsIgnoreCase(candidateName.charAt(0), completionPrefix.charAt(0))) {
+            return MatchLevel.NOT_MATCH;
+        }
+
+        if (matchesCamelHumps(candidateName, completionPrefix)) {
+            return MatchLevel.CAMEL_HUMP;
+        }
+
+        if (matchesSubsequence(candidateName, completionPrefix)) {
+            return MatchLevel.SUBSEQUENCE;
+        }
+
         return MatchLevel.NOT_MATCH;
     }
 
@@ -56,6 +75,91 @@ public class CompletionPrefixMatcher {
         return computeMatchLevel(candidateName, completionPrefix) != MatchLevel.NOT_MATCH;
     }
 
+    /**
+     * Checks if the prefix matches the name, where each character of the prefix after the first one
+     * either continues the hump being matched, or starts one of the following humps. Upper case
+     * characters of the prefix only start humps. For example, {@code NPE} and {@code NuPoEx} match
+     * {@code NullPointerException}. The first characters must be already matched.
+     *
+     * <p>All ways of matching are followed at once with a bit for each number of matched prefix
+     * characters, so it takes time proportional to the product of the lengths. Prefixes longer than
+     * {@link #MAX_CAMEL_HUMP_PREFIX_LENGTH} are not matched.
+     */
+    private static boolean matchesCamelHumps(String name, String prefix) {
+        int prefixLength = prefix.length();
+        if (prefixLength > MAX_CAMEL_HUMP_PREFIX_LENGTH) {
+            return false;
+        }
+        long acceptedState = 1L << prefixLength;
+        // Bit i of continuing is set if i prefix characters are matched up to the previous character
+        // of the name, so the next prefix character may continue the hump. Bit i of started is set if
+        // i prefix characters are matched anywhere before, so the next one may start a later hump.
+        long continuing = 1L << 1;
+        long started = continuing;
+        for (int nameIndex = 1; nameIndex < name.length(); nameIndex++) {
+            char c = name.charAt(nameIndex);
+            boolean humpStart = isHumpStart(name, nameIndex);
+            long nextContinuing = 0;
+            long states = humpStart ? started : continuing;
+            while (states != 0) {
+                int matched = Long.numberOfTrailingZeros(states);
+                states &= states - 1;
+                char prefixChar = prefix.charAt(matched);
+                if (equalsIgnoreCase(c, prefixChar) && (humpStart || !Character.isUpperCase(prefixChar))) {
+                    nextContinuing |= 1L << (matched + 1);
+                }
+            }
+            if ((nextContinuing & acceptedState) != 0) {
+                return true;
+            }
+            continuing = nextContinuing;
+            started |= nextContinuing;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a hump of {@code name} starts at {@code index}. A hump starts at the first
+     * character, at each upper case letter that doesn't continue a run of upper case letters, at
+     * each letter after an underscore or a dollar sign and at the first digit of each number. For
+     * example, the humps of {@code HTTPClient} start at {@code H} and {@code C}.
+     */
+    private static boolean isHumpStart(String name, int index) {
+        char c = name.charAt(index);
+        if (c == '_' || c == '$') {
+            return false;
+        }
+        char previous = index > 0 ? name.charAt(index - 1) : '_';
+        char next = index + 1 < name.length() ? name.charAt(index + 1) : '_';
+        return previous == '_'
+                || previous == '$'
+                || (Character.isUpperCase(c)
+                && (!Character.isUpperCase(previous) || Character.isLowerCase(next)))
+                || (Character.isDigit(c) && !Character.isDigit(previous));
+    }
+
+    /**
+     * Checks if the characters of the prefix appear in the name in the same order, ignoring case.
+     */
+    private static boolean matchesSubsequence(String name, String prefix) {
+        int nameIndex = 0;
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            while (nameIndex < name.length() && !equalsIgnoreCase(name.charAt(nameIndex), c)) {
+                nameIndex++;
+            }
+            if (nameIndex == name.length()) {
+                return false;
+            }
+            nameIndex++;
+        }
+        return true;
+    }
+
+    private static boolean equalsIgnoreCase(char a, char b) {
+        return a == b || Character.toLowerCase(a) == Character.toLowerCase(b);
+    }
+
     /**
      * How well does the candidate name match the compleation prefix.
      *
@@ -65,6 +169,11 @@ public class CompletionPrefixMatcher {
      */
     public enum MatchLevel {
         NOT_MATCH,
+        // The characters of the prefix appear in the name in order, like SBr for StringBuilder.
+        SUBSEQUENCE,
+        // The prefix matches the starts of the humps of the name, like NPE for
+        // NullPointerException.
+        CAMEL_HUMP,
         CASE_INSENSITIVE_PREFIX,
         CASE_SENSITIVE_PREFIX,
         CASE_INSENSITIVE_EQUAL,
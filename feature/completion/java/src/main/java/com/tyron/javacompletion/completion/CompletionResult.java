@@ -52,27 +52,6 @@ public abstract class CompletionResult {
 
     public abstract Builder toBuilder();
 
-    /**
-     * Check if the completor is processing a completion request that is an incremental completion of
-     * the cached completion.
-     */
-    boolean isIncrementalCompletion(Path filePath, int line, int column, String prefix) {
-        if (!getFilePath().equals(filePath)) {
-            return false;
-        }
-        if (getLine() != line) {
-            return false;
-        }
-        if (getColumn() > column) {
-            return false;
-        }
-        if (!prefix.startsWith(getPrefix())) {
-            return false;
-        }
-        // FIXME: This may break for complicated Unicodes.
-        return prefix.length() - getPrefix().length() == column - getColumn();
-    }
-
     @AutoValue.Builder
     public abstract static class Builder {
         public abstract Builder setFilePath(Path filePath);
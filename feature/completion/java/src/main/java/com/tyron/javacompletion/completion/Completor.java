@@ -41,7 +41,6 @@ import com.tyron.javacompletion.typesolver.OverloadSolver;
 import com.tyron.javacompletion.typesolver.TypeSolver;
 
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -51,21 +50,17 @@ import java.util.Optional;
 public class Completor {
     private static final JLogger logger = JLogger.createForEnclosingClass();
 
-    private static final CompletionResult NO_CACHE =
-            CompletionResult.builder()
-                    .setFilePath(Paths.get(""))
-                    .setLine(-1)
-                    .setColumn(-1)
-                    .setPrefix("")
-                    .setCompletionCandidates(ImmutableList.of())
-                    .setTextEditOptions(TextEditOptions.DEFAULT)
-                    .build();
+    // The maximum number of candidates returned. All candidates are cached to be narrowed down as
+    // the prefix changes.
+    private static final int MAX_CANDIDATES = 100;
+    // The number of completion results cached, e.g. for switching between a few files.
+    private static final int MAX_CACHED_RESULTS = 8;
 
     private final FileManager fileManager;
     private final TypeSolver typeSolver;
     private final ExpressionSolver expressionSolver;
 
-    private CompletionResult cachedCompletion = NO_CACHE;
+    private final CompletionCache cache = new CompletionCache(MAX_CACHED_RESULTS);
 
     public Completor(FileManager fileManager) {
         this.fileManager = fileManager;
@@ -121,13 +116,48 @@ public class Completor {
         line++;
         String prefix = contentWithLineMap.extractCompletionPrefix(line, column);
         System.out.println("prefix: " + prefix);
-        // TODO: limit the number of the candidates.
-        if (cachedCompletion.isIncrementalCompletion(filePath, line - 1, column, prefix)) {
-            return getCompletionCandidatesFromCache(line - 1, column, prefix);
+        // Right after a dot, all members are completed.
+        String matchPrefix = ".".equals(prefix) ? "" : prefix;
+        // Edits of the file itself are covered by the content hash, so they don't invalidate the
+        // result while the prefix is being typed.
+        long moduleGeneration =
+                positionContext
+                        .get()
+                        .getModule()
+                        .getGenerationExcludingFile(positionContext.get().getFileScope().getFilename());
+        CompletionCache.Key key =
+                CompletionCache.Key.create(
+                        filePath,
+                        line - 1,
+                        column - matchPrefix.length(),
+                        contentWithLineMap.getLineWithoutPrefix(line, column, matchPrefix.length()),
+                        contentWithLineMap.hashContentWithoutPrefix(line, column, matchPrefix.length()),
+                        moduleGeneration);
+        Optional<CompletionResult> cachedResult = cache.get(key, matchPrefix);
+        CompletionResult result;
+        if (cachedResult.isPresent()) {
+            result = cachedResult.get();
+        } else {
+            result =
+                    computeCompletionResult(
+                            positionContext.get(), contentWithLineMap, line - 1, contextColumn, prefix);
+            cache.put(key, result);
         }
-        cachedCompletion =
-                computeCompletionResult(positionContext.get(), contentWithLineMap, line - 1, contextColumn, prefix);
-        return cachedCompletion;
+        return narrowCompletionResult(result, line - 1, column, matchPrefix);
+    }
+
+    /**
+     * Gets the number of completions that reused a cached result.
+     */
+    public long getCacheHitCount() {
+        return cache.getHitCount();
+    }
+
+    /**
+     * Gets the number of completions that were computed because no cached result could be reused.
+     */
+    public long getCacheMissCount() {
+        return cache.getMissCount();
     }
 
     private CompletionResult computeCompletionResult(
@@ -181,24 +211,33 @@ public class Completor {
             textEditOptions.setAppendMethodArgumentSnippets(false);
         }
 
+        // Members are completed without a prefix, so the result can be reused for any prefix. The
+        // candidates are kept unsorted for narrowing them down.
+        String actionPrefix = action instanceof CompleteMemberAction ? "" : prefix;
         ImmutableList<CompletionCandidate> candidates =
-                action.getCompletionCandidates(positionContext, prefix);
+                action.getCompletionCandidates(positionContext, actionPrefix);
         return CompletionResult.builder()
                 .setFilePath(contentWithLineMap.getFilePath())
                 .setLine(line)
                 .setColumn(column)
-                .setPrefix(prefix)
+                .setPrefix(actionPrefix)
                 .setCompletionCandidates(candidates)
                 .setTextEditOptions(textEditOptions.build())
                 .build();
     }
 
-    private CompletionResult getCompletionCandidatesFromCache(int line, int column, String prefix) {
+    /**
+     * Gets the best candidates of {@code result} matching {@code prefix}, which starts with the
+     * prefix of {@code result}. The candidates of {@code result} are not sorted, only the returned
+     * ones are.
+     */
+    private CompletionResult narrowCompletionResult(
+            CompletionResult result, int line, int column, String prefix) {
         ImmutableList<CompletionCandidate> narrowedCandidates =
                 new CompletionCandidateListBuilder(prefix)
-                        .addCandidates(cachedCompletion.getCompletionCandidates())
-                        .build();
-        return cachedCompletion
+                        .addCandidates(result.getCompletionCandidates())
+                        .build(MAX_CANDIDATES);
+        return result
                 .toBuilder()
                 .setCompletionCandidates(narrowedCandidates)
                 .setLine(line)
@@ -93,13 +93,60 @@ abstract class ContentWithLineMap {
             start--;
             c = getContent().charAt(start);
         }
-        if (c == '.') {
+        // Only a dot right before the cursor is the prefix. A dot before an identifier isn't part
+        // of it.
+        if (c == '.' && start == position) {
             return ".";
         }
         String result = getContent().toString().substring(start + 1, position + 1);
         return result;
     }
 
+    /**
+     * Gets the text of the line of the cursor position (line, column) without the {@code
+     * prefixLength} characters before the cursor.
+     *
+     * @param line 1-based line number
+     * @param column 0-based column
+     */
+    String getLineWithoutPrefix(int line, int column, int prefixLength) {
+        CharSequence content = getContent();
+        int lineStart = Math.min((int) getLineMap().getStartPosition(line), content.length());
+        int position = Math.min(lineStart + column, content.length());
+        int prefixStart = Math.max(lineStart, position - prefixLength);
+        int lineEnd = position;
+        while (lineEnd < content.length() && content.charAt(lineEnd) != '\n') {
+            lineEnd++;
+        }
+        return new StringBuilder(lineEnd - lineStart)
+                .append(content, lineStart, prefixStart)
+                .append(content, position, lineEnd)
+                .toString();
+    }
+
+    /**
+     * Computes a hash of the content without the {@code prefixLength} characters before the cursor
+     * position (line, column), so that the hash only changes when the file is edited outside of the
+     * prefix.
+     *
+     * @param line 1-based line number
+     * @param column 0-based column
+     */
+    long hashContentWithoutPrefix(int line, int column, int prefixLength) {
+        CharSequence content = getContent();
+        int lineStart = Math.min((int) getLineMap().getStartPosition(line), content.length());
+        int position = Math.min(lineStart + column, content.length());
+        int prefixStart = Math.max(lineStart, position - prefixLength);
+        long hash = 1125899906842597L;
+        for (int i = 0; i < prefixStart; i++) {
+            hash = 31 * hash + content.charAt(i);
+        }
+        for (int i = position; i < content.length(); i++) {
+            hash = 31 * hash + content.charAt(i);
+        }
+        return hash;
+    }
+
     String substring(int line, int column, int length) {
         int position = LineMapUtil.getPositionFromZeroBasedLineAndColumn(getLineMap(), line, column);
         if (position < 0) {
@@ -159,6 +159,21 @@ public class PathUtils {
      * Returns a {@link Path} that can be use for walking through its content.
      */
     public static Path getRootPathForJarFile(Path jarFilePath) throws IOException {
+        Path path = null;
+        try (FileSystem fs = openJarFileSystem(jarFilePath)) {
+            path = fs.getPath("/");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return path;
+    }
+
+    /**
+     * Opens the content of a JAR file as a {@link FileSystem}. Unlike {@link #getRootPathForJarFile},
+     * the file system stays open until it's closed by the caller, so files in it can be read at any
+     * time later.
+     */
+    public static FileSystem openJarFileSystem(Path jarFilePath) throws IOException {
         // JAR specific URI pattern.
         // See https://docs.oracle.com/javase/8/docs/technotes/guides/io/fsp/zipfilesystemprovider.html
         logger.fine("Parsing jar file: %s", jarFilePath);
@@ -168,12 +183,6 @@ public class PathUtils {
         } catch (URISyntaxException e) {
             throw new IOException(e);
         }
-        Path path = null;
-        try (FileSystem fs = new JarFileSystemProvider().newFileSystem(uri, ImmutableMap.of() /* env */)) {
-            path = fs.getPath("/");
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return path;
+        return new JarFileSystemProvider().newFileSystem(uri, ImmutableMap.of() /* env */);
     }
 }
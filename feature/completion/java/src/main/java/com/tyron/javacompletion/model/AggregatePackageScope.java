@@ -24,30 +24,48 @@
 package com.tyron.javacompletion.model;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
 
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
 /**
  * Scope that aggregates all members of individual {@link PackageScope}s.
+ *
+ * <p>The merged members are kept until one of the package scopes changes, and the aggregated sub
+ * packages are reused when they are merged again, so their merged members are kept too.
  */
 public class AggregatePackageScope extends PackageScope {
     private final Set<PackageScope> packageScopes;
 
     private static final String notSupported = "not supported.";
 
+    // The merged members, and the version they were merged at.
+    private ImmutableSetMultimap<String, Entity> memberEntities;
+    private long mergedVersion;
+    // Sub packages found in more than one package scope, by simple name.
+    private Map<String, AggregatePackageEntity> aggregatePackages = new HashMap<>();
+    // Incremented whenever package scopes are added or removed.
+    private long modificationCount;
+
     public AggregatePackageScope() {
-        packageScopes = new HashSet<>();
+        packageScopes = new LinkedHashSet<>();
     }
 
     @Override
-    public Multimap<String, Entity> getMemberEntities() {
-        Multimap<String, Entity> members = HashMultimap.create();
+    public synchronized Multimap<String, Entity> getMemberEntities() {
+        long version = getVersion();
+        if (memberEntities != null && mergedVersion == version) {
+            return memberEntities;
+        }
+
+        ImmutableSetMultimap.Builder<String, Entity> members = new ImmutableSetMultimap.Builder<>();
         Multimap<String, PackageEntity> packageEntityMembers = HashMultimap.create();
 
         for (PackageScope packageScope : packageScopes) {
@@ -62,6 +80,7 @@ public class AggregatePackageScope extends PackageScope {
             }
         }
 
+        Map<String, AggregatePackageEntity> newAggregatePackages = new HashMap<>();
         for (String name : packageEntityMembers.keySet()) {
             Collection<PackageEntity> entities = packageEntityMembers.get(name);
             if (entities.size() == 1) {
@@ -69,17 +88,40 @@ public class AggregatePackageScope extends PackageScope {
                 continue;
             }
 
-            AggregatePackageEntity aggregatePackageEntity =
-                    new AggregatePackageEntity(name, Iterables.getFirst(entities, null).getQualifiers());
-            AggregatePackageScope aggregatePackageScope = aggregatePackageEntity.getScope();
+            AggregatePackageEntity aggregatePackageEntity = aggregatePackages.get(name);
+            if (aggregatePackageEntity == null) {
+                aggregatePackageEntity =
+                        new AggregatePackageEntity(name, Iterables.getFirst(entities, null).getQualifiers());
+            }
+            newAggregatePackages.put(name, aggregatePackageEntity);
             members.put(name, aggregatePackageEntity);
 
             // Aggregate all packages into one.
+            Set<PackageScope> scopes = new LinkedHashSet<>();
             for (PackageEntity packageEntity : entities) {
-                aggregatePackageScope.addPackageScope(packageEntity.getScope());
+                scopes.add(packageEntity.getScope());
             }
+            aggregatePackageEntity.getScope().setPackageScopes(scopes);
         }
-        return members;
+        aggregatePackages = newAggregatePackages;
+
+        // Files loaded lazily while merging change the version, so the members are merged once more
+        // the next time. Outdated members are never returned.
+        memberEntities = members.build();
+        mergedVersion = version;
+        return memberEntities;
+    }
+
+    /**
+     * Gets a number that changes whenever any of the aggregated package scopes change.
+     */
+    @Override
+    public synchronized long getVersion() {
+        long version = modificationCount;
+        for (PackageScope packageScope : packageScopes) {
+            version += packageScope.getVersion();
+        }
+        return version;
     }
 
     @Override
@@ -107,7 +149,24 @@ public class AggregatePackageScope extends PackageScope {
         return Optional.empty();
     }
 
-    public void addPackageScope(PackageScope packageScope) {
-        packageScopes.add(packageScope);
+    public synchronized void addPackageScope(PackageScope packageScope) {
+        if (packageScopes.add(packageScope)) {
+            memberEntities = null;
+            modificationCount++;
+        }
+    }
+
+    /**
+     * Replaces the aggregated package scopes. The merged members are kept if the package scopes
+     * are the same.
+     */
+    public synchronized void setPackageScopes(Collection<PackageScope> scopes) {
+        if (packageScopes.size() == scopes.size() && packageScopes.containsAll(scopes)) {
+            return;
+        }
+        packageScopes.clear();
+        packageScopes.addAll(scopes);
+        memberEntities = null;
+        modificationCount++;
     }
 }
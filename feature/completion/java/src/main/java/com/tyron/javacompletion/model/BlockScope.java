@@ -27,6 +27,7 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Range;
+import com.tyron.javacompletion.model.util.SourceRanges;
 
 import java.util.ArrayList;
 import java.util.Optional;
@@ -39,7 +40,7 @@ public class BlockScope implements EntityScope {
     private final Multimap<String, Entity> entities;
     private final EntityScope parentScope;
     private final ArrayList<EntityScope> childScopes = new ArrayList<>();
-    private final Range<Integer> definitionRange;
+    private Range<Integer> definitionRange;
 
     public BlockScope(EntityScope parentScope, Range<Integer> definitionRange) {
         this.entities = HashMultimap.create();
@@ -78,4 +79,9 @@ public class BlockScope implements EntityScope {
         return definitionRange;
     }
 
+    @Override
+    public void shiftRanges(int position, int offset) {
+        definitionRange = SourceRanges.shift(definitionRange, position, offset);
+    }
+
 }
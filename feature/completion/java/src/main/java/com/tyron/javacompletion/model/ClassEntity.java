@@ -34,6 +34,7 @@ import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Range;
 import com.tyron.javacompletion.model.util.QualifiedNames;
+import com.tyron.javacompletion.model.util.SourceRanges;
 
 import java.util.ArrayList;
 import java.util.EnumSet;
@@ -62,7 +63,7 @@ public class ClassEntity extends Entity implements EntityScope {
     private final Map<String, ClassEntity> innerClasses;
     private final ImmutableList<TypeParameter> typeParameters;
     private final List<EntityScope> childScopes;
-    private final Range<Integer> definitionRange;
+    private Range<Integer> definitionRange;
 
     public ClassEntity(
             String simpleName,
@@ -151,6 +152,12 @@ public class ClassEntity extends Entity implements EntityScope {
         return definitionRange;
     }
 
+    @Override
+    public void shiftRanges(int position, int offset) {
+        super.shiftRanges(position, offset);
+        definitionRange = SourceRanges.shift(definitionRange, position, offset);
+    }
+
     public List<MethodEntity> getMethodsWithName(String simpleName) {
         return ImmutableList.copyOf(methods.get(simpleName));
     }
@@ -0,0 +1,220 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ *  This file is part of CodeAssist.
+ *
+ *  CodeAssist is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  CodeAssist is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with CodeAssist.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tyron.javacompletion.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * An index of the simple names of the classes in the files of a {@link Module}, including inner
+ * classes.
+ *
+ * <p>The classes are sorted by their lower case simple names, so the classes whose names start
+ * with a given character can be found without going through all classes.
+ *
+ * <p>Packages whose files are loaded lazily are indexed by the names of their classes only. A
+ * package is materialized the first time one of its class names is found, and its classes are
+ * indexed instead.
+ */
+public class ClassNameIndex {
+    private static final char MAX_CHAR = Character.MAX_VALUE;
+
+    // Lower case simple name -> classes.
+    private final TreeMap<String, List<ClassEntity>> classesByName = new TreeMap<>();
+    // The classes indexed for each file, so they can be removed after the file is changed.
+    private final Map<FileScope, List<ClassEntity>> fileClasses = new HashMap<>();
+    // Lower case simple name -> classes of packages that are not materialized yet.
+    private final TreeMap<String, List<LazyClassName>> lazyClassesByName = new TreeMap<>();
+    // The class names indexed for each package that is not materialized yet.
+    private final Map<PackageScope, List<LazyClassName>> lazyPackageClasses = new HashMap<>();
+
+    /**
+     * Indexes the classes of {@code fileScope}. A file that is already indexed is indexed again.
+     */
+    public synchronized void addFile(FileScope fileScope) {
+        removeFile(fileScope);
+        List<ClassEntity> classes = new ArrayList<>();
+        Deque<ClassEntity> queue = new ArrayDeque<>();
+        for (Entity entity : fileScope.getMemberEntities().values()) {
+            if (entity instanceof ClassEntity) {
+                queue.addLast((ClassEntity) entity);
+            }
+        }
+        while (!queue.isEmpty()) {
+            ClassEntity classEntity = queue.removeFirst();
+            classes.add(classEntity);
+            add(classesByName, classEntity.getSimpleName().toLowerCase(Locale.ROOT), classEntity);
+            queue.addAll(classEntity.getInnerClasses().values());
+        }
+        fileClasses.put(fileScope, classes);
+    }
+
+    /**
+     * Indexes the classes named {@code classNames} of a package without materializing its files.
+     * The classes are indexed when the package is materialized by {@link #findClasses}.
+     */
+    public synchronized void addLazyPackage(PackageScope packageScope, Collection<String> classNames) {
+        List<LazyClassName> classes = lazyPackageClasses.get(packageScope);
+        if (classes == null) {
+            classes = new ArrayList<>(classNames.size());
+            lazyPackageClasses.put(packageScope, classes);
+        }
+        for (String className : classNames) {
+            LazyClassName lazyClassName = new LazyClassName(className, packageScope);
+            classes.add(lazyClassName);
+            add(lazyClassesByName, className.toLowerCase(Locale.ROOT), lazyClassName);
+        }
+    }
+
+    /**
+     * Removes the classes of {@code fileScope} that were indexed from the index.
+     */
+    public synchronized void removeFile(FileScope fileScope) {
+        List<ClassEntity> classes = fileClasses.remove(fileScope);
+        if (classes == null) {
+            return;
+        }
+        for (ClassEntity classEntity : classes) {
+            remove(classesByName, classEntity.getSimpleName().toLowerCase(Locale.ROOT), classEntity);
+        }
+    }
+
+    /**
+     * Adds the classes whose simple names start with the first character of {@code prefix} ignoring
+     * case, and are accepted by {@code nameMatcher}, to {@code results}. All classes accepted by
+     * {@code nameMatcher} are added if {@code prefix} is empty.
+     *
+     * <p>Only the names of the classes of lazily loaded packages are matched. The packages are only
+     * materialized if some of their classes are accepted.
+     *
+     * @param nameMatcher matches the simple names of the classes against {@code prefix}. It must
+     *                    only accept names starting with the first character of {@code prefix}
+     *                    ignoring case, like the prefix and fuzzy matching of completions do
+     */
+    public synchronized void findClasses(
+            String prefix, Predicate<? super String> nameMatcher, Collection<ClassEntity> results) {
+        String key = prefix.isEmpty() ? "" : prefix.substring(0, 1).toLowerCase(Locale.ROOT);
+        NavigableMap<String, List<ClassEntity>> matches =
+                classesByName.subMap(key, true, key + MAX_CHAR, false);
+        for (List<ClassEntity> classes : matches.values()) {
+            for (ClassEntity classEntity : classes) {
+                if (nameMatcher.test(classEntity.getSimpleName())) {
+                    results.add(classEntity);
+                }
+            }
+        }
+
+        Set<PackageScope> matchedPackages = new LinkedHashSet<>();
+        NavigableMap<String, List<LazyClassName>> lazyMatches =
+                lazyClassesByName.subMap(key, true, key + MAX_CHAR, false);
+        for (List<LazyClassName> classNames : lazyMatches.values()) {
+            for (LazyClassName className : classNames) {
+                if (nameMatcher.test(className.simpleName)) {
+                    matchedPackages.add(className.packageScope);
+                }
+            }
+        }
+        for (PackageScope packageScope : matchedPackages) {
+            for (FileScope fileScope : materializePackage(packageScope)) {
+                for (ClassEntity classEntity : fileClasses.get(fileScope)) {
+                    String name = classEntity.getSimpleName();
+                    if (name.toLowerCase(Locale.ROOT).startsWith(key) && nameMatcher.test(name)) {
+                        results.add(classEntity);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the class names of a lazily loaded package with its classes.
+     *
+     * @return the files of the package that were not indexed before
+     */
+    private List<FileScope> materializePackage(PackageScope packageScope) {
+        List<LazyClassName> classNames = lazyPackageClasses.remove(packageScope);
+        if (classNames != null) {
+            for (LazyClassName className : classNames) {
+                remove(lazyClassesByName, className.simpleName.toLowerCase(Locale.ROOT), className);
+            }
+        }
+        List<FileScope> newFiles = new ArrayList<>();
+        for (FileScope fileScope : packageScope.getFiles()) {
+            if (!fileClasses.containsKey(fileScope)) {
+                addFile(fileScope);
+                newFiles.add(fileScope);
+            }
+        }
+        return newFiles;
+    }
+
+    private static <T> void add(Map<String, List<T>> map, String key, T value) {
+        List<T> values = map.get(key);
+        if (values == null) {
+            values = new ArrayList<>(1);
+            map.put(key, values);
+        }
+        values.add(value);
+    }
+
+    private static <T> void remove(Map<String, List<T>> map, String key, T value) {
+        List<T> values = map.get(key);
+        if (values == null) {
+            return;
+        }
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) == value) {
+                values.remove(i);
+                break;
+            }
+        }
+        if (values.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+    /**
+     * The name of a class in a package that is not materialized yet.
+     */
+    private static class LazyClassName {
+        private final String simpleName;
+        private final PackageScope packageScope;
+
+        private LazyClassName(String simpleName, PackageScope packageScope) {
+            this.simpleName = simpleName;
+            this.packageScope = packageScope;
+        }
+    }
+}
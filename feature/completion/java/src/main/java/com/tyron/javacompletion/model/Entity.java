@@ -26,6 +26,7 @@ package com.tyron.javacompletion.model;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Range;
 import com.tyron.javacompletion.model.util.QualifiedNames;
+import com.tyron.javacompletion.model.util.SourceRanges;
 
 import java.util.List;
 import java.util.Optional;
@@ -42,7 +43,7 @@ public abstract class Entity {
     private final List<String> qualifiers;
     private final Kind kind;
     private final boolean isStatic;
-    private final Range<Integer> symbolRange;
+    private Range<Integer> symbolRange;
     private final Optional<String> javadoc;
 
     protected Entity(
@@ -98,6 +99,16 @@ public abstract class Entity {
         return isStatic;
     }
 
+    /**
+     * Moves the ranges of this entity that are at or after {@code position} by {@code offset}.
+     *
+     * <p>It's called when the source code at {@code position} is edited without scanning this
+     * entity again.
+     */
+    public void shiftRanges(int position, int offset) {
+        symbolRange = SourceRanges.shift(symbolRange, position, offset);
+    }
+
     /**
      * @return {@code true} if the entity is a member of a class instance, which can only be access in
      * an instance context of that class.
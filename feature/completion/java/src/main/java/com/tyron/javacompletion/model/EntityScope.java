@@ -46,6 +46,15 @@ public interface EntityScope {
      */
     Range<Integer> getDefinitionRange();
 
+    /**
+     * Moves the ranges of this scope that are at or after {@code position} by {@code offset}.
+     *
+     * <p>It's called when the source code at {@code position} is edited without scanning this
+     * scope again. Scopes that are not defined in source code don't need to override it.
+     */
+    default void shiftRanges(int position, int offset) {
+    }
+
     void addEntity(Entity entity);
 
     void addChildScope(EntityScope entityScope);
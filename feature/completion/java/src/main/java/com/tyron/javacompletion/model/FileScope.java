@@ -36,6 +36,7 @@ import com.google.common.collect.Range;
 import com.google.common.collect.RangeMap;
 import com.sun.source.tree.LineMap;
 import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.tyron.javacompletion.model.util.SourceRanges;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -60,7 +61,7 @@ public class FileScope implements EntityScope {
     private final List<List<String>> onDemandClassImportQualifiers;
     private final List<List<String>> onDemandStaticImportQualifiers;
     private final Optional<JCCompilationUnit> compilationUnit;
-    private final Range<Integer> definitionRange;
+    private Range<Integer> definitionRange;
     private RangeMap<Integer, EntityScope> scopeRangeMap = null;
     private Optional<LineMap> adjustedLineMap = Optional.empty();
 
@@ -270,6 +271,11 @@ public class FileScope implements EntityScope {
         return definitionRange;
     }
 
+    @Override
+    public void shiftRanges(int position, int offset) {
+        definitionRange = SourceRanges.shift(definitionRange, position, offset);
+    }
+
     /**
      * The type of the file that the {@link FileScope} is created from.
      */
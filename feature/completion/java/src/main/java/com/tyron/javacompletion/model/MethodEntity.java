@@ -29,6 +29,7 @@ import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Range;
 import com.tyron.javacompletion.model.util.QualifiedNames;
+import com.tyron.javacompletion.model.util.SourceRanges;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -49,7 +50,7 @@ public class MethodEntity extends Entity implements EntityScope {
     private final Multimap<String, Entity> entities;
     private final ClassEntity classEntity;
     private final List<EntityScope> childScopes;
-    private final Range<Integer> definitionRange;
+    private Range<Integer> definitionRange;
     private ImmutableList<VariableEntity> parameters;
     private Set<Modifier> modifiers;
 
@@ -135,6 +136,23 @@ public class MethodEntity extends Entity implements EntityScope {
         return definitionRange;
     }
 
+    @Override
+    public void shiftRanges(int position, int offset) {
+        super.shiftRanges(position, offset);
+        definitionRange = SourceRanges.shift(definitionRange, position, offset);
+    }
+
+    /**
+     * Removes all entities and child scopes defined in the body of this method. Parameters are
+     * kept.
+     *
+     * <p>It's called before scanning the body of this method again.
+     */
+    public void clearBody() {
+        entities.clear();
+        childScopes.clear();
+    }
+
     /**
      * gets paramters
      */
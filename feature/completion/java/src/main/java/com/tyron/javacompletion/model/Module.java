@@ -29,11 +29,18 @@ import com.tyron.javacompletion.logging.JLogger;
 import java.nio.file.Path;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * A scope containing a set of classes and the packages defined under the root (unnamed) package.
@@ -47,11 +54,22 @@ public class Module {
     private final Map<String, FileScope> fileScopeMap;
     private final PackageScope rootPackage;
     private final List<Module> dependingModules;
+    // Packages with files that are materialized on first access -> the simple names of their
+    // classes.
+    private final Map<PackageScope, List<String>> lazyPackages;
+    // Index of the class names of all files, built on first use and updated as files change.
+    private ClassNameIndex classNameIndex;
+    // Incremented whenever files or depending modules are added, replaced or removed.
+    private long modificationCount;
+    // Map of filename -> how many times the file was added, replaced or removed.
+    private final Map<String, Long> fileModificationCounts;
 
     public Module() {
         this.fileScopeMap = new HashMap<>();
         this.rootPackage = new PackageScope();
         this.dependingModules = new ArrayList<>();
+        this.lazyPackages = new LinkedHashMap<>();
+        this.fileModificationCounts = new HashMap<>();
     }
 
     public synchronized void addOrReplaceFileScope(FileScope fileScope) {
@@ -61,16 +79,60 @@ public class Module {
         // the new file and old file are in the same pacakge and is the only file in the package.
         addFileToPackage(fileScope);
 
-        if (existingFileScope != null) {
+        // The existing file scope is added again if it's updated in place.
+        if (existingFileScope != null && existingFileScope != fileScope) {
             removeFileFromPacakge(existingFileScope);
         }
         fileScopeMap.put(fileScope.getFilename(), fileScope);
+        modificationCount++;
+        fileModificationCounts.merge(fileScope.getFilename(), 1L, Long::sum);
+
+        if (classNameIndex != null) {
+            if (existingFileScope != null) {
+                classNameIndex.removeFile(existingFileScope);
+            }
+            classNameIndex.addFile(fileScope);
+        }
+    }
+
+    /**
+     * Adds files of the package {@code packageQualifiers} without materializing them. The files are
+     * loaded by {@code fileLoader} the first time the members of the package are accessed.
+     *
+     * <p>Lazily loaded files cannot be looked up by {@link #getFileScope}, nor be replaced or
+     * removed.
+     *
+     * @param classNames the simple names of the classes in the files, including inner classes. The
+     *                   class name index finds the classes by these names without loading the
+     *                   files
+     */
+    public synchronized void addLazyFiles(
+            List<String> packageQualifiers,
+            Collection<String> classNames,
+            Supplier<? extends Collection<FileScope>> fileLoader) {
+        PackageScope packageScope = getOrCreatePackage(packageQualifiers);
+        packageScope.addLazyFiles(fileLoader);
+        List<String> packageClassNames = lazyPackages.get(packageScope);
+        if (packageClassNames == null) {
+            packageClassNames = new ArrayList<>();
+            lazyPackages.put(packageScope, packageClassNames);
+        }
+        packageClassNames.addAll(classNames);
+        modificationCount++;
+        if (classNameIndex != null) {
+            classNameIndex.addLazyPackage(packageScope, classNames);
+        }
     }
 
     public synchronized void removeFile(Path filePath) {
         FileScope existingFileScope = fileScopeMap.get(filePath.toString());
         if (existingFileScope != null) {
             removeFileFromPacakge(existingFileScope);
+            modificationCount++;
+            fileModificationCounts.merge(existingFileScope.getFilename(), 1L, Long::sum);
+            if (classNameIndex != null) {
+                classNameIndex.removeFile(existingFileScope);
+            }
         }
     }
 
@@ -103,8 +165,37 @@ public class Module {
         return currentPackage;
     }
 
+    /**
+     * Gets all files in the module. Files added by {@link #addLazyFiles} are materialized.
+     */
     public synchronized List<FileScope> getAllFiles() {
-        return ImmutableList.copyOf(fileScopeMap.values());
+        if (lazyPackages.isEmpty()) {
+            return ImmutableList.copyOf(fileScopeMap.values());
+        }
+        Set<FileScope> files = new LinkedHashSet<>(fileScopeMap.values());
+        for (PackageScope packageScope : lazyPackages.keySet()) {
+            files.addAll(packageScope.getFiles());
+        }
+        return ImmutableList.copyOf(files);
+    }
+
+    /**
+     * Gets the index of the names of the classes in the files of the module, not including the
+     * depending modules. Files added by {@link #addLazyFiles} are indexed by the names of their
+     * classes, and are only materialized when classes of their packages are found.
+     */
+    public synchronized ClassNameIndex getClassNameIndex() {
+        if (classNameIndex == null) {
+            ClassNameIndex index = new ClassNameIndex();
+            for (FileScope fileScope : fileScopeMap.values()) {
+                index.addFile(fileScope);
+            }
+            for (Map.Entry<PackageScope, List<String>> entry : lazyPackages.entrySet()) {
+                index.addLazyPackage(entry.getKey(), entry.getValue());
+            }
+            classNameIndex = index;
+        }
+        return classNameIndex;
     }
 
     private void addFileToPackage(FileScope fileScope) {
@@ -132,19 +223,66 @@ public class Module {
     }
 
     private Optional<PackageEntity> getPackageEntity(String name, PackageScope packageScope) {
-        for (Entity entity : packageScope.getMemberEntities().get(name)) {
-            if (entity instanceof PackageEntity) {
-                return Optional.of((PackageEntity) entity);
-            }
-        }
-        return Optional.empty();
+        return packageScope.getSubPackage(name);
     }
 
-    public void addDependingModule(Module dependingModule) {
+    public synchronized void addDependingModule(Module dependingModule) {
+        modificationCount++;
         dependingModules.add(dependingModule);
     }
 
-    public List<Module> getDependingModules() {
+    public void removeDependingModule(Module dependingModule) {
+        // The generation of the removed module is kept, so the generation never goes back to a
+        // value it had before.
+        long removedGeneration = dependingModule.getGeneration();
+        synchronized (this) {
+            if (dependingModules.remove(dependingModule)) {
+                modificationCount += removedGeneration;
+            }
+            modificationCount++;
+        }
+    }
+
+    public synchronized List<Module> getDependingModules() {
         return ImmutableList.copyOf(dependingModules);
     }
+
+    /**
+     * Gets a number that changes whenever the files of the module or of the modules it depends on,
+     * directly or not, change. Results computed from the module can be reused as long as it
+     * doesn't change.
+     */
+    public long getGeneration() {
+        long generation = 0;
+        Set<Module> visitedModules = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Module> queue = new ArrayDeque<>();
+        queue.add(this);
+        while (!queue.isEmpty()) {
+            Module module = queue.removeFirst();
+            if (!visitedModules.add(module)) {
+                continue;
+            }
+            // Only one module is locked at a time, so modules depending on each other can't
+            // deadlock.
+            synchronized (module) {
+                generation += module.modificationCount;
+                queue.addAll(module.dependingModules);
+            }
+        }
+        return generation;
+    }
+
+    /**
+     * Gets a number that changes whenever the files of the module or of the modules it depends on
+     * change, except for the file {@code filename} of this module. Results computed for a file that
+     * is being edited can be reused as long as it doesn't change and the file's own content is the
+     * same.
+     */
+    public long getGenerationExcludingFile(String filename) {
+        long fileModificationCount;
+        synchronized (this) {
+            fileModificationCount = fileModificationCounts.getOrDefault(filename, 0L);
+        }
+        return getGeneration() - fileModificationCount;
+    }
 }
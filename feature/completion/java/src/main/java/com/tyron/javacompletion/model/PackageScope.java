@@ -26,43 +26,63 @@ package com.tyron.javacompletion.model;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Range;
+import com.tyron.javacompletion.logging.JLogger;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * Scope of sub packages and files in a package.
  */
 public class PackageScope implements EntityScope {
+    private static final JLogger logger = JLogger.createForEnclosingClass();
+
     // Map of simple names -> subPackages.
     private final Multimap<String, PackageEntity> subPackages;
     private final Set<FileScope> files;
+    // Loaders of files that have not been materialized yet.
+    private final List<Supplier<? extends Collection<FileScope>>> lazyFileLoaders;
+    // The members of the package, built the first time they are accessed after they changed.
+    private ImmutableMultimap<String, Entity> memberEntities;
+    // Incremented whenever the sub packages or files change.
+    private long version;
 
     public PackageScope() {
         this.subPackages = HashMultimap.create();
         this.files = new HashSet<>();
+        this.lazyFileLoaders = new ArrayList<>();
     }
 
     @Override
-    public Multimap<String, Entity> getMemberEntities() {
-        ImmutableMultimap.Builder<String, Entity> builder = new ImmutableMultimap.Builder<>();
-        builder.putAll(subPackages);
-        for (FileScope fileScope : files) {
-            builder.putAll(fileScope.getMemberEntities());
+    public synchronized Multimap<String, Entity> getMemberEntities() {
+        loadLazyFiles();
+        if (memberEntities == null) {
+            ImmutableMultimap.Builder<String, Entity> builder = new ImmutableMultimap.Builder<>();
+            builder.putAll(subPackages);
+            for (FileScope fileScope : files) {
+                builder.putAll(fileScope.getMemberEntities());
+            }
+            memberEntities = builder.build();
         }
-        return builder.build();
+        return memberEntities;
     }
 
     @Override
-    public void addEntity(Entity entity) {
+    public synchronized void addEntity(Entity entity) {
         checkArgument(
                 entity instanceof PackageEntity,
                 "Only sub package can be added to a package. Found " + entity.getClass().getSimpleName());
         subPackages.put(entity.getSimpleName(), (PackageEntity) entity);
+        onMembersChanged();
     }
 
     @Override
@@ -72,23 +92,89 @@ public class PackageScope implements EntityScope {
                         + entityScope.getClass().getSimpleName());
     }
 
-    public void removePackage(PackageEntity entity) {
+    public synchronized void removePackage(PackageEntity entity) {
         subPackages.remove(entity.getSimpleName(), entity);
+        onMembersChanged();
+    }
+
+    /**
+     * Gets the direct sub package with {@code simpleName} without materializing any lazily loaded
+     * files of this package.
+     */
+    public Optional<PackageEntity> getSubPackage(String simpleName) {
+        for (PackageEntity packageEntity : subPackages.get(simpleName)) {
+            return Optional.of(packageEntity);
+        }
+        return Optional.empty();
     }
 
-    public void addFile(FileScope fileScope) {
+    /**
+     * Adds {@code fileScope} to the package. A file that was updated in place must be added again
+     * for its new members to be seen.
+     */
+    public synchronized void addFile(FileScope fileScope) {
         files.add(fileScope);
+        onMembersChanged();
     }
 
-    public void removeFile(FileScope fileScope) {
+    public synchronized void removeFile(FileScope fileScope) {
         files.remove(fileScope);
+        onMembersChanged();
+    }
+
+    /**
+     * Adds files that are loaded by {@code fileLoader} the first time the members of this package
+     * are accessed.
+     */
+    public synchronized void addLazyFiles(Supplier<? extends Collection<FileScope>> fileLoader) {
+        lazyFileLoaders.add(fileLoader);
+        // The files are loaded when the members are accessed next, which must not use a snapshot
+        // taken before.
+        onMembersChanged();
+    }
+
+    /**
+     * @return all files of this package, including lazily loaded files.
+     */
+    public synchronized List<FileScope> getFiles() {
+        loadLazyFiles();
+        return ImmutableList.copyOf(files);
+    }
+
+    /**
+     * Gets a number that changes whenever the sub packages or files of this package change. Files
+     * that are loaded lazily change it when they are loaded.
+     */
+    public synchronized long getVersion() {
+        return version;
     }
 
     /**
      * @return whether the package has sub packages or files.
      */
-    public boolean hasChildren() {
-        return !(subPackages.isEmpty() && files.isEmpty());
+    public synchronized boolean hasChildren() {
+        return !(subPackages.isEmpty() && files.isEmpty() && lazyFileLoaders.isEmpty());
+    }
+
+    private void loadLazyFiles() {
+        if (lazyFileLoaders.isEmpty()) {
+            return;
+        }
+        List<Supplier<? extends Collection<FileScope>>> loaders = ImmutableList.copyOf(lazyFileLoaders);
+        lazyFileLoaders.clear();
+        for (Supplier<? extends Collection<FileScope>> loader : loaders) {
+            try {
+                files.addAll(loader.get());
+            } catch (Throwable t) {
+                logger.warning(t, "Failed to load files of package");
+            }
+        }
+        onMembersChanged();
+    }
+
+    private void onMembersChanged() {
+        memberEntities = null;
+        version++;
     }
 
     @Override
@@ -30,6 +30,7 @@ import androidx.annotation.NonNull;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Range;
+import com.tyron.javacompletion.model.util.SourceRanges;
 
 import java.util.EnumSet;
 import java.util.List;
@@ -45,7 +46,7 @@ public class VariableEntity extends Entity implements EntityScope {
 
     private final TypeReference type;
     private final EntityScope parentScope;
-    private final Range<Integer> definitionRange;
+    private Range<Integer> definitionRange;
 
     public VariableEntity(
             String simpleName,
@@ -108,4 +109,10 @@ public class VariableEntity extends Entity implements EntityScope {
     public Range<Integer> getDefinitionRange() {
         return definitionRange;
     }
+
+    @Override
+    public void shiftRanges(int position, int offset) {
+        super.shiftRanges(position, offset);
+        definitionRange = SourceRanges.shift(definitionRange, position, offset);
+    }
 }
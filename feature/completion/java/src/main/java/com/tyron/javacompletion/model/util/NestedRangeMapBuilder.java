@@ -53,6 +53,50 @@ public class NestedRangeMapBuilder<V> {
         return this;
     }
 
+    /**
+     * Maps all ranges of {@code other} to their values.
+     */
+    public NestedRangeMapBuilder<V> putAll(NestedRangeMapBuilder<V> other) {
+        entries.addAll(other.entries);
+        return this;
+    }
+
+    /**
+     * Removes all ranges that are enclosed in {@code range}.
+     */
+    public NestedRangeMapBuilder<V> removeEnclosedBy(Range<Integer> range) {
+        Range<Integer> canonicalRange = range.canonical(DiscreteDomain.integers());
+        entries.removeIf(entry -> canonicalRange.encloses(entry.range));
+        return this;
+    }
+
+    /**
+     * Moves the endpoints of all ranges that are at or after {@code position} by {@code offset}.
+     *
+     * @see SourceRanges#shift
+     */
+    public NestedRangeMapBuilder<V> shift(int position, int offset) {
+        for (int i = 0; i < entries.size(); i++) {
+            Entry<V> entry = entries.get(i);
+            Range<Integer> shiftedRange = SourceRanges.shift(entry.range, position, offset);
+            if (shiftedRange != entry.range) {
+                entries.set(i, new Entry<>(shiftedRange, entry.value));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the values of all ranges that are mapped.
+     */
+    public List<V> getValues() {
+        List<V> values = new ArrayList<>(entries.size());
+        for (Entry<V> entry : entries) {
+            values.add(entry.value);
+        }
+        return values;
+    }
+
     public ImmutableRangeMap<Integer, V> build() {
         Collections.sort(entries);
         ImmutableRangeMap.Builder<Integer, V> builder = new ImmutableRangeMap.Builder<>();
@@ -0,0 +1,54 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ *  This file is part of CodeAssist.
+ *
+ *  CodeAssist is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  CodeAssist is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with CodeAssist.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tyron.javacompletion.model.util;
+
+import com.google.common.collect.Range;
+
+/**
+ * Utilities for ranges of positions in source files.
+ */
+public class SourceRanges {
+    private SourceRanges() {
+    }
+
+    /**
+     * Moves the endpoints of {@code range} that are at or after {@code position} by {@code offset}.
+     *
+     * <p>It keeps {@code range} consistent with the source code after {@code offset} characters are
+     * inserted at {@code position}, or {@code -offset} characters are removed before {@code
+     * position}. A range before {@code position} is returned as is, and a range enclosing {@code
+     * position} is extended or shrunk.
+     */
+    public static Range<Integer> shift(Range<Integer> range, int position, int offset) {
+        if (range == null || offset == 0 || !range.hasUpperBound() || range.upperEndpoint() < position) {
+            return range;
+        }
+        int lower = range.lowerEndpoint();
+        if (lower >= position) {
+            lower += offset;
+        }
+        return Range.range(
+                lower, range.lowerBoundType(), range.upperEndpoint() + offset, range.upperBoundType());
+    }
+}
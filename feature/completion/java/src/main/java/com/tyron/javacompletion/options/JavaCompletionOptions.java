@@ -48,4 +48,11 @@ public interface JavaCompletionOptions {
     List<String> getIgnorePaths();
 
     List<String> getTypeIndexFiles();
+
+    /**
+     * Directory for caching indexes of JAR files. If not set, JAR files are indexed every time the
+     * project is initialized.
+     */
+    @Nullable
+    String getCacheDir();
 }
@@ -34,15 +34,25 @@ public class JavaCompletionOptionsImpl implements JavaCompletionOptions {
     private final Level logLevel;
     private final List<String> ignoredPaths;
     private final List<String> indexFiles;
+    private final String cacheDir;
 
     public JavaCompletionOptionsImpl(String logPath,
                                      Level logLevel,
                                      List<String> ignoredPaths,
                                      List<String> indexFiles) {
+        this(logPath, logLevel, ignoredPaths, indexFiles, null);
+    }
+
+    public JavaCompletionOptionsImpl(String logPath,
+                                     Level logLevel,
+                                     List<String> ignoredPaths,
+                                     List<String> indexFiles,
+                                     @Nullable String cacheDir) {
         this.logPath = logPath;
         this.logLevel = logLevel;
         this.ignoredPaths = ignoredPaths;
         this.indexFiles = indexFiles;
+        this.cacheDir = cacheDir;
     }
 
     @Nullable
@@ -66,4 +76,10 @@ public class JavaCompletionOptionsImpl implements JavaCompletionOptions {
     public List<String> getTypeIndexFiles() {
         return indexFiles;
     }
+
+    @Nullable
+    @Override
+    public String getCacheDir() {
+        return cacheDir;
+    }
 }
@@ -49,6 +49,7 @@ import com.sun.source.tree.Tree;
 import com.sun.source.tree.TypeParameterTree;
 import com.sun.source.tree.VariableTree;
 import com.sun.source.tree.WhileLoopTree;
+import com.sun.source.util.TreePath;
 import com.sun.source.util.TreePathScanner;
 import com.sun.source.util.TreeScanner;
 import com.sun.tools.javac.tree.DocCommentTable;
@@ -128,14 +129,60 @@ public class AstScanner extends TreePathScanner<Void, EntityScope> {
     }
 
     public FileScope startScan(JCCompilationUnit node, String filename, CharSequence content) {
+        return startScan(node, filename, content, new NestedRangeMapBuilder<>());
+    }
+
+    /**
+     * Scans {@code node} and puts the ranges of all scopes in the file to {@code scopeRangeBuilder}.
+     *
+     * <p>The caller can keep {@code scopeRangeBuilder} for {@link #rescanMethodBody}.
+     */
+    public FileScope startScan(
+            JCCompilationUnit node,
+            String filename,
+            CharSequence content,
+            NestedRangeMapBuilder<EntityScope> scopeRangeBuilder) {
         this.filename = filename;
         this.content = content.toString();
+        this.scopeRangeBuilder = scopeRangeBuilder;
         super.scan(node, null);
         this.filename = null;
         this.content = null;
+        this.scopeRangeBuilder = null;
         return this.fileScope;
     }
 
+    /**
+     * Scans the body of {@code methodNode} into {@code methodEntity}, which has been cleared by {@link
+     * MethodEntity#clearBody}. The ranges of scopes in the body are put to {@code scopeRangeBuilder}.
+     *
+     * <p>The rest of the file is not scanned.
+     */
+    public void rescanMethodBody(
+            JCCompilationUnit compilationUnit,
+            JCMethodDecl methodNode,
+            MethodEntity methodEntity,
+            CharSequence content,
+            NestedRangeMapBuilder<EntityScope> scopeRangeBuilder) {
+        checkArgument(methodNode.getBody() != null, "Method %s doesn't have a body", methodNode.getName());
+        this.content = content.toString();
+        this.scopeRangeBuilder = scopeRangeBuilder;
+        this.endPosTable = compilationUnit.endPositions;
+        this.docComments = compilationUnit.docComments;
+        // No entity defined inside method scope is qualified.
+        this.currentQualifiers = UNAVAILABLE_QUALIFIERS;
+        // The enclosing classes are not in the path. Only the method is needed for telling whether a
+        // block is the method body.
+        TreePath methodPath = new TreePath(new TreePath(compilationUnit), methodNode);
+        scan(new TreePath(methodPath, methodNode.getBody()), methodEntity);
+
+        this.content = null;
+        this.scopeRangeBuilder = null;
+        this.endPosTable = null;
+        this.docComments = null;
+        this.currentQualifiers = new ArrayList<>();
+    }
+
     @Override
     public Void visitCompilationUnit(CompilationUnitTree node, EntityScope unused) {
         // Find or create package scope
@@ -148,7 +195,6 @@ public class AstScanner extends TreePathScanner<Void, EntityScope> {
         this.fileScope =
                 FileScope.createFromSource(
                         filename, this.currentQualifiers, compilationUnit, content.length());
-        this.scopeRangeBuilder = new NestedRangeMapBuilder<>();
         this.endPosTable = compilationUnit.endPositions;
         this.docComments = compilationUnit.docComments;
         addScopeRange(compilationUnit, this.fileScope);
@@ -182,7 +228,6 @@ public class AstScanner extends TreePathScanner<Void, EntityScope> {
 
         // Cleanup
         this.currentQualifiers.clear();
-        this.scopeRangeBuilder = null;
         this.endPosTable = null;
         return null;
     }
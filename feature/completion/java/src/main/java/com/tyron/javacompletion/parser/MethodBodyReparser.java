@@ -0,0 +1,395 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ *  This file is part of CodeAssist.
+ *
+ *  CodeAssist is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  CodeAssist is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with CodeAssist.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tyron.javacompletion.parser;
+
+import androidx.annotation.Nullable;
+
+import com.google.common.collect.Range;
+import com.sun.tools.javac.tree.DocCommentTable;
+import com.sun.tools.javac.tree.EndPosTable;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCBlock;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.tree.JCTree.JCErroneous;
+import com.sun.tools.javac.tree.JCTree.JCMethodDecl;
+import com.sun.tools.javac.tree.JCTree.JCSwitch;
+import com.sun.tools.javac.tree.JCTree.JCSwitchExpression;
+import com.sun.tools.javac.tree.JCTree.JCVariableDecl;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeScanner;
+import com.sun.tools.javac.util.Position;
+import com.tyron.javacompletion.model.ClassEntity;
+import com.tyron.javacompletion.model.Entity;
+import com.tyron.javacompletion.model.EntityScope;
+import com.tyron.javacompletion.model.FileScope;
+import com.tyron.javacompletion.model.MethodEntity;
+import com.tyron.javacompletion.model.util.NestedRangeMapBuilder;
+import com.tyron.javacompletion.options.IndexOptions;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Updates a parsed source file in place after its content is edited inside a method body.
+ *
+ * <p>The edited region is found by comparing the previous and the new content. Only the body of
+ * the method enclosing the edited region is parsed and scanned again. The new body replaces the
+ * previous one in the compilation unit, and the positions of the rest of the compilation unit, the
+ * entities and the scope ranges after the edited region are moved by the length difference.
+ *
+ * <p>Syntax errors inside the body are recovered from as when parsing the whole file. Edits outside
+ * method bodies, and edits after which the braces of the body no longer enclose exactly the edited
+ * body, e.g. an unclosed block, are not handled. The whole file needs to be parsed in these cases.
+ *
+ * <p>Only the method body is parsed and scanned, but finding the edited region, moving the
+ * positions of the trees after it and computing the line map still take time proportional to the
+ * size of the file. They are simple passes that are much cheaper than parsing it.
+ */
+class MethodBodyReparser {
+    // The method body is parsed as the body of a method in a class with this prefix.
+    private static final String BODY_PREFIX = "class MethodBodyReparser{void reparse()";
+    private static final String BODY_SUFFIX = "}";
+
+    private final ParserContext parserContext;
+    private final IndexOptions indexOptions;
+
+    MethodBodyReparser(ParserContext parserContext, IndexOptions indexOptions) {
+        this.parserContext = parserContext;
+        this.indexOptions = indexOptions;
+    }
+
+    @Nullable
+    private static JCMethodDecl findEnclosingMethod(
+            List<? extends JCTree> trees, int editStart, int editEnd, EndPosTable endPositions) {
+        for (JCTree tree : trees) {
+            if (tree instanceof JCClassDecl classDecl) {
+                JCMethodDecl methodDecl =
+                        findEnclosingMethod(classDecl.getMembers(), editStart, editEnd, endPositions);
+                if (methodDecl != null) {
+                    return methodDecl;
+                }
+            } else if (tree instanceof JCMethodDecl methodDecl && methodDecl.getBody() != null) {
+                JCBlock body = methodDecl.getBody();
+                int bodyEnd = TreeInfo.getEndPos(body, endPositions);
+                // The edit must be between the braces of the body.
+                if (body.getStartPosition() < editStart && editEnd < bodyEnd) {
+                    return methodDecl;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Updates {@code fileScope} parsed from {@code oldContent} to match {@code newContent}.
+     *
+     * @param scopeRangeBuilder the builder that has the scope ranges of {@code fileScope}. It's
+     *                          updated with the new scope ranges
+     * @return {@code true} if {@code fileScope} is up to date with {@code newContent}, or {@code
+     * false} if the edit can't be handled, in which case nothing is changed
+     */
+    boolean reparse(
+            String filename,
+            FileScope fileScope,
+            NestedRangeMapBuilder<EntityScope> scopeRangeBuilder,
+            String oldContent,
+            String newContent) {
+        Optional<JCCompilationUnit> optionalCompilationUnit = fileScope.getCompilationUnit();
+        if (!optionalCompilationUnit.isPresent()) {
+            return false;
+        }
+        JCCompilationUnit compilationUnit = optionalCompilationUnit.get();
+
+        int oldLength = oldContent.length();
+        int newLength = newContent.length();
+        int minLength = Math.min(oldLength, newLength);
+        int editStart = 0;
+        while (editStart < minLength && oldContent.charAt(editStart) == newContent.charAt(editStart)) {
+            editStart++;
+        }
+        if (editStart == oldLength && oldLength == newLength) {
+            // Nothing is changed.
+            return true;
+        }
+        int suffixLength = 0;
+        while (suffixLength < minLength - editStart
+                && oldContent.charAt(oldLength - 1 - suffixLength)
+                == newContent.charAt(newLength - 1 - suffixLength)) {
+            suffixLength++;
+        }
+        // The edit replaces [editStart, oldEditEnd) of the old content.
+        int oldEditEnd = oldLength - suffixLength;
+        int offset = newLength - oldLength;
+
+        EndPosTable oldEndPositions = compilationUnit.endPositions;
+        JCMethodDecl methodNode =
+                findEnclosingMethod(compilationUnit.getTypeDecls(), editStart, oldEditEnd, oldEndPositions);
+        if (methodNode == null) {
+            return false;
+        }
+        JCBlock oldBody = methodNode.getBody();
+        int bodyStart = oldBody.getStartPosition();
+        int oldBodyEnd = TreeInfo.getEndPos(oldBody, oldEndPositions);
+        EntityScope methodScope = fileScope.getEntityScopeAt(bodyStart);
+        if (!(methodScope instanceof MethodEntity methodEntity)) {
+            // The method content is not indexed.
+            return false;
+        }
+
+        String bodyContent = newContent.substring(bodyStart, oldBodyEnd + offset);
+        // The errors are reported at positions in the wrapping class, which are meaningless.
+        JCCompilationUnit bodyCompilationUnit =
+                parserContext.parseWithoutReportingErrors(
+                        filename, BODY_PREFIX + bodyContent + BODY_SUFFIX);
+        JCBlock newBody = getParsedBody(bodyCompilationUnit, bodyContent.length());
+        if (newBody == null) {
+            return false;
+        }
+
+        // Update the compilation unit. Positions of trees after the edit are moved, and positions of
+        // the new body are moved from the wrapping class to the file.
+        OverridingEndPosTable newEndPositions =
+                oldEndPositions instanceof OverridingEndPosTable overridingEndPositions
+                        ? overridingEndPositions
+                        : new OverridingEndPosTable(oldEndPositions);
+        new PositionShifter(oldEditEnd, offset, newEndPositions, oldBody).scan(compilationUnit);
+        new BodyMover(
+                bodyStart - BODY_PREFIX.length(),
+                bodyCompilationUnit,
+                newEndPositions,
+                compilationUnit.docComments)
+                .scan(newBody);
+        methodNode.body = newBody;
+        compilationUnit.endPositions = newEndPositions;
+        compilationUnit.lineMap = Position.makeLineMap(newContent.toCharArray(), newLength, false);
+
+        // Update the entities and scope ranges.
+        scopeRangeBuilder.removeEnclosedBy(Range.closed(bodyStart, oldBodyEnd));
+        methodEntity.clearBody();
+        for (EntityScope scope : getScopesToShift(fileScope, scopeRangeBuilder)) {
+            scope.shiftRanges(oldEditEnd, offset);
+        }
+        scopeRangeBuilder.shift(oldEditEnd, offset);
+        new AstScanner(indexOptions)
+                .rescanMethodBody(compilationUnit, methodNode, methodEntity, newContent, scopeRangeBuilder);
+        fileScope.setScopeRangeMap(scopeRangeBuilder.build());
+        return true;
+    }
+
+    /**
+     * Gets the method body parsed from {@link #BODY_PREFIX}, the body content and {@link
+     * #BODY_SUFFIX}, or null if the body content is not exactly one block. The parser recovers from
+     * errors inside a block without looking past its closing brace, so the block is parsed the same
+     * way as in the file in that case.
+     */
+    @Nullable
+    private static JCBlock getParsedBody(JCCompilationUnit compilationUnit, int bodyLength) {
+        if (compilationUnit.getTypeDecls().size() != 1
+                || !(compilationUnit.getTypeDecls().get(0) instanceof JCClassDecl classDecl)
+                || classDecl.getMembers().size() != 1
+                || !(classDecl.getMembers().get(0) instanceof JCMethodDecl methodDecl)
+                || methodDecl.getBody() == null) {
+            return null;
+        }
+        JCBlock body = methodDecl.getBody();
+        if (body.getStartPosition() != BODY_PREFIX.length()
+                || TreeInfo.getEndPos(body, compilationUnit.endPositions)
+                != BODY_PREFIX.length() + bodyLength) {
+            return null;
+        }
+        return body;
+    }
+
+    /**
+     * Gets all scopes that may have ranges after the edit. The scopes in the edited method body must
+     * have been removed from {@code scopeRangeBuilder}.
+     */
+    private static Set<EntityScope> getScopesToShift(
+            FileScope fileScope, NestedRangeMapBuilder<EntityScope> scopeRangeBuilder) {
+        Set<EntityScope> scopes = Collections.newSetFromMap(new IdentityHashMap<>());
+        scopes.add(fileScope);
+        for (EntityScope scope : scopeRangeBuilder.getValues()) {
+            if (scopes.add(scope) && scope instanceof ClassEntity classEntity) {
+                // Methods without body don't have scope ranges.
+                for (Entity member : classEntity.getMemberEntities().values()) {
+                    scopes.add(member.getScope());
+                }
+                for (MethodEntity constructor : classEntity.getConstructors()) {
+                    scopes.add(constructor);
+                }
+            }
+        }
+        return scopes;
+    }
+
+    private static int shiftPosition(int pos, int position, int offset) {
+        return pos >= position ? pos + offset : pos;
+    }
+
+    private static void shiftTreePositions(JCTree tree, int position, int offset) {
+        tree.pos = shiftPosition(tree.pos, position, offset);
+        if (tree instanceof JCVariableDecl variableDecl) {
+            variableDecl.startPos = shiftPosition(variableDecl.startPos, position, offset);
+        } else if (tree instanceof JCBlock block) {
+            block.endpos = shiftPosition(block.endpos, position, offset);
+        } else if (tree instanceof JCSwitch switchTree) {
+            switchTree.endpos = shiftPosition(switchTree.endpos, position, offset);
+        } else if (tree instanceof JCSwitchExpression switchExpression) {
+            switchExpression.endpos = shiftPosition(switchExpression.endpos, position, offset);
+        }
+    }
+
+    /**
+     * Moves the positions at or after {@code position} of all trees except {@code skippedTree} by
+     * {@code offset}, including their end positions in {@code endPositions}.
+     */
+    private static class PositionShifter extends TreeScanner {
+        private final int position;
+        private final int offset;
+        private final OverridingEndPosTable endPositions;
+        private final JCTree skippedTree;
+        // The parser shares some trees, e.g. the type of variables declared in one statement. They
+        // must be moved only once.
+        private final Set<JCTree> visitedTrees = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private PositionShifter(
+                int position, int offset, OverridingEndPosTable endPositions, JCTree skippedTree) {
+            this.position = position;
+            this.offset = offset;
+            this.endPositions = endPositions;
+            this.skippedTree = skippedTree;
+        }
+
+        @Override
+        public void scan(JCTree tree) {
+            if (tree == null || tree == skippedTree || !visitedTrees.add(tree)) {
+                return;
+            }
+            int endPos = endPositions.getEndPos(tree);
+            if (endPos != Position.NOPOS) {
+                if (endPos <= position) {
+                    // The whole tree is before position.
+                    return;
+                }
+                endPositions.storeEnd(tree, endPos + offset);
+            }
+            shiftTreePositions(tree, position, offset);
+            super.scan(tree);
+        }
+
+        @Override
+        public void visitErroneous(JCErroneous tree) {
+            // The start position of an erroneous tree is the start position of its first error tree.
+            scan(tree.getErrorTrees());
+        }
+    }
+
+    /**
+     * Moves the trees parsed from the wrapping class to the file by {@code offset}, and copies their
+     * end positions and doc comments to the compilation unit of the file.
+     */
+    private static class BodyMover extends TreeScanner {
+        private final int offset;
+        private final EndPosTable sourceEndPositions;
+        private final DocCommentTable sourceDocComments;
+        private final EndPosTable targetEndPositions;
+        private final DocCommentTable targetDocComments;
+        private final Set<JCTree> visitedTrees = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private BodyMover(
+                int offset,
+                JCCompilationUnit sourceCompilationUnit,
+                EndPosTable targetEndPositions,
+                DocCommentTable targetDocComments) {
+            this.offset = offset;
+            this.sourceEndPositions = sourceCompilationUnit.endPositions;
+            this.sourceDocComments = sourceCompilationUnit.docComments;
+            this.targetEndPositions = targetEndPositions;
+            this.targetDocComments = targetDocComments;
+        }
+
+        @Override
+        public void scan(JCTree tree) {
+            if (tree == null || !visitedTrees.add(tree)) {
+                return;
+            }
+            int endPos = sourceEndPositions.getEndPos(tree);
+            if (endPos != Position.NOPOS) {
+                targetEndPositions.storeEnd(tree, endPos + offset);
+            }
+            if (sourceDocComments != null
+                    && targetDocComments != null
+                    && sourceDocComments.hasComment(tree)) {
+                targetDocComments.putComment(tree, sourceDocComments.getComment(tree));
+            }
+            shiftTreePositions(tree, 0 /* position */, offset);
+            super.scan(tree);
+        }
+
+        @Override
+        public void visitErroneous(JCErroneous tree) {
+            scan(tree.getErrorTrees());
+        }
+    }
+
+    /**
+     * An {@link EndPosTable} with end positions overriding the ones in a base table. The end
+     * positions of trees moved or added by reparsing are stored in it, so the lookups don't slow
+     * down as the compilation unit is reparsed.
+     */
+    private static class OverridingEndPosTable implements EndPosTable {
+        private final EndPosTable baseEndPositions;
+        private final Map<JCTree, Integer> endPositions = new IdentityHashMap<>();
+
+        private OverridingEndPosTable(EndPosTable baseEndPositions) {
+            this.baseEndPositions = baseEndPositions;
+        }
+
+        @Override
+        public int getEndPos(JCTree tree) {
+            Integer endPos = endPositions.get(tree);
+            return endPos != null ? endPos : baseEndPositions.getEndPos(tree);
+        }
+
+        @Override
+        public void storeEnd(JCTree tree, int endpos) {
+            endPositions.put(tree, endpos);
+        }
+
+        @Override
+        public int replaceTree(JCTree oldTree, JCTree newTree) {
+            int endPos = getEndPos(oldTree);
+            endPositions.remove(oldTree);
+            if (endPos != Position.NOPOS) {
+                endPositions.put(newTree, endPos);
+            }
+            return endPos;
+        }
+    }
+}
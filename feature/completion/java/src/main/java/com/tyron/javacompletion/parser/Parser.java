@@ -23,10 +23,14 @@
  */
 package com.tyron.javacompletion.parser;
 
+import androidx.annotation.Nullable;
+
 import com.sun.source.tree.LineMap;
 import com.tyron.javacompletion.file.FileManager;
 import com.tyron.javacompletion.logging.JLogger;
+import com.tyron.javacompletion.model.EntityScope;
 import com.tyron.javacompletion.model.FileScope;
+import com.tyron.javacompletion.model.util.NestedRangeMapBuilder;
 import com.tyron.javacompletion.options.IndexOptions;
 
 import java.nio.file.Path;
@@ -34,18 +38,30 @@ import java.util.Optional;
 
 /**
  * Parser that converts source file to {@link FileScope}.
+ *
+ * <p>The last parsed file is kept. If it's parsed again after being edited inside a method body,
+ * only the method body is parsed and its {@link FileScope} is updated in place, see {@link
+ * MethodBodyReparser}.
  */
 public class Parser {
     private static final JLogger logger = JLogger.createForEnclosingClass();
 
+    // The end position table of a reparsed compilation unit keeps the end positions of replaced
+    // method bodies. Parse the whole file after this number of reparses to release them.
+    private static final int MAX_REPARSE_COUNT = 32;
+
     private final ParserContext parserContext = new ParserContext();
     private final FileContentFixer fileContentFixer = new FileContentFixer(parserContext);
     private final FileManager fileManager;
     private final IndexOptions indexOptions;
+    private final MethodBodyReparser methodBodyReparser;
+    @Nullable
+    private ParsedSource lastParsedSource;
 
     public Parser(FileManager fileManager, IndexOptions indexOptions) {
         this.fileManager = fileManager;
         this.indexOptions = indexOptions;
+        this.methodBodyReparser = new MethodBodyReparser(parserContext, indexOptions);
     }
 
     public Optional<FileScope> parseSourceFile(Path path, boolean fixContentForParsing) {
@@ -63,12 +79,82 @@ public class Parser {
             content = fixedContent.getContent();
             adjustedLineMap = fixedContent.getAdjustedLineMap();
         }
-        FileScope fileScope =
-                new AstScanner(indexOptions)
-                        .startScan(parserContext.parse(path.toString(), content), path.toString(), content);
+        String parsedContent = content.toString();
+        FileScope fileScope = reparseLastParsedSource(path, parsedContent, fixContentForParsing);
+        if (fileScope == null) {
+            NestedRangeMapBuilder<EntityScope> scopeRangeBuilder = new NestedRangeMapBuilder<>();
+            fileScope =
+                    new AstScanner(indexOptions)
+                            .startScan(
+                                    parserContext.parse(path.toString(), parsedContent),
+                                    path.toString(),
+                                    parsedContent,
+                                    scopeRangeBuilder);
+            lastParsedSource =
+                    new ParsedSource(path, parsedContent, fixContentForParsing, fileScope, scopeRangeBuilder);
+        }
         if (adjustedLineMap != null) {
             fileScope.setAdjustedLineMap(adjustedLineMap);
         }
         return Optional.of(fileScope);
     }
+
+    /**
+     * Updates the {@link FileScope} of the last parsed file in place if {@code path} is the last
+     * parsed file and only a method body is edited.
+     *
+     * @return the updated {@link FileScope}, or null if the file needs to be parsed
+     */
+    @Nullable
+    private FileScope reparseLastParsedSource(
+            Path path, String content, boolean fixContentForParsing) {
+        ParsedSource parsedSource = lastParsedSource;
+        if (parsedSource == null
+                || !parsedSource.path.equals(path)
+                || parsedSource.fixContentForParsing != fixContentForParsing
+                || parsedSource.reparseCount >= MAX_REPARSE_COUNT) {
+            return null;
+        }
+        // The file scope may be partially updated if reparsing fails.
+        lastParsedSource = null;
+        try {
+            if (!methodBodyReparser.reparse(
+                    path.toString(),
+                    parsedSource.fileScope,
+                    parsedSource.scopeRangeBuilder,
+                    parsedSource.content,
+                    content)) {
+                return null;
+            }
+        } catch (RuntimeException e) {
+            logger.warning(e, "Failed to reparse %s", path);
+            return null;
+        }
+        parsedSource.content = content;
+        parsedSource.reparseCount++;
+        lastParsedSource = parsedSource;
+        return parsedSource.fileScope;
+    }
+
+    private static class ParsedSource {
+        private final Path path;
+        private final boolean fixContentForParsing;
+        private final FileScope fileScope;
+        private final NestedRangeMapBuilder<EntityScope> scopeRangeBuilder;
+        private String content;
+        private int reparseCount;
+
+        private ParsedSource(
+                Path path,
+                String content,
+                boolean fixContentForParsing,
+                FileScope fileScope,
+                NestedRangeMapBuilder<EntityScope> scopeRangeBuilder) {
+            this.path = path;
+            this.content = content;
+            this.fixContentForParsing = fixContentForParsing;
+            this.fileScope = fileScope;
+            this.scopeRangeBuilder = scopeRangeBuilder;
+        }
+    }
 }
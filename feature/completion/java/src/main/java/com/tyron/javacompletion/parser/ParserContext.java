@@ -29,9 +29,12 @@ import com.sun.tools.javac.parser.JavacParser;
 import com.sun.tools.javac.parser.ParserFactory;
 import com.sun.tools.javac.parser.Scanner;
 import com.sun.tools.javac.parser.ScannerFactory;
+import com.sun.tools.javac.file.JavacFileManager;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.Log;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * Environment for using Javac Parser
  */
@@ -40,6 +43,8 @@ public class ParserContext {
 
     public ParserContext() {
         javacContext = new Context();
+        // The parser looks up the file manager when it's created, even though it doesn't read files.
+        new JavacFileManager(javacContext, true /* register */, StandardCharsets.UTF_8);
     }
 
     /**
@@ -71,6 +76,23 @@ public class ParserContext {
         return parser.parseCompilationUnit();
     }
 
+    /**
+     * Parses the content of a Java file without reporting the syntax errors to the log. The errors
+     * are recovered from as in {@link #parse}.
+     *
+     * @param filename the filename of the Java file
+     * @param content  the content of the Java file
+     */
+    public JCCompilationUnit parseWithoutReportingErrors(String filename, CharSequence content) {
+        Log javacLog = Log.instance(javacContext);
+        Log.DiscardDiagnosticHandler diagnosticHandler = new Log.DiscardDiagnosticHandler(javacLog);
+        try {
+            return parse(filename, content);
+        } finally {
+            javacLog.popDiagnosticHandler(diagnosticHandler);
+        }
+    }
+
     public Scanner tokenize(CharSequence content, boolean keepDocComments) {
         return ScannerFactory.instance(javacContext).newScanner(content, keepDocComments);
     }
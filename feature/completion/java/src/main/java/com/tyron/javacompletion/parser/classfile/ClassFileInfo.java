@@ -27,6 +27,7 @@ import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
 
 import java.util.EnumSet;
+import java.util.List;
 
 @AutoValue
 public abstract class ClassFileInfo {
@@ -34,7 +35,11 @@ public abstract class ClassFileInfo {
         return new AutoValue_ClassFileInfo.Builder();
     }
 
-    public abstract ImmutableList<ConstantPoolInfo> getConstantPool();
+    /**
+     * The constant pool of the class file. The element at index 0 is a place holder, since
+     * constant pool indices start from 1.
+     */
+    public abstract List<ConstantPoolInfo> getConstantPool();
 
     public abstract EnumSet<ClassAccessFlag> getAccessFlags();
 
@@ -52,7 +57,7 @@ public abstract class ClassFileInfo {
 
     @AutoValue.Builder
     public abstract static class Builder {
-        public abstract Builder setConstantPool(ImmutableList<ConstantPoolInfo> value);
+        public abstract Builder setConstantPool(List<ConstantPoolInfo> value);
 
         public abstract Builder setAccessFlags(EnumSet<ClassAccessFlag> value);
 
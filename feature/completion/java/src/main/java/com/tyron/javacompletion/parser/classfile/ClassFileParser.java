@@ -24,22 +24,11 @@
 package com.tyron.javacompletion.parser.classfile;
 
 import com.google.common.collect.ImmutableList;
-import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantClassInfo;
-import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantDoubleInfo;
-import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantFloatInfo;
-import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantIntegerInfo;
-import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantInterfaceMethodrefInfo;
-import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantInvokeDynamicInfo;
-import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantLongInfo;
-import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantMethodHandleInfo;
-import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantMethodTypeInfo;
-import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantMethodrefInfo;
-import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantNameAndTypeInfo;
-import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantStringInfo;
-import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantUtf8Info;
 
-import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.EnumSet;
@@ -47,107 +36,73 @@ import java.util.EnumSet;
 /**
  * A parser for Java .class files.
  *
+ * <p>The parser reads the .class file from a {@link ByteBuffer} without copying it. The constant
+ * pool of the parsed {@link ClassFileInfo} is decoded lazily from the buffer, see {@link
+ * ConstantPool}.
+ *
  * <p>Format spec is defined at <a href="https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html">...</a>
  */
 public class ClassFileParser {
     private static final int CLASS_MAGIC = 0xCAFEBABE;
-    // Constant pool tags:
-    private static final int CONSTANT_CLASS = 7;
-    private static final int CONSTANT_FIELD_REF = 9;
-    private static final int CONSTANT_METHOD_REF = 10;
-    private static final int CONSTANT_INTERFACE_METHOD_REF = 11;
-    private static final int CONSTANT_STRING = 8;
-    private static final int CONSTANT_INTEGER = 3;
-    private static final int CONSTANT_FLOAT = 4;
-    private static final int CONSTANT_LONG = 5;
-    private static final int CONSTANT_DOUBLE = 6;
-    private static final int CONSTANT_NAME_AND_TYPE = 12;
-    private static final int CONSTANT_UTF8 = 1;
-    private static final int CONSTANT_METHOD_HANDLE = 15;
-    private static final int CONSTANT_METHOD_TYPE = 16;
-    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
 
-    private ImmutableList<ConstantPoolInfo> constantPool;
+    private ConstantPool constantPool;
 
     public ClassFileParser() {
     }
 
     public ClassFileInfo parse(Path filePath) throws IOException {
-        try (DataInputStream inStream = new DataInputStream(Files.newInputStream(filePath))) {
-            return parseClass(inStream);
+        return parse(ByteBuffer.wrap(Files.readAllBytes(filePath)));
+    }
+
+    /**
+     * Parses the .class file from the position to the limit of {@code buffer}, e.g. a mapped file
+     * or the bytes of a zip entry.
+     *
+     * <p>The position of {@code buffer} is not changed. The returned {@link ClassFileInfo} keeps a
+     * reference to {@code buffer} for decoding its constant pool, so the content of {@code buffer}
+     * must not be changed while the {@link ClassFileInfo} is in use.
+     */
+    public ClassFileInfo parse(ByteBuffer buffer) throws IOException {
+        ByteBuffer classBuffer = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+        try {
+            return parseClass(classBuffer);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Unexpected end of class file", e);
         }
     }
 
     // See https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.1
-    private ClassFileInfo parseClass(DataInputStream inStream) throws IOException {
+    private ClassFileInfo parseClass(ByteBuffer buffer) {
         ClassFileInfo.Builder builder = ClassFileInfo.builder();
-        int magic = inStream.readInt();
+        int magic = buffer.getInt();
         if (magic != CLASS_MAGIC) {
             throw new ClassFileParserError(
                     "Invalid magic of the class file. Expected %x, actual: %x", CLASS_MAGIC, magic);
         }
 
-        int majorVersion = inStream.readUnsignedShort();
-        int minorVersion = inStream.readUnsignedShort();
+        int majorVersion = readUnsignedShort(buffer);
+        int minorVersion = readUnsignedShort(buffer);
 
-        constantPool = parseConstantPools(inStream);
+        constantPool = ConstantPool.parse(buffer);
         builder.setConstantPool(constantPool);
 
-        builder.setAccessFlags(parseClassAccessFlags(inStream));
-        builder.setThisClassIndex(inStream.readUnsignedShort());
-        builder.setSuperClassIndex(inStream.readUnsignedShort());
+        builder.setAccessFlags(parseClassAccessFlags(buffer));
+        builder.setThisClassIndex(readUnsignedShort(buffer));
+        builder.setSuperClassIndex(readUnsignedShort(buffer));
 
-        builder.setInterfaceIndices(parseInterfaces(inStream));
-        builder.setFields(parseFields(inStream));
-        builder.setMethods(parseMethods(inStream));
-        builder.setAttributes(parseAttributes(inStream));
+        builder.setInterfaceIndices(parseInterfaces(buffer));
+        builder.setFields(parseFields(buffer));
+        builder.setMethods(parseMethods(buffer));
+        builder.setAttributes(parseAttributes(buffer));
         return builder.build();
     }
 
-    private ImmutableList<ConstantPoolInfo> parseConstantPools(DataInputStream inStream)
-            throws IOException {
-        int constantPoolCount = inStream.readUnsignedShort();
-        // constantPoolCount is the number of constantPool + 1
-        ImmutableList.Builder<ConstantPoolInfo> builder = new ImmutableList.Builder<>();
-
-        // The first element is a place holder. We cannot use null because ImmutableList doesn't allow
-        // null to be its element.
-        builder.add(new ConstantPoolInfo());
-        for (int i = 1; i < constantPoolCount; i++) {
-            // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4
-            byte tag = inStream.readByte();
-            ConstantPoolInfo info = switch (tag) {
-                case CONSTANT_CLASS -> parseConstantClass(inStream);
-                case CONSTANT_FIELD_REF -> parseConstantFieldref(inStream);
-                case CONSTANT_METHOD_REF -> parseConstantMethodref(inStream);
-                case CONSTANT_INTERFACE_METHOD_REF -> parseConstantInterfaceMethodref(inStream);
-                case CONSTANT_STRING -> parseConstantString(inStream);
-                case CONSTANT_INTEGER -> parseConstantInteger(inStream);
-                case CONSTANT_FLOAT -> parseConstantFloat(inStream);
-                case CONSTANT_LONG -> parseConstantLong(inStream);
-                case CONSTANT_DOUBLE -> parseConstantDouble(inStream);
-                case CONSTANT_NAME_AND_TYPE -> parseConstantNameAndType(inStream);
-                case CONSTANT_UTF8 -> parseConstantUtf8(inStream);
-                case CONSTANT_METHOD_HANDLE -> parseConstantMethodHandle(inStream);
-                case CONSTANT_METHOD_TYPE -> parseConstantMethodTypeInfo(inStream);
-                case CONSTANT_INVOKE_DYNAMIC -> parseConstantInvokeDynamicInfo(inStream);
-                default -> throw new ClassFileParserError("Unknown constant pool tag %s", tag);
-            };
-            builder.add(info);
-
-            if (tag == CONSTANT_DOUBLE || tag == CONSTANT_LONG) {
-                // 8-byte constants take up two entries in the constant_pool table.
-                // See https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.5
-                builder.add(info);
-                i++;
-            }
-        }
-        return builder.build();
+    private static int readUnsignedShort(ByteBuffer buffer) {
+        return buffer.getShort() & 0xFFFF;
     }
 
-    private EnumSet<ClassAccessFlag> parseClassAccessFlags(DataInputStream inStream)
-            throws IOException {
-        int accessFlagsInt = inStream.readUnsignedShort();
+    private EnumSet<ClassAccessFlag> parseClassAccessFlags(ByteBuffer buffer) {
+        int accessFlagsInt = readUnsignedShort(buffer);
 
         EnumSet<ClassAccessFlag> accessFlags = EnumSet.noneOf(ClassAccessFlag.class);
         for (ClassAccessFlag accessFlag : ClassAccessFlag.values()) {
@@ -158,117 +113,21 @@ public class ClassFileParser {
         return accessFlags;
     }
 
-    private ConstantClassInfo parseConstantClass(DataInputStream inStream) throws IOException {
-        // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.1
-        int nameIndex = inStream.readUnsignedShort();
-        return ConstantClassInfo.create(nameIndex);
-    }
-
-    private ConstantPoolInfo.ConstantFieldRefInfo parseConstantFieldref(DataInputStream inStream) throws IOException {
-        // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.2
-        int classIndex = inStream.readUnsignedShort();
-        int nameAndTypeIndex = inStream.readUnsignedShort();
-        return ConstantPoolInfo.ConstantFieldRefInfo.create(classIndex, nameAndTypeIndex);
-    }
-
-    private ConstantMethodrefInfo parseConstantMethodref(DataInputStream inStream)
-            throws IOException {
-        // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.2
-        int classIndex = inStream.readUnsignedShort();
-        int nameAndTypeIndex = inStream.readUnsignedShort();
-        return ConstantMethodrefInfo.create(classIndex, nameAndTypeIndex);
-    }
-
-    private ConstantInterfaceMethodrefInfo parseConstantInterfaceMethodref(DataInputStream inStream)
-            throws IOException {
-        // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.2
-        int classIndex = inStream.readUnsignedShort();
-        int nameAndTypeIndex = inStream.readUnsignedShort();
-        return ConstantInterfaceMethodrefInfo.create(classIndex, nameAndTypeIndex);
-    }
-
-    private ConstantStringInfo parseConstantString(DataInputStream inStream) throws IOException {
-        // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.3
-        int stringIndex = inStream.readUnsignedShort();
-        return ConstantStringInfo.create(stringIndex);
-    }
-
-    private ConstantIntegerInfo parseConstantInteger(DataInputStream inStream) throws IOException {
-        // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.4
-        int value = inStream.readInt();
-        return ConstantIntegerInfo.create(value);
-    }
-
-    private ConstantFloatInfo parseConstantFloat(DataInputStream inStream) throws IOException {
-        // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.4
-        float value = inStream.readFloat();
-        return ConstantFloatInfo.create(value);
-    }
-
-    private ConstantLongInfo parseConstantLong(DataInputStream inStream) throws IOException {
-        // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.5
-        long value = inStream.readLong();
-        return ConstantLongInfo.create(value);
-    }
-
-    private ConstantDoubleInfo parseConstantDouble(DataInputStream inStream) throws IOException {
-        // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.5
-        double value = inStream.readDouble();
-        return ConstantDoubleInfo.create(value);
-    }
-
-    private ConstantNameAndTypeInfo parseConstantNameAndType(DataInputStream inStream)
-            throws IOException {
-        // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.6
-        int nameIndex = inStream.readUnsignedShort();
-        int descriptorIndex = inStream.readUnsignedShort();
-        return ConstantNameAndTypeInfo.create(nameIndex, descriptorIndex);
-    }
-
-    private ConstantUtf8Info parseConstantUtf8(DataInputStream inStream) throws IOException {
-        // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.7
-        String value = inStream.readUTF();
-        return ConstantUtf8Info.create(value);
-    }
-
-    private ConstantMethodHandleInfo parseConstantMethodHandle(DataInputStream inStream)
-            throws IOException {
-        // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.8
-        byte referenceKind = inStream.readByte();
-        int referenceIndex = inStream.readUnsignedShort();
-        return ConstantMethodHandleInfo.create(referenceKind, referenceIndex);
-    }
-
-    private ConstantMethodTypeInfo parseConstantMethodTypeInfo(DataInputStream inStream)
-            throws IOException {
-        // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.9
-        int descriptorIndex = inStream.readUnsignedShort();
-        return ConstantMethodTypeInfo.create(descriptorIndex);
-    }
-
-    private ConstantInvokeDynamicInfo parseConstantInvokeDynamicInfo(DataInputStream inStream)
-            throws IOException {
-        // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.10
-        int bootstrapMethodAttrIndex = inStream.readUnsignedShort();
-        int nameAndTypeIndex = inStream.readUnsignedShort();
-        return ConstantInvokeDynamicInfo.create(bootstrapMethodAttrIndex, nameAndTypeIndex);
-    }
-
-    private ImmutableList<Integer> parseInterfaces(DataInputStream inStream) throws IOException {
-        int interfacesCount = inStream.readUnsignedShort();
+    private ImmutableList<Integer> parseInterfaces(ByteBuffer buffer) {
+        int interfacesCount = readUnsignedShort(buffer);
         ImmutableList.Builder<Integer> builder = new ImmutableList.Builder<>();
         for (int i = 0; i < interfacesCount; i++) {
-            builder.add(inStream.readUnsignedShort());
+            builder.add(readUnsignedShort(buffer));
         }
         return builder.build();
     }
 
-    private ImmutableList<FieldInfo> parseFields(DataInputStream inStream) throws IOException {
-        int fieldsCount = inStream.readUnsignedShort();
+    private ImmutableList<FieldInfo> parseFields(ByteBuffer buffer) {
+        int fieldsCount = readUnsignedShort(buffer);
         ImmutableList.Builder<FieldInfo> builder = new ImmutableList.Builder<>();
         for (int i = 0; i < fieldsCount; i++) {
             // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.5
-            int accessFlagsInt = inStream.readUnsignedShort();
+            int accessFlagsInt = readUnsignedShort(buffer);
             EnumSet<FieldInfo.AccessFlag> accessFlags = EnumSet.noneOf(FieldInfo.AccessFlag.class);
             for (FieldInfo.AccessFlag flag : FieldInfo.AccessFlag.values()) {
                 if ((accessFlagsInt & flag.getValue()) != 0) {
@@ -276,20 +135,20 @@ public class ClassFileParser {
                 }
             }
 
-            int nameIndex = inStream.readUnsignedShort();
-            int descriptorIndex = inStream.readUnsignedShort();
-            ImmutableList<AttributeInfo> attributeInfos = parseAttributes(inStream);
+            int nameIndex = readUnsignedShort(buffer);
+            int descriptorIndex = readUnsignedShort(buffer);
+            ImmutableList<AttributeInfo> attributeInfos = parseAttributes(buffer);
             builder.add(FieldInfo.create(accessFlags, nameIndex, descriptorIndex, attributeInfos));
         }
         return builder.build();
     }
 
-    private ImmutableList<MethodInfo> parseMethods(DataInputStream inStream) throws IOException {
-        int methodsCount = inStream.readUnsignedShort();
+    private ImmutableList<MethodInfo> parseMethods(ByteBuffer buffer) {
+        int methodsCount = readUnsignedShort(buffer);
         ImmutableList.Builder<MethodInfo> builder = new ImmutableList.Builder<>();
         for (int i = 0; i < methodsCount; i++) {
             // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.6
-            int accessFlagsInt = inStream.readUnsignedShort();
+            int accessFlagsInt = readUnsignedShort(buffer);
             EnumSet<MethodInfo.AccessFlag> accessFlags = EnumSet.noneOf(MethodInfo.AccessFlag.class);
             for (MethodInfo.AccessFlag flag : MethodInfo.AccessFlag.values()) {
                 if ((accessFlagsInt & flag.getValue()) != 0) {
@@ -297,26 +156,30 @@ public class ClassFileParser {
                 }
             }
 
-            int nameIndex = inStream.readUnsignedShort();
-            int descriptorIndex = inStream.readUnsignedShort();
-            ImmutableList<AttributeInfo> attributeInfos = parseAttributes(inStream);
+            int nameIndex = readUnsignedShort(buffer);
+            int descriptorIndex = readUnsignedShort(buffer);
+            ImmutableList<AttributeInfo> attributeInfos = parseAttributes(buffer);
             builder.add(MethodInfo.create(accessFlags, nameIndex, descriptorIndex, attributeInfos));
         }
         return builder.build();
     }
 
-    private ImmutableList<AttributeInfo> parseAttributes(DataInputStream inStream)
-            throws IOException {
+    private ImmutableList<AttributeInfo> parseAttributes(ByteBuffer buffer) {
+        int attributesCount = readUnsignedShort(buffer);
+        if (attributesCount == 0) {
+            return ImmutableList.of();
+        }
         ImmutableList.Builder<AttributeInfo> builder = new ImmutableList.Builder<>();
-        int attributesCount = inStream.readUnsignedShort();
         for (int i = 0; i < attributesCount; i++) {
             // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.7
-            int nameIndex = inStream.readUnsignedShort();
-            int length = inStream.readInt();
-            String name = getUtf8Constant(nameIndex);
-            if (AttributeInfo.InnerClass.NAME.equals(name)) {
+            int nameIndex = readUnsignedShort(buffer);
+            int length = buffer.getInt();
+            checkUtf8Constant(nameIndex);
+            // Compare the name with the bytes in the constant pool so that names of skipped
+            // attributes, e.g. Code, are never decoded.
+            if (constantPool.utf8Equals(nameIndex, AttributeInfo.InnerClass.NAME)) {
                 // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.7.6
-                int numClasses = inStream.readUnsignedShort();
+                int numClasses = readUnsignedShort(buffer);
                 ImmutableList.Builder<AttributeInfo.InnerClass.ClassInfo> classInfoBuilder =
                         new ImmutableList.Builder<>();
 
@@ -328,45 +191,42 @@ public class ClassFileParser {
                 }
 
                 for (int j = 0; j < numClasses; j++) {
-                    int innerClassIndex = inStream.readUnsignedShort();
-                    int outerClassIndex = inStream.readUnsignedShort();
-                    int innerNameIndex = inStream.readUnsignedShort();
-                    EnumSet<ClassAccessFlag> accessFlags = parseClassAccessFlags(inStream);
+                    int innerClassIndex = readUnsignedShort(buffer);
+                    int outerClassIndex = readUnsignedShort(buffer);
+                    int innerNameIndex = readUnsignedShort(buffer);
+                    EnumSet<ClassAccessFlag> accessFlags = parseClassAccessFlags(buffer);
                     classInfoBuilder.add(
                             AttributeInfo.InnerClass.ClassInfo.create(
                                     innerClassIndex, outerClassIndex, innerNameIndex, accessFlags));
                 }
                 builder.add(AttributeInfo.InnerClass.create(classInfoBuilder.build()));
-            } else if (AttributeInfo.Signature.NAME.equals(name)) {
+            } else if (constantPool.utf8Equals(nameIndex, AttributeInfo.Signature.NAME)) {
                 // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.7.9
                 if (length != 2) {
                     throw new ClassFileParserError(
                             "Attribute length %s doesn't match the size of Signature attribute", length);
                 }
-                int signatureIndex = inStream.readUnsignedShort();
+                int signatureIndex = readUnsignedShort(buffer);
                 builder.add(AttributeInfo.Signature.create(signatureIndex));
             } else {
-                inStream.skipBytes(length);
+                buffer.position(buffer.position() + length);
             }
         }
         return builder.build();
     }
 
-    private String getUtf8Constant(int constantPoolIndex) {
+    private void checkUtf8Constant(int constantPoolIndex) {
         if (constantPoolIndex < 0 || constantPoolIndex >= constantPool.size()) {
             throw new ClassFileParserError(
                     "Constant pool index %s out of range. Constant pool size is %s",
                     constantPoolIndex, constantPool.size());
         }
 
-        ConstantPoolInfo constant = constantPool.get(constantPoolIndex);
-
-        if (!(constant instanceof ConstantUtf8Info)) {
+        if (!constantPool.isUtf8(constantPoolIndex)) {
             throw new ClassFileParserError(
                     "Constant %s is not a ConstantUtf8Info instance. It's %s",
-                    constantPoolIndex, constant.getClass().getSimpleName());
+                    constantPoolIndex, constantPool.get(constantPoolIndex).getClass().getSimpleName());
         }
-        return ((ConstantUtf8Info) constant).getValue();
     }
 
     public static class ClassFileParserError extends RuntimeException {
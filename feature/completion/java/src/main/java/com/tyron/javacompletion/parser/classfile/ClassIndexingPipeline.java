@@ -0,0 +1,158 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ *  This file is part of CodeAssist.
+ *
+ *  CodeAssist is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  CodeAssist is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with CodeAssist.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tyron.javacompletion.parser.classfile;
+
+import com.google.auto.value.AutoValue;
+import com.tyron.javacompletion.logging.JLogger;
+import com.tyron.javacompletion.model.Module;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Indexes .class files into a {@link Module} in parallel.
+ *
+ * <p>Class files are parsed and converted to {@link ParsedClassFile} on a worker pool. The parsed
+ * class files are added to the module on the thread that calls {@link #submit}, in the order they
+ * are submitted, so inner classes are attached to their outer classes exactly like {@link
+ * ClassModuleBuilder#processClassFile} does.
+ *
+ * <p>An instance must only be used by one thread.
+ */
+public class ClassIndexingPipeline {
+    private static final JLogger logger = JLogger.createForEnclosingClass();
+
+    // Bounds the number of parsed class files waiting to be added to the module.
+    private static final int MAX_PENDING_PER_WORKER = 64;
+
+    private final ClassModuleBuilder moduleBuilder;
+    private final ExecutorService executor;
+    private final int maxPending;
+    private final Deque<PendingClassFile> pendingClassFiles;
+    private final long startNanos;
+    private int indexedCount;
+    private int failedCount;
+
+    public ClassIndexingPipeline(Module module) {
+        this(module, ForkJoinPool.commonPool());
+    }
+
+    public ClassIndexingPipeline(Module module, ExecutorService executor) {
+        this.moduleBuilder = new ClassModuleBuilder(module);
+        this.executor = executor;
+        this.maxPending = MAX_PENDING_PER_WORKER * Runtime.getRuntime().availableProcessors();
+        this.pendingClassFiles = new ArrayDeque<>();
+        this.startNanos = System.nanoTime();
+    }
+
+    private static ParsedClassFile parse(Path classFilePath) throws IOException {
+        // ClassFileParser keeps the constant pool of the class being parsed, so it can't be shared
+        // between workers.
+        return new ClassInfoConverter().convert(new ClassFileParser().parse(classFilePath));
+    }
+
+    /**
+     * Schedules {@code classFilePath} to be parsed. Blocks to add parsed class files to the module
+     * if too many of them are pending.
+     */
+    public void submit(Path classFilePath) {
+        Future<ParsedClassFile> future = executor.submit(() -> parse(classFilePath));
+        pendingClassFiles.addLast(new PendingClassFile(classFilePath, future));
+        while (pendingClassFiles.size() > maxPending) {
+            addFirstPendingClassFile();
+        }
+    }
+
+    /**
+     * Waits for all submitted class files to be parsed and adds them to the module.
+     */
+    public Stats finish() {
+        while (!pendingClassFiles.isEmpty()) {
+            addFirstPendingClassFile();
+        }
+        Stats stats =
+                Stats.create(indexedCount, failedCount, (System.nanoTime() - startNanos) / 1_000_000);
+        logger.info(
+                "Indexed %s class files (%s failed) in %s ms, %s classes/s",
+                stats.getIndexedCount(),
+                stats.getFailedCount(),
+                stats.getElapsedMillis(),
+                stats.getClassesPerSecond());
+        return stats;
+    }
+
+    private void addFirstPendingClassFile() {
+        PendingClassFile pendingClassFile = pendingClassFiles.removeFirst();
+        try {
+            ParsedClassFile parsedClassFile = pendingClassFile.future.get();
+            moduleBuilder.addParsedClassFile(pendingClassFile.classFilePath, parsedClassFile);
+            indexedCount++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            failedCount++;
+            logger.warning(e.getCause(), "Failed to process .class file: %s", pendingClassFile.classFilePath);
+        } catch (Throwable t) {
+            failedCount++;
+            logger.warning(t, "Failed to process .class file: %s", pendingClassFile.classFilePath);
+        }
+    }
+
+    /**
+     * Statistics of indexing class files with a {@link ClassIndexingPipeline}.
+     */
+    @AutoValue
+    public abstract static class Stats {
+        public static Stats create(int indexedCount, int failedCount, long elapsedMillis) {
+            return new AutoValue_ClassIndexingPipeline_Stats(indexedCount, failedCount, elapsedMillis);
+        }
+
+        public abstract int getIndexedCount();
+
+        public abstract int getFailedCount();
+
+        public abstract long getElapsedMillis();
+
+        public long getClassesPerSecond() {
+            return getIndexedCount() * 1000L / Math.max(1, getElapsedMillis());
+        }
+    }
+
+    private static class PendingClassFile {
+        private final Path classFilePath;
+        private final Future<ParsedClassFile> future;
+
+        private PendingClassFile(Path classFilePath, Future<ParsedClassFile> future) {
+            this.classFilePath = classFilePath;
+            this.future = future;
+        }
+    }
+}
@@ -23,10 +23,13 @@
  */
 package com.tyron.javacompletion.parser.classfile;
 
+import androidx.annotation.Nullable;
+
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Range;
+import com.tyron.javacompletion.logging.JLogger;
 import com.tyron.javacompletion.model.ClassEntity;
 import com.tyron.javacompletion.model.Entity;
 import com.tyron.javacompletion.model.EntityScope;
@@ -41,20 +44,26 @@ import com.tyron.javacompletion.parser.classfile.ParsedClassFile.ParsedMethod;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Builder of {@link Module} with classes parsed from .class files.
+ *
+ * <p>A builder created by {@link #createLazy} doesn't parse class files when they are processed.
+ * The class files of a package are parsed the first time the members of the package are accessed.
  */
 public class ClassModuleBuilder {
+    private static final JLogger logger = JLogger.createForEnclosingClass();
 
     private static final Range<Integer> EMPTY_RANGE = Range.closedOpen(0, 0);
 
     private final ClassFileParser parser;
     private final ClassInfoConverter classInfoConverter;
-    private final Module module;
+    private final Consumer<FileScope> fileScopeConsumer;
 
     /**
      * Map from class binary name to class entity.
@@ -66,18 +75,61 @@ public class ClassModuleBuilder {
     private final Multimap<String, ParsedClassFile> parsedInnerClassFileMap;
 
     public ClassModuleBuilder(Module module) {
+        this(module::addOrReplaceFileScope);
+    }
+
+    private ClassModuleBuilder(Consumer<FileScope> fileScopeConsumer) {
         this.parser = new ClassFileParser();
         this.classInfoConverter = new ClassInfoConverter();
-        this.module = module;
+        this.fileScopeConsumer = fileScopeConsumer;
         this.classEntityMap = new HashMap<>();
         this.parsedInnerClassFileMap = ArrayListMultimap.create();
     }
 
+    /**
+     * Creates a builder that adds class files to {@code module} without parsing them.
+     *
+     * @param rootPath the root path of the class files. The package of a class file is determined by
+     *                 its directory relative to {@code rootPath}
+     */
+    public static LazyClassModuleBuilder createLazy(Module module, Path rootPath) {
+        return new LazyClassModuleBuilder(module, rootPath);
+    }
+
+    /**
+     * Parses all {@code classFilePaths} of the same package and returns the created files.
+     */
+    private static List<FileScope> parsePackage(List<Path> classFilePaths) {
+        List<FileScope> fileScopes = new ArrayList<>();
+        ClassModuleBuilder builder = new ClassModuleBuilder(fileScopes::add);
+        for (Path classFilePath : classFilePaths) {
+            try {
+                builder.processClassFile(classFilePath);
+            } catch (Throwable t) {
+                logger.warning(t, "Failed to process .class file: %s", classFilePath);
+            }
+        }
+        return fileScopes;
+    }
+
     public void processClassFile(Path classFilePath) {
+        ParsedClassFile parsedClassFile;
         try {
             ClassFileInfo classFileInfo = parser.parse(classFilePath);
-            ParsedClassFile parsedClassFile = classInfoConverter.convert(classFileInfo);
+            parsedClassFile = classInfoConverter.convert(classFileInfo);
+        } catch (Throwable t) {
+            throw new RuntimeException("Unable to process class file " + classFilePath, t);
+        }
+        addParsedClassFile(classFilePath, parsedClassFile);
+    }
 
+    /**
+     * Adds a class file that has already been parsed and converted to the module.
+     *
+     * <p>Unlike parsing, adding class files to the module is not thread safe.
+     */
+    public void addParsedClassFile(Path classFilePath, ParsedClassFile parsedClassFile) {
+        try {
             EntityScope parentScope = null;
             if (parsedClassFile.getOuterClassBinaryName().isPresent()) {
                 String outerClassBinaryName = parsedClassFile.getOuterClassBinaryName().get();
@@ -87,7 +139,7 @@ public class ClassModuleBuilder {
             } else {
                 FileScope fileScope =
                         FileScope.createFromClassFile(classFilePath, parsedClassFile.getClassQualifiers());
-                module.addOrReplaceFileScope(fileScope);
+                fileScopeConsumer.accept(fileScope);
                 parentScope = fileScope;
             }
 
@@ -204,4 +256,83 @@ public class ClassModuleBuilder {
 
         parsedInnerClassFileMap.removeAll(binaryName);
     }
+
+    /**
+     * Collects class files by package and defers parsing them until the package is accessed.
+     *
+     * <p>Inner classes are always in the same package as their outer classes, so each package can
+     * be parsed independently. The simple names of the classes are taken from the names of the
+     * class files, so they can be indexed without parsing the package. The packages are added to
+     * the module by {@link #finish}.
+     */
+    public static class LazyClassModuleBuilder {
+        private final Module module;
+        private final Path rootPath;
+        private final Map<List<String>, List<Path>> packageClassFiles;
+        private final Map<List<String>, List<String>> packageClassNames;
+
+        private LazyClassModuleBuilder(Module module, Path rootPath) {
+            this.module = module;
+            this.rootPath = rootPath;
+            this.packageClassFiles = new LinkedHashMap<>();
+            this.packageClassNames = new HashMap<>();
+        }
+
+        public void processClassFile(Path classFilePath) {
+            List<String> packageQualifiers = getPackageQualifiers(classFilePath);
+            packageClassFiles.computeIfAbsent(packageQualifiers, k -> new ArrayList<>()).add(classFilePath);
+            List<String> classNames =
+                    packageClassNames.computeIfAbsent(packageQualifiers, k -> new ArrayList<>());
+            String simpleName = getSimpleName(classFilePath);
+            if (simpleName != null) {
+                classNames.add(simpleName);
+            }
+        }
+
+        /**
+         * Adds the packages of all processed class files to the module.
+         */
+        public void finish() {
+            for (Map.Entry<List<String>, List<Path>> entry : packageClassFiles.entrySet()) {
+                List<Path> classFilePaths = entry.getValue();
+                module.addLazyFiles(
+                        entry.getKey(),
+                        packageClassNames.get(entry.getKey()),
+                        () -> parsePackage(classFilePaths));
+            }
+            packageClassFiles.clear();
+            packageClassNames.clear();
+        }
+
+        private List<String> getPackageQualifiers(Path classFilePath) {
+            Path packagePath = rootPath.relativize(classFilePath).getParent();
+            if (packagePath == null) {
+                return ImmutableList.of();
+            }
+            ImmutableList.Builder<String> builder = new ImmutableList.Builder<>();
+            for (Path name : packagePath) {
+                builder.add(name.toString());
+            }
+            return builder.build();
+        }
+
+        /**
+         * Returns the simple name of the class in {@code classFilePath}, or {@code null} if it is
+         * not a named class, such as an anonymous class, a local class or {@code module-info}.
+         */
+        @Nullable
+        private static String getSimpleName(Path classFilePath) {
+            String fileName = classFilePath.getFileName().toString();
+            if (fileName.endsWith(".class")) {
+                fileName = fileName.substring(0, fileName.length() - ".class".length());
+            }
+            String simpleName = fileName.substring(fileName.lastIndexOf('$') + 1);
+            if (simpleName.isEmpty()
+                    || Character.isDigit(simpleName.charAt(0))
+                    || simpleName.indexOf('-') >= 0) {
+                return null;
+            }
+            return simpleName;
+        }
+    }
 }
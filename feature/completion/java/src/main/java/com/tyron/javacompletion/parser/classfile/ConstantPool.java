@@ -0,0 +1,262 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ *  This file is part of CodeAssist.
+ *
+ *  CodeAssist is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  CodeAssist is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with CodeAssist.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tyron.javacompletion.parser.classfile;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import com.tyron.javacompletion.parser.classfile.ClassFileParser.ClassFileParserError;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantClassInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantDoubleInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantFieldRefInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantFloatInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantIntegerInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantInterfaceMethodrefInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantInvokeDynamicInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantLongInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantMethodHandleInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantMethodTypeInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantMethodrefInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantNameAndTypeInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantStringInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantUtf8Info;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * The constant pool of a .class file backed by the bytes of the file.
+ *
+ * <p>Only the offsets of the entries are recorded when the constant pool is parsed. Entries are
+ * decoded when they are accessed for the first time, so strings that are never used, e.g. names of
+ * local variables and string literals, are never allocated.
+ *
+ * <p>Instances are not thread-safe.
+ *
+ * <p>See <a href="https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4">...</a>
+ */
+final class ConstantPool extends AbstractList<ConstantPoolInfo> implements RandomAccess {
+    // Constant pool tags:
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELD_REF = 9;
+    private static final int CONSTANT_METHOD_REF = 10;
+    private static final int CONSTANT_INTERFACE_METHOD_REF = 11;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+
+    // The first element of the constant pool is a place holder.
+    private static final ConstantPoolInfo PLACE_HOLDER = new ConstantPoolInfo();
+
+    private final ByteBuffer buffer;
+    // Absolute offsets of the tag of each entry in buffer.
+    private final int[] offsets;
+    private final ConstantPoolInfo[] entries;
+
+    private ConstantPool(ByteBuffer buffer, int[] offsets) {
+        this.buffer = buffer;
+        this.offsets = offsets;
+        this.entries = new ConstantPoolInfo[offsets.length];
+        this.entries[0] = PLACE_HOLDER;
+    }
+
+    /**
+     * Parses the constant pool starting at the position of {@code buffer}, which must be the
+     * constant_pool_count item of a .class file. The position of {@code buffer} is moved to the end
+     * of the constant pool.
+     *
+     * <p>The constant pool keeps a reference to {@code buffer} for decoding its entries on demand,
+     * so its content must not be changed.
+     */
+    static ConstantPool parse(ByteBuffer buffer) {
+        // constantPoolCount is the number of constantPool + 1
+        int constantPoolCount = buffer.getShort() & 0xFFFF;
+        int[] offsets = new int[Math.max(1, constantPoolCount)];
+        for (int i = 1; i < constantPoolCount; i++) {
+            int offset = buffer.position();
+            offsets[i] = offset;
+            // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4
+            int tag = buffer.get();
+            int length = switch (tag) {
+                case CONSTANT_CLASS, CONSTANT_STRING, CONSTANT_METHOD_TYPE -> 2;
+                case CONSTANT_METHOD_HANDLE -> 3;
+                case CONSTANT_FIELD_REF,
+                        CONSTANT_METHOD_REF,
+                        CONSTANT_INTERFACE_METHOD_REF,
+                        CONSTANT_INTEGER,
+                        CONSTANT_FLOAT,
+                        CONSTANT_NAME_AND_TYPE,
+                        CONSTANT_INVOKE_DYNAMIC -> 4;
+                case CONSTANT_LONG, CONSTANT_DOUBLE -> 8;
+                case CONSTANT_UTF8 -> 2 + (buffer.getShort(offset + 1) & 0xFFFF);
+                default -> throw new ClassFileParserError("Unknown constant pool tag %s", tag);
+            };
+            buffer.position(offset + 1 + length);
+
+            if ((tag == CONSTANT_DOUBLE || tag == CONSTANT_LONG) && i + 1 < constantPoolCount) {
+                // 8-byte constants take up two entries in the constant_pool table.
+                // See https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.5
+                offsets[i + 1] = offset;
+                i++;
+            }
+        }
+        return new ConstantPool(buffer, offsets);
+    }
+
+    @Override
+    public ConstantPoolInfo get(int index) {
+        checkElementIndex(index, offsets.length);
+        ConstantPoolInfo entry = entries[index];
+        if (entry == null) {
+            entry = decodeEntry(offsets[index]);
+            entries[index] = entry;
+        }
+        return entry;
+    }
+
+    @Override
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Returns whether the entry at {@code index} is a {@link ConstantUtf8Info}, without decoding the
+     * entry.
+     */
+    boolean isUtf8(int index) {
+        return index > 0 && index < offsets.length && buffer.get(offsets[index]) == CONSTANT_UTF8;
+    }
+
+    /**
+     * Returns whether the entry at {@code index} is a {@link ConstantUtf8Info} whose value is
+     * {@code value}, without decoding the entry.
+     *
+     * @param value a string that only contains ASCII characters
+     */
+    boolean utf8Equals(int index, String value) {
+        if (!isUtf8(index)) {
+            return false;
+        }
+        int offset = offsets[index];
+        int length = buffer.getShort(offset + 1) & 0xFFFF;
+        if (length != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(offset + 3 + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ConstantPoolInfo decodeEntry(int offset) {
+        int tag = buffer.get(offset);
+        int pos = offset + 1;
+        return switch (tag) {
+            // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.1
+            case CONSTANT_CLASS -> ConstantClassInfo.create(getUnsignedShort(pos));
+            // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.2
+            case CONSTANT_FIELD_REF -> ConstantFieldRefInfo.create(
+                    getUnsignedShort(pos), getUnsignedShort(pos + 2));
+            case CONSTANT_METHOD_REF -> ConstantMethodrefInfo.create(
+                    getUnsignedShort(pos), getUnsignedShort(pos + 2));
+            case CONSTANT_INTERFACE_METHOD_REF -> ConstantInterfaceMethodrefInfo.create(
+                    getUnsignedShort(pos), getUnsignedShort(pos + 2));
+            // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.3
+            case CONSTANT_STRING -> ConstantStringInfo.create(getUnsignedShort(pos));
+            // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.4
+            case CONSTANT_INTEGER -> ConstantIntegerInfo.create(buffer.getInt(pos));
+            case CONSTANT_FLOAT -> ConstantFloatInfo.create(buffer.getFloat(pos));
+            // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.5
+            case CONSTANT_LONG -> ConstantLongInfo.create(buffer.getLong(pos));
+            case CONSTANT_DOUBLE -> ConstantDoubleInfo.create(buffer.getDouble(pos));
+            // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.6
+            case CONSTANT_NAME_AND_TYPE -> ConstantNameAndTypeInfo.create(
+                    getUnsignedShort(pos), getUnsignedShort(pos + 2));
+            // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.7
+            case CONSTANT_UTF8 -> ConstantUtf8Info.create(decodeUtf8(pos));
+            // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.8
+            case CONSTANT_METHOD_HANDLE -> ConstantMethodHandleInfo.create(
+                    buffer.get(pos), getUnsignedShort(pos + 1));
+            // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.9
+            case CONSTANT_METHOD_TYPE -> ConstantMethodTypeInfo.create(getUnsignedShort(pos));
+            // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.10
+            case CONSTANT_INVOKE_DYNAMIC -> ConstantInvokeDynamicInfo.create(
+                    getUnsignedShort(pos), getUnsignedShort(pos + 2));
+            default -> throw new ClassFileParserError("Unknown constant pool tag %s", tag);
+        };
+    }
+
+    private int getUnsignedShort(int pos) {
+        return buffer.getShort(pos) & 0xFFFF;
+    }
+
+    /**
+     * Decodes a string in the modified UTF-8 encoding used by .class files, as {@link
+     * java.io.DataInput#readUTF} does.
+     */
+    private String decodeUtf8(int pos) {
+        int length = getUnsignedShort(pos);
+        int start = pos + 2;
+        int end = start + length;
+        char[] chars = new char[length];
+        int count = 0;
+        int i = start;
+        while (i < end) {
+            int b = buffer.get(i) & 0xFF;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+                i++;
+            } else if ((b & 0xE0) == 0xC0 && i + 1 < end) {
+                int b2 = getContinuationByte(i + 1);
+                chars[count++] = (char) (((b & 0x1F) << 6) | b2);
+                i += 2;
+            } else if ((b & 0xF0) == 0xE0 && i + 2 < end) {
+                int b2 = getContinuationByte(i + 1);
+                int b3 = getContinuationByte(i + 2);
+                chars[count++] = (char) (((b & 0x0F) << 12) | (b2 << 6) | b3);
+                i += 3;
+            } else {
+                throw new ClassFileParserError("Malformed modified UTF-8 string at offset %s", i);
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private int getContinuationByte(int pos) {
+        int b = buffer.get(pos) & 0xFF;
+        if ((b & 0xC0) != 0x80) {
+            throw new ClassFileParserError("Malformed modified UTF-8 string at offset %s", pos);
+        }
+        return b & 0x3F;
+    }
+}
@@ -23,6 +23,9 @@
  */
 package com.tyron.javacompletion.project;
 
+import androidx.annotation.Nullable;
+
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.tyron.javacompletion.file.FileManager;
 import com.tyron.javacompletion.file.PathUtils;
@@ -31,12 +34,19 @@ import com.tyron.javacompletion.model.FileScope;
 import com.tyron.javacompletion.model.Module;
 import com.tyron.javacompletion.options.IndexOptions;
 import com.tyron.javacompletion.parser.Parser;
+import com.tyron.javacompletion.parser.classfile.ClassIndexingPipeline;
 import com.tyron.javacompletion.parser.classfile.ClassModuleBuilder;
+import com.tyron.javacompletion.storage.JarIndexCache;
 
+import java.io.IOException;
+import java.nio.file.FileSystem;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
@@ -52,18 +62,39 @@ public class FileSystemModuleManager implements ModuleManager {
     private final Path rootPath;
     private final FileManager fileManager;
     private final Parser parser;
+    @Nullable
+    private final JarIndexCache jarIndexCache;
+    // Map of JAR file path -> the module created from it.
+    private final Map<Path, JarModule> jarModules = new HashMap<>();
 
     public FileSystemModuleManager(
             FileManager fileManager, Path rootPath, IndexOptions indexOptions) {
+        this(fileManager, rootPath, indexOptions, null /* cacheDir */);
+    }
+
+    /**
+     * @param cacheDir directory for caching indexes of JAR files under {@code rootPath}. If null,
+     *                 JAR files are indexed every time the module manager is initialized
+     */
+    public FileSystemModuleManager(
+            FileManager fileManager, Path rootPath, IndexOptions indexOptions, @Nullable Path cacheDir) {
         projectModule = new Module();
         this.rootPath = rootPath;
         this.fileManager = fileManager;
         this.parser = new Parser(fileManager, indexOptions);
+        this.jarIndexCache = cacheDir == null ? null : new JarIndexCache(cacheDir);
     }
 
     @Override
     public synchronized void initialize() {
-        walkDirectory(rootPath);
+        Set<Path> visitedJars = new HashSet<>();
+        walkDirectory(rootPath, visitedJars);
+        // The JAR files that were deleted since the last initialization.
+        for (Path path : new ArrayList<>(jarModules.keySet())) {
+            if (!visitedJars.contains(path)) {
+                removeJarModule(path);
+            }
+        }
     }
 
     @Override
@@ -100,6 +131,11 @@ public class FileSystemModuleManager implements ModuleManager {
         addOrUpdateFile(module, path, fixContentForParsing);
     }
 
+    @VisibleForTesting
+    synchronized Module getProjectModule() {
+        return projectModule;
+    }
+
     private void addOrUpdateFile(Module module, Path path, boolean fixContentForParsing) {
         try {
             Optional<FileScope> fileScope = parser.parseSourceFile(path, fixContentForParsing);
@@ -119,41 +155,117 @@ public class FileSystemModuleManager implements ModuleManager {
         projectModule.removeFile(path);
     }
 
-    private void walkDirectory(Path rootDir) {
+    private void walkDirectory(Path rootDir, Set<Path> visitedJars) {
+        Consumer<Path> jarHandler =
+                path -> {
+                    visitedJars.add(path);
+                    addJarModule(path);
+                };
         ImmutableMap<String, Consumer<Path>> handlers =
                 ImmutableMap.of(
                         JAVA_EXTENSION,
                         path -> addOrUpdateFile(projectModule, path, /* fixContentForParsing= */ false),
                         JAR_EXTENSION,
-                        this::addJarModule,
+                        jarHandler,
                         SRCJAR_EXTENSION,
-                        this::addJarModule);
+                        jarHandler);
 
         PathUtils.walkDirectory(rootDir, handlers, fileManager::shouldIgnorePath);
     }
 
     private void addJarModule(Path path) {
         logger.fine("Adding JAR module for %s", path);
+        // Initializing again replaces the module of the JAR file.
+        removeJarModule(path);
+        if (jarIndexCache != null) {
+            Optional<Module> cachedModule = jarIndexCache.readModule(path);
+            if (cachedModule.isPresent()) {
+                logger.fine("Loaded JAR module for %s from cache", path);
+                addJarModule(path, cachedModule.get(), null /* fileSystem */);
+                return;
+            }
+        }
         try {
             Module jarModule = new Module();
-            ClassModuleBuilder classModuleBuilder = new ClassModuleBuilder(jarModule);
-            Path rootJarPath = PathUtils.getRootPathForJarFile(path);
-            ImmutableMap<String, Consumer<Path>> handlers =
-                    ImmutableMap.of(
-                            JAVA_EXTENSION,
-                            filePath -> addOrUpdateFile(jarModule, filePath, /* fixContentForParsing= */ false),
-                            CLASS_EXTENSION,
-                            filePath -> {
-                                try {
-                                    classModuleBuilder.processClassFile(filePath);
-                                } catch (Throwable t) {
-                                    logger.warning(t, "Failed to process .class file: %s", filePath);
-                                }
-                            });
-            PathUtils.walkDirectory(rootJarPath, handlers, /* ignorePathPredicate= */ filePath -> false);
-            projectModule.addDependingModule(jarModule);
+            if (jarIndexCache != null) {
+                // All classes are needed for writing the cache, parse them in parallel up front. The
+                // JAR file system is no longer needed once they are parsed.
+                try (FileSystem jarFileSystem = PathUtils.openJarFileSystem(path)) {
+                    ClassIndexingPipeline indexingPipeline = new ClassIndexingPipeline(jarModule);
+                    walkJarFile(jarFileSystem.getPath("/"), jarModule, indexingPipeline::submit);
+                    indexingPipeline.finish();
+                }
+                jarIndexCache.writeModule(path, jarModule);
+                // Prefer the mapped index over the fully materialized module.
+                addJarModule(
+                        path, jarIndexCache.readModule(path).orElse(jarModule), null /* fileSystem */);
+                return;
+            }
+            // Class files are parsed when their packages are first accessed, so the JAR file system
+            // is kept open for the lifetime of the module.
+            FileSystem jarFileSystem = PathUtils.openJarFileSystem(path);
+            try {
+                Path rootJarPath = jarFileSystem.getPath("/");
+                ClassModuleBuilder.LazyClassModuleBuilder builder =
+                        ClassModuleBuilder.createLazy(jarModule, rootJarPath);
+                walkJarFile(rootJarPath, jarModule, builder::processClassFile);
+                builder.finish();
+            } catch (Throwable t) {
+                closeJarFileSystem(path, jarFileSystem);
+                throw t;
+            }
+            addJarModule(path, jarModule, jarFileSystem);
         } catch (Throwable t) {
             logger.warning(t, "Failed to create module for JAR file %s", path);
         }
     }
+
+    private void walkJarFile(Path rootJarPath, Module jarModule, Consumer<Path> classFileHandler) {
+        ImmutableMap<String, Consumer<Path>> handlers =
+                ImmutableMap.of(
+                        JAVA_EXTENSION,
+                        filePath -> addOrUpdateFile(jarModule, filePath, /* fixContentForParsing= */ false),
+                        CLASS_EXTENSION,
+                        classFileHandler);
+        PathUtils.walkDirectory(rootJarPath, handlers, /* ignorePathPredicate= */ filePath -> false);
+    }
+
+    private void addJarModule(Path path, Module jarModule, @Nullable FileSystem jarFileSystem) {
+        projectModule.addDependingModule(jarModule);
+        jarModules.put(path, new JarModule(jarModule, jarFileSystem));
+    }
+
+    private void removeJarModule(Path path) {
+        JarModule jarModule = jarModules.remove(path);
+        if (jarModule == null) {
+            return;
+        }
+        projectModule.removeDependingModule(jarModule.module);
+        if (jarModule.fileSystem != null) {
+            closeJarFileSystem(path, jarModule.fileSystem);
+        }
+    }
+
+    private static void closeJarFileSystem(Path path, FileSystem jarFileSystem) {
+        try {
+            jarFileSystem.close();
+        } catch (IOException e) {
+            logger.warning(e, "Failed to close JAR file %s", path);
+        }
+    }
+
+    /**
+     * A module created from a JAR file, with the file system it reads class files from if they are
+     * parsed lazily.
+     */
+    private static class JarModule {
+        private final Module module;
+        @Nullable
+        private final FileSystem fileSystem;
+
+        private JarModule(Module module, @Nullable FileSystem fileSystem) {
+            this.module = module;
+            this.fileSystem = fileSystem;
+        }
+    }
 }
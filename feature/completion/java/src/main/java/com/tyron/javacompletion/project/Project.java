@@ -23,6 +23,8 @@
  */
 package com.tyron.javacompletion.project;
 
+import androidx.annotation.Nullable;
+
 import com.tyron.javacompletion.completion.CompletionResult;
 import com.tyron.javacompletion.completion.Completor;
 import com.tyron.javacompletion.file.FileChangeListener;
@@ -30,11 +32,12 @@ import com.tyron.javacompletion.file.FileManager;
 import com.tyron.javacompletion.logging.JLogger;
 import com.tyron.javacompletion.model.Module;
 import com.tyron.javacompletion.options.IndexOptions;
+import com.tyron.javacompletion.storage.BinaryIndexStore;
 import com.tyron.javacompletion.storage.IndexStore;
 
 import org.cosmicide.rewrite.util.FileUtil;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
@@ -48,6 +51,8 @@ public class Project {
     private static final JLogger logger = JLogger.createForEnclosingClass();
 
     private static final String JAVA_EXTENSION = ".java";
+    private static final String JDK_INDEX_JSON = "index.json";
+    private static final String JDK_INDEX_BINARY = "index.bin";
 
     private final FileManager fileManager;
     private final Completor completor;
@@ -57,7 +62,18 @@ public class Project {
     private boolean initialized;
 
     public Project(FileManager fileManager, URI rootUri, IndexOptions indexOptions) {
-        this(new FileSystemModuleManager(fileManager, Paths.get(rootUri), indexOptions), fileManager);
+        this(fileManager, rootUri, indexOptions, null /* cacheDir */);
+    }
+
+    /**
+     * @param cacheDir directory for caching indexes of JAR files in the project, or null if the
+     *                 indexes should not be cached
+     */
+    public Project(
+            FileManager fileManager, URI rootUri, IndexOptions indexOptions, @Nullable Path cacheDir) {
+        this(
+                new FileSystemModuleManager(fileManager, Paths.get(rootUri), indexOptions, cacheDir),
+                fileManager);
     }
 
     public Project(ModuleManager moduleManager, FileManager fileManager) {
@@ -89,10 +105,29 @@ public class Project {
         moduleManager.addOrUpdateFile(filePath, fixContentForParsing);
     }
 
+    private static boolean needsBinaryIndexUpdate(Path jsonIndex, Path binaryIndex)
+            throws IOException {
+        if (!Files.exists(jsonIndex)) {
+            return false;
+        }
+        return !BinaryIndexStore.isBinaryIndex(binaryIndex)
+                || Files.getLastModifiedTime(binaryIndex).compareTo(Files.getLastModifiedTime(jsonIndex)) < 0;
+    }
+
+    /**
+     * Loads the JDK module from the binary index in the data directory. The binary index is converted
+     * from the bundled JSON index when it's missing or outdated.
+     */
     public synchronized void loadJdkModule() {
-        try (BufferedReader reader =
-                     Files.newBufferedReader(Paths.get(FileUtil.dataDir.getAbsolutePath(), "index.json"))) {
-            moduleManager.addDependingModule(new IndexStore().readModule(reader));
+        Path jsonIndex = Paths.get(FileUtil.dataDir.getAbsolutePath(), JDK_INDEX_JSON);
+        Path binaryIndex = Paths.get(FileUtil.dataDir.getAbsolutePath(), JDK_INDEX_BINARY);
+        BinaryIndexStore binaryIndexStore = new BinaryIndexStore();
+        try {
+            if (needsBinaryIndexUpdate(jsonIndex, binaryIndex)) {
+                logger.info("Converting JDK index %s to %s", jsonIndex, binaryIndex);
+                binaryIndexStore.convertJsonIndex(jsonIndex, binaryIndex);
+            }
+            moduleManager.addDependingModule(binaryIndexStore.readModuleFromFile(binaryIndex));
         } catch (Throwable t) {
             logger.warning(t, "Unable to load JDK module");
         }
@@ -100,11 +135,14 @@ public class Project {
 
     public synchronized void loadTypeIndexFile(String typeIndexFile) {
         logger.info("Loading type index file %s", typeIndexFile);
-        IndexStore indexStore = new IndexStore();
+        Path typeIndexPath = fileManager.getProjectRootPath().resolve(Paths.get(typeIndexFile));
         try {
-            Module module =
-                    indexStore.readModuleFromFile(
-                            fileManager.getProjectRootPath().resolve(Paths.get(typeIndexFile)));
+            Module module;
+            if (BinaryIndexStore.isBinaryIndex(typeIndexPath)) {
+                module = new BinaryIndexStore().readModuleFromFile(typeIndexPath);
+            } else {
+                module = new IndexStore().readModuleFromFile(typeIndexPath);
+            }
             moduleManager.addDependingModule(module);
             logger.info("Loaded type index file %s", typeIndexFile);
         } catch (NoSuchFileException e) {
@@ -0,0 +1,487 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ *  This file is part of CodeAssist.
+ *
+ *  CodeAssist is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  CodeAssist is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with CodeAssist.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tyron.javacompletion.storage;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import androidx.annotation.Nullable;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.tyron.javacompletion.logging.JLogger;
+import com.tyron.javacompletion.model.FileScope;
+import com.tyron.javacompletion.model.Module;
+import com.tyron.javacompletion.storage.IndexStore.SerializedEntity;
+import com.tyron.javacompletion.storage.IndexStore.SerializedFileScope;
+import com.tyron.javacompletion.storage.IndexStore.SerializedModule;
+import com.tyron.javacompletion.storage.IndexStore.SerializedType;
+import com.tyron.javacompletion.storage.IndexStore.SerializedTypeArgument;
+import com.tyron.javacompletion.storage.IndexStore.SerializedTypeArgumentKind;
+import com.tyron.javacompletion.storage.IndexStore.SerializedTypeParameter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storing and loading indexed Java modules in a binary format that can be memory mapped.
+ *
+ * <p>Unlike {@link IndexStore}, loading a binary index does not create any entities. Each package
+ * is decoded the first time its members are accessed. The simple names of the classes of each
+ * package are stored separately, so classes can be found by name without decoding their packages.
+ *
+ * <p>All integers are big-endian. The file layout is:
+ *
+ * <pre>
+ * header:        magic (int), version (int)
+ * string table:  count (int), offset of each string (int[count])
+ * package table: count (int),
+ *                {package name (string index), offset of package (int),
+ *                 offset of class names (int)}[count]
+ * strings:       {length (int), UTF-8 bytes}[]
+ * class names:   {count (int), simple names (string index[count])}[]
+ * packages:      {entity count (int), entities}[]
+ * </pre>
+ */
+public class BinaryIndexStore {
+    private static final JLogger logger = JLogger.createForEnclosingClass();
+
+    @VisibleForTesting
+    static final int MAGIC = 0x4A434958; // "JCIX"
+    @VisibleForTesting
+    static final int VERSION = 2;
+
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final int NULL_STRING = -1;
+    private static final SerializedTypeArgumentKind[] TYPE_ARGUMENT_KINDS =
+            SerializedTypeArgumentKind.values();
+
+    private final IndexStore indexStore = new IndexStore();
+
+    /**
+     * Checks whether {@code filePath} is a binary index file that can be read by this version of
+     * {@link BinaryIndexStore}.
+     */
+    public static boolean isBinaryIndex(Path filePath) {
+        if (!Files.isRegularFile(filePath)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(filePath))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public void writeModuleToFile(Module module, Path filePath) {
+        try {
+            writeSerializedModule(indexStore.serializeModule(module), filePath);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Converts a JSON index file written by {@link IndexStore} to a binary index file.
+     */
+    public void convertJsonIndex(Path jsonFilePath, Path filePath) throws IOException {
+        SerializedModule serializedModule;
+        try (Reader reader = Files.newBufferedReader(jsonFilePath, UTF_8)) {
+            serializedModule = indexStore.readSerializedModule(reader);
+        }
+        checkNotNull(serializedModule, "Empty index file %s", jsonFilePath);
+        writeSerializedModule(serializedModule, filePath);
+    }
+
+    /**
+     * Memory maps {@code filePath} and creates a {@link Module} whose packages are decoded on
+     * demand.
+     */
+    public Module readModuleFromFile(Path filePath) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return readModule(buffer);
+    }
+
+    public Module readModule(ByteBuffer buffer) throws IOException {
+        MappedIndex index = new MappedIndex(buffer);
+        Module module = new Module();
+        for (int i = 0; i < index.packageCount; i++) {
+            String packageName = index.getString(index.getPackageNameIndex(i));
+            int packageOffset = index.getPackageOffset(i);
+            module.addLazyFiles(
+                    IndexStore.toQualifiers(packageName),
+                    index.readClassNames(index.getClassNamesOffset(i)),
+                    () -> ImmutableList.of(index.readPackage(packageName, packageOffset)));
+        }
+        logger.fine("Mapped binary index with %s packages", index.packageCount);
+        return module;
+    }
+
+    private void writeSerializedModule(SerializedModule serializedModule, Path filePath)
+            throws IOException {
+        checkNotNull(serializedModule.files, "serializedModule.files");
+        StringTable strings = new StringTable();
+        List<Integer> packageNames = new ArrayList<>(serializedModule.files.size());
+        List<byte[]> packages = new ArrayList<>(serializedModule.files.size());
+        List<byte[]> classNames = new ArrayList<>(serializedModule.files.size());
+        for (SerializedFileScope file : serializedModule.files) {
+            checkNotNull(file.packageName, "serializedFileScope.packageName");
+            checkNotNull(file.entities, "serializedFileScope.entities");
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(file.entities.size());
+            for (SerializedEntity entity : file.entities) {
+                writeEntity(out, entity, strings);
+            }
+            out.flush();
+            packageNames.add(strings.indexOf(file.packageName));
+            packages.add(bytes.toByteArray());
+
+            List<String> fileClassNames = IndexStore.getClassNames(file);
+            ByteArrayOutputStream classNameBytes = new ByteArrayOutputStream();
+            DataOutputStream classNameOut = new DataOutputStream(classNameBytes);
+            classNameOut.writeInt(fileClassNames.size());
+            for (String className : fileClassNames) {
+                classNameOut.writeInt(strings.indexOf(className));
+            }
+            classNameOut.flush();
+            classNames.add(classNameBytes.toByteArray());
+        }
+
+        List<byte[]> encodedStrings = strings.getEncodedStrings();
+        int offset = 4 /* magic */ + 4 /* version */
+                + 4 + 4 * encodedStrings.size()
+                + 4 + 12 * packages.size();
+        Path tempFilePath = filePath.resolveSibling(filePath.getFileName() + TEMP_FILE_SUFFIX);
+        try (DataOutputStream out =
+                     new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFilePath)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(encodedStrings.size());
+            for (byte[] encodedString : encodedStrings) {
+                out.writeInt(offset);
+                offset += 4 + encodedString.length;
+            }
+            int classNamesOffset = offset;
+            int packageOffset = offset;
+            for (byte[] classNameBytes : classNames) {
+                packageOffset += classNameBytes.length;
+            }
+            out.writeInt(packages.size());
+            for (int i = 0; i < packages.size(); i++) {
+                out.writeInt(packageNames.get(i));
+                out.writeInt(packageOffset);
+                out.writeInt(classNamesOffset);
+                packageOffset += packages.get(i).length;
+                classNamesOffset += classNames.get(i).length;
+            }
+            for (byte[] encodedString : encodedStrings) {
+                out.writeInt(encodedString.length);
+                out.write(encodedString);
+            }
+            for (byte[] classNameBytes : classNames) {
+                out.write(classNameBytes);
+            }
+            for (byte[] packageBytes : packages) {
+                out.write(packageBytes);
+            }
+        }
+        // Never leave a partially written index behind, it would be mapped on the next start.
+        Files.move(
+                tempFilePath,
+                filePath,
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeEntity(DataOutputStream out, SerializedEntity entity, StringTable strings)
+            throws IOException {
+        out.writeInt(strings.indexOf(entity.kind));
+        out.writeInt(strings.indexOf(entity.simpleName));
+        out.writeBoolean(entity.isStatic);
+        out.writeInt(strings.indexOf(entity.javadoc));
+        writeNullableType(out, entity.type, strings);
+        writeNullableType(out, entity.superClass, strings);
+        writeEntities(out, entity.members, strings);
+        writeEntities(out, entity.parameters, strings);
+        writeTypes(out, entity.interfaces, strings);
+        if (entity.typeParameters == null) {
+            out.writeInt(0);
+        } else {
+            out.writeInt(entity.typeParameters.size());
+            for (SerializedTypeParameter typeParameter : entity.typeParameters) {
+                out.writeInt(strings.indexOf(typeParameter.name));
+                writeTypes(out, typeParameter.bounds, strings);
+            }
+        }
+    }
+
+    private void writeEntities(
+            DataOutputStream out, @Nullable List<SerializedEntity> entities, StringTable strings)
+            throws IOException {
+        if (entities == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(entities.size());
+        for (SerializedEntity entity : entities) {
+            writeEntity(out, entity, strings);
+        }
+    }
+
+    private void writeTypes(
+            DataOutputStream out, @Nullable List<SerializedType> types, StringTable strings)
+            throws IOException {
+        if (types == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(types.size());
+        for (SerializedType type : types) {
+            writeType(out, type, strings);
+        }
+    }
+
+    private void writeNullableType(
+            DataOutputStream out, @Nullable SerializedType type, StringTable strings)
+            throws IOException {
+        out.writeBoolean(type != null);
+        if (type != null) {
+            writeType(out, type, strings);
+        }
+    }
+
+    private void writeType(DataOutputStream out, SerializedType type, StringTable strings)
+            throws IOException {
+        out.writeInt(strings.indexOf(type.fullName));
+        out.writeBoolean(type.isArray);
+        if (type.typeArguments == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(type.typeArguments.size());
+        for (SerializedTypeArgument typeArgument : type.typeArguments) {
+            out.writeByte(typeArgument.kind.ordinal());
+            writeNullableType(out, typeArgument.explicitType, strings);
+            writeNullableType(out, typeArgument.bound, strings);
+        }
+    }
+
+    /**
+     * Deduplicated strings referenced by their index in the string table.
+     */
+    private static class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<byte[]> encodedStrings = new ArrayList<>();
+
+        private int indexOf(@Nullable String value) {
+            if (value == null) {
+                return NULL_STRING;
+            }
+            Integer index = indexes.get(value);
+            if (index == null) {
+                index = encodedStrings.size();
+                indexes.put(value, index);
+                encodedStrings.add(value.getBytes(UTF_8));
+            }
+            return index;
+        }
+
+        private List<byte[]> getEncodedStrings() {
+            return encodedStrings;
+        }
+    }
+
+    /**
+     * A binary index backed by a {@link ByteBuffer}. Strings are decoded the first time they are
+     * read.
+     */
+    private class MappedIndex {
+        private final ByteBuffer buffer;
+        private final int stringTableOffset;
+        private final int packageTableOffset;
+        private final int packageCount;
+        private final String[] strings;
+
+        private MappedIndex(ByteBuffer buffer) throws IOException {
+            this.buffer = buffer.asReadOnlyBuffer();
+            if (this.buffer.limit() < 12 || this.buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a binary index file");
+            }
+            int version = this.buffer.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary index version " + version);
+            }
+            int stringCount = this.buffer.getInt(8);
+            this.stringTableOffset = 12;
+            this.packageTableOffset = stringTableOffset + 4 * stringCount;
+            this.packageCount = this.buffer.getInt(packageTableOffset);
+            this.strings = new String[stringCount];
+        }
+
+        private int getPackageNameIndex(int packageIndex) {
+            return buffer.getInt(packageTableOffset + 4 + 12 * packageIndex);
+        }
+
+        private int getPackageOffset(int packageIndex) {
+            return buffer.getInt(packageTableOffset + 4 + 12 * packageIndex + 4);
+        }
+
+        private int getClassNamesOffset(int packageIndex) {
+            return buffer.getInt(packageTableOffset + 4 + 12 * packageIndex + 8);
+        }
+
+        private List<String> readClassNames(int offset) {
+            int count = buffer.getInt(offset);
+            List<String> classNames = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                classNames.add(getString(buffer.getInt(offset + 4 + 4 * i)));
+            }
+            return classNames;
+        }
+
+        @Nullable
+        private String getString(int index) {
+            if (index == NULL_STRING) {
+                return null;
+            }
+            // Racing threads decode the same value, so the cache doesn't need synchronization.
+            String value = strings[index];
+            if (value == null) {
+                int offset = buffer.getInt(stringTableOffset + 4 * index);
+                byte[] bytes = new byte[buffer.getInt(offset)];
+                ByteBuffer view = buffer.duplicate();
+                view.position(offset + 4);
+                view.get(bytes);
+                value = new String(bytes, UTF_8);
+                strings[index] = value;
+            }
+            return value;
+        }
+
+        private FileScope readPackage(String packageName, int offset) {
+            logger.fine("Loading package %s from binary index", packageName);
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            SerializedFileScope file = new SerializedFileScope();
+            file.packageName = packageName;
+            file.entities = readEntities(view);
+            if (file.entities == null) {
+                file.entities = ImmutableList.of();
+            }
+            return indexStore.deserializeFileScope(file);
+        }
+
+        private SerializedEntity readEntity(ByteBuffer view) {
+            SerializedEntity entity = new SerializedEntity();
+            entity.kind = getString(view.getInt());
+            entity.simpleName = getString(view.getInt());
+            entity.isStatic = view.get() != 0;
+            entity.javadoc = getString(view.getInt());
+            entity.type = readNullableType(view);
+            entity.superClass = readNullableType(view);
+            entity.members = readEntities(view);
+            entity.parameters = readEntities(view);
+            entity.interfaces = readTypes(view);
+            int typeParameterCount = view.getInt();
+            if (typeParameterCount > 0) {
+                entity.typeParameters = new ArrayList<>(typeParameterCount);
+                for (int i = 0; i < typeParameterCount; i++) {
+                    SerializedTypeParameter typeParameter = new SerializedTypeParameter();
+                    typeParameter.name = getString(view.getInt());
+                    typeParameter.bounds = readTypes(view);
+                    entity.typeParameters.add(typeParameter);
+                }
+            }
+            return entity;
+        }
+
+        @Nullable
+        private List<SerializedEntity> readEntities(ByteBuffer view) {
+            int count = view.getInt();
+            if (count == 0) {
+                return null;
+            }
+            List<SerializedEntity> entities = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                entities.add(readEntity(view));
+            }
+            return entities;
+        }
+
+        @Nullable
+        private List<SerializedType> readTypes(ByteBuffer view) {
+            int count = view.getInt();
+            if (count == 0) {
+                return null;
+            }
+            List<SerializedType> types = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                types.add(readType(view));
+            }
+            return types;
+        }
+
+        @Nullable
+        private SerializedType readNullableType(ByteBuffer view) {
+            return view.get() != 0 ? readType(view) : null;
+        }
+
+        private SerializedType readType(ByteBuffer view) {
+            SerializedType type = new SerializedType();
+            type.fullName = getString(view.getInt());
+            type.isArray = view.get() != 0;
+            int typeArgumentCount = view.getInt();
+            if (typeArgumentCount > 0) {
+                type.typeArguments = new ArrayList<>(typeArgumentCount);
+                for (int i = 0; i < typeArgumentCount; i++) {
+                    SerializedTypeArgument typeArgument = new SerializedTypeArgument();
+                    typeArgument.kind = TYPE_ARGUMENT_KINDS[view.get()];
+                    typeArgument.explicitType = readNullableType(view);
+                    typeArgument.bound = readNullableType(view);
+                    type.typeArguments.add(typeArgument);
+                }
+            }
+            return type;
+        }
+    }
+}
@@ -33,6 +33,7 @@ import androidx.annotation.Nullable;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Range;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -58,8 +59,11 @@ import java.io.IOException;
 import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -77,6 +81,8 @@ public class IndexStore {
     private static final Joiner QUALIFIER_JOINER = Joiner.on(".");
     private static final Range<Integer> EMPTY_RANGE = Range.closedOpen(0, 0);
     private static final ImmutableList<String> EMPTY_QUALIFIERS = ImmutableList.of();
+    private static final ImmutableSet<String> CLASS_KINDS =
+            ClassEntity.ALLOWED_KINDS.stream().map(Enum::name).collect(ImmutableSet.toImmutableSet());
 
     private final Gson gson = new GsonBuilder().create();
     private final TypeSolver typeSolver = new TypeSolver();
@@ -123,7 +129,11 @@ public class IndexStore {
     }
 
     public Module readModule(Reader reader) {
-        return deserializeModule(gson.fromJson(reader, SerializedModule.class));
+        return deserializeModule(readSerializedModule(reader));
+    }
+
+    SerializedModule readSerializedModule(Reader reader) {
+        return gson.fromJson(reader, SerializedModule.class);
     }
 
     @VisibleForTesting
@@ -141,19 +151,61 @@ public class IndexStore {
                         .sorted()
                         .collect(Collectors.toList());
         this.module = null;
+        // Each module is checked on its own, and the store doesn't keep its entities alive.
+        visitedEntities.clear();
         return ret;
     }
 
+    /**
+     * Creates a {@link Module} from {@code serializedModule}. The entities of each package are
+     * deserialized the first time the package is accessed.
+     */
     @VisibleForTesting
     Module deserializeModule(SerializedModule serializedModule) {
         checkNotNull(serializedModule.files, "serializedModule.files");
         Module module = new Module();
         for (SerializedFileScope file : serializedModule.files) {
-            module.addOrReplaceFileScope(deserializeFileScope(file));
+            checkNotNull(file.packageName, "serializedFileScope.packageName");
+            module.addLazyFiles(
+                    toQualifiers(file.packageName),
+                    getClassNames(file),
+                    () -> ImmutableList.of(deserializeFileScope(file)));
         }
         return module;
     }
 
+    /**
+     * Splits {@code packageName} into its qualifiers. The default package has none.
+     */
+    static List<String> toQualifiers(String packageName) {
+        if (packageName.isEmpty()) {
+            return ImmutableList.of();
+        }
+        return ImmutableList.copyOf(packageName.split(QUALIFIER_SEPARATOR));
+    }
+
+    /**
+     * Gets the simple names of the classes in {@code file}, including inner classes.
+     */
+    static List<String> getClassNames(SerializedFileScope file) {
+        List<String> classNames = new ArrayList<>();
+        Deque<SerializedEntity> queue = new ArrayDeque<>();
+        if (file.entities != null) {
+            queue.addAll(file.entities);
+        }
+        while (!queue.isEmpty()) {
+            SerializedEntity entity = queue.removeFirst();
+            if (!CLASS_KINDS.contains(entity.kind)) {
+                continue;
+            }
+            classNames.add(entity.simpleName);
+            if (entity.members != null) {
+                queue.addAll(entity.members);
+            }
+        }
+        return classNames;
+    }
+
     private SerializedFileScope serializeFileScopes(String packageName, List<FileScope> fileScopes) {
         SerializedFileScope ret = new SerializedFileScope();
         ret.packageName = packageName;
@@ -166,11 +218,10 @@ public class IndexStore {
         return ret;
     }
 
-    private FileScope deserializeFileScope(SerializedFileScope serializedFileScope) {
+    FileScope deserializeFileScope(SerializedFileScope serializedFileScope) {
         checkNotNull(serializedFileScope.packageName, "serializedFileScope.packageName");
         checkNotNull(serializedFileScope.entities, "serializedFileScope.entities");
-        List<String> packageQualifiers =
-                ImmutableList.copyOf(serializedFileScope.packageName.split(QUALIFIER_SEPARATOR));
+        List<String> packageQualifiers = toQualifiers(serializedFileScope.packageName);
         FileScope fileScope = FileScope.createFromTypeIndex(packageQualifiers);
         for (SerializedEntity childEntity : serializedFileScope.entities) {
             fileScope.addEntity(deserializeEntity(childEntity, packageQualifiers, fileScope));
@@ -546,7 +597,7 @@ public class IndexStore {
                 typeParameter.name, deserializeTypeReferences(typeParameter.bounds));
     }
 
-    private enum SerializedTypeArgumentKind {
+    enum SerializedTypeArgumentKind {
         EXPLICIT,
         WILDCARD_UNBOUNDED,
         WILDCARD_SUPER,
@@ -555,12 +606,12 @@ public class IndexStore {
 
     @VisibleForTesting
     static class SerializedModule {
-        private List<SerializedFileScope> files;
+        List<SerializedFileScope> files;
     }
 
-    private static class SerializedFileScope implements Comparable<SerializedFileScope> {
-        private String packageName;
-        private List<SerializedEntity> entities;
+    static class SerializedFileScope implements Comparable<SerializedFileScope> {
+        String packageName;
+        List<SerializedEntity> entities;
 
         @Override
         public int compareTo(SerializedFileScope other) {
@@ -577,17 +628,17 @@ public class IndexStore {
         }
     }
 
-    private static class SerializedEntity implements Comparable<SerializedEntity> {
-        private String kind;
-        private String simpleName;
-        private boolean isStatic;
-        private List<SerializedEntity> members;
-        private List<SerializedEntity> parameters;
-        private SerializedType type;
-        private SerializedType superClass;
-        private List<SerializedType> interfaces;
-        private List<SerializedTypeParameter> typeParameters;
-        private String javadoc;
+    static class SerializedEntity implements Comparable<SerializedEntity> {
+        String kind;
+        String simpleName;
+        boolean isStatic;
+        List<SerializedEntity> members;
+        List<SerializedEntity> parameters;
+        SerializedType type;
+        SerializedType superClass;
+        List<SerializedType> interfaces;
+        List<SerializedTypeParameter> typeParameters;
+        String javadoc;
 
         @Override
         public int compareTo(SerializedEntity other) {
@@ -640,10 +691,10 @@ public class IndexStore {
         }
     }
 
-    private static class SerializedType implements Comparable<SerializedType> {
-        private String fullName;
-        private boolean isArray;
-        private List<SerializedTypeArgument> typeArguments;
+    static class SerializedType implements Comparable<SerializedType> {
+        String fullName;
+        boolean isArray;
+        List<SerializedTypeArgument> typeArguments;
 
         @Override
         public int compareTo(SerializedType other) {
@@ -664,10 +715,10 @@ public class IndexStore {
         }
     }
 
-    private static class SerializedTypeArgument implements Comparable<SerializedTypeArgument> {
-        private SerializedTypeArgumentKind kind;
-        private SerializedType explicitType;
-        private SerializedType bound;
+    static class SerializedTypeArgument implements Comparable<SerializedTypeArgument> {
+        SerializedTypeArgumentKind kind;
+        SerializedType explicitType;
+        SerializedType bound;
 
         @NonNull
         @Override
@@ -695,9 +746,9 @@ public class IndexStore {
         }
     }
 
-    private static class SerializedTypeParameter implements Comparable<SerializedTypeParameter> {
-        private String name;
-        private List<SerializedType> bounds;
+    static class SerializedTypeParameter implements Comparable<SerializedTypeParameter> {
+        String name;
+        List<SerializedType> bounds;
 
         @Override
         public int compareTo(SerializedTypeParameter other) {
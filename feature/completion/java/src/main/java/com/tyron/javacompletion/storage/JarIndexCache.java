@@ -0,0 +1,116 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ *  This file is part of CodeAssist.
+ *
+ *  CodeAssist is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  CodeAssist is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with CodeAssist.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tyron.javacompletion.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.Hashing;
+import com.tyron.javacompletion.logging.JLogger;
+import com.tyron.javacompletion.model.Module;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Cache of indexed JAR modules stored in the binary index format.
+ *
+ * <p>Cache entries are keyed by the path, size and modification time of the JAR file. A JAR file is
+ * only indexed again when it's new or modified. Outdated entries of a JAR file are deleted when a
+ * new entry is written for it.
+ */
+public class JarIndexCache {
+    private static final JLogger logger = JLogger.createForEnclosingClass();
+
+    private static final String CACHE_EXTENSION = ".bin";
+
+    private final Path cacheDir;
+    private final BinaryIndexStore binaryIndexStore;
+
+    public JarIndexCache(Path cacheDir) {
+        this.cacheDir = cacheDir;
+        this.binaryIndexStore = new BinaryIndexStore();
+    }
+
+    private static String getJarKey(Path jarFilePath) {
+        return Hashing.sha256()
+                .hashString(jarFilePath.toAbsolutePath().normalize().toString(), UTF_8)
+                .toString();
+    }
+
+    /**
+     * Reads the cached module of {@code jarFilePath}.
+     *
+     * @return the cached module, or empty if the JAR file is not cached or has been modified since
+     * it was cached
+     */
+    public Optional<Module> readModule(Path jarFilePath) {
+        try {
+            Path cacheFile = getCacheFile(jarFilePath);
+            if (!BinaryIndexStore.isBinaryIndex(cacheFile)) {
+                return Optional.empty();
+            }
+            return Optional.of(binaryIndexStore.readModuleFromFile(cacheFile));
+        } catch (Throwable t) {
+            logger.warning(t, "Unable to read cached index of %s", jarFilePath);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes the index of {@code module} created from {@code jarFilePath} to the cache.
+     *
+     * <p>Note that all packages of {@code module} are materialized for writing the index.
+     */
+    public void writeModule(Path jarFilePath, Module module) {
+        try {
+            Files.createDirectories(cacheDir);
+            Path cacheFile = getCacheFile(jarFilePath);
+            binaryIndexStore.writeModuleToFile(module, cacheFile);
+            deleteOutdatedEntries(jarFilePath, cacheFile);
+        } catch (Throwable t) {
+            logger.warning(t, "Unable to write cached index of %s", jarFilePath);
+        }
+    }
+
+    private Path getCacheFile(Path jarFilePath) throws IOException {
+        long size = Files.size(jarFilePath);
+        long lastModified = Files.getLastModifiedTime(jarFilePath).toMillis();
+        return cacheDir.resolve(
+                getJarKey(jarFilePath) + "-" + size + "-" + lastModified + CACHE_EXTENSION);
+    }
+
+    private void deleteOutdatedEntries(Path jarFilePath, Path currentCacheFile) throws IOException {
+        String glob = getJarKey(jarFilePath) + "-*" + CACHE_EXTENSION;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(cacheDir, glob)) {
+            for (Path entry : entries) {
+                if (!entry.equals(currentCacheFile)) {
+                    Files.deleteIfExists(entry);
+                }
+            }
+        }
+    }
+}
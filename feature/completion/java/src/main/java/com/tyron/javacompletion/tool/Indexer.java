@@ -32,9 +32,10 @@ import com.tyron.javacompletion.model.Module;
 import com.tyron.javacompletion.options.IndexOptions;
 import com.tyron.javacompletion.parser.AstScanner;
 import com.tyron.javacompletion.parser.ParserContext;
-import com.tyron.javacompletion.parser.classfile.ClassModuleBuilder;
+import com.tyron.javacompletion.parser.classfile.ClassIndexingPipeline;
 import com.tyron.javacompletion.project.Project;
 import com.tyron.javacompletion.project.SimpleModuleManager;
+import com.tyron.javacompletion.storage.BinaryIndexStore;
 import com.tyron.javacompletion.storage.IndexStore;
 
 import java.io.IOException;
@@ -67,7 +68,7 @@ public class Indexer {
                                    String outputFile,
                                    List<String> ignoredPaths,
                                    List<String> indexFiles) {
-        new Indexer().run(jarFiles, outputFile, ignoredPaths, indexFiles, false);
+        new Indexer().run(jarFiles, outputFile, ignoredPaths, indexFiles, false, false);
     }
 
     public static void main(String[] args) {
@@ -78,6 +79,7 @@ public class Indexer {
             System.out.println("    --depend|-d <index files...>");
             System.out.println("    --ignore|-i <ignored paths...>]");
             System.out.println("    --no-jdk      Do not load JDK module.");
+            System.out.println("    --binary      Write the index in the memory mappable binary format.");
             return;
         }
         String outputPath = null;
@@ -86,6 +88,7 @@ public class Indexer {
         List<String> dependIndexPaths = new ArrayList<>();
         List<String> currentList = inputPaths;
         boolean withJdk = true;
+        boolean binary = false;
         for (int i = 0; i < args.length; i++) {
             String arg = args[i];
             if ("-o".equals(arg)) {
@@ -100,6 +103,8 @@ public class Indexer {
                 currentList = ignorePaths;
             } else if ("--no-jdk".equals(arg)) {
                 withJdk = false;
+            } else if ("--binary".equals(arg)) {
+                binary = true;
             } else if (currentList == null) {
                 System.err.println("-o only accepts one value");
                 System.exit(1);
@@ -117,7 +122,7 @@ public class Indexer {
             System.exit(1);
         }
 
-        new Indexer().run(inputPaths, outputPath, ignorePaths, dependIndexPaths, withJdk);
+        new Indexer().run(inputPaths, outputPath, ignorePaths, dependIndexPaths, withJdk, binary);
     }
 
     public void run(
@@ -125,7 +130,8 @@ public class Indexer {
             String outputPath,
             List<String> ignorePaths,
             List<String> dependIndexFiles,
-            boolean withJdk) {
+            boolean withJdk,
+            boolean binary) {
         // Do not initialize the project. We handle the files on our own.
         SimpleModuleManager moduleManager = new SimpleModuleManager();
         Project project = new Project(moduleManager, moduleManager.getFileManager());
@@ -134,11 +140,11 @@ public class Indexer {
             // Do not use module manager's file manager because we need to setup root
             // path and ignore paths per directory.
             FileManager fileManager = new SimpleFileManager(path, ignorePaths);
-            ClassModuleBuilder classModuleBuilder = new ClassModuleBuilder(moduleManager.getModule());
+            ClassIndexingPipeline indexingPipeline = new ClassIndexingPipeline(moduleManager.getModule());
             ImmutableMap<String, Consumer<Path>> handlers =
                     ImmutableMap.of(
                             ".class",
-                            classModuleBuilder::processClassFile,
+                            indexingPipeline::submit,
                             ".java",
                             subpath -> addJavaFile(subpath, moduleManager.getModule(), fileManager));
             if (Files.isDirectory(path)) {
@@ -158,6 +164,10 @@ public class Indexer {
                     throw new RuntimeException(t);
                 }
             }
+            ClassIndexingPipeline.Stats stats = indexingPipeline.finish();
+            System.out.printf(
+                    "Indexed %d classes in %d ms (%d classes/s)%n",
+                    stats.getIndexedCount(), stats.getElapsedMillis(), stats.getClassesPerSecond());
         }
         for (String dependIndexFile : dependIndexFiles) {
             project.loadTypeIndexFile(dependIndexFile);
@@ -166,7 +176,11 @@ public class Indexer {
             project.loadJdkModule();
         }
         System.out.println("Writing index file to " + outputPath);
-        new IndexStore().writeModuleToFile(moduleManager.getModule(), Paths.get(outputPath));
+        if (binary) {
+            new BinaryIndexStore().writeModuleToFile(moduleManager.getModule(), Paths.get(outputPath));
+        } else {
+            new IndexStore().writeModuleToFile(moduleManager.getModule(), Paths.get(outputPath));
+        }
     }
 
     private void addJavaFile(Path path, Module module, FileManager fileManager) {
@@ -0,0 +1,162 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ *  This file is part of CodeAssist.
+ *
+ *  CodeAssist is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  CodeAssist is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with CodeAssist.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tyron.javacompletion.typesolver;
+
+import com.google.common.collect.ImmutableList;
+import com.tyron.javacompletion.model.Entity;
+import com.tyron.javacompletion.model.EntityWithContext;
+import com.tyron.javacompletion.model.Module;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Caches the class hierarchies and class members solved by {@link TypeSolver} in each module.
+ *
+ * <p>The cached results of a module are dropped when the {@link Module#getGeneration generation}
+ * of the module changes, i.e. when its files or the files of the modules it depends on change.
+ */
+class ClassHierarchyCache {
+    // The maximum number of results cached for a module. They are all dropped when it's exceeded.
+    private static final int MAX_ENTRIES = 4096;
+
+    private final Map<Module, ModuleEntries> moduleEntries = new WeakHashMap<>();
+
+    // The keys being computed by the current thread. Solving the super classes of a class may need
+    // the hierarchy of the class itself, e.g. for class Foo extends Bar<Foo.Inner>. These lookups
+    // aren't cached.
+    private final ThreadLocal<Set<Object>> computingKeys = ThreadLocal.withInitial(HashSet::new);
+
+    /**
+     * Gets the hierarchy of {@code classWithContext} in {@code module}, computing it with {@code
+     * loader} if it's not cached.
+     *
+     * @return the hierarchy, or {@code null} if it's being computed by the current thread
+     */
+    ImmutableList<EntityWithContext> getClassHierarchy(
+            EntityWithContext classWithContext,
+            Module module,
+            Supplier<ImmutableList<EntityWithContext>> loader) {
+        return get(module, classWithContext, loader);
+    }
+
+    /**
+     * Gets the members named {@code name} of the classes in the hierarchy of {@code
+     * classWithContext} in {@code module}, computing them with {@code loader} if they're not
+     * cached.
+     */
+    ImmutableList<EntityWithContext> getClassMembers(
+            String name,
+            EntityWithContext classWithContext,
+            Module module,
+            Set<Entity.Kind> allowedKinds,
+            Supplier<ImmutableList<EntityWithContext>> loader) {
+        ImmutableList<EntityWithContext> members =
+                get(module, new MembersKey(name, classWithContext, allowedKinds), loader);
+        return members != null ? members : loader.get();
+    }
+
+    private ImmutableList<EntityWithContext> get(
+            Module module, Object key, Supplier<ImmutableList<EntityWithContext>> loader) {
+        long generation = module.getGeneration();
+        synchronized (this) {
+            ModuleEntries entries = moduleEntries.get(module);
+            if (entries != null && entries.generation == generation) {
+                ImmutableList<EntityWithContext> cached = entries.results.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+        }
+
+        Set<Object> keys = computingKeys.get();
+        if (!keys.add(key)) {
+            return null;
+        }
+        ImmutableList<EntityWithContext> result;
+        try {
+            result = loader.get();
+        } finally {
+            keys.remove(key);
+        }
+
+        synchronized (this) {
+            ModuleEntries entries = moduleEntries.get(module);
+            if (entries == null || entries.generation != generation) {
+                entries = new ModuleEntries(generation);
+                moduleEntries.put(module, entries);
+            } else if (entries.results.size() >= MAX_ENTRIES) {
+                entries.results.clear();
+            }
+            entries.results.put(key, result);
+        }
+        return result;
+    }
+
+    private static class ModuleEntries {
+        private final long generation;
+        private final Map<Object, ImmutableList<EntityWithContext>> results = new HashMap<>();
+
+        private ModuleEntries(long generation) {
+            this.generation = generation;
+        }
+    }
+
+    private static class MembersKey {
+        private final String name;
+        private final EntityWithContext classWithContext;
+        private final Set<Entity.Kind> allowedKinds;
+
+        private MembersKey(
+                String name, EntityWithContext classWithContext, Set<Entity.Kind> allowedKinds) {
+            this.name = name;
+            this.classWithContext = classWithContext;
+            this.allowedKinds = allowedKinds;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MembersKey)) {
+                return false;
+            }
+            MembersKey other = (MembersKey) o;
+            return name.equals(other.name)
+                    && classWithContext.equals(other.classWithContext)
+                    && allowedKinds.equals(other.allowedKinds);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, classWithContext, allowedKinds);
+        }
+    }
+}
@@ -32,7 +32,6 @@ import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Sets;
 import com.tyron.javacompletion.logging.JLogger;
 import com.tyron.javacompletion.model.AggregatePackageScope;
@@ -65,10 +64,13 @@ import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -88,6 +90,9 @@ public class TypeSolver {
                     .add(Entity.Kind.QUALIFIER)
                     .build();
 
+    private final ClassHierarchyCache classHierarchyCache = new ClassHierarchyCache();
+    private final Map<Module, AggregatePackageScope> aggregateRootPackageScopes = new WeakHashMap<>();
+
     public Optional<SolvedType> solve(
             TypeReference typeReference, EntityScope parentScope, Module module) {
         return solve(
@@ -216,22 +221,35 @@ public class TypeSolver {
         return Optional.empty();
     }
 
+    /**
+     * Gets the scope aggregating the root packages of {@code module} and the modules it depends on.
+     * The same scope is returned for a module as long as they don't change, so its merged members
+     * are reused.
+     */
     public AggregatePackageScope getAggregateRootPackageScope(Module module) {
-        AggregatePackageScope aggregatedPackageScope = new AggregatePackageScope();
-        fillAggregateRootPackageScope(aggregatedPackageScope, module, new HashSet<>());
-        return aggregatedPackageScope;
+        Set<PackageScope> rootPackages = new LinkedHashSet<>();
+        fillAggregateRootPackageScope(rootPackages, module, new HashSet<>());
+        synchronized (aggregateRootPackageScopes) {
+            AggregatePackageScope aggregatedPackageScope = aggregateRootPackageScopes.get(module);
+            if (aggregatedPackageScope == null) {
+                aggregatedPackageScope = new AggregatePackageScope();
+                aggregateRootPackageScopes.put(module, aggregatedPackageScope);
+            }
+            aggregatedPackageScope.setPackageScopes(rootPackages);
+            return aggregatedPackageScope;
+        }
     }
 
     private void fillAggregateRootPackageScope(
-            AggregatePackageScope aggregatePackageScope, Module module, Set<Module> visitedModules) {
+            Set<PackageScope> rootPackages, Module module, Set<Module> visitedModules) {
         if (visitedModules.contains(module)) {
             return;
         }
         visitedModules.add(module);
-        aggregatePackageScope.addPackageScope(module.getRootPackage());
+        rootPackages.add(module.getRootPackage());
 
         for (Module dependingModule : module.getDependingModules()) {
-            fillAggregateRootPackageScope(aggregatePackageScope, dependingModule, visitedModules);
+            fillAggregateRootPackageScope(rootPackages, dependingModule, visitedModules);
         }
     }
 
@@ -382,6 +400,19 @@ public class TypeSolver {
             EntityWithContext classWithContext,
             Module module,
             Set<Entity.Kind> allowedKinds) {
+        return classHierarchyCache.getClassMembers(
+                name,
+                classWithContext,
+                module,
+                allowedKinds,
+                () -> findClassMembersInHierarchy(name, classWithContext, module, allowedKinds));
+    }
+
+    private ImmutableList<EntityWithContext> findClassMembersInHierarchy(
+            String name,
+            EntityWithContext classWithContext,
+            Module module,
+            Set<Entity.Kind> allowedKinds) {
         ImmutableList.Builder<EntityWithContext> builder = new ImmutableList.Builder<>();
         for (EntityWithContext classInHierarchy : classHierarchy(classWithContext, module)) {
             checkState(
@@ -924,17 +955,30 @@ public class TypeSolver {
 
     /**
      * Returns an iterable over a class and all its ancestor classes and interfaces.
+     *
+     * <p>The hierarchy is solved once and reused until the module changes.
      */
     public Iterable<EntityWithContext> classHierarchy(
             EntityWithContext classWithContext, Module module) {
-        return () -> new ClassHierarchyIterator(classWithContext, module, true /* solveTypeParmeters */);
+        ImmutableList<EntityWithContext> hierarchy =
+                classHierarchyCache.getClassHierarchy(
+                        classWithContext,
+                        module,
+                        () ->
+                                ImmutableList.copyOf(
+                                        new ClassHierarchyIterator(
+                                                classWithContext, module, true /* solveTypeParmeters */)));
+        if (hierarchy == null) {
+            // The hierarchy is needed to solve itself. Walk it lazily, as far as needed.
+            return () -> new ClassHierarchyIterator(classWithContext, module, true /* solveTypeParmeters */);
+        }
+        return hierarchy;
     }
 
     public Iterable<ClassEntity> classHierarchyWithoutContext(
             ClassEntity classEntity, Module module) {
-        return () -> Iterators.transform(
-                new ClassHierarchyIterator(
-                        EntityWithContext.ofEntity(classEntity), module, true /* solveTypeParmeters */),
+        return Iterables.transform(
+                classHierarchy(EntityWithContext.ofEntity(classEntity), module),
                 classWithContext -> (ClassEntity) classWithContext.getEntity());
     }
 
@@ -0,0 +1,172 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.tyron.javacompletion.model;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.tyron.javacompletion.completion.CompletionPrefixMatcher;
+import com.tyron.javacompletion.file.SimpleFileManager;
+import com.tyron.javacompletion.options.IndexOptions;
+import com.tyron.javacompletion.parser.Parser;
+
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+public class ClassNameIndexTest {
+    private static final Path FOO_PATH = Paths.get("/test/Foo.java").toAbsolutePath();
+    private static final Path BAR_PATH = Paths.get("/test/Bar.java").toAbsolutePath();
+
+    private final SimpleFileManager fileManager = new SimpleFileManager();
+    private final Parser parser = new Parser(fileManager, IndexOptions.FULL_INDEX_BUILDER.build());
+    private final Module module = new Module();
+
+    @Test
+    public void findClasses_includesInnerClassesAndIgnoresCase() {
+        module.addOrReplaceFileScope(
+                parse(
+                        FOO_PATH,
+                        "package test; class Foo { static class FooInner { class fooDeep {} } } class Baz {}"));
+
+        assertEquals(
+                ImmutableList.of("Foo", "FooInner", "fooDeep"),
+                findClasses("f", name -> Character.toLowerCase(name.charAt(0)) == 'f'));
+        assertEquals(
+                ImmutableList.of("fooDeep"), findClasses("FooD", name -> name.equalsIgnoreCase("fooDeep")));
+        assertEquals(
+                ImmutableList.of("Baz", "Foo", "FooInner", "fooDeep"), findClasses("", name -> true));
+    }
+
+    @Test
+    public void findClasses_matchesFuzzily() {
+        module.addOrReplaceFileScope(
+                parse(
+                        FOO_PATH,
+                        "package test; class NullPointerException {} class ArrayListFactory {} class Node {}"));
+
+        assertEquals(ImmutableList.of("NullPointerException"), findFuzzyMatches("NPE"));
+        assertEquals(ImmutableList.of("NullPointerException"), findFuzzyMatches("nuPoEx"));
+        assertEquals(ImmutableList.of("ArrayListFactory"), findFuzzyMatches("alf"));
+        assertEquals(ImmutableList.of("Node", "NullPointerException"), findFuzzyMatches("n"));
+        // Fuzzy matches must start with the first character of the prefix.
+        assertEquals(ImmutableList.of(), findFuzzyMatches("PE"));
+    }
+
+    @Test
+    public void replaceFile_updatesIndex() {
+        module.addOrReplaceFileScope(parse(FOO_PATH, "package test; class Foo { class Inner {} }"));
+        module.addOrReplaceFileScope(parse(BAR_PATH, "package test; class Bar {}"));
+        assertEquals(ImmutableList.of("Bar", "Foo", "Inner"), findClasses("", name -> true));
+
+        module.addOrReplaceFileScope(parse(FOO_PATH, "package test; class Foo2 { class Inner2 {} }"));
+
+        assertEquals(ImmutableList.of("Bar", "Foo2", "Inner2"), findClasses("", name -> true));
+    }
+
+    @Test
+    public void removeFile_updatesIndex() {
+        module.addOrReplaceFileScope(parse(FOO_PATH, "package test; class Foo { class Inner {} }"));
+        module.addOrReplaceFileScope(parse(BAR_PATH, "package test; class Bar { class Inner {} }"));
+        assertEquals(ImmutableList.of("Inner", "Inner"), findClasses("I", name -> true));
+
+        module.removeFile(FOO_PATH);
+
+        assertEquals(ImmutableList.of("Bar", "Inner"), findClasses("", name -> true));
+        assertEquals(
+                "Bar", getOnlyClass("Inner").getParentScope().map(this::getSimpleName).orElse(null));
+
+        module.addOrReplaceFileScope(parse(FOO_PATH, "package test; class Foo {}"));
+
+        assertEquals(ImmutableList.of("Bar", "Foo", "Inner"), findClasses("", name -> true));
+    }
+
+    @Test
+    public void addLazyFiles_rebuildsIndex() {
+        module.addOrReplaceFileScope(parse(FOO_PATH, "package test; class Foo {}"));
+        assertEquals(ImmutableList.of("Foo"), findClasses("", name -> true));
+
+        FileScope lazyFile = parse(BAR_PATH, "package other; class Bar { class Inner {} }");
+        module.addLazyFiles(
+                ImmutableList.of("other"),
+                ImmutableList.of("Bar", "Inner"),
+                () -> ImmutableList.of(lazyFile));
+
+        assertEquals(ImmutableList.of("Bar", "Foo", "Inner"), findClasses("", name -> true));
+    }
+
+    @Test
+    public void findClasses_materializesOnlyMatchedLazyPackages() {
+        AtomicInteger barLoads = new AtomicInteger();
+        AtomicInteger bazLoads = new AtomicInteger();
+        FileScope barFile = parse(BAR_PATH, "package bar; class Bar { class Inner {} }");
+        FileScope bazFile = parse(FOO_PATH, "package baz; class Baz {}");
+        module.addLazyFiles(
+                ImmutableList.of("bar"),
+                ImmutableList.of("Bar", "Inner"),
+                () -> {
+                    barLoads.incrementAndGet();
+                    return ImmutableList.of(barFile);
+                });
+        module.addLazyFiles(
+                ImmutableList.of("baz"),
+                ImmutableList.of("Baz"),
+                () -> {
+                    bazLoads.incrementAndGet();
+                    return ImmutableList.of(bazFile);
+                });
+
+        assertEquals(ImmutableList.of(), findClasses("Q", name -> true));
+        assertEquals(ImmutableList.of("Inner"), findClasses("In", name -> name.startsWith("In")));
+        assertEquals(1, barLoads.get());
+        assertEquals(0, bazLoads.get());
+
+        // The classes of the materialized package are indexed like the classes of other files.
+        assertEquals(ImmutableList.of("Bar", "Baz"), findClasses("B", name -> true));
+        assertEquals(ImmutableList.of("Bar", "Baz", "Inner"), findClasses("", name -> true));
+        assertEquals(1, barLoads.get());
+        assertEquals(1, bazLoads.get());
+    }
+
+    private FileScope parse(Path path, String content) {
+        fileManager.openFileForSnapshot(path.toUri(), content);
+        return parser.parseSourceFile(path, false /* fixContentForParsing */).get();
+    }
+
+    private List<String> findFuzzyMatches(String prefix) {
+        return findClasses(prefix, name -> CompletionPrefixMatcher.matches(name, prefix));
+    }
+
+    private List<String> findClasses(String prefix, Predicate<String> nameMatcher) {
+        List<ClassEntity> classes = new ArrayList<>();
+        module.getClassNameIndex().findClasses(prefix, nameMatcher, classes);
+        List<String> names = new ArrayList<>();
+        for (ClassEntity classEntity : classes) {
+            names.add(classEntity.getSimpleName());
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private ClassEntity getOnlyClass(String simpleName) {
+        List<ClassEntity> classes = new ArrayList<>();
+        module.getClassNameIndex().findClasses(simpleName, simpleName::equals, classes);
+        assertEquals(1, classes.size());
+        return classes.get(0);
+    }
+
+    private String getSimpleName(EntityScope scope) {
+        return ((Entity) scope).getSimpleName();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.tyron.javacompletion.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ModuleTest {
+
+    @Test
+    public void getGeneration_changesWithDependingModules() {
+        Module module = new Module();
+        Module library = new Module();
+        module.addDependingModule(library);
+        long generation = module.getGeneration();
+
+        library.addDependingModule(new Module());
+        assertNotEquals(generation, module.getGeneration());
+        generation = module.getGeneration();
+
+        module.removeDependingModule(library);
+        assertNotEquals(generation, module.getGeneration());
+        assertEquals(0, module.getDependingModules().size());
+    }
+
+    @Test
+    public void getGeneration_whileDependingModulesChange() throws Exception {
+        Module module = new Module();
+        for (int i = 0; i < 100; i++) {
+            module.addDependingModule(new Module());
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> reader =
+                    executor.submit(
+                            () -> {
+                                while (!done.get()) {
+                                    module.getGeneration();
+                                    module.getDependingModules();
+                                }
+                            });
+            for (int i = 0; i < 100_000; i++) {
+                Module dependingModule = new Module();
+                module.addDependingModule(dependingModule);
+                module.removeDependingModule(dependingModule);
+            }
+            done.set(true);
+            // Rethrows what the reader threw.
+            reader.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
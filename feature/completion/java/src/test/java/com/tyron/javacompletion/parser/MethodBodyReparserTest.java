@@ -0,0 +1,319 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.tyron.javacompletion.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.sun.source.tree.LineMap;
+import com.sun.tools.javac.tree.EndPosTable;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeScanner;
+import com.tyron.javacompletion.file.SimpleFileManager;
+import com.tyron.javacompletion.model.ClassEntity;
+import com.tyron.javacompletion.model.Entity;
+import com.tyron.javacompletion.model.EntityScope;
+import com.tyron.javacompletion.model.FileScope;
+import com.tyron.javacompletion.model.MethodEntity;
+import com.tyron.javacompletion.model.util.MethodInvocationEntity;
+import com.tyron.javacompletion.options.IndexOptions;
+
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compares the file scopes updated by {@link MethodBodyReparser} with the ones of parsing the
+ * edited files from scratch.
+ */
+public class MethodBodyReparserTest {
+    private static final Path FILE_PATH = Paths.get("/MethodBodyReparserTest.java").toAbsolutePath();
+    private static final String CONTENT =
+            String.join(
+                    "\n",
+                    "package test;",
+                    "",
+                    "import java.util.List;",
+                    "",
+                    "/** The test class. */",
+                    "public class Foo {",
+                    "    private int field = 1;",
+                    "",
+                    "    /** The first method. */",
+                    "    public void first(List<String> list) {",
+                    "        String s = list.get(0);",
+                    "        for (String item : list) {",
+                    "            Runnable r = () -> { int inLambda = item.length(); };",
+                    "        }",
+                    "    }",
+                    "",
+                    "    /** The second method. */",
+                    "    public int second() {",
+                    "        int a = field, b = 2;",
+                    "        Object o = new Object() { int inAnonymous; };",
+                    "        return a + b;",
+                    "    }",
+                    "",
+                    "    /** The inner class. */",
+                    "    static class Inner {",
+                    "        void third() {",
+                    "            int c = 3;",
+                    "        }",
+                    "    }",
+                    "}",
+                    "",
+                    "class Bar {",
+                    "    /** The method of the second class. */",
+                    "    void fourth() {}",
+                    "}",
+                    "");
+
+    private final SimpleFileManager fileManager = new SimpleFileManager();
+    private final Parser parser = new Parser(fileManager, IndexOptions.FULL_INDEX_BUILDER.build());
+
+    @Test
+    public void insertStatement_reparsesMethodBody() {
+        FileScope fileScope = parse(CONTENT);
+        String content = replace(CONTENT, "String s = list.get(0);", "String s = list.get(0); int n = 0;");
+
+        assertSame(fileScope, parse(content));
+        assertMatchesFullParse(fileScope, content);
+    }
+
+    @Test
+    public void deleteStatement_reparsesMethodBody() {
+        FileScope fileScope = parse(CONTENT);
+        String content =
+                replace(replace(CONTENT, "        int a = field, b = 2;\n", ""), "a + b", "0");
+
+        assertSame(fileScope, parse(content));
+        assertMatchesFullParse(fileScope, content);
+    }
+
+    @Test
+    public void sameLengthEdit_reparsesMethodBody() {
+        FileScope fileScope = parse(CONTENT);
+        String content = replace(CONTENT, "String s = list", "Object s = list");
+
+        assertSame(fileScope, parse(content));
+        assertMatchesFullParse(fileScope, content);
+    }
+
+    @Test
+    public void addLambdaAndClasses_reparsesMethodBody() {
+        FileScope fileScope = parse(CONTENT);
+        String content =
+                replace(
+                        CONTENT,
+                        "return a + b;",
+                        "/** The local class. */ class Local { int local; }\n"
+                                + "        Runnable r = () -> { Object o2 = new Object() { void g() {} }; };\n"
+                                + "        return a + b;");
+
+        assertSame(fileScope, parse(content));
+        assertMatchesFullParse(fileScope, content);
+    }
+
+    @Test
+    public void incompleteMemberSelect_reparsesMethodBody() {
+        FileScope fileScope = parse(CONTENT);
+        String content = replace(CONTENT, "int c = 3;", "int c = 3;\n            field.");
+
+        assertSame(fileScope, parse(content));
+        assertMatchesFullParse(fileScope, content);
+    }
+
+    @Test
+    public void missingSemicolon_reparsesMethodBody() {
+        FileScope fileScope = parse(CONTENT);
+        String content = replace(CONTENT, "return a + b;", "return a + b");
+
+        assertSame(fileScope, parse(content));
+        assertMatchesFullParse(fileScope, content);
+    }
+
+    @Test
+    public void successiveEdits_reparseMethodBodies() {
+        FileScope fileScope = parse(CONTENT);
+        String content = CONTENT;
+        String[][] edits = {
+                {"return a + b;", "return a + b + 1;"},
+                {"int c = 3;", "int c = 3; c++;"},
+                {"String s = list.get(0);", "String s = list.get(0); s."},
+                {"; s.", "; s.length();"},
+                {"return a + b + 1;", "return a;"},
+        };
+        for (String[] edit : edits) {
+            content = replace(content, edit[0], edit[1]);
+            assertSame(fileScope, parse(content));
+            assertMatchesFullParse(fileScope, content);
+        }
+    }
+
+    @Test
+    public void unclosedBlock_parsesWholeFile() {
+        FileScope fileScope = parse(CONTENT);
+        String content = replace(CONTENT, "int c = 3;", "int c = 3; {");
+
+        FileScope reparsed = parse(content);
+        assertNotSame(fileScope, reparsed);
+        assertMatchesFullParse(reparsed, content);
+    }
+
+    @Test
+    public void extraClosingBrace_parsesWholeFile() {
+        FileScope fileScope = parse(CONTENT);
+        String content = replace(CONTENT, "return a + b;", "return a + b; }");
+
+        FileScope reparsed = parse(content);
+        assertNotSame(fileScope, reparsed);
+        assertMatchesFullParse(reparsed, content);
+    }
+
+    @Test
+    public void editOutsideMethodBody_parsesWholeFile() {
+        FileScope fileScope = parse(CONTENT);
+        String content = replace(CONTENT, "private int field = 1;", "private int field = 1, other;");
+
+        FileScope reparsed = parse(content);
+        assertNotSame(fileScope, reparsed);
+        assertMatchesFullParse(reparsed, content);
+    }
+
+    private FileScope parse(String content) {
+        fileManager.openFileForSnapshot(FILE_PATH.toUri(), content);
+        return parser.parseSourceFile(FILE_PATH, false /* fixContentForParsing */).get();
+    }
+
+    private void assertMatchesFullParse(FileScope fileScope, String content) {
+        Parser fullParser = new Parser(fileManager, IndexOptions.FULL_INDEX_BUILDER.build());
+        FileScope expected = fullParser.parseSourceFile(FILE_PATH, false).get();
+        assertEquals(describeTree(expected), describeTree(fileScope));
+        assertEquals(describeScopes(expected, content), describeScopes(fileScope, content));
+        assertEquals(describeLineMap(expected, content), describeLineMap(fileScope, content));
+    }
+
+    /**
+     * Replaces the only occurrence of {@code target} in {@code content}.
+     */
+    private static String replace(String content, String target, String replacement) {
+        int index = content.indexOf(target);
+        if (index < 0 || content.indexOf(target, index + 1) >= 0) {
+            throw new IllegalArgumentException(target + " is not found exactly once");
+        }
+        return content.substring(0, index) + replacement + content.substring(index + target.length());
+    }
+
+    /**
+     * Describes the kind, positions and doc comment of every tree of the compilation unit.
+     */
+    private static String describeTree(FileScope fileScope) {
+        JCCompilationUnit compilationUnit = fileScope.getCompilationUnit().get();
+        EndPosTable endPositions = compilationUnit.endPositions;
+        StringBuilder sb = new StringBuilder();
+        new TreeScanner() {
+            @Override
+            public void scan(JCTree tree) {
+                if (tree == null) {
+                    return;
+                }
+                sb.append(tree.getTag())
+                        .append(' ')
+                        .append(tree.pos)
+                        .append(' ')
+                        .append(TreeInfo.getStartPos(tree))
+                        .append(' ')
+                        .append(TreeInfo.getEndPos(tree, endPositions));
+                if (compilationUnit.docComments.hasComment(tree)) {
+                    sb.append(" doc=").append(compilationUnit.docComments.getCommentText(tree));
+                }
+                sb.append('\n');
+                super.scan(tree);
+            }
+        }.scan(compilationUnit);
+        return sb.toString();
+    }
+
+    /**
+     * Describes the scope at every position of the file, and the members of all scopes with their
+     * ranges.
+     */
+    private static String describeScopes(FileScope fileScope, String content) {
+        StringBuilder sb = new StringBuilder();
+        Set<EntityScope> visitedScopes = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<EntityScope> queue = new ArrayDeque<>();
+        queue.add(fileScope);
+        visitedScopes.add(fileScope);
+        for (int i = 0; i <= content.length(); i++) {
+            EntityScope scope = fileScope.getEntityScopeAt(i);
+            sb.append(i).append(": ").append(describeScope(scope)).append('\n');
+            if (visitedScopes.add(scope)) {
+                queue.add(scope);
+            }
+        }
+
+        List<String> scopeDescriptions = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            EntityScope scope = queue.removeFirst();
+            List<String> members = new ArrayList<>();
+            for (Entity entity : scope.getMemberEntities().values()) {
+                members.add(
+                        "  " + entity.getKind() + " " + entity.getSimpleName() + " " + entity.getSymbolRange());
+                if (entity.getScope() != null && visitedScopes.add(entity.getScope())) {
+                    queue.add(entity.getScope());
+                }
+                if (entity instanceof ClassEntity classEntity) {
+                    for (MethodEntity constructor : classEntity.getConstructors()) {
+                        if (visitedScopes.add(constructor)) {
+                            queue.add(constructor);
+                        }
+                    }
+                }
+            }
+            Collections.sort(members);
+            scopeDescriptions.add(describeScope(scope) + "\n" + String.join("\n", members));
+        }
+        Collections.sort(scopeDescriptions);
+        for (String scopeDescription : scopeDescriptions) {
+            sb.append(scopeDescription).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String describeScope(EntityScope scope) {
+        String name =
+                scope instanceof Entity entity
+                        ? entity.getKind() + " " + entity.getSimpleName() + " " + entity.getSymbolRange()
+                        : scope.getClass().getSimpleName();
+        if (scope instanceof MethodInvocationEntity) {
+            // Method invocations are not defined in the source code and have no definition range.
+            return name;
+        }
+        return name + " " + scope.getDefinitionRange();
+    }
+
+    private static String describeLineMap(FileScope fileScope, String content) {
+        LineMap lineMap = fileScope.getLineMap().get();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < content.length(); i++) {
+            sb.append(lineMap.getLineNumber(i)).append(':').append(lineMap.getColumnNumber(i)).append(' ');
+        }
+        return sb.toString();
+    }
+}
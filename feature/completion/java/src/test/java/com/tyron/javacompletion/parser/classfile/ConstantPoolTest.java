@@ -0,0 +1,193 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.tyron.javacompletion.parser.classfile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.javacompletion.parser.classfile.ClassFileParser.ClassFileParserError;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantClassInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantDoubleInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantFloatInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantIntegerInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantInvokeDynamicInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantLongInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantMethodHandleInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantMethodrefInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantNameAndTypeInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantStringInfo;
+import com.tyron.javacompletion.parser.classfile.ConstantPoolInfo.ConstantUtf8Info;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+public class ConstantPoolTest {
+    // Strings covering the 1, 2 and 3 byte forms of modified UTF-8, including the two byte form of
+    // the null character and the surrogate pairs of supplementary characters.
+    private static final String ASCII = "java/lang/Object";
+    private static final String NULL_CHARACTER = "a\u0000b";
+    private static final String NON_ASCII = "café €";
+    private static final String SUPPLEMENTARY = "smile 😀";
+
+    @Test
+    public void parse_decodesAllEntries() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        // Entry 7 and 10 are the second slots of the long and double constants.
+        out.writeShort(17);
+        writeUtf8(out, ASCII); // 1
+        writeUtf8(out, NULL_CHARACTER); // 2
+        writeUtf8(out, NON_ASCII); // 3
+        writeUtf8(out, SUPPLEMENTARY); // 4
+        out.writeByte(7); // 5: CONSTANT_Class
+        out.writeShort(1);
+        out.writeByte(5); // 6: CONSTANT_Long
+        out.writeLong(0x0123456789abcdefL);
+        out.writeByte(3); // 8: CONSTANT_Integer
+        out.writeInt(-42);
+        out.writeByte(6); // 9: CONSTANT_Double
+        out.writeDouble(Math.PI);
+        out.writeByte(4); // 11: CONSTANT_Float
+        out.writeFloat(1.5f);
+        out.writeByte(8); // 12: CONSTANT_String
+        out.writeShort(3);
+        out.writeByte(12); // 13: CONSTANT_NameAndType
+        out.writeShort(2);
+        out.writeShort(4);
+        out.writeByte(10); // 14: CONSTANT_Methodref
+        out.writeShort(5);
+        out.writeShort(13);
+        out.writeByte(15); // 15: CONSTANT_MethodHandle
+        out.writeByte(6);
+        out.writeShort(14);
+        out.writeByte(18); // 16: CONSTANT_InvokeDynamic
+        out.writeShort(0);
+        out.writeShort(13);
+        // The bytes following the constant pool.
+        out.writeShort(0xbeef);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+
+        ConstantPool constantPool = ConstantPool.parse(buffer);
+
+        assertEquals(0xbeef, buffer.getShort() & 0xFFFF);
+        assertEquals(17, constantPool.size());
+        assertEquals(ConstantUtf8Info.create(ASCII), constantPool.get(1));
+        assertEquals(ConstantUtf8Info.create(NULL_CHARACTER), constantPool.get(2));
+        assertEquals(ConstantUtf8Info.create(NON_ASCII), constantPool.get(3));
+        assertEquals(ConstantUtf8Info.create(SUPPLEMENTARY), constantPool.get(4));
+        assertEquals(ConstantClassInfo.create(1), constantPool.get(5));
+        assertEquals(ConstantLongInfo.create(0x0123456789abcdefL), constantPool.get(6));
+        assertEquals(ConstantIntegerInfo.create(-42), constantPool.get(8));
+        assertEquals(ConstantDoubleInfo.create(Math.PI), constantPool.get(9));
+        assertEquals(ConstantFloatInfo.create(1.5f), constantPool.get(11));
+        assertEquals(ConstantStringInfo.create(3), constantPool.get(12));
+        assertEquals(ConstantNameAndTypeInfo.create(2, 4), constantPool.get(13));
+        assertEquals(ConstantMethodrefInfo.create(5, 13), constantPool.get(14));
+        assertEquals(ConstantMethodHandleInfo.create((byte) 6, 14), constantPool.get(15));
+        assertEquals(ConstantInvokeDynamicInfo.create(0, 13), constantPool.get(16));
+        assertThrows(IndexOutOfBoundsException.class, () -> constantPool.get(17));
+    }
+
+    @Test
+    public void utf8Equals_comparesWithoutDecoding() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(4);
+        writeUtf8(out, ASCII);
+        writeUtf8(out, NON_ASCII);
+        out.writeByte(7);
+        out.writeShort(1);
+
+        ConstantPool constantPool = ConstantPool.parse(ByteBuffer.wrap(bytes.toByteArray()));
+
+        assertTrue(constantPool.isUtf8(1));
+        assertTrue(constantPool.isUtf8(2));
+        assertFalse(constantPool.isUtf8(0));
+        assertFalse(constantPool.isUtf8(3));
+        assertFalse(constantPool.isUtf8(4));
+        assertTrue(constantPool.utf8Equals(1, ASCII));
+        assertFalse(constantPool.utf8Equals(1, "java/lang/Objecs"));
+        assertFalse(constantPool.utf8Equals(1, "java/lang/Obj"));
+        assertFalse(constantPool.utf8Equals(2, "cafe"));
+        assertFalse(constantPool.utf8Equals(3, ASCII));
+    }
+
+    @Test
+    public void malformedUtf8_failsOnlyWhenDecoded() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(3);
+        out.writeByte(1);
+        // A two byte character without its continuation byte.
+        out.writeShort(2);
+        out.writeByte('a');
+        out.writeByte(0xC3);
+        writeUtf8(out, ASCII);
+
+        ConstantPool constantPool = ConstantPool.parse(ByteBuffer.wrap(bytes.toByteArray()));
+
+        assertEquals(ConstantUtf8Info.create(ASCII), constantPool.get(2));
+        assertThrows(ClassFileParserError.class, () -> constantPool.get(1));
+    }
+
+    @Test
+    public void unknownTag_isRejected() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(2);
+        out.writeByte(2);
+        out.writeShort(0);
+
+        assertThrows(
+                ClassFileParserError.class,
+                () -> ConstantPool.parse(ByteBuffer.wrap(bytes.toByteArray())));
+    }
+
+    @Test
+    public void parseClassFile_resolvesClassNames() throws IOException {
+        byte[] classFile;
+        try (InputStream in = ConstantPoolTest.class.getResourceAsStream("ConstantPoolTest.class")) {
+            classFile = in.readAllBytes();
+        }
+        // The class file is parsed from the middle of a buffer, e.g. an entry of a mapped jar.
+        ByteBuffer buffer = ByteBuffer.allocate(classFile.length + 8);
+        buffer.position(8);
+        buffer.put(classFile);
+        buffer.position(8);
+
+        ClassFileInfo classFileInfo = new ClassFileParser().parse(buffer);
+
+        assertEquals(8, buffer.position());
+        List<ConstantPoolInfo> constantPool = classFileInfo.getConstantPool();
+        assertEquals(
+                "com/tyron/javacompletion/parser/classfile/ConstantPoolTest",
+                getClassName(constantPool, classFileInfo.getThisClassIndex()));
+        assertEquals("java/lang/Object", getClassName(constantPool, classFileInfo.getSuperClassIndex()));
+    }
+
+    private static String getClassName(List<ConstantPoolInfo> constantPool, int classIndex) {
+        ConstantClassInfo classInfo = (ConstantClassInfo) constantPool.get(classIndex);
+        return ((ConstantUtf8Info) constantPool.get(classInfo.getNameIndex())).getValue();
+    }
+
+    /**
+     * Writes a CONSTANT_Utf8 entry, whose encoding is the one of {@link DataOutputStream#writeUTF}.
+     */
+    private static void writeUtf8(DataOutputStream out, String value) throws IOException {
+        out.writeByte(1);
+        out.writeUTF(value);
+    }
+}
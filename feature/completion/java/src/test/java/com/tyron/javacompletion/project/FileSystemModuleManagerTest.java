@@ -0,0 +1,79 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.tyron.javacompletion.project;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.tyron.javacompletion.file.SimpleFileManager;
+import com.tyron.javacompletion.options.IndexOptions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+public class FileSystemModuleManagerTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void initialize_replacesModulesOfJars() throws IOException {
+        Path root = temporaryFolder.newFolder("project").toPath();
+        writeJar(root.resolve("a.jar"));
+        writeJar(root.resolve("b.jar"));
+
+        for (Path cacheDir : new Path[] {null, temporaryFolder.newFolder("cache").toPath()}) {
+            FileSystemModuleManager moduleManager = createModuleManager(root, cacheDir);
+            moduleManager.initialize();
+            moduleManager.initialize();
+
+            assertEquals(2, moduleManager.getProjectModule().getDependingModules().size());
+        }
+    }
+
+    @Test
+    public void initialize_removesModulesOfDeletedJars() throws IOException {
+        Path root = temporaryFolder.newFolder("project").toPath();
+        writeJar(root.resolve("a.jar"));
+        writeJar(root.resolve("b.jar"));
+
+        for (Path cacheDir : new Path[] {null, temporaryFolder.newFolder("cache").toPath()}) {
+            FileSystemModuleManager moduleManager = createModuleManager(root, cacheDir);
+            moduleManager.initialize();
+            Files.delete(root.resolve("a.jar"));
+
+            moduleManager.initialize();
+
+            assertEquals(1, moduleManager.getProjectModule().getDependingModules().size());
+            writeJar(root.resolve("a.jar"));
+        }
+    }
+
+    private static FileSystemModuleManager createModuleManager(Path root, Path cacheDir) {
+        return new FileSystemModuleManager(
+                new SimpleFileManager(root, ImmutableList.of()),
+                root,
+                IndexOptions.FULL_INDEX_BUILDER.build(),
+                cacheDir);
+    }
+
+    private static void writeJar(Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path);
+                JarOutputStream jar = new JarOutputStream(out)) {
+            jar.putNextEntry(new JarEntry("META-INF/"));
+            jar.closeEntry();
+        }
+    }
+}
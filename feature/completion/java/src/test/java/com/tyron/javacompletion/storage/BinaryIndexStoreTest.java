@@ -0,0 +1,198 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.tyron.javacompletion.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.Gson;
+import com.tyron.javacompletion.model.ClassEntity;
+import com.tyron.javacompletion.model.ClassNameIndex;
+import com.tyron.javacompletion.model.Module;
+import com.tyron.javacompletion.model.PackageScope;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class BinaryIndexStoreTest {
+    private static final String JSON_INDEX =
+            "{\"files\":["
+                    + "{\"packageName\":\"com.example\",\"entities\":["
+                    + "{\"kind\":\"INTERFACE\",\"simpleName\":\"Callback\",\"isStatic\":false,"
+                    + "\"javadoc\":\"Called back.\","
+                    + "\"typeParameters\":[{\"name\":\"T\",\"bounds\":[{\"fullName\":\"java.lang.Number\",\"isArray\":false}]}],"
+                    + "\"members\":[{\"kind\":\"METHOD\",\"simpleName\":\"onResult\",\"isStatic\":false,"
+                    + "\"parameters\":[{\"kind\":\"VARIABLE\",\"simpleName\":\"results\",\"isStatic\":false,"
+                    + "\"type\":{\"fullName\":\"java.util.List\",\"isArray\":true,\"typeArguments\":["
+                    + "{\"kind\":\"WILDCARD_EXTENDS\",\"bound\":{\"fullName\":\"T\",\"isArray\":false}}]}}],"
+                    + "\"type\":{\"fullName\":\"void\",\"isArray\":false}}],"
+                    + "\"superClass\":{\"fullName\":\"java.lang.Object\",\"isArray\":false},\"interfaces\":[]},"
+                    + "{\"kind\":\"CLASS\",\"simpleName\":\"Holder\",\"isStatic\":false,"
+                    + "\"members\":["
+                    + "{\"kind\":\"FIELD\",\"simpleName\":\"VALUE\",\"isStatic\":true,"
+                    + "\"type\":{\"fullName\":\"java.lang.String\",\"isArray\":false}},"
+                    + "{\"kind\":\"CLASS\",\"simpleName\":\"Inner\",\"isStatic\":true,\"members\":[],"
+                    + "\"superClass\":{\"fullName\":\"java.lang.Object\",\"isArray\":false},\"interfaces\":[]}],"
+                    + "\"superClass\":{\"fullName\":\"java.lang.Object\",\"isArray\":false},"
+                    + "\"interfaces\":[{\"fullName\":\"com.example.Callback\",\"isArray\":false,\"typeArguments\":["
+                    + "{\"kind\":\"EXPLICIT\",\"explicitType\":{\"fullName\":\"java.lang.Integer\",\"isArray\":false}}]}]}]},"
+                    + "{\"packageName\":\"com.example.util\",\"entities\":["
+                    + "{\"kind\":\"ENUM\",\"simpleName\":\"Mode\",\"isStatic\":false,\"members\":["
+                    + "{\"kind\":\"FIELD\",\"simpleName\":\"FAST\",\"isStatic\":true,"
+                    + "\"type\":{\"fullName\":\"com.example.util.Mode\",\"isArray\":false}}],"
+                    + "\"superClass\":{\"fullName\":\"java.lang.Enum\",\"isArray\":false},\"interfaces\":[]}]}"
+                    + "]}";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Gson gson = new Gson();
+
+    @Test
+    public void convertJsonIndex_readsSameModuleAsJsonIndex() throws IOException {
+        Path jsonFile = temporaryFolder.getRoot().toPath().resolve("index.json");
+        Files.write(jsonFile, JSON_INDEX.getBytes(UTF_8));
+        Path binaryFile = temporaryFolder.getRoot().toPath().resolve("index.bin");
+
+        new BinaryIndexStore().convertJsonIndex(jsonFile, binaryFile);
+
+        assertTrue(BinaryIndexStore.isBinaryIndex(binaryFile));
+        assertEquals(
+                toJson(new IndexStore().readModule(new StringReader(JSON_INDEX))),
+                toJson(new BinaryIndexStore().readModuleFromFile(binaryFile)));
+    }
+
+    @Test
+    public void writeModuleToFile_readsSameModule() throws IOException {
+        Module module = new IndexStore().readModule(new StringReader(JSON_INDEX));
+        Path binaryFile = temporaryFolder.getRoot().toPath().resolve("index.bin");
+
+        new BinaryIndexStore().writeModuleToFile(module, binaryFile);
+
+        assertEquals(toJson(module), toJson(new BinaryIndexStore().readModuleFromFile(binaryFile)));
+    }
+
+    @Test
+    public void writeModuleToFile_replacesExistingIndex() throws IOException {
+        Path binaryFile = temporaryFolder.getRoot().toPath().resolve("index.bin");
+        new BinaryIndexStore().writeModuleToFile(new Module(), binaryFile);
+        Module module = new IndexStore().readModule(new StringReader(JSON_INDEX));
+
+        new BinaryIndexStore().writeModuleToFile(module, binaryFile);
+
+        assertEquals(toJson(module), toJson(new BinaryIndexStore().readModuleFromFile(binaryFile)));
+        // The index is written to a temporary file first, which is moved in place.
+        assertEquals(1, temporaryFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void defaultPackage_isRootPackage() throws IOException {
+        String jsonIndex =
+                "{\"files\":[{\"packageName\":\"\",\"entities\":["
+                        + "{\"kind\":\"CLASS\",\"simpleName\":\"Main\",\"isStatic\":false,\"members\":[],"
+                        + "\"superClass\":{\"fullName\":\"java.lang.Object\",\"isArray\":false},\"interfaces\":[]}]}]}";
+        Path jsonFile = temporaryFolder.getRoot().toPath().resolve("index.json");
+        Files.write(jsonFile, jsonIndex.getBytes(UTF_8));
+        Path binaryFile = temporaryFolder.getRoot().toPath().resolve("index.bin");
+        new BinaryIndexStore().convertJsonIndex(jsonFile, binaryFile);
+
+        for (Module module :
+                ImmutableList.of(
+                        new IndexStore().readModule(new StringReader(jsonIndex)),
+                        new BinaryIndexStore().readModuleFromFile(binaryFile))) {
+            PackageScope rootPackage = module.getRootPackage();
+            assertTrue(rootPackage.getMemberEntities().containsKey("Main"));
+            assertFalse(rootPackage.getSubPackage("").isPresent());
+        }
+    }
+
+    @Test
+    public void readModuleFromFile_indexesClassNames() throws IOException {
+        Module module = new IndexStore().readModule(new StringReader(JSON_INDEX));
+        Path binaryFile = temporaryFolder.getRoot().toPath().resolve("index.bin");
+        new BinaryIndexStore().writeModuleToFile(module, binaryFile);
+
+        ClassNameIndex index = new BinaryIndexStore().readModuleFromFile(binaryFile).getClassNameIndex();
+
+        assertEquals(ImmutableList.of("Inner"), findClasses(index, "inn"));
+        assertEquals(ImmutableList.of("Mode"), findClasses(index, "M"));
+        assertEquals(ImmutableList.of(), findClasses(index, "onResult"));
+    }
+
+    @Test
+    public void isBinaryIndex_rejectsOtherFiles() throws IOException {
+        Path jsonFile = temporaryFolder.getRoot().toPath().resolve("index.json");
+        Files.write(jsonFile, JSON_INDEX.getBytes(UTF_8));
+        Path emptyFile = temporaryFolder.getRoot().toPath().resolve("empty.bin");
+        Files.write(emptyFile, new byte[0]);
+
+        assertFalse(BinaryIndexStore.isBinaryIndex(jsonFile));
+        assertFalse(BinaryIndexStore.isBinaryIndex(emptyFile));
+        assertFalse(BinaryIndexStore.isBinaryIndex(temporaryFolder.getRoot().toPath()));
+        assertFalse(
+                BinaryIndexStore.isBinaryIndex(temporaryFolder.getRoot().toPath().resolve("missing.bin")));
+    }
+
+    @Test
+    public void otherVersion_isRejected() throws IOException {
+        Path binaryFile = temporaryFolder.getRoot().toPath().resolve("index.bin");
+        new BinaryIndexStore().writeModuleToFile(new Module(), binaryFile);
+        byte[] content = Files.readAllBytes(binaryFile);
+        writeHeader(content, BinaryIndexStore.MAGIC, BinaryIndexStore.VERSION + 1);
+        Files.write(binaryFile, content);
+
+        assertFalse(BinaryIndexStore.isBinaryIndex(binaryFile));
+        assertThrows(IOException.class, () -> new BinaryIndexStore().readModuleFromFile(binaryFile));
+    }
+
+    @Test
+    public void otherMagic_isRejected() throws IOException {
+        Path binaryFile = temporaryFolder.getRoot().toPath().resolve("index.bin");
+        new BinaryIndexStore().writeModuleToFile(new Module(), binaryFile);
+        byte[] content = Files.readAllBytes(binaryFile);
+        writeHeader(content, ~BinaryIndexStore.MAGIC, BinaryIndexStore.VERSION);
+        Files.write(binaryFile, content);
+
+        assertFalse(BinaryIndexStore.isBinaryIndex(binaryFile));
+        assertThrows(IOException.class, () -> new BinaryIndexStore().readModuleFromFile(binaryFile));
+    }
+
+    private String toJson(Module module) {
+        return gson.toJson(new IndexStore().serializeModule(module));
+    }
+
+    private static void writeHeader(byte[] content, int magic, int version) {
+        ByteBuffer.wrap(content).putInt(magic).putInt(version);
+    }
+
+    private static List<String> findClasses(ClassNameIndex index, String prefix) {
+        List<ClassEntity> classes = new ArrayList<>();
+        String lowerCasePrefix = prefix.toLowerCase(Locale.ROOT);
+        index.findClasses(
+                prefix, name -> name.toLowerCase(Locale.ROOT).startsWith(lowerCasePrefix), classes);
+        List<String> names = new ArrayList<>();
+        for (ClassEntity classEntity : classes) {
+            names.add(classEntity.getSimpleName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.tyron.javacompletion.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.Gson;
+import com.tyron.javacompletion.model.Module;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+
+public class JarIndexCacheTest {
+    private static final String JSON_INDEX =
+            "{\"files\":[{\"packageName\":\"com.example\",\"entities\":["
+                    + "{\"kind\":\"CLASS\",\"simpleName\":\"Foo\",\"isStatic\":false,\"members\":["
+                    + "{\"kind\":\"METHOD\",\"simpleName\":\"bar\",\"isStatic\":false,\"parameters\":[],"
+                    + "\"type\":{\"fullName\":\"java.lang.String\",\"isArray\":false}}],"
+                    + "\"superClass\":{\"fullName\":\"java.lang.Object\",\"isArray\":false},\"interfaces\":[]}]}]}";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Gson gson = new Gson();
+
+    private Path cacheDir;
+    private Path jarFile;
+    private Module module;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDir = temporaryFolder.getRoot().toPath().resolve("cache");
+        jarFile = temporaryFolder.newFile("library.jar").toPath();
+        Files.write(jarFile, "content".getBytes(UTF_8));
+        module = new IndexStore().readModule(new StringReader(JSON_INDEX));
+    }
+
+    @Test
+    public void readModule_returnsWrittenModule() {
+        new JarIndexCache(cacheDir).writeModule(jarFile, module);
+
+        Optional<Module> cachedModule = new JarIndexCache(cacheDir).readModule(jarFile);
+
+        assertTrue(cachedModule.isPresent());
+        assertEquals(toJson(module), toJson(cachedModule.get()));
+    }
+
+    @Test
+    public void readModule_notCached_returnsEmpty() {
+        assertFalse(new JarIndexCache(cacheDir).readModule(jarFile).isPresent());
+    }
+
+    @Test
+    public void readModule_modifiedJar_returnsEmpty() throws IOException {
+        JarIndexCache cache = new JarIndexCache(cacheDir);
+        cache.writeModule(jarFile, module);
+
+        Files.setLastModifiedTime(
+                jarFile,
+                FileTime.fromMillis(Files.getLastModifiedTime(jarFile).toMillis() + 1000));
+
+        assertFalse(cache.readModule(jarFile).isPresent());
+    }
+
+    @Test
+    public void readModule_resizedJar_returnsEmpty() throws IOException {
+        JarIndexCache cache = new JarIndexCache(cacheDir);
+        FileTime lastModified = Files.getLastModifiedTime(jarFile);
+        cache.writeModule(jarFile, module);
+
+        // The modification time may not change for quick successive writes.
+        Files.write(jarFile, "other content".getBytes(UTF_8));
+        Files.setLastModifiedTime(jarFile, lastModified);
+
+        assertFalse(cache.readModule(jarFile).isPresent());
+    }
+
+    @Test
+    public void writeModule_deletesOutdatedEntriesOfSameJar() throws IOException {
+        Path otherJarFile = temporaryFolder.newFile("other.jar").toPath();
+        JarIndexCache cache = new JarIndexCache(cacheDir);
+        cache.writeModule(jarFile, new Module());
+        cache.writeModule(otherJarFile, module);
+
+        Files.write(jarFile, "other content".getBytes(UTF_8));
+        cache.writeModule(jarFile, module);
+
+        assertEquals(2, cacheDir.toFile().list().length);
+        assertEquals(toJson(module), toJson(cache.readModule(jarFile).get()));
+        assertEquals(toJson(module), toJson(cache.readModule(otherJarFile).get()));
+    }
+
+    @Test
+    public void readModule_corruptedEntry_returnsEmpty() throws IOException {
+        JarIndexCache cache = new JarIndexCache(cacheDir);
+        cache.writeModule(jarFile, module);
+        Path cacheFile = cacheDir.toFile().listFiles()[0].toPath();
+
+        Files.write(cacheFile, "not an index".getBytes(UTF_8));
+
+        assertFalse(cache.readModule(jarFile).isPresent());
+    }
+
+    private String toJson(Module module) {
+        return gson.toJson(new IndexStore().serializeModule(module));
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * This file is part of Cosmic IDE.
+ * Cosmic IDE is a free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * Cosmic IDE is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with Cosmic IDE. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.tyron.javacompletion.typesolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.collect.ImmutableList;
+import com.tyron.javacompletion.file.SimpleFileManager;
+import com.tyron.javacompletion.model.ClassEntity;
+import com.tyron.javacompletion.model.Entity;
+import com.tyron.javacompletion.model.EntityWithContext;
+import com.tyron.javacompletion.model.FileScope;
+import com.tyron.javacompletion.model.Module;
+import com.tyron.javacompletion.options.IndexOptions;
+import com.tyron.javacompletion.parser.Parser;
+
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class ClassHierarchyCacheTest {
+    private static final Path BASE_PATH = Paths.get("/test/Base.java").toAbsolutePath();
+    private static final Path CHILD_PATH = Paths.get("/test/Child.java").toAbsolutePath();
+    private static final Path OTHER_PATH = Paths.get("/test/Other.java").toAbsolutePath();
+
+    private static final Set<Entity.Kind> METHOD_KINDS = EnumSet.of(Entity.Kind.METHOD);
+
+    private final SimpleFileManager fileManager = new SimpleFileManager();
+    private final Parser parser = new Parser(fileManager, IndexOptions.FULL_INDEX_BUILDER.build());
+    private final Module module = new Module();
+
+    @Test
+    public void getClassHierarchy_reusesResultUntilModuleChanges() {
+        addFile(module, CHILD_PATH, "package test; class Child {}");
+        EntityWithContext child = getClass(module, "Child");
+        ClassHierarchyCache cache = new ClassHierarchyCache();
+        CountingLoader loader = new CountingLoader(child);
+
+        ImmutableList<EntityWithContext> hierarchy = cache.getClassHierarchy(child, module, loader);
+        assertSame(hierarchy, cache.getClassHierarchy(child, module, loader));
+        assertEquals(1, loader.count.get());
+
+        addFile(module, OTHER_PATH, "package test; class Other {}");
+
+        cache.getClassHierarchy(child, module, loader);
+        assertEquals(2, loader.count.get());
+        cache.getClassHierarchy(child, module, loader);
+        assertEquals(2, loader.count.get());
+    }
+
+    @Test
+    public void getClassHierarchy_dependingModuleChanges_computesAgain() {
+        Module library = new Module();
+        addFile(library, BASE_PATH, "package test; class Base {}");
+        module.addDependingModule(library);
+        addFile(module, CHILD_PATH, "package test; class Child extends Base {}");
+        EntityWithContext child = getClass(module, "Child");
+        ClassHierarchyCache cache = new ClassHierarchyCache();
+        CountingLoader loader = new CountingLoader(child);
+        cache.getClassHierarchy(child, module, loader);
+
+        library.removeFile(BASE_PATH);
+
+        cache.getClassHierarchy(child, module, loader);
+        assertEquals(2, loader.count.get());
+    }
+
+    @Test
+    public void getClassMembers_cachesEachNameAndKinds() {
+        addFile(module, CHILD_PATH, "package test; class Child {}");
+        EntityWithContext child = getClass(module, "Child");
+        ClassHierarchyCache cache = new ClassHierarchyCache();
+        CountingLoader loader = new CountingLoader(child);
+
+        cache.getClassMembers("a", child, module, ClassEntity.ALLOWED_KINDS, loader);
+        cache.getClassMembers("a", child, module, ClassEntity.ALLOWED_KINDS, loader);
+        assertEquals(1, loader.count.get());
+        cache.getClassMembers("b", child, module, ClassEntity.ALLOWED_KINDS, loader);
+        assertEquals(2, loader.count.get());
+        cache.getClassMembers("a", child, module, METHOD_KINDS, loader);
+        assertEquals(3, loader.count.get());
+        // Hierarchies and members are cached separately.
+        cache.getClassHierarchy(child, module, loader);
+        assertEquals(4, loader.count.get());
+    }
+
+    @Test
+    public void getClassHierarchy_recursiveLookup_returnsNull() {
+        addFile(module, CHILD_PATH, "package test; class Child {}");
+        EntityWithContext child = getClass(module, "Child");
+        ClassHierarchyCache cache = new ClassHierarchyCache();
+        List<ImmutableList<EntityWithContext>> nestedResults = new ArrayList<>();
+
+        ImmutableList<EntityWithContext> hierarchy =
+                cache.getClassHierarchy(
+                        child,
+                        module,
+                        () -> {
+                            nestedResults.add(
+                                    cache.getClassHierarchy(child, module, () -> ImmutableList.of(child)));
+                            return ImmutableList.of(child);
+                        });
+
+        assertEquals(ImmutableList.of(child), hierarchy);
+        assertEquals(1, nestedResults.size());
+        assertNull(nestedResults.get(0));
+        // The lookup is no longer being computed.
+        assertSame(hierarchy, cache.getClassHierarchy(child, module, () -> ImmutableList.of()));
+    }
+
+    @Test
+    public void classHierarchy_followsChangedSuperClass() {
+        TypeSolver typeSolver = new TypeSolver();
+        addFile(module, BASE_PATH, "package test; class Base { void first() {} }");
+        addFile(module, CHILD_PATH, "package test; class Child extends Base {}");
+        EntityWithContext child = getClass(module, "Child");
+        assertEquals(
+                ImmutableList.of("Child", "Base"), getSimpleNames(typeSolver.classHierarchy(child, module)));
+        assertEquals(
+                ImmutableList.of("first"),
+                getSimpleNames(
+                        typeSolver.findClassMembers("first", child, module, METHOD_KINDS)));
+
+        addFile(
+                module,
+                BASE_PATH,
+                "package test; class Base extends Root {} class Root { void second() {} }");
+
+        assertEquals(
+                ImmutableList.of("Child", "Base", "Root"),
+                getSimpleNames(typeSolver.classHierarchy(child, module)));
+        assertEquals(
+                ImmutableList.of(),
+                getSimpleNames(
+                        typeSolver.findClassMembers("first", child, module, METHOD_KINDS)));
+        assertEquals(
+                ImmutableList.of("second"),
+                getSimpleNames(
+                        typeSolver.findClassMembers("second", child, module, METHOD_KINDS)));
+    }
+
+    private void addFile(Module module, Path path, String content) {
+        fileManager.openFileForSnapshot(path.toUri(), content);
+        FileScope fileScope = parser.parseSourceFile(path, false /* fixContentForParsing */).get();
+        module.addOrReplaceFileScope(fileScope);
+    }
+
+    private static EntityWithContext getClass(Module module, String simpleName) {
+        ClassEntity classEntity =
+                new TypeSolver()
+                        .findClassInModule(ImmutableList.of("test", simpleName), module)
+                        .get();
+        return EntityWithContext.ofEntity(classEntity);
+    }
+
+    private static List<String> getSimpleNames(Iterable<EntityWithContext> entities) {
+        List<String> names = new ArrayList<>();
+        for (EntityWithContext entity : entities) {
+            names.add(entity.getEntity().getSimpleName());
+        }
+        return names;
+    }
+
+    private static class CountingLoader implements Supplier<ImmutableList<EntityWithContext>> {
+        private final AtomicInteger count = new AtomicInteger();
+        private final EntityWithContext result;
+
+        private CountingLoader(EntityWithContext result) {
+            this.result = result;
+        }
+
+        @Override
+        public ImmutableList<EntityWithContext> get() {
+            count.incrementAndGet();
+            return ImmutableList.of(result);
+        }
+    }
+}
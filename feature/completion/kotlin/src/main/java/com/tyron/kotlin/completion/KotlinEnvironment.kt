@@ -592,6 +592,7 @@ data class KotlinEnvironment(
 
         fun get(module: Project): KotlinEnvironment {
             val jars = module.libDir.walk().filter { it.extension == "jar" }.toMutableList()
+            FileUtil.awaitClasspath()
             jars.addAll(FileUtil.classpathDir.walk().filter { it.extension == "jar" })
             val environment = with(jars)
             environment.kotlinEnvironment.updateClasspath(
@@ -66,6 +66,7 @@ class CompletionProvider {
             JavaCoreProjectEnvironment({ logger.info("JavaCoreProjectEnvironment disposed") },
                 JavaCoreApplicationEnvironment { logger.info("JavaCoreApplicationEnvironment disposed") })
         val symbolCacher by lazy {
+            FileUtil.awaitClasspath()
             SymbolCacher(FileUtil.classpathDir.resolve("android.jar")).apply {
                 loadClassesFromJar()
             }
@@ -213,6 +214,7 @@ class CompletionProvider {
     }
 
     fun complete(source: String?, fileName: String?, index: Int): List<EditorCompletionItem> {
+        FileUtil.awaitClasspath()
         environment.addJarToClassPath(FileUtil.classpathDir.resolve("android.jar"))
         val psiFile = fileFactory.createFileFromText(fileName!!, JavaLanguage.INSTANCE, source!!)
 
@@ -8,6 +8,10 @@
 package org.cosmicide.rewrite.util
 
 import java.io.File
+import java.io.IOException
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Future
 
 object FileUtil {
 
@@ -29,6 +33,33 @@ object FileUtil {
     val pluginDir
         get() = dataDir.resolve("plugins")
 
+    @JvmStatic
+    val dexCacheDir
+        get() = dataDir.resolve("cache/dex")
+
+    /**
+     * Completes when the files in [classpathDir] are ready to be used, or exceptionally if they
+     * couldn't be. The app replaces it while it extracts them.
+     */
+    @JvmStatic
+    @Volatile
+    var classpathReady: Future<*> = CompletableFuture.completedFuture(Unit)
+
+    /**
+     * Waits until the files in [classpathDir] are ready to be used.
+     *
+     * @throws IOException If they couldn't be prepared.
+     */
+    @JvmStatic
+    fun awaitClasspath() {
+        try {
+            classpathReady.get()
+        } catch (e: ExecutionException) {
+            val cause = e.cause ?: e
+            throw cause as? IOException ?: IOException("Failed to prepare the classpath", cause)
+        }
+    }
+
     @JvmStatic
     fun init(dir: File) {
         dataDir = dir